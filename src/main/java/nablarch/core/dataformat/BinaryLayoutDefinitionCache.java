@@ -0,0 +1,707 @@
+package nablarch.core.dataformat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 解析済みのフォーマット定義をバイナリ形式で保持するキャッシュファイル。
+ * <p/>
+ * {@link #write(File, Collection)}でフォーマット定義ファイルを解析した結果をキャッシュファイルに出力し、
+ * {@link #load(File)}でメモリマップして読み込む。
+ * フォーマット定義はテキストの字句解析を行わずに、バイナリ形式から直接復元する。
+ * <p/>
+ * キャッシュファイルには、フォーマット定義ファイルごとに内容のハッシュ値(SHA-256)を保持する。
+ * フォーマット定義ファイルの内容がキャッシュファイルの出力時から変更されている場合は、
+ * キャッシュファイルの内容は使用されない。
+ * バイナリ形式で表現できないフォーマット定義は、テキストから解析するものとしてハッシュ値のみを保持する。
+ * <p/>
+ * 復元するフォーマット定義は初期化前のものである。
+ * {@link LayoutDefinitionCache#setBinaryCache(BinaryLayoutDefinitionCache)}に設定することで、
+ * {@link LayoutDefinitionCache}がフォーマット定義ファイルを解析する代わりに使用する。
+ * <p/>
+ * 本クラスはスレッドセーフである。
+ *
+ * @author TIS
+ * @see FormatDefinitionPreloader#setBinaryCacheFile(String)
+ */
+@Published(tag = "architect")
+public final class BinaryLayoutDefinitionCache {
+
+    /** キャッシュファイルの識別子 */
+    private static final int MAGIC = 0x4E4C4443;
+
+    /** キャッシュファイルの形式のバージョン */
+    private static final int VERSION = 2;
+
+    /** テキストから解析するフォーマット定義であることを表す長さ */
+    private static final int NOT_ENCODED = -1;
+
+    /** ハッシュ値のアルゴリズム */
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /** 文字列の文字セット */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** 値の種類: null */
+    private static final byte TYPE_NULL = 0;
+
+    /** 値の種類: 文字列 */
+    private static final byte TYPE_STRING = 1;
+
+    /** 値の種類: 整数 */
+    private static final byte TYPE_INTEGER = 2;
+
+    /** 値の種類: 真偽値 */
+    private static final byte TYPE_BOOLEAN = 3;
+
+    /** キャッシュファイルの内容(メモリマップしたバッファ) */
+    private final ByteBuffer buffer;
+
+    /** フォーマット定義ファイルのパスから、格納位置へのマッピング */
+    private final Map<String, IndexEntry> index;
+
+    /**
+     * コンストラクタ。
+     * @param buffer キャッシュファイルの内容
+     * @param index フォーマット定義ファイルのパスから、格納位置へのマッピング
+     */
+    private BinaryLayoutDefinitionCache(ByteBuffer buffer, Map<String, IndexEntry> index) {
+        this.buffer = buffer;
+        this.index = index;
+    }
+
+    /**
+     * フォーマット定義ファイルを解析し、キャッシュファイルに出力する。
+     * <p/>
+     * フォーマット定義ファイルの解析には{@link FormatterFactory}を使用する。
+     * 不正なフォーマット定義ファイルが含まれていた場合は、キャッシュファイルを出力せずに例外を送出する。
+     * バイナリ形式で表現できないフォーマット定義は出力しないが、ハッシュ値は保持するため
+     * {@link #isValid(File)}の判定対象となる。
+     * <p/>
+     * 同じディレクトリの一時ファイルに出力した後に名前を変更して置き換えるため、
+     * 出力中のキャッシュファイルが読み込まれることはない。
+     * (名前の変更で置き換えられない環境では、既存のキャッシュファイルを削除してから置き換える。)
+     * <p/>
+     * {@link #load(File)}でメモリマップしたファイルは、参照されなくなりガベージコレクションされるまで解放されない。
+     * Windowsではメモリマップされたファイルの名前の変更及び削除ができないため、
+     * 同じプロセスで読み込んだキャッシュファイルを置き換えようとした場合は{@link IOException}を送出する。
+     * @param cacheFile キャッシュファイル
+     * @param formatFiles フォーマット定義ファイル
+     * @return キャッシュファイルに出力したフォーマット定義の数(テキストから解析するものを除く)
+     * @throws IOException キャッシュファイルの出力に失敗した場合
+     */
+    public static int write(File cacheFile, Collection<File> formatFiles) throws IOException {
+        FormatterFactory factory = FormatterFactory.getInstance();
+        List<EncodedDefinition> definitions = new ArrayList<EncodedDefinition>(formatFiles.size());
+        for (File formatFile : formatFiles) {
+            definitions.add(encode(formatFile, digest(formatFile), factory.createDefinition(formatFile)));
+        }
+        return write(cacheFile, definitions);
+    }
+
+    /**
+     * バイナリ形式に変換済みのフォーマット定義を、キャッシュファイルに出力する。
+     * <p/>
+     * フォーマット定義ファイルの解析及びハッシュ値の算出は行わない。
+     * 置き換えについては{@link #write(File, Collection)}と同じ。
+     * @param cacheFile キャッシュファイル
+     * @param definitions 変換済みのフォーマット定義
+     * @return キャッシュファイルに出力したフォーマット定義の数(テキストから解析するものを除く)
+     * @throws IOException キャッシュファイルの出力に失敗した場合
+     */
+    static int write(File cacheFile, List<EncodedDefinition> definitions) throws IOException {
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(indexBytes);
+        int count = 0;
+        for (EncodedDefinition definition : definitions) {
+            writeString(indexOut, definition.path);
+            indexOut.writeByte(definition.hash.length);
+            indexOut.write(definition.hash);
+            if (definition.data == null) {
+                // 復元できない条件を含むフォーマット定義は、テキストから解析する。
+                indexOut.writeInt(0);
+                indexOut.writeInt(NOT_ENCODED);
+                continue;
+            }
+            indexOut.writeInt(entries.size());
+            indexOut.writeInt(definition.data.length);
+            entries.write(definition.data);
+            count++;
+        }
+
+        File dir = cacheFile.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(definitions.size());
+                indexBytes.writeTo(out);
+                entries.writeTo(out);
+            } finally {
+                FileUtil.closeQuietly(out);
+            }
+            replace(tempFile, cacheFile);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 一時ファイルの名前を変更して、キャッシュファイルを置き換える。
+     * <p/>
+     * 既存のファイルを置き換える名前の変更ができない環境では、既存のキャッシュファイルを削除してから名前を変更する。
+     * @param tempFile 一時ファイル
+     * @param cacheFile キャッシュファイル
+     * @throws IOException キャッシュファイルを置き換えられなかった場合
+     */
+    private static void replace(File tempFile, File cacheFile) throws IOException {
+        if (tempFile.renameTo(cacheFile)) {
+            return;
+        }
+        if (cacheFile.exists() && !cacheFile.delete() || !tempFile.renameTo(cacheFile)) {
+            throw new IOException("failed to replace the cache file. file = [" + cacheFile.getPath() + "]");
+        }
+    }
+
+    /**
+     * キャッシュファイルをメモリマップして読み込む。
+     * @param cacheFile キャッシュファイル
+     * @return キャッシュ
+     * @throws IOException キャッシュファイルの読み込みに失敗した場合、又はキャッシュファイルの形式が不正な場合
+     */
+    public static BinaryLayoutDefinitionCache load(File cacheFile) throws IOException {
+        ByteBuffer buffer;
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            FileUtil.closeQuietly(file);
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("unsupported cache file. file = [" + cacheFile.getPath() + "]");
+            }
+            int count = buffer.getInt();
+            Map<String, IndexEntry> index = new HashMap<String, IndexEntry>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String path = readString(buffer);
+                byte[] hash = new byte[buffer.get()];
+                buffer.get(hash);
+                index.put(path, new IndexEntry(hash, buffer.getInt(), buffer.getInt()));
+            }
+            ByteBuffer entries = buffer.slice();
+            for (IndexEntry entry : index.values()) {
+                if (entry.length == NOT_ENCODED) {
+                    continue;
+                }
+                if (entry.offset < 0 || entry.length < 0 || entry.offset + entry.length > entries.capacity()) {
+                    throw new IOException("broken cache file. file = [" + cacheFile.getPath() + "]");
+                }
+            }
+            return new BinaryLayoutDefinitionCache(entries, index);
+        } catch (RuntimeException e) {
+            throw new IOException("broken cache file. file = [" + cacheFile.getPath() + "]", e);
+        }
+    }
+
+    /**
+     * フォーマット定義ファイルに対応するフォーマット定義を復元する。
+     * @param formatFile フォーマット定義ファイル
+     * @return 初期化前のフォーマット定義。
+     *         キャッシュに存在しない場合、フォーマット定義ファイルが変更されている場合、
+     *         及びテキストから解析するフォーマット定義の場合は{@code null}
+     */
+    public LayoutDefinition read(File formatFile) {
+        if (!isValid(formatFile)) {
+            return null;
+        }
+        return read(formatFile, index.get(formatFile.getAbsolutePath()).hash);
+    }
+
+    /**
+     * 算出済みのハッシュ値を使用して、フォーマット定義ファイルに対応するフォーマット定義を復元する。
+     * @param formatFile フォーマット定義ファイル
+     * @param hash フォーマット定義ファイルの現在の内容のハッシュ値({@link #digest(File)})
+     * @return 初期化前のフォーマット定義。
+     *         キャッシュに存在しない場合、フォーマット定義ファイルが変更されている場合、
+     *         及びテキストから解析するフォーマット定義の場合は{@code null}
+     */
+    LayoutDefinition read(File formatFile, byte[] hash) {
+        String path = formatFile.getAbsolutePath();
+        IndexEntry entry = index.get(path);
+        if (entry == null || !Arrays.equals(entry.hash, hash) || entry.length == NOT_ENCODED) {
+            return null;
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.position(entry.offset);
+        data.limit(entry.offset + entry.length);
+        return decode(path, data);
+    }
+
+    /**
+     * フォーマット定義ファイルに対応する、バイナリ形式に変換済みのフォーマット定義を取得する。
+     * <p/>
+     * キャッシュファイルを出力し直す際に、変更されていないフォーマット定義を解析し直さずに使用する。
+     * @param formatFile フォーマット定義ファイル
+     * @param hash フォーマット定義ファイルの現在の内容のハッシュ値({@link #digest(File)})
+     * @return 変換済みのフォーマット定義。
+     *         キャッシュに存在しない場合、及びフォーマット定義ファイルが変更されている場合は{@code null}
+     */
+    EncodedDefinition getEncoded(File formatFile, byte[] hash) {
+        String path = formatFile.getAbsolutePath();
+        IndexEntry entry = index.get(path);
+        if (entry == null || !Arrays.equals(entry.hash, hash)) {
+            return null;
+        }
+        byte[] data = null;
+        if (entry.length != NOT_ENCODED) {
+            ByteBuffer source = buffer.duplicate();
+            source.position(entry.offset);
+            data = new byte[entry.length];
+            source.get(data);
+        }
+        return new EncodedDefinition(path, hash, data, true);
+    }
+
+    /**
+     * フォーマット定義ファイルが、キャッシュファイルの出力時から変更されていないか判定する。
+     * <p/>
+     * テキストから解析するフォーマット定義の場合も、フォーマット定義ファイルが変更されていなければ{@code true}を返却する。
+     * @param formatFile フォーマット定義ファイル
+     * @return キャッシュファイルの出力対象であり、変更されていない場合は{@code true}
+     */
+    public boolean isValid(File formatFile) {
+        IndexEntry entry = index.get(formatFile.getAbsolutePath());
+        if (entry == null || !formatFile.isFile()) {
+            return false;
+        }
+        try {
+            return Arrays.equals(entry.hash, digest(formatFile));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * キャッシュファイルの出力対象としたフォーマット定義ファイルの数を取得する。
+     * @return フォーマット定義ファイルの数(テキストから解析するものを含む)
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * ファイルの内容のハッシュ値を算出する。
+     * @param file ファイル
+     * @return ハッシュ値
+     * @throws IOException ファイルの読み込みに失敗した場合
+     */
+    static byte[] digest(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                digest.update(buf, 0, len);
+            }
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * フォーマット定義ファイルを解析した結果を、キャッシュファイルに出力できるよう変換する。
+     * @param formatFile フォーマット定義ファイル
+     * @param hash フォーマット定義ファイルの内容のハッシュ値({@link #digest(File)})
+     * @param definition フォーマット定義ファイルを解析した初期化前のフォーマット定義
+     * @return 変換済みのフォーマット定義
+     * @throws IOException 変換に失敗した場合
+     */
+    static EncodedDefinition encode(File formatFile, byte[] hash, LayoutDefinition definition) throws IOException {
+        return new EncodedDefinition(formatFile.getAbsolutePath(), hash, encode(definition), false);
+    }
+
+    /**
+     * 初期化前のフォーマット定義をバイナリ形式に変換する。
+     * @param definition 初期化前のフォーマット定義
+     * @return 変換結果。バイナリ形式で表現できない場合は{@code null}
+     * @throws IOException 変換に失敗した場合
+     */
+    private static byte[] encode(LayoutDefinition definition) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        Map<String, Object> directive = definition.getDirective();
+        out.writeInt(directive.size());
+        for (Entry<String, Object> entry : directive.entrySet()) {
+            writeString(out, entry.getKey());
+            if (!writeValue(out, entry.getValue())) {
+                return null;
+            }
+        }
+
+        RecordDefinition classifier = definition.getRecordClassifier();
+        List<RecordDefinition> records = definition.getRecords();
+        out.writeInt(records.size() + (classifier == null ? 0 : 1));
+        if (classifier != null && !writeRecord(out, classifier)) {
+            return null;
+        }
+        for (RecordDefinition record : records) {
+            if (!writeRecord(out, record)) {
+                return null;
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * レコード定義を出力する。
+     * @param out 出力先
+     * @param record レコード定義
+     * @return 出力した場合は{@code true}。バイナリ形式で表現できない場合は{@code false}
+     * @throws IOException 出力に失敗した場合
+     */
+    private static boolean writeRecord(DataOutputStream out, RecordDefinition record) throws IOException {
+        writeString(out, record.getTypeName());
+        RecordDefinition base = record.getBaseRecordType();
+        writeString(out, base == null ? null : base.getTypeName());
+
+        List<DataRecordPredicate> conditions = record.getConditionsToApply();
+        out.writeInt(conditions.size());
+        for (DataRecordPredicate condition : conditions) {
+            if (!writeCondition(out, condition)) {
+                return false;
+            }
+        }
+
+        List<FieldDefinition> fields = record.getFields();
+        out.writeInt(fields.size());
+        for (FieldDefinition field : fields) {
+            out.writeInt(field.getPosition());
+            writeString(out, field.getName());
+            out.writeBoolean(field.isFiller());
+            out.writeBoolean(field.isAttribute());
+            out.writeBoolean(field.isRequired());
+            out.writeBoolean(field.isArray());
+            out.writeInt(field.getMinArraySize());
+            out.writeInt(field.getMaxArraySize());
+            Map<String, Object[]> settings = field.getConvertorSettingList();
+            out.writeInt(settings.size());
+            for (Entry<String, Object[]> setting : settings.entrySet()) {
+                writeString(out, setting.getKey());
+                Object[] args = setting.getValue();
+                out.writeInt(args.length);
+                for (Object arg : args) {
+                    if (!writeValue(out, arg)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * レコードタイプの判定条件を出力する。
+     * <p/>
+     * 判定条件は項目名と期待値を公開していないため、リフレクションで取得する。
+     * @param out 出力先
+     * @param condition 判定条件
+     * @return 出力した場合は{@code true}。バイナリ形式で表現できない場合は{@code false}
+     * @throws IOException 出力に失敗した場合
+     */
+    private static boolean writeCondition(DataOutputStream out, DataRecordPredicate condition) throws IOException {
+        if (condition.getClass() != DataRecordPredicate.Equals.class) {
+            return false;
+        }
+        String fieldName;
+        Object[] expectingValues;
+        try {
+            fieldName = (String) getField(condition, "fieldName");
+            expectingValues = (Object[]) getField(condition, "expectingValues");
+        } catch (Exception e) {
+            return false;
+        }
+        writeString(out, fieldName);
+        out.writeInt(expectingValues.length);
+        for (Object value : expectingValues) {
+            if (!writeValue(out, value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * フィールドの値を取得する。
+     * @param target 対象のオブジェクト
+     * @param name フィールド名
+     * @return フィールドの値
+     * @throws Exception フィールドの値を取得できない場合
+     */
+    private static Object getField(Object target, String name) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    /**
+     * フォーマット定義ファイルの記述値(文字列、整数、真偽値)を出力する。
+     * @param out 出力先
+     * @param value 記述値
+     * @return 出力した場合は{@code true}。バイナリ形式で表現できない場合は{@code false}
+     * @throws IOException 出力に失敗した場合
+     */
+    private static boolean writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 文字列を出力する。
+     * @param out 出力先
+     * @param value 文字列
+     * @throws IOException 出力に失敗した場合
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * バイナリ形式からフォーマット定義を復元する。
+     * @param path フォーマット定義ファイルのパス
+     * @param data バイナリ形式のフォーマット定義
+     * @return 初期化前のフォーマット定義
+     */
+    private static LayoutDefinition decode(String path, ByteBuffer data) {
+        LayoutDefinition definition = new LayoutDefinition(path);
+        int directiveCount = data.getInt();
+        for (int i = 0; i < directiveCount; i++) {
+            String name = readString(data);
+            definition.getDirective().put(name, readValue(data));
+        }
+
+        int recordCount = data.getInt();
+        for (int i = 0; i < recordCount; i++) {
+            RecordDefinition record = new RecordDefinition().setTypeName(readString(data));
+            String baseName = readString(data);
+            if (baseName != null) {
+                record.setBaseRecordType(definition.getRecordType(baseName));
+            }
+            int conditionCount = data.getInt();
+            for (int j = 0; j < conditionCount; j++) {
+                String fieldName = readString(data);
+                Object[] values = new Object[data.getInt()];
+                for (int k = 0; k < values.length; k++) {
+                    values[k] = readValue(data);
+                }
+                record.addCondition(new DataRecordPredicate.Equals(fieldName, values));
+            }
+            int fieldCount = data.getInt();
+            for (int j = 0; j < fieldCount; j++) {
+                record.addField(readField(data));
+            }
+            if (record.isClassifier()) {
+                definition.setRecordClassifier(record);
+            } else {
+                definition.addRecord(record);
+            }
+        }
+        return definition;
+    }
+
+    /**
+     * バイナリ形式から項目定義を復元する。
+     * @param data バイナリ形式のフォーマット定義
+     * @return 初期化前の項目定義
+     */
+    private static FieldDefinition readField(ByteBuffer data) {
+        FieldDefinition field = new FieldDefinition()
+                .setPosition(data.getInt())
+                .setName(readString(data));
+        if (data.get() != 0) {
+            field.markAsFiller();
+        }
+        if (data.get() != 0) {
+            field.markAsAttribute();
+        }
+        if (data.get() == 0) {
+            field.markAsNotRequired();
+        }
+        if (data.get() != 0) {
+            field.markAsArray();
+        }
+        field.setMinArraySize(data.getInt());
+        field.setMaxArraySize(data.getInt());
+        int settingCount = data.getInt();
+        for (int i = 0; i < settingCount; i++) {
+            String name = readString(data);
+            Object[] args = new Object[data.getInt()];
+            for (int j = 0; j < args.length; j++) {
+                args[j] = readValue(data);
+            }
+            field.addConvertorSetting(name, args);
+        }
+        return field;
+    }
+
+    /**
+     * バイナリ形式から記述値を復元する。
+     * @param data バイナリ形式のフォーマット定義
+     * @return 記述値
+     */
+    private static Object readValue(ByteBuffer data) {
+        byte type = data.get();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_STRING:
+            return readString(data);
+        case TYPE_INTEGER:
+            return data.getInt();
+        case TYPE_BOOLEAN:
+            return data.get() != 0;
+        default:
+            throw new IllegalStateException("unknown value type. type = [" + type + "]");
+        }
+    }
+
+    /**
+     * バイナリ形式から文字列を復元する。
+     * @param data バイナリ形式のデータ
+     * @return 文字列
+     */
+    private static String readString(ByteBuffer data) {
+        int length = data.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * キャッシュファイルに出力する、バイナリ形式に変換済みのフォーマット定義。
+     */
+    static final class EncodedDefinition {
+
+        /** フォーマット定義ファイルのパス */
+        private final String path;
+
+        /** フォーマット定義ファイルの内容のハッシュ値 */
+        private final byte[] hash;
+
+        /** バイナリ形式のフォーマット定義(テキストから解析する場合は{@code null}) */
+        private final byte[] data;
+
+        /** 読み込んだキャッシュファイルから取得したか否か */
+        private final boolean restored;
+
+        /**
+         * コンストラクタ。
+         * @param path フォーマット定義ファイルのパス
+         * @param hash フォーマット定義ファイルの内容のハッシュ値
+         * @param data バイナリ形式のフォーマット定義(テキストから解析する場合は{@code null})
+         * @param restored 読み込んだキャッシュファイルから取得した場合は{@code true}
+         */
+        EncodedDefinition(String path, byte[] hash, byte[] data, boolean restored) {
+            this.path = path;
+            this.hash = hash;
+            this.data = data;
+            this.restored = restored;
+        }
+
+        /**
+         * 読み込んだキャッシュファイルから取得したか否か。
+         * @return キャッシュファイルから取得した場合は{@code true}。フォーマット定義ファイルを解析した場合は{@code false}
+         */
+        boolean isRestored() {
+            return restored;
+        }
+    }
+
+    /**
+     * フォーマット定義の格納位置。
+     */
+    private static final class IndexEntry {
+
+        /** フォーマット定義ファイルの内容のハッシュ値 */
+        private final byte[] hash;
+
+        /** バッファ上の開始位置 */
+        private final int offset;
+
+        /** バッファ上の長さ */
+        private final int length;
+
+        /**
+         * コンストラクタ。
+         * @param hash フォーマット定義ファイルの内容のハッシュ値
+         * @param offset バッファ上の開始位置
+         * @param length バッファ上の長さ
+         */
+        IndexEntry(byte[] hash, int offset, int length) {
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
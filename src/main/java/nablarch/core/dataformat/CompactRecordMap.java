@@ -0,0 +1,427 @@
+package nablarch.core.dataformat;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 項目名の並びを共有し、値のみを配列で保持するMap。
+ * <p/>
+ * 同じフォーマット定義から解析したレコードは{@link RecordSchema}を共有するため、
+ * レコードごとに保持するのは値の配列のみとなる。
+ * 項目名による検索は、{@link RecordSchema}から格納位置を取得して配列を参照する。
+ * 格納位置が分かっている場合は、{@link #get(int)}で直接参照できる。
+ * <p/>
+ * 通常のMapと同様に変更できる。項目名の並びに含まれない項目を追加した場合は、
+ * その項目のみを別のMapに保持する。
+ * <p/>
+ * 項目は項目名の並びの順(並びに含まれない項目はその後に追加した順)に列挙される。
+ * {@link DataRecord}とは異なり、項目名の順には列挙されない。
+ * <p/>
+ * 本クラスはスレッドセーフではない。
+ *
+ * @author TIS
+ * @see SimpleDataConvertUtil#parseCompactData(String, CharSequence, java.util.Collection)
+ */
+@Published(tag = "architect")
+public class CompactRecordMap extends AbstractMap<String, Object> implements Serializable {
+
+    /** シリアルバージョンUID */
+    private static final long serialVersionUID = 1L;
+
+    /** 項目名の並びの上限。これを超える項目は項目名の並びに追加しない。 */
+    static final int MAX_SCHEMA_SIZE = 1024;
+
+    /** 値が存在しないことを表すオブジェクト */
+    private static final Object ABSENT = new Absent();
+
+    /** 項目名の並び */
+    private final RecordSchema schema;
+
+    /** 値(項目名の並びの格納位置順) */
+    private final Object[] values;
+
+    /** 項目名の並びに含まれない項目({@code null}の場合は存在しない) */
+    private Map<String, Object> extras;
+
+    /** 項目名の並びに含まれる項目のうち、値が存在する項目の数 */
+    private int slotCount;
+
+    /** レコードタイプ */
+    private String recordType;
+
+    /** レコード番号 */
+    private int recordNumber;
+
+    /** エントリのビュー */
+    private transient Set<Entry<String, Object>> entrySet;
+
+    /**
+     * 値が存在しない状態で生成する。
+     * @param schema 項目名の並び
+     */
+    public CompactRecordMap(RecordSchema schema) {
+        this.schema = schema;
+        this.values = new Object[schema.size()];
+        Arrays.fill(values, ABSENT);
+    }
+
+    /**
+     * Mapの内容を複製して生成する。
+     * @param schema 項目名の並び
+     * @param source 複製元
+     */
+    public CompactRecordMap(RecordSchema schema, Map<String, ?> source) {
+        this(schema);
+        putAll(source);
+        if (source instanceof DataRecord) {
+            recordType = ((DataRecord) source).getRecordType();
+            recordNumber = ((DataRecord) source).getRecordNumber();
+        }
+    }
+
+    /**
+     * 共有している項目名の並びを使用して、Mapの内容を複製したMapを生成する。
+     * <p/>
+     * 共有している項目名の並びに含まれない項目がある場合は、項目を追加した並びを生成し共有する。
+     * ただし、項目数が{@link #MAX_SCHEMA_SIZE}を超える場合は追加しない。
+     * @param source 複製元
+     * @param sharedSchema 共有している項目名の並び
+     * @return 複製したMap
+     */
+    static CompactRecordMap create(Map<String, ?> source, AtomicReference<RecordSchema> sharedSchema) {
+        RecordSchema current = sharedSchema.get();
+        if (current == null || !current.containsAll(source.keySet())) {
+            RecordSchema extended = current == null
+                    ? new RecordSchema(source.keySet())
+                    : current.extend(source.keySet());
+            if (extended.size() <= MAX_SCHEMA_SIZE) {
+                // 他のスレッドが先に更新した場合でも、生成した並びはこのMapで使用できる。
+                sharedSchema.compareAndSet(current, extended);
+                current = extended;
+            } else if (current == null) {
+                current = new RecordSchema(Collections.<String>emptyList());
+            }
+        }
+        return new CompactRecordMap(current, source);
+    }
+
+    /**
+     * 項目名の並びを取得する。
+     * @return 項目名の並び
+     */
+    public RecordSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * 格納位置を指定して値を取得する。
+     * @param index {@link RecordSchema#getIndex(Object)}で取得した格納位置
+     * @return 値。値が存在しない場合は{@code null}
+     */
+    public Object get(int index) {
+        Object value = values[index];
+        return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int index = schema.getIndex(key);
+        if (index >= 0) {
+            return get(index);
+        }
+        return extras == null ? null : extras.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int index = schema.getIndex(key);
+        if (index >= 0) {
+            return values[index] != ABSENT;
+        }
+        return extras != null && extras.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int index = schema.getIndex(key);
+        if (index >= 0) {
+            Object old = values[index];
+            values[index] = value;
+            if (old == ABSENT) {
+                slotCount++;
+                return null;
+            }
+            return old;
+        }
+        if (extras == null) {
+            extras = new LinkedHashMap<String, Object>();
+        }
+        return extras.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int index = schema.getIndex(key);
+        if (index >= 0) {
+            return removeAt(index);
+        }
+        return extras == null ? null : extras.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return slotCount + (extras == null ? 0 : extras.size());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, ABSENT);
+        slotCount = 0;
+        extras = null;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * 項目名の並びを共有した複製を生成する。
+     * @return 複製
+     */
+    public CompactRecordMap copy() {
+        CompactRecordMap copy = new CompactRecordMap(schema);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        copy.slotCount = slotCount;
+        if (extras != null) {
+            copy.extras = new LinkedHashMap<String, Object>(extras);
+        }
+        copy.recordType = recordType;
+        copy.recordNumber = recordNumber;
+        return copy;
+    }
+
+    /**
+     * レコードタイプを取得する。
+     * @return レコードタイプ
+     */
+    public String getRecordType() {
+        return recordType;
+    }
+
+    /**
+     * レコードタイプを設定する。
+     * @param recordType レコードタイプ
+     * @return このオブジェクト自体
+     */
+    public CompactRecordMap setRecordType(String recordType) {
+        this.recordType = recordType;
+        return this;
+    }
+
+    /**
+     * レコード番号を取得する。
+     * @return レコード番号
+     */
+    public int getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * レコード番号を設定する。
+     * @param recordNumber レコード番号
+     * @return このオブジェクト自体
+     */
+    public CompactRecordMap setRecordNumber(int recordNumber) {
+        this.recordNumber = recordNumber;
+        return this;
+    }
+
+    /**
+     * 格納位置の値を削除する。
+     * @param index 格納位置
+     * @return 削除前の値
+     */
+    private Object removeAt(int index) {
+        Object old = values[index];
+        if (old == ABSENT) {
+            return null;
+        }
+        values[index] = ABSENT;
+        slotCount--;
+        return old;
+    }
+
+    /**
+     * 値が存在しないことを表すクラス。
+     * <p/>
+     * 直列化したMapを復元した場合でも同一のオブジェクトとなるよう、復元時に{@link #ABSENT}に置き換える。
+     */
+    private static final class Absent implements Serializable {
+
+        /** シリアルバージョンUID */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 復元時に、値が存在しないことを表すオブジェクトに置き換える。
+         * @return 値が存在しないことを表すオブジェクト
+         */
+        private Object readResolve() {
+            return ABSENT;
+        }
+    }
+
+    /**
+     * エントリのビュー。
+     */
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return CompactRecordMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            CompactRecordMap.this.clear();
+        }
+    }
+
+    /**
+     * エントリのイテレータ。
+     * <p/>
+     * 項目名の並びに含まれる項目を格納位置の順に返却した後、それ以外の項目を返却する。
+     */
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        /** 次に返却する格納位置 */
+        private int next = advance(0);
+
+        /** 最後に返却した格納位置(削除済み又は未返却の場合は-1) */
+        private int last = -1;
+
+        /** 項目名の並びに含まれない項目のイテレータ */
+        private Iterator<Entry<String, Object>> extraIterator;
+
+        /**
+         * 値が存在する格納位置まで進める。
+         * @param from 開始位置
+         * @return 値が存在する格納位置。存在しない場合は配列の長さ
+         */
+        private int advance(int from) {
+            int index = from;
+            while (index < values.length && values[index] == ABSENT) {
+                index++;
+            }
+            return index;
+        }
+
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (extraIterator == null && extras != null) {
+                extraIterator = extras.entrySet().iterator();
+            }
+            return extraIterator != null && extraIterator.hasNext();
+        }
+
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (next < values.length) {
+                last = next;
+                next = advance(next + 1);
+                return new SlotEntry(last);
+            }
+            last = -1;
+            return extraIterator.next();
+        }
+
+        public void remove() {
+            if (last >= 0) {
+                removeAt(last);
+                last = -1;
+            } else if (extraIterator != null) {
+                extraIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    /**
+     * 項目名の並びに含まれる項目のエントリ。
+     */
+    private final class SlotEntry implements Entry<String, Object> {
+
+        /** 格納位置 */
+        private final int index;
+
+        /**
+         * コンストラクタ。
+         * @param index 格納位置
+         */
+        SlotEntry(int index) {
+            this.index = index;
+        }
+
+        public String getKey() {
+            return schema.getName(index);
+        }
+
+        public Object getValue() {
+            return get(index);
+        }
+
+        public Object setValue(Object value) {
+            Object old = get(index);
+            if (values[index] == ABSENT) {
+                slotCount++;
+            }
+            values[index] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            Object value = getValue();
+            return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
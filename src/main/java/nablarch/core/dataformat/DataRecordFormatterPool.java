@@ -0,0 +1,149 @@
+package nablarch.core.dataformat;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 1つのフォーマット定義から生成したフォーマッタを再利用するためのプール。
+ * <p/>
+ * 保持するフォーマッタの数には上限があり、上限を超えて返却されたフォーマッタは破棄する。
+ * 取得及び返却はロックを使用せずに行う。
+ * <p/>
+ * 再利用できるのは、ストリームのクローズ後に読み書きの状態が残らないフォーマッタ
+ * (固定長、JSON及びXML形式)のみとする。
+ * 可変長形式のフォーマッタは、タイトル行の読み書き状態やReader/Writerを保持するため再利用しない。
+ * また、{@link FormatterFactory}がプールの生成時から変更されている場合は再利用しない。
+ * <p/>
+ * 解析結果を{@link CompactRecordMap}に変換する際に共有する項目名の並びも保持する。
+ *
+ * @author TIS
+ * @see LayoutDefinitionCache
+ */
+final class DataRecordFormatterPool {
+
+    /** 保持するフォーマッタの最大数 */
+    static final int MAX_IDLE = 8;
+
+    /** フォーマット定義 */
+    private final LayoutDefinition definition;
+
+    /** プールの生成時のフォーマッタファクトリ */
+    private final FormatterFactory factory;
+
+    /** 解析結果の変換に共有する項目名の並び */
+    private final AtomicReference<RecordSchema> recordSchema = new AtomicReference<RecordSchema>();
+
+    /** 使用されていないフォーマッタ */
+    private final AtomicReferenceArray<DataRecordFormatter> idle
+            = new AtomicReferenceArray<DataRecordFormatter>(MAX_IDLE);
+
+    /**
+     * コンストラクタ。
+     * @param definition 初期化済みのフォーマット定義
+     */
+    DataRecordFormatterPool(LayoutDefinition definition) {
+        this.definition = definition;
+        this.factory = FormatterFactory.getInstance();
+    }
+
+    /**
+     * フォーマット定義を取得する。
+     * @return 初期化済みのフォーマット定義
+     */
+    LayoutDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * 初期化済みのフォーマッタを取得する。
+     * <p/>
+     * 使用されていないフォーマッタが存在しない場合は、新たに生成する。
+     * @return 初期化済みのフォーマッタ
+     */
+    DataRecordFormatter acquire() {
+        FormatterFactory current = FormatterFactory.getInstance();
+        if (current == factory) {
+            int start = startIndex();
+            for (int i = 0; i < MAX_IDLE; i++) {
+                int index = (start + i) % MAX_IDLE;
+                DataRecordFormatter formatter = idle.get(index);
+                if (formatter != null && idle.compareAndSet(index, formatter, null)) {
+                    return formatter;
+                }
+            }
+        }
+        // 初期化済みのフォーマット定義を使用するため、フォーマット定義の初期化は行われない。
+        DataRecordFormatter formatter = current.createFormatter(definition);
+        formatter.initialize();
+        return formatter;
+    }
+
+    /**
+     * 使用を終えたフォーマッタを返却する。
+     * <p/>
+     * フォーマッタはクローズ済みであること。
+     * 再利用できないフォーマッタ、及びプールが満杯の場合は破棄する。
+     * @param formatter クローズ済みのフォーマッタ
+     */
+    void release(DataRecordFormatter formatter) {
+        if (!isReusable(formatter) || FormatterFactory.getInstance() != factory) {
+            return;
+        }
+        // エラーメッセージに出力されるレコード番号を、次回の使用に引き継がない。
+        ((DataRecordFormatterSupport) formatter).setRecordNumber(0);
+        int start = startIndex();
+        for (int i = 0; i < MAX_IDLE; i++) {
+            if (idle.compareAndSet((start + i) % MAX_IDLE, null, formatter)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 解析結果を、項目名の並びを共有する{@link CompactRecordMap}に変換する。
+     * @param record 解析結果
+     * @return 変換後の解析結果。解析結果が{@code null}の場合は{@code null}
+     */
+    CompactRecordMap compact(Map<String, ?> record) {
+        return record == null ? null : CompactRecordMap.create(record, recordSchema);
+    }
+
+    /**
+     * 使用されていないフォーマッタの数を取得する。
+     * @return 使用されていないフォーマッタの数
+     */
+    int getIdleCount() {
+        int count = 0;
+        for (int i = 0; i < MAX_IDLE; i++) {
+            if (idle.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * フォーマッタが再利用できるか否かを判定する。
+     * <p/>
+     * 状態を追加している可能性があるため、サブクラスは再利用しない。
+     * @param formatter フォーマッタ
+     * @return 再利用できる場合は{@code true}
+     */
+    private static boolean isReusable(DataRecordFormatter formatter) {
+        Class<?> type = formatter.getClass();
+        return type == FixedLengthDataRecordFormatter.class
+                || type == JsonDataRecordFormatter.class
+                || type == XmlDataRecordFormatter.class;
+    }
+
+    /**
+     * 探索を開始する位置を取得する。
+     * <p/>
+     * 複数のスレッドが同じ位置を奪い合わないよう、スレッドごとに異なる位置から探索する。
+     * @return 探索を開始する位置
+     */
+    private static int startIndex() {
+        return (int) (Thread.currentThread().getId() % MAX_IDLE);
+    }
+}
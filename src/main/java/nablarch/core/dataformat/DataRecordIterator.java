@@ -0,0 +1,143 @@
+package nablarch.core.dataformat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 構造化データのストリームから、レコードを1件ずつ解析するイテレータ。
+ * <p/>
+ * {@link #next()}が呼び出されるまでレコードを解析しないため、
+ * レコード件数に関わらずメモリ使用量を一定に抑えることができる。
+ * 使用後は{@link #close()}を呼び出し、フォーマッタ及びストリームをクローズすること。
+ * {@link SimpleDataConvertUtil}が生成したイテレータは、クローズ時にフォーマッタを再利用のため返却する。
+ * ただし、読み込み中に例外が発生した場合は、フォーマッタの状態が不定となるため返却しない。
+ * <p/>
+ * 入力データが不正な場合は{@link InvalidDataFormatException}を送出する。
+ * 読み込みに伴うIO処理で問題が発生した場合は、{@link IOException}を原因とした{@link RuntimeException}を送出する。
+ *
+ * @author TIS
+ * @see SimpleDataConvertUtil#parseRecords(String, InputStream)
+ */
+@Published(tag = "architect")
+public class DataRecordIterator implements Iterator<DataRecord>, Closeable {
+
+    /** フォーマッタ */
+    private final DataRecordFormatter formatter;
+
+    /** 変換対象データ読み込み用ストリーム */
+    private final InputStream in;
+
+    /** クローズ時にフォーマッタを返却するプール(返却しない場合は{@code null}) */
+    private final DataRecordFormatterPool pool;
+
+    /** クローズ済みか否か */
+    private boolean closed;
+
+    /** 読み込み中に例外が発生したか否か */
+    private boolean failed;
+
+    /**
+     * コンストラクタ。
+     * @param formatter ストリームが設定され、初期化済みのフォーマッタ
+     * @param in 変換対象データ読み込み用ストリーム
+     */
+    public DataRecordIterator(DataRecordFormatter formatter, InputStream in) {
+        this(formatter, in, null);
+    }
+
+    /**
+     * クローズ時にフォーマッタをプールに返却するイテレータを生成する。
+     * @param formatter ストリームが設定され、初期化済みのフォーマッタ
+     * @param in 変換対象データ読み込み用ストリーム
+     * @param pool フォーマッタの取得元のプール
+     */
+    DataRecordIterator(DataRecordFormatter formatter, InputStream in, DataRecordFormatterPool pool) {
+        this.formatter = formatter;
+        this.in = in;
+        this.pool = pool;
+    }
+
+    /**
+     * 次のレコードが存在するか否か。
+     * <p/>
+     * 次のレコードが存在しない場合は、本イテレータをクローズする。
+     * @return 次のレコードが存在する場合は{@code true}
+     */
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        boolean hasNext = false;
+        boolean succeeded = false;
+        try {
+            hasNext = formatter.hasNext();
+            succeeded = true;
+        } catch (IOException e) {
+            throw new RuntimeException("failed to read the next record.", e);
+        } finally {
+            if (!succeeded) {
+                failed = true;
+            }
+        }
+        if (!hasNext) {
+            close();
+        }
+        return hasNext;
+    }
+
+    /**
+     * 次のレコードを解析して返却する。
+     * @return 次のレコード
+     * @throws NoSuchElementException 次のレコードが存在しない場合
+     * @throws InvalidDataFormatException 入力データが不正な場合
+     */
+    public DataRecord next() throws InvalidDataFormatException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        boolean succeeded = false;
+        try {
+            DataRecord record = formatter.readRecord();
+            succeeded = true;
+            return record;
+        } catch (IOException e) {
+            throw new RuntimeException("failed to read the next record.", e);
+        } finally {
+            if (!succeeded) {
+                failed = true;
+            }
+        }
+    }
+
+    /**
+     * サポートしない。
+     * @throws UnsupportedOperationException 常に送出する
+     */
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * フォーマッタ及びストリームをクローズする。
+     * <p/>
+     * 既にクローズされている場合は何もしない。
+     * 読み込み中に例外が発生していた場合は、フォーマッタをプールに返却しない。
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        formatter.close();
+        FileUtil.closeQuietly(in);
+        if (pool != null && !failed) {
+            pool.release(formatter);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package nablarch.core.dataformat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 文字データを読み込みに応じて少しずつエンコードする入力ストリーム。
+ * <p/>
+ * 文字データ全体をバイト列に変換してから読み込む場合と異なり、
+ * エンコード結果の格納には一定サイズのバッファのみを使用する。
+ * <p/>
+ * マッピングできない文字及び不正な文字は、{@link String#getBytes(Charset)}と同様に置換する。
+ * <p/>
+ * フォーマッタが次のレコードの有無の判定に使用するため、マーク及びリセットをサポートする。
+ * ただし、マーク後にバッファのサイズを超えて読み込んだ場合は、マークは無効となる。
+ *
+ * @author TIS
+ */
+final class EncodingInputStream extends InputStream {
+
+    /** バッファのサイズ */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** エンコーダ */
+    private final CharsetEncoder encoder;
+
+    /** 読み込み元のReader(文字列から読み込む場合は{@code null}) */
+    private final Reader reader;
+
+    /** エンコード前の文字 */
+    private final CharBuffer chars;
+
+    /** エンコード結果 */
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /** 文字データの終端に達したか否か */
+    private boolean endOfInput;
+
+    /** エンコーダの内部状態を出力し終えたか否か */
+    private boolean flushed;
+
+    /** マークした位置(マークしていない場合は-1) */
+    private int markPosition = -1;
+
+    /**
+     * 文字列から読み込むストリームを生成する。
+     * <p/>
+     * 文字列は複製せずに参照する。
+     * @param text 文字列
+     * @param charset 文字セット
+     */
+    EncodingInputStream(CharSequence text, Charset charset) {
+        this(null, CharBuffer.wrap(text), charset);
+        this.endOfInput = true;
+    }
+
+    /**
+     * Readerから読み込むストリームを生成する。
+     * <p/>
+     * Readerは本ストリームのクローズ時にクローズする。
+     * @param reader Reader
+     * @param charset 文字セット
+     */
+    EncodingInputStream(Reader reader, Charset charset) {
+        this(reader, (CharBuffer) CharBuffer.allocate(BUFFER_SIZE).flip(), charset);
+    }
+
+    /**
+     * コンストラクタ。
+     * @param reader 読み込み元のReader
+     * @param chars エンコード前の文字
+     * @param charset 文字セット
+     */
+    private EncodingInputStream(Reader reader, CharBuffer chars, Charset charset) {
+        this.reader = reader;
+        this.chars = chars;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        bytes.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return bytes.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        // フォーマッタは1回の読み込みでレコード長分のバイトが得られることを前提とするため、
+        // 終端に達するまでは指定された長さを全て読み込む。
+        int count = 0;
+        while (count < len && fill()) {
+            int size = Math.min(len - count, bytes.remaining());
+            bytes.get(b, off + count, size);
+            count += size;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public int available() {
+        return bytes.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        markPosition = bytes.position();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        if (markPosition < 0) {
+            throw new IOException("stream was not marked, or the mark has been invalidated.");
+        }
+        bytes.position(markPosition);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * エンコード結果が空の場合、次の文字をエンコードする。
+     * @return 読み込めるバイトが存在する場合は{@code true}
+     * @throws IOException Readerからの読み込みに失敗した場合
+     */
+    private boolean fill() throws IOException {
+        while (!bytes.hasRemaining() && !flushed) {
+            int position = prepareBuffer();
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isUnderflow()) {
+                if (endOfInput) {
+                    flushed = encoder.flush(bytes).isUnderflow();
+                } else {
+                    readChars();
+                }
+            }
+            bytes.flip();
+            bytes.position(position);
+        }
+        return bytes.hasRemaining();
+    }
+
+    /**
+     * エンコード結果を格納できるようバッファを準備する。
+     * <p/>
+     * マークしている場合は、マーク以降に読み込んだバイトをバッファの先頭に移動して残す。
+     * @return エンコード結果の読み込みを開始する位置
+     */
+    private int prepareBuffer() {
+        if (markPosition >= 0 && bytes.limit() - markPosition < bytes.capacity()) {
+            bytes.position(markPosition);
+            bytes.compact();
+            markPosition = 0;
+            return bytes.position();
+        }
+        markPosition = -1;
+        bytes.clear();
+        return 0;
+    }
+
+    /**
+     * Readerから文字を読み込む。
+     * <p/>
+     * サロゲートペアの途中で分割された文字は、後続の文字と合わせてエンコードするため残しておく。
+     * @throws IOException Readerからの読み込みに失敗した場合
+     */
+    private void readChars() throws IOException {
+        chars.compact();
+        int len = reader.read(chars);
+        if (len < 0) {
+            endOfInput = true;
+        }
+        chars.flip();
+    }
+}
@@ -0,0 +1,390 @@
+package nablarch.core.dataformat;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.dataformat.BinaryLayoutDefinitionCache.EncodedDefinition;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 起動時にフォーマット定義ファイルを一括で解析し、{@link LayoutDefinitionCache}に格納するクラス。
+ * <p/>
+ * フォーマット定義ファイルのディレクトリから、ファイル名(拡張子を除く)が指定された接尾辞
+ * (デフォルトは"_SEND"及び"_RECEIVE")で終わるファイルを検索し、並列に解析する。
+ * 初回の電文の送受信時にフォーマット定義ファイルを解析することによる遅延を避けるとともに、
+ * 不正なフォーマット定義ファイルを起動時に検出できる。
+ * <p/>
+ * 不正なフォーマット定義ファイルが存在した場合は、全てのファイルの解析を終えた後に、
+ * 不正なファイルとその理由を列挙した例外を送出する。
+ * ({@link #setFailOnError(boolean)}に{@code false}を設定した場合は、ワーニングログを出力して処理を継続する。)
+ * <p/>
+ * 解析したファイル数及び解析に要した時間は、INFOレベルでログ出力する。
+ * <p/>
+ * 解析したフォーマット定義が破棄されないよう、キャッシュの最大エントリ数が解析対象のファイル数に満たない場合は、
+ * ファイル数まで拡張する({@link LayoutDefinitionCache#ensureMaxSize(int)})。
+ * <p/>
+ * {@link #setBinaryCacheFile(String)}を設定した場合は、解析済みのフォーマット定義をバイナリ形式で保持する
+ * キャッシュファイル({@link BinaryLayoutDefinitionCache})を使用する。
+ * キャッシュファイルが存在する場合は、フォーマット定義ファイルを解析する代わりにキャッシュファイルから復元する。
+ * キャッシュファイルが存在しない場合、又はフォーマット定義ファイルが追加・変更されていた場合は、
+ * 全てのフォーマット定義ファイルが正常に解析できたときにキャッシュファイルを作成し直す。
+ * 作成し直す際は、並列に解析した結果及び算出したハッシュ値を使用し、フォーマット定義ファイルを解析し直さない。
+ * <p/>
+ * 読み込んだキャッシュファイルはメモリマップしたまま使用するため、Windowsでは同じプロセスでキャッシュファイルを置き換えられない。
+ * この場合はワーニングログを出力して処理を継続するため、フォーマット定義ファイルを変更した際はキャッシュファイルを削除してから起動すること。
+ *
+ * @author TIS
+ * @see LayoutDefinitionCache
+ */
+@Published(tag = "architect")
+public class FormatDefinitionPreloader implements Initializable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(FormatDefinitionPreloader.class);
+
+    /** フォーマット定義ファイルの格納ディレクトリの論理名 */
+    private String basePathName = "format";
+
+    /** 解析対象とするファイル名の接尾辞 */
+    private List<String> suffixes = Arrays.asList("_SEND", "_RECEIVE");
+
+    /** 解析に使用するスレッド数 */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /** 不正なフォーマット定義ファイルが存在した場合に例外を送出するか否か */
+    private boolean failOnError = true;
+
+    /** 解析したフォーマット定義を格納するキャッシュ */
+    private LayoutDefinitionCache cache = LayoutDefinitionCache.getSharedCache();
+
+    /** バイナリ形式のキャッシュファイルのパス(使用しない場合は{@code null}) */
+    private String binaryCacheFile;
+
+    /** 解析に成功したファイル数 */
+    private int loadedCount;
+
+    /** 解析に要した時間(ミリ秒) */
+    private long loadTimeMillis;
+
+    /** 解析に失敗したファイルのパスと理由 */
+    private Map<String, String> failures = Collections.emptyMap();
+
+    /**
+     * フォーマット定義ファイルを並列に解析し、キャッシュに格納する。
+     *
+     * @throws IllegalStateException 不正なフォーマット定義ファイルが存在した場合。
+     */
+    public void initialize() throws IllegalStateException {
+        long start = System.nanoTime();
+        File[] files = findFormatFiles();
+        if (cache.ensureMaxSize(files.length)) {
+            LOGGER.logInfo("max size of the format definition cache was extended to preload all files. maxSize = ["
+                    + files.length + "]");
+        }
+        final BinaryLayoutDefinitionCache binaryCache = loadBinaryCache();
+        if (binaryCache != null) {
+            cache.setBinaryCache(binaryCache);
+        }
+
+        Map<File, Future<EncodedDefinition>> futures = new LinkedHashMap<File, Future<EncodedDefinition>>();
+        List<EncodedDefinition> encodedDefinitions = new ArrayList<EncodedDefinition>(files.length);
+        Map<String, String> errors = new LinkedHashMap<String, String>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, files.length)));
+        try {
+            for (final File file : files) {
+                futures.put(file, executor.submit(new Callable<EncodedDefinition>() {
+                    public EncodedDefinition call() throws IOException {
+                        if (binaryCacheFile == null) {
+                            cache.getFormatterPool(file, null);
+                            return null;
+                        }
+                        return preload(file, binaryCache);
+                    }
+                }));
+            }
+            for (Entry<File, Future<EncodedDefinition>> entry : futures.entrySet()) {
+                try {
+                    encodedDefinitions.add(await(entry.getValue()));
+                } catch (ExecutionException e) {
+                    errors.put(entry.getKey().getAbsolutePath(), String.valueOf(e.getCause().getMessage()));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        loadedCount = files.length - errors.size();
+        loadTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        failures = Collections.unmodifiableMap(errors);
+        LOGGER.logInfo("format definitions preloaded. loaded = [" + loadedCount + "], failed = [" + errors.size()
+                + "], elapsed = [" + loadTimeMillis + "ms]");
+
+        if (!errors.isEmpty()) {
+            String report = createReport(errors);
+            if (failOnError) {
+                throw new IllegalStateException(report);
+            }
+            LOGGER.logWarn(report);
+        } else if (binaryCacheFile != null && !isUpToDate(binaryCache, encodedDefinitions)) {
+            writeBinaryCache(encodedDefinitions);
+        }
+    }
+
+    /**
+     * バイナリ形式のキャッシュファイルを使用する場合に、フォーマット定義ファイルを解析してキャッシュに格納する。
+     * <p/>
+     * フォーマット定義ファイルが読み込んだキャッシュファイルの出力時から変更されていない場合は、
+     * キャッシュファイルから復元する。
+     * それ以外の場合は解析し、初期化する前にキャッシュファイルを作成し直すためのバイナリ形式に変換する。
+     * フォーマット定義ファイルの内容のハッシュ値の算出及び解析は、それぞれ一度だけ行う。
+     * @param file フォーマット定義ファイル
+     * @param binaryCache 読み込んだキャッシュ(存在しない場合は{@code null})
+     * @return キャッシュファイルを作成し直す際に使用する、バイナリ形式に変換済みのフォーマット定義
+     * @throws IOException フォーマット定義ファイルの読み込みに失敗した場合
+     */
+    private EncodedDefinition preload(File file, BinaryLayoutDefinitionCache binaryCache) throws IOException {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        byte[] hash = BinaryLayoutDefinitionCache.digest(file);
+        FormatterFactory factory = FormatterFactory.getInstance();
+        EncodedDefinition encoded = binaryCache == null ? null : binaryCache.getEncoded(file, hash);
+        LayoutDefinition definition = null;
+        if (encoded != null && factory.getClass() == FormatterFactory.class) {
+            // テキストから解析するフォーマット定義の場合はnullが返却される。
+            definition = binaryCache.read(file, hash);
+        }
+        if (definition == null) {
+            definition = factory.createDefinition(file);
+            if (encoded == null) {
+                // 初期化によりフォーマット定義が変更されるため、初期化前に変換する。
+                encoded = BinaryLayoutDefinitionCache.encode(file, hash, definition);
+            }
+        }
+        cache.put(file, definition, factory, lastModified, length);
+        return encoded;
+    }
+
+    /**
+     * バイナリ形式のキャッシュファイルを読み込む。
+     * @return キャッシュ。キャッシュファイルを使用しない場合、存在しない場合及び読み込めない場合は{@code null}
+     */
+    private BinaryLayoutDefinitionCache loadBinaryCache() {
+        if (binaryCacheFile == null || !new File(binaryCacheFile).isFile()) {
+            return null;
+        }
+        try {
+            return BinaryLayoutDefinitionCache.load(new File(binaryCacheFile));
+        } catch (IOException e) {
+            LOGGER.logWarn("failed to load the binary cache of format definitions. file = [" + binaryCacheFile + "]", e);
+            return null;
+        }
+    }
+
+    /**
+     * バイナリ形式のキャッシュが全てのフォーマット定義ファイルの現在の内容に対応しているか判定する。
+     * <p/>
+     * 全てのフォーマット定義が読み込んだキャッシュから取得したものであれば、対応しているとみなす。
+     * バイナリ形式で表現できずテキストから解析するフォーマット定義も、キャッシュの出力対象に含まれていれば対応しているとみなす。
+     * @param binaryCache 読み込んだキャッシュ
+     * @param encodedDefinitions 解析時に取得した、バイナリ形式に変換済みのフォーマット定義
+     * @return 対応している場合は{@code true}
+     */
+    private static boolean isUpToDate(BinaryLayoutDefinitionCache binaryCache,
+            List<EncodedDefinition> encodedDefinitions) {
+        if (binaryCache == null || binaryCache.size() != encodedDefinitions.size()) {
+            return false;
+        }
+        for (EncodedDefinition encoded : encodedDefinitions) {
+            if (!encoded.isRestored()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * バイナリ形式のキャッシュファイルを作成する。
+     * <p/>
+     * 作成に失敗した場合は、ワーニングログを出力して処理を継続する。
+     * @param encodedDefinitions 解析時に取得した、バイナリ形式に変換済みのフォーマット定義
+     */
+    private void writeBinaryCache(List<EncodedDefinition> encodedDefinitions) {
+        try {
+            int count = BinaryLayoutDefinitionCache.write(new File(binaryCacheFile), encodedDefinitions);
+            LOGGER.logInfo("binary cache of format definitions was written. file = [" + binaryCacheFile
+                    + "], count = [" + count + "]");
+        } catch (Exception e) {
+            LOGGER.logWarn("failed to write the binary cache of format definitions. file = [" + binaryCacheFile + "]", e);
+        }
+    }
+
+    /**
+     * 解析対象のフォーマット定義ファイルを検索する。
+     * @return 解析対象のフォーマット定義ファイル(ファイル名順)
+     */
+    private File[] findFormatFiles() {
+        FilePathSetting setting = FilePathSetting.getInstance();
+        File dir = setting.getBaseDirectory(basePathName);
+        String extension = setting.getFileExtensions().get(basePathName);
+        final String fileSuffix = extension == null || extension.length() == 0 ? "" : '.' + extension;
+        File[] files = dir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                String name = file.getName();
+                if (!file.isFile() || !name.endsWith(fileSuffix)) {
+                    return false;
+                }
+                String formatName = name.substring(0, name.length() - fileSuffix.length());
+                for (String suffix : suffixes) {
+                    if (formatName.endsWith(suffix)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+        if (files == null) {
+            throw new IllegalStateException("format directory was not found. directory = [" + dir.getPath() + "]");
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * 解析の終了を待機する。
+     * @param future 解析結果
+     * @return 解析結果
+     * @throws ExecutionException 解析中に例外が発生した場合
+     */
+    private static <T> T await(Future<T> future) throws ExecutionException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while preloading format definitions.", e);
+        }
+    }
+
+    /**
+     * 解析に失敗したファイルの一覧を生成する。
+     * @param errors 解析に失敗したファイルのパスと理由
+     * @return 解析に失敗したファイルの一覧
+     */
+    private static String createReport(Map<String, String> errors) {
+        StringBuilder report = new StringBuilder("invalid format definition files were found. count = [")
+                .append(errors.size())
+                .append(']');
+        for (Entry<String, String> error : errors.entrySet()) {
+            report.append("\n\t")
+                  .append(error.getKey())
+                  .append(": ")
+                  .append(error.getValue());
+        }
+        return report.toString();
+    }
+
+    /**
+     * 解析に成功したファイル数を取得する。
+     * @return 解析に成功したファイル数
+     */
+    public int getLoadedCount() {
+        return loadedCount;
+    }
+
+    /**
+     * 解析に要した時間を取得する。
+     * @return 解析に要した時間(ミリ秒)
+     */
+    public long getLoadTimeMillis() {
+        return loadTimeMillis;
+    }
+
+    /**
+     * 解析に失敗したファイルを取得する。
+     * @return 解析に失敗したファイルのパスと理由(変更不可)
+     */
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * フォーマット定義ファイルの格納ディレクトリの論理名を設定する。
+     * <p/>
+     * デフォルトは"format"。
+     * @param basePathName 格納ディレクトリの論理名
+     */
+    public void setBasePathName(String basePathName) {
+        this.basePathName = basePathName;
+    }
+
+    /**
+     * 解析対象とするファイル名(拡張子を除く)の接尾辞を設定する。
+     * <p/>
+     * デフォルトは"_SEND"及び"_RECEIVE"。
+     * @param suffixes 接尾辞
+     */
+    public void setSuffixes(List<String> suffixes) {
+        this.suffixes = new ArrayList<String>(suffixes);
+    }
+
+    /**
+     * 解析に使用するスレッド数を設定する。
+     * <p/>
+     * デフォルトはCPU数。
+     * @param threadCount スレッド数
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("threadCount must be positive. threadCount = " + threadCount);
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * 不正なフォーマット定義ファイルが存在した場合に例外を送出するか否かを設定する。
+     * <p/>
+     * デフォルトは{@code true}。
+     * @param failOnError 例外を送出する場合は{@code true}
+     */
+    public void setFailOnError(boolean failOnError) {
+        this.failOnError = failOnError;
+    }
+
+    /**
+     * バイナリ形式のキャッシュファイルのパスを設定する。
+     * <p/>
+     * デフォルトは{@code null}(キャッシュファイルを使用しない)。
+     * @param binaryCacheFile キャッシュファイルのパス
+     */
+    public void setBinaryCacheFile(String binaryCacheFile) {
+        this.binaryCacheFile = binaryCacheFile;
+    }
+
+    /**
+     * 解析したフォーマット定義を格納するキャッシュを設定する。
+     * <p/>
+     * デフォルトは{@link LayoutDefinitionCache#getSharedCache()}。
+     * @param cache キャッシュ
+     */
+    public void setCache(LayoutDefinitionCache cache) {
+        this.cache = cache;
+    }
+}
@@ -0,0 +1,194 @@
+package nablarch.core.dataformat;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import nablarch.core.log.Logger;
+import nablarch.core.log.LoggerManager;
+import nablarch.core.repository.initialization.Initializable;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * フォーマット定義ファイルの変更を監視し、{@link LayoutDefinitionCache}のフォーマット定義を置き換えるクラス。
+ * <p/>
+ * フォーマット定義ファイルのディレクトリを一定間隔で走査し、更新日時又はサイズが変更されたファイルのうち、
+ * キャッシュに格納されているものをバックグラウンドで解析し直して置き換える({@link LayoutDefinitionCache#reload(File)})。
+ * 削除されたファイルはキャッシュから破棄する。
+ * これにより、運用中にフォーマット定義ファイルを変更した場合に、電文の送受信を行うスレッドで解析が発生することを抑えられる。
+ * <p/>
+ * 置き換えは解析が完了したフォーマット定義で一度に行うため、処理中の電文は置き換え前のフォーマット定義で処理を終える。
+ * 解析に失敗した場合はワーニングログを出力し、キャッシュのエントリは置き換えない。
+ * 置き換えたファイル及び解析に要した時間は、INFOレベルでログ出力する。
+ * <p/>
+ * 監視は{@link #initialize()}で開始し、{@link #stop()}で終了する。
+ * 監視に使用するスレッドはデーモンスレッドである。
+ *
+ * @author TIS
+ * @see LayoutDefinitionCache
+ */
+@Published(tag = "architect")
+public class FormatDefinitionWatcher implements Initializable {
+
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(FormatDefinitionWatcher.class);
+
+    /** フォーマット定義ファイルの格納ディレクトリの論理名 */
+    private String basePathName = "format";
+
+    /** 監視間隔(ミリ秒) */
+    private long intervalMillis = 5000;
+
+    /** フォーマット定義を置き換えるキャッシュ */
+    private LayoutDefinitionCache cache = LayoutDefinitionCache.getSharedCache();
+
+    /** 前回の走査時の、フォーマット定義ファイルごとの更新日時及びサイズ */
+    private final Map<File, long[]> snapshot = new HashMap<File, long[]>();
+
+    /** 監視に使用するスレッド(監視していない場合は{@code null}) */
+    private ScheduledExecutorService executor;
+
+    /**
+     * フォーマット定義ファイルの監視を開始する。
+     * <p/>
+     * 開始時点のフォーマット定義ファイルの状態を記録し、以降の変更を検知する。
+     */
+    public synchronized void initialize() {
+        if (executor != null) {
+            return;
+        }
+        snapshot.clear();
+        snapshot.putAll(scan());
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "format-definition-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    poll();
+                } catch (RuntimeException e) {
+                    // 例外により以降の監視が停止しないよう、ログ出力のみ行う。
+                    LOGGER.logWarn("failed to check format definition files.", e);
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.logInfo("format definition watcher started. directory = ["
+                + FilePathSetting.getInstance().getBaseDirectory(basePathName).getPath()
+                + "], interval = [" + intervalMillis + "ms]");
+    }
+
+    /**
+     * フォーマット定義ファイルの監視を終了する。
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * フォーマット定義ファイルの変更を確認し、キャッシュに反映する。
+     */
+    synchronized void poll() {
+        Map<File, long[]> current = scan();
+        for (Entry<File, long[]> entry : snapshot.entrySet()) {
+            File file = entry.getKey();
+            long[] previous = entry.getValue();
+            long[] stamp = current.get(file);
+            if (stamp == null) {
+                if (cache.contains(file)) {
+                    cache.invalidate(file);
+                    LOGGER.logInfo("format definition was removed. file = [" + file.getPath() + "]");
+                }
+            } else if ((previous[0] != stamp[0] || previous[1] != stamp[1]) && cache.contains(file)) {
+                reload(file);
+            }
+        }
+        snapshot.clear();
+        snapshot.putAll(current);
+    }
+
+    /**
+     * フォーマット定義を解析し直して置き換える。
+     * @param file フォーマット定義ファイル
+     */
+    private void reload(File file) {
+        long start = System.nanoTime();
+        try {
+            cache.reload(file);
+        } catch (RuntimeException e) {
+            LOGGER.logWarn("failed to reload format definition. file = [" + file.getPath() + "]", e);
+            return;
+        }
+        LOGGER.logInfo("format definition was reloaded. file = [" + file.getPath() + "], elapsed = ["
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms]");
+    }
+
+    /**
+     * フォーマット定義ファイルのディレクトリを走査する。
+     * @return フォーマット定義ファイルごとの更新日時及びサイズ
+     */
+    private Map<File, long[]> scan() {
+        FilePathSetting setting = FilePathSetting.getInstance();
+        File dir = setting.getBaseDirectory(basePathName);
+        String extension = setting.getFileExtensions().get(basePathName);
+        final String fileSuffix = extension == null || extension.length() == 0 ? "" : '.' + extension;
+        File[] files = dir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(fileSuffix);
+            }
+        });
+        Map<File, long[]> result = new HashMap<File, long[]>();
+        if (files != null) {
+            for (File file : files) {
+                result.put(file.getAbsoluteFile(), new long[] {file.lastModified(), file.length()});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * フォーマット定義ファイルの格納ディレクトリの論理名を設定する。
+     * <p/>
+     * デフォルトは"format"。
+     * @param basePathName 格納ディレクトリの論理名
+     */
+    public void setBasePathName(String basePathName) {
+        this.basePathName = basePathName;
+    }
+
+    /**
+     * 監視間隔を設定する。
+     * <p/>
+     * デフォルトは5000(5秒)。
+     * @param intervalMillis 監視間隔(ミリ秒)
+     */
+    public void setIntervalMillis(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive. intervalMillis = " + intervalMillis);
+        }
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * フォーマット定義を置き換えるキャッシュを設定する。
+     * <p/>
+     * デフォルトは{@link LayoutDefinitionCache#getSharedCache()}。
+     * @param cache キャッシュ
+     */
+    public void setCache(LayoutDefinitionCache cache) {
+        this.cache = cache;
+    }
+}
@@ -0,0 +1,450 @@
+package nablarch.core.dataformat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 解析済みのフォーマット定義を保持するキャッシュ。
+ * <p/>
+ * フォーマット定義ファイルのパス(及び解析する項目名)をキーとし、初期化済みの{@link LayoutDefinition}を保持する。
+ * 取得の都度フォーマット定義ファイルの更新日時及びサイズを確認し、変更されている場合は再度解析する。
+ * フォーマット定義ファイルの解析は{@link FormatterFactory}を使用して行うため、
+ * リポジトリに登録されたサブクラスでの解析処理の変更が適用される。
+ * {@link FormatterFactory}のインスタンスが解析時から変更されている場合も、再度解析する。
+ * 保持するエントリ数が上限を超えた場合は、最も長く参照されていないエントリから破棄する。
+ * <p/>
+ * 保持するフォーマット定義は複数のスレッドから共有されるため、取得したフォーマット定義を変更してはならない。
+ * フォーマット定義を使用する際は、{@link FormatterFactory#createFormatter(LayoutDefinition)}で
+ * 呼び出しごとにフォーマッタを生成すること。
+ * <p/>
+ * エントリごとに、フォーマット定義から生成したフォーマッタを再利用するためのプールを保持する。
+ * エントリが無効となった場合や破棄された場合は、プールも合わせて破棄される。
+ * <p/>
+ * {@link BinaryLayoutDefinitionCache}が設定されている場合は、フォーマット定義ファイルを解析する代わりに
+ * バイナリ形式のキャッシュからフォーマット定義を復元する。
+ * ただし、{@link FormatterFactory}のサブクラスを使用している場合は、解析処理が変更されている可能性があるため復元しない。
+ *
+ * @author TIS
+ * @see SimpleDataConvertUtil
+ */
+@Published(tag = "architect")
+public final class LayoutDefinitionCache {
+
+    /** デフォルトの最大エントリ数 */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    /** ファイルタイプを表すディレクティブ名 */
+    private static final String FILE_TYPE_KEY = "file-type";
+
+    /** 可変長形式のファイルタイプ */
+    private static final String FILE_TYPE_VARIABLE = "Variable";
+
+    /** 共有のキャッシュ */
+    private static final LayoutDefinitionCache SHARED = new LayoutDefinitionCache(DEFAULT_MAX_SIZE);
+
+    /** キャッシュ本体(参照順) */
+    private final LinkedHashMap<String, CachedDefinition> entries
+            = new LinkedHashMap<String, CachedDefinition>(16, 0.75f, true);
+
+    /** 最大エントリ数 */
+    private int maxSize;
+
+    /** キャッシュのフォーマット定義を返却した回数 */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** フォーマット定義ファイルを解析した回数 */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** ファイルの変更によりエントリを無効とした回数 */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /** 上限を超えたためにエントリを破棄した回数 */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /** {@link #reload(File)}によりエントリを置き換えた回数 */
+    private final AtomicLong reloadCount = new AtomicLong();
+
+    /** バイナリ形式のキャッシュ(設定されていない場合は{@code null}) */
+    private volatile BinaryLayoutDefinitionCache binaryCache;
+
+    /**
+     * コンストラクタ。
+     * @param maxSize 最大エントリ数
+     */
+    public LayoutDefinitionCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive. maxSize = " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 共有のキャッシュを取得する。
+     * @return 共有のキャッシュ
+     */
+    public static LayoutDefinitionCache getSharedCache() {
+        return SHARED;
+    }
+
+    /**
+     * フォーマット定義を取得する。
+     * <p/>
+     * キャッシュに存在しない場合、又はフォーマット定義ファイルが変更されている場合は、解析して格納する。
+     * @param formatFile フォーマット定義ファイル
+     * @return 初期化済みのフォーマット定義
+     */
+    public LayoutDefinition get(File formatFile) {
+        return get(formatFile, null);
+    }
+
+    /**
+     * 指定された項目のみを解析するよう、項目を絞り込んだフォーマット定義を取得する。
+     * <p/>
+     * フォーマット定義を初期化した後に、指定されなかった項目をレコード定義から取り除く。
+     * 可変長形式では項目の位置がデータ上の順序と対応するため、項目は取り除かずにFILLERとする。
+     * レコード識別に使用する項目は、識別用の定義が別に保持されるため影響を受けない。
+     *
+     * @param formatFile フォーマット定義ファイル
+     * @param fieldNames 解析する項目名(ソート済みであること。{@code null}の場合は全ての項目を解析する)
+     * @return 初期化済みのフォーマット定義
+     */
+    public LayoutDefinition get(File formatFile, Set<String> fieldNames) {
+        return getFormatterPool(formatFile, fieldNames).getDefinition();
+    }
+
+    /**
+     * フォーマット定義から生成したフォーマッタを再利用するためのプールを取得する。
+     * <p/>
+     * フォーマット定義の取得方法は{@link #get(File, Set)}と同じ。
+     * @param formatFile フォーマット定義ファイル
+     * @param fieldNames 解析する項目名(ソート済みであること。{@code null}の場合は全ての項目を解析する)
+     * @return フォーマッタのプール
+     */
+    DataRecordFormatterPool getFormatterPool(File formatFile, Set<String> fieldNames) {
+        String path = formatFile.getAbsolutePath();
+        String key = fieldNames == null ? path : path + fieldNames;
+        long lastModified = formatFile.lastModified();
+        long length = formatFile.length();
+        FormatterFactory factory = FormatterFactory.getInstance();
+
+        CachedDefinition cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null) {
+            if (cached.isValid(factory, lastModified, length)) {
+                hitCount.incrementAndGet();
+                return cached.formatterPool;
+            }
+            invalidationCount.incrementAndGet();
+        }
+
+        // 解析中に他のスレッドの取得を妨げないよう、ロックの外で解析する。
+        missCount.incrementAndGet();
+        CachedDefinition created = new CachedDefinition(
+                createDefinition(factory, formatFile, fieldNames), factory, lastModified, length);
+        synchronized (this) {
+            entries.put(key, created);
+            evict();
+        }
+        return created.formatterPool;
+    }
+
+    /**
+     * 解析済みのフォーマット定義を初期化し、キャッシュに格納する。
+     * <p/>
+     * 呼び出し元が他の用途のために解析したフォーマット定義を、解析し直さずに格納する。
+     * @param formatFile フォーマット定義ファイル
+     * @param definition フォーマッタファクトリで解析した初期化前のフォーマット定義
+     * @param factory 解析に使用したフォーマッタファクトリ
+     * @param lastModified 解析前に取得したフォーマット定義ファイルの更新日時
+     * @param length 解析前に取得したフォーマット定義ファイルのサイズ
+     * @return フォーマッタのプール
+     */
+    DataRecordFormatterPool put(File formatFile, LayoutDefinition definition, FormatterFactory factory,
+            long lastModified, long length) {
+        missCount.incrementAndGet();
+        CachedDefinition created = new CachedDefinition(
+                initialize(factory, definition, null), factory, lastModified, length);
+        synchronized (this) {
+            entries.put(formatFile.getAbsolutePath(), created);
+            evict();
+        }
+        return created.formatterPool;
+    }
+
+    /**
+     * フォーマット定義ファイルを解析し直し、対応するエントリを置き換える。
+     * <p/>
+     * 解析はロックの外で行い、解析が完了したフォーマット定義でエントリを一度に置き換える。
+     * 置き換え前に取得されたフォーマット定義及びフォーマッタは、置き換え後もそのまま使用できる。
+     * 項目を絞り込んだエントリは破棄し、次回の取得時に解析する。
+     * <p/>
+     * 解析に失敗した場合は例外を送出し、エントリは置き換えない。
+     * @param formatFile フォーマット定義ファイル
+     */
+    public void reload(File formatFile) {
+        String path = formatFile.getAbsolutePath();
+        long lastModified = formatFile.lastModified();
+        long length = formatFile.length();
+        FormatterFactory factory = FormatterFactory.getInstance();
+        CachedDefinition created = new CachedDefinition(createDefinition(factory, formatFile, null), factory, lastModified, length);
+        synchronized (this) {
+            invalidate(formatFile);
+            entries.put(path, created);
+            evict();
+        }
+        reloadCount.incrementAndGet();
+    }
+
+    /**
+     * フォーマット定義ファイルに対応するエントリ(項目を絞り込んだものを含む)が存在するか判定する。
+     * @param formatFile フォーマット定義ファイル
+     * @return 存在する場合は{@code true}
+     */
+    public synchronized boolean contains(File formatFile) {
+        String path = formatFile.getAbsolutePath();
+        for (String key : entries.keySet()) {
+            if (key.equals(path) || key.startsWith(path + '[')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * フォーマット定義ファイルに対応するエントリ(項目を絞り込んだものを含む)を破棄する。
+     * @param formatFile フォーマット定義ファイル
+     */
+    public synchronized void invalidate(File formatFile) {
+        String path = formatFile.getAbsolutePath();
+        Iterator<String> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (key.equals(path) || key.startsWith(path + '[')) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * 全てのエントリを破棄する。
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 最大エントリ数を設定する。
+     * <p/>
+     * 現在のエントリ数が上限を超えている場合は、最も長く参照されていないエントリから破棄する。
+     * @param maxSize 最大エントリ数
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive. maxSize = " + maxSize);
+        }
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * 最大エントリ数が指定された数に満たない場合は、指定された数まで拡張する。
+     * @param minSize 最大エントリ数の下限
+     * @return 拡張した場合は{@code true}
+     */
+    public synchronized boolean ensureMaxSize(int minSize) {
+        if (maxSize >= minSize) {
+            return false;
+        }
+        maxSize = minSize;
+        return true;
+    }
+
+    /**
+     * 最大エントリ数を取得する。
+     * @return 最大エントリ数
+     */
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * フォーマット定義ファイルを解析する代わりに使用する、バイナリ形式のキャッシュを設定する。
+     * <p/>
+     * バイナリ形式のキャッシュに存在しないフォーマット定義ファイル、及び変更されたフォーマット定義ファイルは、
+     * これまでどおり解析する。
+     * @param binaryCache バイナリ形式のキャッシュ({@code null}の場合は使用しない)
+     */
+    public void setBinaryCache(BinaryLayoutDefinitionCache binaryCache) {
+        this.binaryCache = binaryCache;
+    }
+
+    /**
+     * エントリ数を取得する。
+     * @return エントリ数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * キャッシュのフォーマット定義を返却した回数を取得する。
+     * @return 返却した回数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * フォーマット定義ファイルを解析した回数を取得する。
+     * @return 解析した回数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * フォーマット定義ファイルの変更によりエントリを無効とした回数を取得する。
+     * @return 無効とした回数
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * 上限を超えたためにエントリを破棄した回数を取得する。
+     * @return 破棄した回数
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * {@link #reload(File)}によりエントリを置き換えた回数を取得する。
+     * @return 置き換えた回数
+     */
+    public long getReloadCount() {
+        return reloadCount.get();
+    }
+
+    /**
+     * キャッシュのヒット率を取得する。
+     * @return ヒット率。取得が行われていない場合は0
+     */
+    public double getHitRatio() {
+        long hit = hitCount.get();
+        long total = hit + missCount.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * 最大エントリ数を超えたエントリを、最も長く参照されていないものから破棄する。
+     */
+    private void evict() {
+        Iterator<Entry<String, CachedDefinition>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * フォーマット定義ファイルを解析し、初期化済みのフォーマット定義を生成する。
+     * <p/>
+     * バイナリ形式のキャッシュから復元できる場合は、フォーマット定義ファイルを解析しない。
+     * @param factory 解析及び初期化に使用するフォーマッタファクトリ
+     * @param formatFile フォーマット定義ファイル
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 初期化済みのフォーマット定義
+     */
+    private LayoutDefinition createDefinition(FormatterFactory factory, File formatFile, Set<String> fieldNames) {
+        BinaryLayoutDefinitionCache binary = factory.getClass() == FormatterFactory.class ? binaryCache : null;
+        LayoutDefinition definition = binary == null ? null : binary.read(formatFile);
+        if (definition == null) {
+            definition = factory.createDefinition(formatFile);
+        }
+        return initialize(factory, definition, fieldNames);
+    }
+
+    /**
+     * 初期化前のフォーマット定義を初期化する。
+     * @param factory 初期化に使用するフォーマッタファクトリ
+     * @param definition 初期化前のフォーマット定義
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 初期化済みのフォーマット定義
+     */
+    private static LayoutDefinition initialize(FormatterFactory factory, LayoutDefinition definition,
+            Set<String> fieldNames) {
+        factory.createFormatter(definition).initialize();
+        if (fieldNames == null) {
+            return definition;
+        }
+
+        boolean variableLength = FILE_TYPE_VARIABLE.equals(definition.getDirective().get(FILE_TYPE_KEY));
+        for (RecordDefinition record : definition.getRecords()) {
+            List<FieldDefinition> projected = new ArrayList<FieldDefinition>();
+            for (FieldDefinition field : record.getFields()) {
+                if (fieldNames.contains(field.getName())) {
+                    projected.add(field);
+                } else if (variableLength) {
+                    projected.add(field.markAsFiller());
+                }
+            }
+            record.setFields(projected);
+        }
+        return definition;
+    }
+
+    /**
+     * キャッシュのエントリ。
+     */
+    private static final class CachedDefinition {
+
+        /** 初期化済みのフォーマット定義から生成したフォーマッタのプール */
+        private final DataRecordFormatterPool formatterPool;
+
+        /** 解析に使用したフォーマッタファクトリ */
+        private final FormatterFactory factory;
+
+        /** 解析時のフォーマット定義ファイルの更新日時 */
+        private final long lastModified;
+
+        /** 解析時のフォーマット定義ファイルのサイズ */
+        private final long length;
+
+        /**
+         * コンストラクタ。
+         * @param definition 初期化済みのフォーマット定義
+         * @param factory 解析に使用したフォーマッタファクトリ
+         * @param lastModified 解析時のフォーマット定義ファイルの更新日時
+         * @param length 解析時のフォーマット定義ファイルのサイズ
+         */
+        CachedDefinition(LayoutDefinition definition, FormatterFactory factory, long lastModified, long length) {
+            this.formatterPool = new DataRecordFormatterPool(definition);
+            this.factory = factory;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * フォーマット定義ファイル及びフォーマッタファクトリが解析時から変更されていないか判定する。
+         * @param currentFactory 現在のフォーマッタファクトリ
+         * @param currentLastModified 現在の更新日時
+         * @param currentLength 現在のサイズ
+         * @return 変更されていない場合は{@code true}
+         */
+        boolean isValid(FormatterFactory currentFactory, long currentLastModified, long currentLength) {
+            return factory == currentFactory && lastModified == currentLastModified && length == currentLength;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package nablarch.core.dataformat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import nablarch.core.dataformat.SimpleDataConvertUtil.ResultOutputStream;
+
+/**
+ * 大量のレコードを一定件数ごとのチャンクに分割し、並列に変換するクラス。
+ * <p/>
+ * チャンクはExecutorServiceのスレッドで変換し、スレッドごとに{@link DataRecordFormatterPool}から
+ * 取得したフォーマッタを使用する。変換結果は元のレコードの順序で結合する。
+ * エラーメッセージのレコード番号が逐次に変換した場合と一致するよう、
+ * フォーマッタのレコード番号はチャンクの先頭レコードの位置から開始する。
+ *
+ * @author TIS
+ * @see SimpleDataConvertUtil#buildRecords(String, List, OutputStream, ExecutorService)
+ * @see SimpleDataConvertUtil#parseRecords(String, byte[], ExecutorService)
+ */
+final class ParallelRecordConverter {
+
+    /** レコード長を表すディレクティブ名 */
+    private static final String RECORD_LENGTH_KEY = "record-length";
+
+    /** レコード区切り文字を表すディレクティブ名 */
+    private static final String RECORD_SEPARATOR_KEY = "record-separator";
+
+    /** タイトル行の要否を表すディレクティブ名 */
+    private static final String REQUIRES_TITLE_KEY = "requires-title";
+
+    /** チャンクの生成結果を格納する領域の初期容量(バイト) */
+    private static final int CHUNK_BUFFER_CAPACITY = 8192;
+
+    /** 変換結果を保持したまま待機できるチャンク数の、CPU数に対する倍率 */
+    private static final int PENDING_CHUNKS_PER_PROCESSOR = 4;
+
+    /** フォーマッタの取得元のプール */
+    private final DataRecordFormatterPool pool;
+
+    /** 変換に使用するExecutorService */
+    private final ExecutorService executor;
+
+    /** 1チャンクあたりのレコード数 */
+    private final int chunkSize;
+
+    /**
+     * コンストラクタ。
+     * @param pool フォーマッタの取得元のプール
+     * @param executor 変換に使用するExecutorService
+     * @param chunkSize 1チャンクあたりのレコード数
+     */
+    ParallelRecordConverter(DataRecordFormatterPool pool, ExecutorService executor, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive. chunkSize = " + chunkSize);
+        }
+        this.pool = pool;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 複数のMapから構造化データを並列に生成し、元の順序で出力ストリームに書き込む。
+     * <p/>
+     * タイトル行を出力する可変長形式は、タイトル行をチャンクごとに出力しないよう逐次に生成する。
+     * 出力ストリームは書き込み終了時にクローズする。
+     * @param records 変換対象データ
+     * @param out 出力先ストリーム
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
+     */
+    void build(final List<? extends Map<String, ?>> records, OutputStream out)
+            throws InvalidDataFormatException, IOException {
+        if (Boolean.TRUE.equals(pool.getDefinition().getDirective().get(REQUIRES_TITLE_KEY))) {
+            writeChunk(records, 0, records.size(), out);
+            return;
+        }
+        LinkedList<Future<ResultOutputStream>> pending = new LinkedList<Future<ResultOutputStream>>();
+        int maxPending = Runtime.getRuntime().availableProcessors() * PENDING_CHUNKS_PER_PROCESSOR;
+        try {
+            for (int start = 0; start < records.size(); start += chunkSize) {
+                final int from = start;
+                final int to = Math.min(start + chunkSize, records.size());
+                pending.add(executor.submit(new Callable<ResultOutputStream>() {
+                    public ResultOutputStream call() throws IOException {
+                        ResultOutputStream chunk = new ResultOutputStream(CHUNK_BUFFER_CAPACITY);
+                        writeChunk(records, from, to, chunk);
+                        return chunk;
+                    }
+                }));
+                // 変換結果をメモリ上に溜め込まないよう、待機中のチャンクが上限に達した場合は先頭から書き込む。
+                if (pending.size() >= maxPending) {
+                    writeResult(pending.removeFirst(), out);
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeResult(pending.removeFirst(), out);
+            }
+            out.close();
+        } finally {
+            cancel(pending);
+        }
+    }
+
+    /**
+     * 固定長形式のバイト列を並列に解析し、元の順序でレコードを返却する。
+     * <p/>
+     * 固定長形式のレコードはレコード長(及びレコード区切り文字)の単位で並ぶため、
+     * 入力データを走査することなくチャンクの境界を決定できる。
+     * 固定長形式以外は、レコードの境界がデータの内容に依存するため逐次に解析する。
+     * @param data 変換対象データ
+     * @return 解析したレコード
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
+     */
+    List<DataRecord> parse(final byte[] data) throws InvalidDataFormatException, IOException {
+        int recordSize = getFixedRecordSize();
+        if (recordSize <= 0) {
+            return readChunk(data, 0, data.length, 0);
+        }
+        List<Future<List<DataRecord>>> futures = new ArrayList<Future<List<DataRecord>>>();
+        try {
+            long chunkBytes = (long) recordSize * chunkSize;
+            for (long start = 0; start < data.length; start += chunkBytes) {
+                final int offset = (int) start;
+                final int length = (int) Math.min(chunkBytes, data.length - start);
+                final int firstRecordNumber = (int) (start / recordSize);
+                futures.add(executor.submit(new Callable<List<DataRecord>>() {
+                    public List<DataRecord> call() throws IOException {
+                        return readChunk(data, offset, length, firstRecordNumber);
+                    }
+                }));
+            }
+            List<DataRecord> records = new ArrayList<DataRecord>(data.length / recordSize);
+            for (Future<List<DataRecord>> future : futures) {
+                records.addAll(getResult(future));
+            }
+            return records;
+        } finally {
+            cancel(futures);
+        }
+    }
+
+    /**
+     * 指定された範囲のレコードを書き込む。
+     * <p/>
+     * 書き込み終了時に出力ストリームをクローズする。
+     * @param records 変換対象データ
+     * @param from 開始位置(この位置を含む)
+     * @param to 終了位置(この位置を含まない)
+     * @param out 出力先ストリーム
+     * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
+     */
+    private void writeChunk(List<? extends Map<String, ?>> records, int from, int to, OutputStream out)
+            throws IOException {
+        DataRecordFormatter formatter = pool.acquire();
+        setRecordNumber(formatter, from);
+        formatter.setOutputStream(out);
+        formatter.initialize();
+        for (int i = from; i < to; i++) {
+            formatter.writeRecord(records.get(i));
+        }
+        formatter.close();
+        pool.release(formatter);
+    }
+
+    /**
+     * 指定された範囲のバイト列に含まれる全てのレコードを解析する。
+     * @param data 変換対象データ
+     * @param offset 開始位置
+     * @param length 長さ
+     * @param firstRecordNumber 先頭レコードの位置
+     * @return 解析したレコード
+     * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
+     */
+    private List<DataRecord> readChunk(byte[] data, int offset, int length, int firstRecordNumber)
+            throws IOException {
+        DataRecordFormatter formatter = pool.acquire();
+        setRecordNumber(formatter, firstRecordNumber);
+        formatter.setInputStream(new ByteArrayInputStream(data, offset, length));
+        formatter.initialize();
+        List<DataRecord> records = new ArrayList<DataRecord>(chunkSize);
+        while (formatter.hasNext()) {
+            records.add(formatter.readRecord());
+        }
+        formatter.close();
+        pool.release(formatter);
+        return records;
+    }
+
+    /**
+     * 固定長形式の1レコードあたりのバイト数(レコード区切り文字を含む)を取得する。
+     * @return 1レコードあたりのバイト数。固定長形式以外の場合は-1
+     */
+    private int getFixedRecordSize() {
+        DataRecordFormatter formatter = pool.acquire();
+        try {
+            if (!(formatter instanceof FixedLengthDataRecordFormatter)) {
+                return -1;
+            }
+            Map<String, Object> directive = pool.getDefinition().getDirective();
+            Object recordLength = directive.get(RECORD_LENGTH_KEY);
+            if (!(recordLength instanceof Number)) {
+                return -1;
+            }
+            Object separator = directive.get(RECORD_SEPARATOR_KEY);
+            int separatorLength = separator == null ? 0
+                    : separator.toString().getBytes(
+                            ((FixedLengthDataRecordFormatter) formatter).getDefaultEncoding()).length;
+            return ((Number) recordLength).intValue() + separatorLength;
+        } finally {
+            pool.release(formatter);
+        }
+    }
+
+    /**
+     * チャンクの変換結果を出力ストリームに書き込む。
+     * @param future チャンクの変換結果
+     * @param out 出力先ストリーム
+     * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
+     */
+    private static void writeResult(Future<ResultOutputStream> future, OutputStream out) throws IOException {
+        ResultOutputStream chunk = getResult(future);
+        out.write(chunk.getBuffer(), 0, chunk.size());
+    }
+
+    /**
+     * チャンクの変換結果を取得する。
+     * <p/>
+     * 変換中に発生した例外は、そのまま送出する。
+     * @param future チャンクの変換結果
+     * @param <T> 変換結果の型
+     * @return 変換結果
+     * @throws IOException 変換中にIO処理で問題が発生した場合。
+     */
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for the conversion of a chunk.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 完了していないチャンクの変換を取り消す。
+     * @param futures チャンクの変換結果
+     */
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * フォーマッタのレコード番号を設定する。
+     * @param formatter フォーマッタ
+     * @param recordNumber レコード番号
+     */
+    private static void setRecordNumber(DataRecordFormatter formatter, int recordNumber) {
+        if (formatter instanceof DataRecordFormatterSupport) {
+            ((DataRecordFormatterSupport) formatter).setRecordNumber(recordNumber);
+        }
+    }
+}
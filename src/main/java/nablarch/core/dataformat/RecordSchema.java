@@ -0,0 +1,135 @@
+package nablarch.core.dataformat;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.util.StringUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * {@link CompactRecordMap}が共有する、不変の項目名の並び。
+ * <p/>
+ * 項目名ごとに値の格納位置を持ち、項目名から位置をハッシュ検索で取得する。
+ * {@link DataRecord}と同様に、大文字・小文字及びアンダースコアの有無が異なる項目名でも検索できる。
+ * (項目名と完全に一致する位置を優先する。)
+ *
+ * @author TIS
+ * @see CompactRecordMap
+ */
+@Published(tag = "architect")
+public final class RecordSchema implements Serializable {
+
+    /** シリアルバージョンUID */
+    private static final long serialVersionUID = 1L;
+
+    /** 項目名(格納位置の順) */
+    private final String[] names;
+
+    /** 項目名から格納位置へのマッピング */
+    private final Map<String, Integer> indexes;
+
+    /** 正規化した項目名から格納位置へのマッピング */
+    private final Map<String, Integer> normalizedIndexes;
+
+    /**
+     * コンストラクタ。
+     * @param names 項目名(重複は除かれる)
+     */
+    public RecordSchema(Collection<String> names) {
+        this(new String[0], names);
+    }
+
+    /**
+     * 既存の項目名の後ろに項目名を追加した並びを生成する。
+     * @param base 既存の項目名
+     * @param additions 追加する項目名(既存の項目名と重複するものは除かれる)
+     */
+    private RecordSchema(String[] base, Collection<String> additions) {
+        Map<String, Integer> indexMap = new HashMap<String, Integer>();
+        String[] nameArray = Arrays.copyOf(base, base.length + additions.size());
+        for (int i = 0; i < base.length; i++) {
+            indexMap.put(base[i], i);
+        }
+        int size = base.length;
+        for (String name : additions) {
+            if (!indexMap.containsKey(name)) {
+                indexMap.put(name, size);
+                nameArray[size++] = name;
+            }
+        }
+        this.names = Arrays.copyOf(nameArray, size);
+        this.indexes = indexMap;
+        this.normalizedIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < size; i++) {
+            normalizedIndexes.put(StringUtil.lowerAndTrimUnderScore(names[i]), i);
+        }
+    }
+
+    /**
+     * 項目名の格納位置を取得する。
+     * @param name 項目名
+     * @return 格納位置。項目が存在しない場合は-1
+     */
+    public int getIndex(Object name) {
+        if (!(name instanceof String)) {
+            return -1;
+        }
+        Integer index = indexes.get(name);
+        if (index == null) {
+            index = normalizedIndexes.get(StringUtil.lowerAndTrimUnderScore((String) name));
+        }
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 格納位置の項目名を取得する。
+     * @param index 格納位置
+     * @return 項目名
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * 項目名を格納位置の順に取得する。
+     * @return 項目名(変更不可)
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * 項目数を取得する。
+     * @return 項目数
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * 全ての項目名が含まれているか否かを判定する。
+     * <p/>
+     * 正規化した項目名ではなく、完全に一致する項目名の有無で判定する。
+     * @param names 項目名
+     * @return 全て含まれている場合は{@code true}
+     */
+    boolean containsAll(Collection<String> names) {
+        return indexes.keySet().containsAll(names);
+    }
+
+    /**
+     * 項目名を追加した並びを生成する。
+     * <p/>
+     * 既存の項目の格納位置は変わらない。
+     * @param additions 追加する項目名
+     * @return 項目名を追加した並び
+     */
+    RecordSchema extend(Collection<String> additions) {
+        return new RecordSchema(names, additions);
+    }
+}
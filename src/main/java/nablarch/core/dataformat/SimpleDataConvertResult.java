@@ -1,10 +1,16 @@
 package nablarch.core.dataformat;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Map;
 
 /**
  * 各種データとMapの相互変換結果を格納するクラス。
+ * <p/>
+ * Mapから構造化データを生成した場合、変換結果はバイト列として保持する。
+ * 結果テキストは{@link #getResultText()}が初めて呼び出された時点でバイト列から生成する。
  * 
  * @author TIS
  */
@@ -18,6 +24,10 @@ public class SimpleDataConvertResult {
     private Charset charset = Charset.defaultCharset();
     /** 結果文字列 */
     private String resultText = null;
+    /** 結果バイト列(先頭から{@link #resultLength}バイトが有効) */
+    private byte[] resultBytes = null;
+    /** 結果バイト列の長さ */
+    private int resultLength = -1;
     /** 結果Map */
     private Map<String, ?> resultMap = null;
     
@@ -84,9 +94,14 @@ public class SimpleDataConvertResult {
     
     /**
      * 結果テキストを返却する。
+     * <p/>
+     * 結果バイト列を保持している場合は、初回の呼び出し時に文字セットでデコードして生成する。
      * @return 結果テキスト
      */
     public String getResultText() {
+        if (resultText == null && resultBytes != null) {
+            resultText = new String(resultBytes, 0, resultLength, charset);
+        }
         return resultText;
     }
     
@@ -100,6 +115,56 @@ public class SimpleDataConvertResult {
         return this;
     }
     
+    /**
+     * 結果バイト列を読み取り専用のバッファとして返却する。
+     * <p/>
+     * バッファは結果バイト列を複製せずに参照する。呼び出しごとに新たなバッファを返却するため、
+     * 返却したバッファの位置を変更しても他の呼び出し元には影響しない。
+     * @return 結果バイト列。保持していない場合は{@code null}
+     */
+    public ByteBuffer getResultBuffer() {
+        if (resultBytes == null) {
+            return null;
+        }
+        return ByteBuffer.wrap(resultBytes, 0, resultLength).asReadOnlyBuffer();
+    }
+
+    /**
+     * 結果バイト列の長さを返却する。
+     * @return 結果バイト列の長さ。保持していない場合は-1
+     */
+    public int getResultLength() {
+        return resultLength;
+    }
+
+    /**
+     * 結果バイト列を複製せずにストリームに書き込む。
+     * @param out 出力先ストリーム
+     * @throws IOException 書き込みに失敗した場合
+     * @throws IllegalStateException 結果バイト列を保持していない場合
+     */
+    public void writeResult(OutputStream out) throws IOException {
+        if (resultBytes == null) {
+            throw new IllegalStateException("result bytes were not set.");
+        }
+        out.write(resultBytes, 0, resultLength);
+    }
+
+    /**
+     * 結果バイト列を設定する。
+     * <p/>
+     * 設定したバイト列は複製せずに保持するため、設定後に変更してはならない。
+     * @param resultBytes 結果バイト列
+     * @param resultLength 結果バイト列の長さ
+     * @return このオブジェクト自体
+     */
+    SimpleDataConvertResult setResultBytes(byte[] resultBytes, int resultLength) {
+        this.resultBytes = resultBytes;
+        this.resultLength = resultLength;
+        this.resultText = null;
+        return this;
+    }
+
     /**
      * 結果Mapを返却する。
      * @return 結果Map
@@ -6,8 +6,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
@@ -24,6 +30,12 @@ public final class SimpleDataConvertUtil {
     /** ロガー * */
     private static final Logger LOGGER = LoggerManager.get(SimpleDataConvertUtil.class);
 
+    /** 変換結果を格納する領域のデフォルトの初期容量(バイト) */
+    private static final int DEFAULT_RESULT_CAPACITY = 256;
+
+    /** 並列に変換する際の、1チャンクあたりのデフォルトのレコード数 */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
     /**
      * 隠蔽コンストラクタ
      */
@@ -33,6 +45,8 @@ public final class SimpleDataConvertUtil {
     /**
      * Mapから構造化データの文字列を生成する。
      * 変換後の構造化データ形式はフォーマット定義ファイルにて指定される。
+     * <p/>
+     * 変換結果はバイト列として保持し、結果テキストは参照時に生成する。
      *
      * @param formatName フォーマット定義ファイル
      * @param data 変換対象データ
@@ -40,15 +54,34 @@ public final class SimpleDataConvertUtil {
      * @throws InvalidDataFormatException 入力データが不正な場合。
      */
     public static SimpleDataConvertResult buildData(String formatName, Map<String, ?> data) throws InvalidDataFormatException {
+        return buildData(formatName, data, DEFAULT_RESULT_CAPACITY);
+    }
+
+    /**
+     * Mapから構造化データのバイト列を生成する。
+     * 変換後の構造化データ形式はフォーマット定義ファイルにて指定される。
+     * <p/>
+     * 変換結果は{@link SimpleDataConvertResult#getResultBuffer()}で複製せずに参照できる。
+     * 結果テキストは{@link SimpleDataConvertResult#getResultText()}の呼び出し時に生成する。
+     * 変換後のおおよその長さが分かっている場合は、初期容量に指定することで領域の再確保を避けることができる。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param data 変換対象データ
+     * @param initialCapacity 変換結果を格納する領域の初期容量(バイト)
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     */
+    public static SimpleDataConvertResult buildData(String formatName, Map<String, ?> data, int initialCapacity)
+            throws InvalidDataFormatException {
         // フォーマッタ取得
-        DataRecordFormatter formatter = getFormatter(formatName);
+        DataRecordFormatterPool pool = getFormatterPool(formatName, null);
+        DataRecordFormatter formatter = pool.acquire();
 
         // データを生成し返却
-        Charset charset = getCharset(formatter);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ResultOutputStream out = new ResultOutputStream(initialCapacity);
         try {
-            return buildData(formatName, data, baos)
-                    .setResultText(new String(baos.toByteArray(), charset));
+            return buildData(pool, formatter, data, out)
+                    .setResultBytes(out.getBuffer(), out.size());
         } catch (IOException wontHappen) {
             // データフォーマッターに渡す出力ストリームとして、ヒープ上のバイト配列を渡しているので
             // レコードの書き込み際してI/Oエラーは発生しえない。
@@ -69,16 +102,172 @@ public final class SimpleDataConvertUtil {
      * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
      */
     public static SimpleDataConvertResult buildData(String formatName, Map<String, ?> data, OutputStream out) throws InvalidDataFormatException, IOException {
-        // フォーマッタ取得
-        DataRecordFormatter formatter = getFormatter(formatName);
+        DataRecordFormatterPool pool = getFormatterPool(formatName, null);
+        return buildData(pool, pool.acquire(), data, out);
+    }
 
+    /**
+     * フォーマッタを使用して、Mapから構造化データを生成し、出力ストリームに書き込む。
+     * <p/>
+     * 変換に成功した場合は、フォーマッタをプールに返却する。
+     *
+     * @param pool フォーマッタの取得元のプール
+     * @param formatter 初期化済みのフォーマッタ
+     * @param data 変換対象データ
+     * @param out 出力先ストリーム
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
+     */
+    private static SimpleDataConvertResult buildData(DataRecordFormatterPool pool, DataRecordFormatter formatter,
+            Map<String, ?> data, OutputStream out) throws InvalidDataFormatException, IOException {
         // データを生成
         formatter.setOutputStream(out);
         formatter.initialize();
         formatter.writeRecord(data);
         formatter.close();
 
-        return createResult(formatter);
+        SimpleDataConvertResult result = createResult(formatter);
+        pool.release(formatter);
+        return result;
+    }
+
+    /**
+     * 複数のMapから構造化データのバイト列を生成する。
+     * <p/>
+     * 生成方法は{@link #buildRecords(String, Iterator, OutputStream)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param records 変換対象データ
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     */
+    public static SimpleDataConvertResult buildRecords(String formatName, Iterable<? extends Map<String, ?>> records)
+            throws InvalidDataFormatException {
+        ResultOutputStream out = new ResultOutputStream(DEFAULT_RESULT_CAPACITY);
+        try {
+            return buildRecords(formatName, records.iterator(), out)
+                    .setResultBytes(out.getBuffer(), out.size());
+        } catch (IOException wontHappen) {
+            // データフォーマッターに渡す出力ストリームとして、ヒープ上のバイト配列を渡しているので
+            // レコードの書き込み際してI/Oエラーは発生しえない。
+            throw new RuntimeException(wontHappen);
+        }
+    }
+
+    /**
+     * 複数のMapから構造化データを生成し、出力ストリームに書き込む。
+     * <p/>
+     * 生成方法は{@link #buildRecords(String, Iterator, OutputStream)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param records 変換対象データ
+     * @param out 出力先ストリーム
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult buildRecords(String formatName, Iterable<? extends Map<String, ?>> records,
+            OutputStream out) throws InvalidDataFormatException, IOException {
+        return buildRecords(formatName, records.iterator(), out);
+    }
+
+    /**
+     * 複数のMapから構造化データを生成し、出力ストリームに書き込む。
+     * <p/>
+     * フォーマッタの初期化は1回のみ行い、全てのレコードを順に書き込む。
+     * レコードはイテレータから1件ずつ取得するため、全てのレコードをメモリ上に保持する必要はない。
+     * <p/>
+     * JSON及びXML形式では1つのレコードが1つの文書となるため、
+     * 複数のレコードを1つの出力にまとめる場合は固定長又は可変長形式を使用すること。
+     * 出力ストリームは書き込み終了時にクローズされる。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param records 変換対象データ
+     * @param out 出力先ストリーム
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult buildRecords(String formatName, Iterator<? extends Map<String, ?>> records,
+            OutputStream out) throws InvalidDataFormatException, IOException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, null);
+        DataRecordFormatter formatter = pool.acquire();
+
+        // データを生成
+        formatter.setOutputStream(out);
+        formatter.initialize();
+        while (records.hasNext()) {
+            formatter.writeRecord(records.next());
+        }
+        formatter.close();
+
+        SimpleDataConvertResult result = createResult(formatter);
+        pool.release(formatter);
+        return result;
+    }
+
+    /**
+     * 複数のMapから構造化データを並列に生成し、出力ストリームに書き込む。
+     * <p/>
+     * 1チャンクあたりのレコード数は{@link #DEFAULT_CHUNK_SIZE}とする。
+     * 生成方法は{@link #buildRecords(String, List, OutputStream, ExecutorService, int)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param records 変換対象データ
+     * @param out 出力先ストリーム
+     * @param executor 変換に使用するExecutorService
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult buildRecords(String formatName, List<? extends Map<String, ?>> records,
+            OutputStream out, ExecutorService executor) throws InvalidDataFormatException, IOException {
+        return buildRecords(formatName, records, out, executor, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 複数のMapから構造化データを並列に生成し、出力ストリームに書き込む。
+     * <p/>
+     * レコードを指定された件数ごとのチャンクに分割し、ExecutorServiceのスレッドで生成した後、
+     * 元の順序で出力ストリームに書き込む。生成結果は{@link #buildRecords(String, Iterator, OutputStream)}と同じとなる。
+     * ただし、タイトル行を出力する可変長形式は逐次に生成する。
+     * <p/>
+     * ExecutorServiceは呼び出し元で管理し、本メソッドではシャットダウンしない。
+     * 出力ストリームは書き込み終了時にクローズされる。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param records 変換対象データ
+     * @param out 出力先ストリーム
+     * @param executor 変換に使用するExecutorService
+     * @param chunkSize 1チャンクあたりのレコード数
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 書き込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult buildRecords(String formatName, List<? extends Map<String, ?>> records,
+            OutputStream out, ExecutorService executor, int chunkSize) throws InvalidDataFormatException, IOException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, null);
+        new ParallelRecordConverter(pool, executor, chunkSize).build(records, out);
+        return getFormatInfo(formatName);
+    }
+
+    /**
+     * フォーマット定義ファイルに定義されている、データ種別・MIMEタイプ・文字セットを取得する。
+     * <p/>
+     * データの変換は行わないため、返却する変換結果には変換後の文字列及びMapは設定されない。
+     * ストリームに直接書き込む場合など、変換前にコンテンツタイプを決定する必要がある場合に使用する。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @return フォーマットの情報を設定した変換結果
+     * @throws InvalidDataFormatException フォーマット定義ファイルが不正な場合。
+     */
+    public static SimpleDataConvertResult getFormatInfo(String formatName) throws InvalidDataFormatException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, null);
+        DataRecordFormatter formatter = pool.acquire();
+        SimpleDataConvertResult result = createResult(formatter);
+        pool.release(formatter);
+        return result;
     }
 
     /**
@@ -91,66 +280,367 @@ public final class SimpleDataConvertUtil {
      * @throws InvalidDataFormatException 入力データが不正な場合。
      */
     public static SimpleDataConvertResult parseData(String formatName, String data) throws InvalidDataFormatException {
+        return parseData(formatName, data, null);
+    }
+
+    /**
+     * 構造化データのストリームからMapを生成する。
+     * 変換前の構造化データ形式はフォーマット定義ファイルにて指定される。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param in 変換対象データ読み込み用ストリーム
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult parseData(String formatName, InputStream in) throws InvalidDataFormatException, IOException {
+        return parseData(formatName, in, null);
+    }
+
+    /**
+     * 構造化データの文字列から、指定された項目のみを解析したMapを生成する。
+     * <p/>
+     * 項目名の指定方法は{@link #parseData(String, InputStream, Collection)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param data 変換対象データ
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     */
+    public static SimpleDataConvertResult parseData(String formatName, String data, Collection<String> fieldNames)
+            throws InvalidDataFormatException {
+        return parseData(formatName, (CharSequence) data, fieldNames);
+    }
+
+    /**
+     * 文字データからMapを生成する。
+     * 変換前の構造化データ形式はフォーマット定義ファイルにて指定される。
+     * <p/>
+     * 解析方法は{@link #parseData(String, CharSequence, Collection)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param data 変換対象データ
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     */
+    public static SimpleDataConvertResult parseData(String formatName, CharSequence data)
+            throws InvalidDataFormatException {
+        return parseData(formatName, data, null);
+    }
+
+    /**
+     * 文字データから、指定された項目のみを解析したMapを生成する。
+     * <p/>
+     * JSON、XML及び可変長形式の場合、文字データ全体をバイト列に変換せず、
+     * フォーマッタの読み込みに応じて少しずつエンコードして渡す。
+     * 固定長形式はバイト単位で項目を切り出すため、文字データ全体をバイト列に変換して渡す。
+     * <p/>
+     * 項目名の指定方法は{@link #parseData(String, InputStream, Collection)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param data 変換対象データ
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     */
+    public static SimpleDataConvertResult parseData(String formatName, CharSequence data, Collection<String> fieldNames)
+            throws InvalidDataFormatException {
         // フォーマッタ取得
-        DataRecordFormatter formatter = getFormatter(formatName);
+        DataRecordFormatterPool pool = getFormatterPool(formatName, fieldNames);
+        DataRecordFormatter formatter = pool.acquire();
 
         // データを解析し、返却
-        Charset charset = getCharset(formatter);
         try {
-            return parseData(formatName,
-                    new ByteArrayInputStream(data.getBytes(charset)));
+            return parseData(pool, formatter, toInputStream(formatter, data), false);
         } catch (IOException wontHappen) {
-            // データフォーマッターに渡す入力ストリームとして、ヒープ上のバイト列を使用して
+            // データフォーマッターに渡す入力ストリームとして、ヒープ上の文字列又はバイト列を使用して
             // レコードの読み取りに際してI/Oエラーは発生しえない。
-            // (このことはJDKのJavadocに仕様として記載されている。)
             throw new RuntimeException(wontHappen);
         }
     }
 
     /**
-     * 構造化データのストリームからMapを生成する。
+     * 構造化データのReaderからMapを生成する。
      * 変換前の構造化データ形式はフォーマット定義ファイルにて指定される。
+     * <p/>
+     * 解析方法は{@link #parseData(String, Reader, Collection)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param reader 変換対象データ読み込み用Reader
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult parseData(String formatName, Reader reader)
+            throws InvalidDataFormatException, IOException {
+        return parseData(formatName, reader, null);
+    }
+
+    /**
+     * 構造化データのReaderから、指定された項目のみを解析したMapを生成する。
+     * <p/>
+     * Readerから読み込んだ文字は、フォーマッタの読み込みに応じて少しずつエンコードして渡すため、
+     * 文字データ全体を文字列やバイト列として保持しない。
+     * Readerは解析の終了時にクローズされる。
+     * <p/>
+     * 項目名の指定方法は{@link #parseData(String, InputStream, Collection)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param reader 変換対象データ読み込み用Reader
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult parseData(String formatName, Reader reader, Collection<String> fieldNames)
+            throws InvalidDataFormatException, IOException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, fieldNames);
+        DataRecordFormatter formatter = pool.acquire();
+        return parseData(pool, formatter, new EncodingInputStream(reader, getCharset(formatter)), false);
+    }
+
+    /**
+     * 構造化データのストリームから、指定された項目のみを解析したMapを生成する。
+     * <p/>
+     * 指定されなかった項目は、値の変換(文字列や数値の生成)及び精査を行わず、結果のMapにも含めない。
+     * 固定長、JSON及びXML形式では項目の切り出し自体を行わない。
+     * 可変長形式では項目の分割は行われるが、結果のMapには含めない。
+     * <p/>
+     * ネストした構造の項目を解析する場合は、親要素と子要素の両方の項目名を指定すること。
+     * 項目を絞り込んだフォーマット定義は、フォーマット定義ファイルと項目名の組み合わせごとに
+     * {@link LayoutDefinitionCache}に保持し再利用する。
      *
      * @param formatName フォーマット定義ファイル
      * @param in 変換対象データ読み込み用ストリーム
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
      * @return 変換結果
      * @throws InvalidDataFormatException 入力データが不正な場合。
      * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
      */
-    public static SimpleDataConvertResult parseData(String formatName, InputStream in) throws InvalidDataFormatException, IOException {
-        // フォーマッタ取得
-        DataRecordFormatter formatter = getFormatter(formatName);
+    public static SimpleDataConvertResult parseData(String formatName, InputStream in, Collection<String> fieldNames)
+            throws InvalidDataFormatException, IOException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, fieldNames);
+        return parseData(pool, pool.acquire(), in, false);
+    }
+
+    /**
+     * 構造化データの文字列から、{@link CompactRecordMap}を生成する。
+     * <p/>
+     * 解析方法は{@link #parseData(String, CharSequence, Collection)}と同じであり、
+     * 解析結果を{@link DataRecord}ではなく、同じフォーマット定義の解析結果と項目名の並びを共有する
+     * {@link CompactRecordMap}として返却する。
+     * 大量のレコードを保持する場合にメモリ使用量を抑えることができるが、解析結果の複製を行うため解析時の負荷は増加する。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param data 変換対象データ
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     */
+    public static SimpleDataConvertResult parseCompactData(String formatName, CharSequence data,
+            Collection<String> fieldNames) throws InvalidDataFormatException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, fieldNames);
+        DataRecordFormatter formatter = pool.acquire();
+        try {
+            return parseData(pool, formatter, toInputStream(formatter, data), true);
+        } catch (IOException wontHappen) {
+            // ヒープ上の文字列又はバイト列を読み込むため、I/Oエラーは発生しえない。
+            throw new RuntimeException(wontHappen);
+        }
+    }
+
+    /**
+     * 構造化データのストリームから、{@link CompactRecordMap}を生成する。
+     * <p/>
+     * 解析結果の形式は{@link #parseCompactData(String, CharSequence, Collection)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param in 変換対象データ読み込み用ストリーム
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult parseCompactData(String formatName, InputStream in,
+            Collection<String> fieldNames) throws InvalidDataFormatException, IOException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, fieldNames);
+        return parseData(pool, pool.acquire(), in, true);
+    }
+
+    /**
+     * 構造化データのReaderから、{@link CompactRecordMap}を生成する。
+     * <p/>
+     * 読み込み方法は{@link #parseData(String, Reader, Collection)}、
+     * 解析結果の形式は{@link #parseCompactData(String, CharSequence, Collection)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param reader 変換対象データ読み込み用Reader
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
+     */
+    public static SimpleDataConvertResult parseCompactData(String formatName, Reader reader,
+            Collection<String> fieldNames) throws InvalidDataFormatException, IOException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, fieldNames);
+        DataRecordFormatter formatter = pool.acquire();
+        return parseData(pool, formatter, new EncodingInputStream(reader, getCharset(formatter)), true);
+    }
 
+    /**
+     * フォーマッタに渡す、文字データを読み込むストリームを生成する。
+     * <p/>
+     * 固定長形式はバイト単位で項目を切り出すため、文字データ全体をバイト列に変換する。
+     *
+     * @param formatter 初期化済みのフォーマッタ
+     * @param data 文字データ
+     * @return 文字データを読み込むストリーム
+     */
+    private static InputStream toInputStream(DataRecordFormatter formatter, CharSequence data) {
+        Charset charset = getCharset(formatter);
+        return formatter instanceof FixedLengthDataRecordFormatter
+                ? new ByteArrayInputStream(data.toString().getBytes(charset))
+                : new EncodingInputStream(data, charset);
+    }
+
+    /**
+     * フォーマッタを使用して、ストリームから先頭のレコードを解析する。
+     * <p/>
+     * 変換に成功した場合は、フォーマッタをプールに返却する。
+     *
+     * @param pool フォーマッタの取得元のプール
+     * @param formatter 初期化済みのフォーマッタ
+     * @param in 変換対象データ読み込み用ストリーム
+     * @param compact 解析結果を{@link CompactRecordMap}に変換する場合は{@code true}
+     * @return 変換結果
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     * @throws IOException 読み込みに伴うIO処理で問題が発生した場合。
+     */
+    private static SimpleDataConvertResult parseData(DataRecordFormatterPool pool, DataRecordFormatter formatter,
+            InputStream in, boolean compact) throws InvalidDataFormatException, IOException {
         // データを解析
         formatter.setInputStream(in);
         formatter.initialize();
-        Map<String, ?> resultMap = formatter.readRecord();
+        Map<String, ?> resultMap = compact ? pool.compact(formatter.readRecord()) : formatter.readRecord();
         formatter.close();
 
-        return createResult(formatter)
-               .setResultMap(resultMap);
+        SimpleDataConvertResult result = createResult(formatter)
+                .setResultMap(resultMap);
+        pool.release(formatter);
+        return result;
+    }
+
+    /**
+     * 構造化データのストリームから、レコードを1件ずつ解析するイテレータを生成する。
+     * <p/>
+     * {@link #parseData(String, InputStream)}は先頭のレコードのみを解析するが、
+     * 本メソッドが返却するイテレータはストリームに含まれる全てのレコードを順に解析する。
+     * レコードは{@link DataRecordIterator#next()}の呼び出し時に解析されるため、
+     * レコード件数に関わらずメモリ使用量は一定となる。
+     * <p/>
+     * ストリームは返却したイテレータのクローズ時にクローズされる。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param in 変換対象データ読み込み用ストリーム
+     * @return レコードを解析するイテレータ
+     * @throws InvalidDataFormatException フォーマット定義ファイルが不正な場合。
+     */
+    public static DataRecordIterator parseRecords(String formatName, InputStream in) throws InvalidDataFormatException {
+        // フォーマッタはイテレータのクローズ時にプールに返却する。
+        DataRecordFormatterPool pool = getFormatterPool(formatName, null);
+        DataRecordFormatter formatter = pool.acquire();
+        formatter.setInputStream(in);
+        formatter.initialize();
+        return new DataRecordIterator(formatter, in, pool);
+    }
+
+    /**
+     * 構造化データのバイト列に含まれる全てのレコードを並列に解析する。
+     * <p/>
+     * 1チャンクあたりのレコード数は{@link #DEFAULT_CHUNK_SIZE}とする。
+     * 解析方法は{@link #parseRecords(String, byte[], ExecutorService, int)}を参照。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param data 変換対象データ
+     * @param executor 変換に使用するExecutorService
+     * @return 解析したレコード(入力データ上の順序)
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     */
+    public static List<DataRecord> parseRecords(String formatName, byte[] data, ExecutorService executor)
+            throws InvalidDataFormatException {
+        return parseRecords(formatName, data, executor, DEFAULT_CHUNK_SIZE);
     }
 
     /**
-     * フォーマット名に対応したフォーマッタを取得する。
+     * 構造化データのバイト列に含まれる全てのレコードを並列に解析する。
+     * <p/>
+     * 固定長形式の場合、バイト列をレコード長の倍数で指定された件数ごとのチャンクに分割し、
+     * ExecutorServiceのスレッドで解析する。
+     * 固定長形式以外は、レコードの境界がデータの内容に依存するため逐次に解析する。
+     * <p/>
+     * ExecutorServiceは呼び出し元で管理し、本メソッドではシャットダウンしない。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param data 変換対象データ
+     * @param executor 変換に使用するExecutorService
+     * @param chunkSize 1チャンクあたりのレコード数
+     * @return 解析したレコード(入力データ上の順序)
+     * @throws InvalidDataFormatException 入力データが不正な場合。
+     */
+    public static List<DataRecord> parseRecords(String formatName, byte[] data, ExecutorService executor,
+            int chunkSize) throws InvalidDataFormatException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, null);
+        try {
+            return new ParallelRecordConverter(pool, executor, chunkSize).parse(data);
+        } catch (IOException wontHappen) {
+            // データフォーマッターに渡す入力ストリームとして、ヒープ上のバイト列を使用して
+            // レコードの読み取りに際してI/Oエラーは発生しえない。
+            throw new RuntimeException(wontHappen);
+        }
+    }
+
+    /**
+     * 構造化データのReaderから、レコードを1件ずつ解析するイテレータを生成する。
+     * <p/>
+     * Readerから読み込んだ文字は、フォーマッタの読み込みに応じて少しずつエンコードして渡す。
+     * イテレータの動作は{@link #parseRecords(String, InputStream)}と同じ。
+     * Readerは返却したイテレータのクローズ時にクローズされる。
+     *
+     * @param formatName フォーマット定義ファイル
+     * @param reader 変換対象データ読み込み用Reader
+     * @return レコードを解析するイテレータ
+     * @throws InvalidDataFormatException フォーマット定義ファイルが不正な場合。
+     */
+    public static DataRecordIterator parseRecords(String formatName, Reader reader) throws InvalidDataFormatException {
+        DataRecordFormatterPool pool = getFormatterPool(formatName, null);
+        DataRecordFormatter formatter = pool.acquire();
+        InputStream in = new EncodingInputStream(reader, getCharset(formatter));
+        formatter.setInputStream(in);
+        formatter.initialize();
+        return new DataRecordIterator(formatter, in, pool);
+    }
+
+    /**
+     * フォーマット名に対応し、指定された項目のみを解析するフォーマッタのプールを取得する。
+     * <p/>
+     * フォーマット定義は{@link LayoutDefinitionCache#getSharedCache()}から取得し、
+     * フォーマッタはフォーマット定義ごとのプールから取得して再利用する。
+     * 変換中に例外が発生したフォーマッタは、状態が不定となるためプールに返却しない。
      *
      * @param formatName フォーマット名
-     * @return フォーマッタ
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return フォーマッタのプール
      */
-    private static DataRecordFormatter getFormatter(String formatName) {
+    private static DataRecordFormatterPool getFormatterPool(String formatName, Collection<String> fieldNames) {
         // フォーマットファイルを論理パスから取得
         File formatFile = FilePathSetting
                 .getInstance()
                 .getFileWithoutCreate("format", formatName);
 
-        // フォーマッタを生成・初期化
-        DataRecordFormatter formatter = FormatterFactory
-                .getInstance()
-                .createFormatter(formatFile);
-
-        formatter.initialize();
-
-        return formatter;
+        return LayoutDefinitionCache
+                .getSharedCache()
+                .getFormatterPool(formatFile, fieldNames != null ? new TreeSet<String>(fieldNames) : null);
     }
 
     /**
@@ -187,4 +677,27 @@ public final class SimpleDataConvertUtil {
         return charset;
     }
 
+    /**
+     * 書き込まれた内容を複製せずに参照できる出力ストリーム。
+     */
+    static final class ResultOutputStream extends ByteArrayOutputStream {
+
+        /**
+         * コンストラクタ。
+         * @param initialCapacity 初期容量
+         */
+        ResultOutputStream(int initialCapacity) {
+            super(Math.max(initialCapacity, 1));
+        }
+
+        /**
+         * 書き込まれた内容を格納している配列を取得する。
+         * <p/>
+         * 有効な内容は先頭から{@link #size()}バイトまでである。
+         * @return 内部の配列
+         */
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
 }
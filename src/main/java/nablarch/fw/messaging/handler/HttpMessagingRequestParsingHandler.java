@@ -13,6 +13,8 @@ import nablarch.core.ThreadContext;
 import nablarch.core.dataformat.DataRecordFormatter;
 import nablarch.core.dataformat.FormatterFactory;
 import nablarch.core.dataformat.InvalidDataFormatException;
+import nablarch.core.dataformat.LayoutDefinition;
+import nablarch.core.dataformat.LayoutDefinitionCache;
 import nablarch.core.log.Logger;
 import nablarch.core.log.LoggerManager;
 import nablarch.core.util.FilePathSetting;
@@ -194,6 +196,9 @@ public class HttpMessagingRequestParsingHandler implements Handler<HttpRequest,
     // ----------------------------------------------------------- helper
     /**
      * フォーマットファイル名からレコードフォーマットを生成する。
+     * <p/>
+     * フォーマット定義は{@link LayoutDefinitionCache#getSharedCache()}から取得し、
+     * 要求ごとにフォーマット定義ファイルを解析しない。
      *
      * @param formatFileName フォーマットファイル名
      * @return レコードフォーマット
@@ -203,7 +208,8 @@ public class HttpMessagingRequestParsingHandler implements Handler<HttpRequest,
         if (file == null) {
             return null;
         }
-        return FormatterFactory.getInstance().createFormatter(file);
+        LayoutDefinition definition = LayoutDefinitionCache.getSharedCache().get(file);
+        return FormatterFactory.getInstance().createFormatter(definition);
     }
 
     /**
@@ -0,0 +1,241 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 送信先ごとの本文の圧縮及び伸長の統計情報。
+ * <p/>
+ * 送信先はURLのスキーム、ホスト及びポートで識別する(例: {@code https://example.com:443})。
+ * 圧縮及び伸長に要した時間には、送受信の待ち時間は含まない。
+ * 本クラスはスレッドセーフであり、複数の{@link HttpProtocolBasicClient}から共有できる。
+ *
+ * @author TIS
+ * @see HttpProtocolBasicClient#setCompressionStatistics(HttpCompressionStatistics)
+ */
+@Published(tag = "architect")
+public class HttpCompressionStatistics {
+
+    /** 送信先ごとの統計情報 */
+    private final ConcurrentMap<String, DestinationStatistics> destinations
+            = new ConcurrentHashMap<String, DestinationStatistics>();
+
+    /**
+     * 接続先のURLから送信先を導出する。
+     * @param url 接続先のURL
+     * @return 送信先(URLとして解析できない場合は引数のURL)
+     */
+    public static String getDestination(String url) {
+        try {
+            URL parsed = new URL(url);
+            int port = parsed.getPort() < 0 ? parsed.getDefaultPort() : parsed.getPort();
+            return parsed.getProtocol() + "://" + parsed.getHost() + ':' + port;
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /**
+     * 要求の本文を圧縮した結果を記録する。
+     * @param destination 送信先
+     * @param uncompressedBytes 圧縮前のバイト数
+     * @param compressedBytes 圧縮後のバイト数
+     * @param nanos 圧縮に要した時間(ナノ秒)
+     */
+    public void recordCompression(String destination, long uncompressedBytes, long compressedBytes, long nanos) {
+        DestinationStatistics stats = getOrCreate(destination);
+        stats.compressionCount.incrementAndGet();
+        stats.uncompressedRequestBytes.addAndGet(uncompressedBytes);
+        stats.compressedRequestBytes.addAndGet(compressedBytes);
+        stats.compressionNanos.addAndGet(nanos);
+    }
+
+    /**
+     * 応答の本文を伸長した結果を記録する。
+     * @param destination 送信先
+     * @param compressedBytes 伸長前のバイト数
+     * @param uncompressedBytes 伸長後のバイト数
+     * @param nanos 伸長に要した時間(ナノ秒)
+     */
+    public void recordDecompression(String destination, long compressedBytes, long uncompressedBytes, long nanos) {
+        DestinationStatistics stats = getOrCreate(destination);
+        stats.decompressionCount.incrementAndGet();
+        stats.compressedResponseBytes.addAndGet(compressedBytes);
+        stats.uncompressedResponseBytes.addAndGet(uncompressedBytes);
+        stats.decompressionNanos.addAndGet(nanos);
+    }
+
+    /**
+     * 送信先の統計情報を取得する。
+     * @param destination 送信先
+     * @return 統計情報。記録がない場合は{@code null}
+     */
+    public DestinationStatistics getStatistics(String destination) {
+        return destinations.get(destination);
+    }
+
+    /**
+     * 統計情報が記録されている送信先を取得する。
+     * @return 送信先
+     */
+    public Set<String> getDestinations() {
+        return Collections.unmodifiableSet(destinations.keySet());
+    }
+
+    /**
+     * 全ての統計情報を破棄する。
+     */
+    public void clear() {
+        destinations.clear();
+    }
+
+    /**
+     * 送信先の統計情報を取得する。存在しない場合は生成する。
+     * @param destination 送信先
+     * @return 統計情報
+     */
+    private DestinationStatistics getOrCreate(String destination) {
+        DestinationStatistics stats = destinations.get(destination);
+        if (stats == null) {
+            DestinationStatistics created = new DestinationStatistics();
+            stats = destinations.putIfAbsent(destination, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 1つの送信先の統計情報。
+     */
+    public static final class DestinationStatistics {
+
+        /** 要求の本文を圧縮した回数 */
+        private final AtomicLong compressionCount = new AtomicLong();
+
+        /** 圧縮前の要求の本文のバイト数 */
+        private final AtomicLong uncompressedRequestBytes = new AtomicLong();
+
+        /** 圧縮後の要求の本文のバイト数 */
+        private final AtomicLong compressedRequestBytes = new AtomicLong();
+
+        /** 圧縮に要した時間(ナノ秒) */
+        private final AtomicLong compressionNanos = new AtomicLong();
+
+        /** 応答の本文を伸長した回数 */
+        private final AtomicLong decompressionCount = new AtomicLong();
+
+        /** 伸長前の応答の本文のバイト数 */
+        private final AtomicLong compressedResponseBytes = new AtomicLong();
+
+        /** 伸長後の応答の本文のバイト数 */
+        private final AtomicLong uncompressedResponseBytes = new AtomicLong();
+
+        /** 伸長に要した時間(ナノ秒) */
+        private final AtomicLong decompressionNanos = new AtomicLong();
+
+        /**
+         * コンストラクタ。
+         */
+        private DestinationStatistics() {
+        }
+
+        /**
+         * 要求の本文を圧縮した回数を取得する。
+         * @return 圧縮した回数
+         */
+        public long getCompressionCount() {
+            return compressionCount.get();
+        }
+
+        /**
+         * 圧縮前の要求の本文のバイト数(累計)を取得する。
+         * @return 圧縮前のバイト数
+         */
+        public long getUncompressedRequestBytes() {
+            return uncompressedRequestBytes.get();
+        }
+
+        /**
+         * 圧縮後の要求の本文のバイト数(累計)を取得する。
+         * @return 圧縮後のバイト数
+         */
+        public long getCompressedRequestBytes() {
+            return compressedRequestBytes.get();
+        }
+
+        /**
+         * 圧縮に要した時間(累計)を取得する。
+         * @return 圧縮に要した時間(ナノ秒)
+         */
+        public long getCompressionNanos() {
+            return compressionNanos.get();
+        }
+
+        /**
+         * 要求の本文の圧縮率(圧縮前のバイト数/圧縮後のバイト数)を取得する。
+         * @return 圧縮率。圧縮していない場合は0
+         */
+        public double getRequestCompressionRatio() {
+            return ratio(uncompressedRequestBytes.get(), compressedRequestBytes.get());
+        }
+
+        /**
+         * 応答の本文を伸長した回数を取得する。
+         * @return 伸長した回数
+         */
+        public long getDecompressionCount() {
+            return decompressionCount.get();
+        }
+
+        /**
+         * 伸長前の応答の本文のバイト数(累計)を取得する。
+         * @return 伸長前のバイト数
+         */
+        public long getCompressedResponseBytes() {
+            return compressedResponseBytes.get();
+        }
+
+        /**
+         * 伸長後の応答の本文のバイト数(累計)を取得する。
+         * @return 伸長後のバイト数
+         */
+        public long getUncompressedResponseBytes() {
+            return uncompressedResponseBytes.get();
+        }
+
+        /**
+         * 伸長に要した時間(累計)を取得する。
+         * @return 伸長に要した時間(ナノ秒)
+         */
+        public long getDecompressionNanos() {
+            return decompressionNanos.get();
+        }
+
+        /**
+         * 応答の本文の圧縮率(伸長後のバイト数/伸長前のバイト数)を取得する。
+         * @return 圧縮率。伸長していない場合は0
+         */
+        public double getResponseCompressionRatio() {
+            return ratio(uncompressedResponseBytes.get(), compressedResponseBytes.get());
+        }
+
+        /**
+         * 圧縮率を算出する。
+         * @param uncompressed 圧縮前のバイト数
+         * @param compressed 圧縮後のバイト数
+         * @return 圧縮率
+         */
+        private static double ratio(long uncompressed, long compressed) {
+            return compressed == 0 ? 0 : (double) uncompressed / compressed;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import nablarch.fw.messaging.realtime.http.streamio.HttpOutputStreamWriter;
+
+/**
+ * HTTPの本文の圧縮(Content-Encoding)を扱うユーティリティ。
+ * <p/>
+ * 圧縮及び伸長に要した時間は、圧縮後のデータの送受信に要した時間を除いて計測する。
+ *
+ * @author TIS
+ */
+final class HttpContentCoding {
+
+    /** 要求時に受け入れを通知する圧縮形式 */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    /** 要求の本文の圧縮形式 */
+    static final String REQUEST_ENCODING = "gzip";
+
+    /** 圧縮及び伸長に使用するバッファのサイズ */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 隠蔽コンストラクタ。
+     */
+    private HttpContentCoding() {
+    }
+
+    /**
+     * 伸長に対応した圧縮形式か否かを判定する。
+     * @param contentEncoding Content-Encodingヘッダの値
+     * @return 伸長に対応している場合は{@code true}
+     */
+    static boolean isSupported(String contentEncoding) {
+        if (contentEncoding == null) {
+            return false;
+        }
+        String encoding = contentEncoding.trim().toLowerCase();
+        return "gzip".equals(encoding) || "x-gzip".equals(encoding) || "deflate".equals(encoding);
+    }
+
+    /**
+     * 圧縮された応答の本文を伸長するストリームを生成する。
+     * @param in 圧縮された本文
+     * @param contentEncoding Content-Encodingヘッダの値({@link #isSupported(String)}が{@code true}であること)
+     * @param statistics 統計情報の記録先(記録しない場合は{@code null})
+     * @param destination 送信先
+     * @return 伸長した本文を読み取るストリーム
+     * @throws IOException 圧縮形式のヘッダの読み取りに失敗した場合
+     */
+    static InputStream decompress(InputStream in, String contentEncoding,
+            HttpCompressionStatistics statistics, String destination) throws IOException {
+        return new DecompressingInputStream(in, contentEncoding.trim().toLowerCase(), statistics, destination);
+    }
+
+    /**
+     * 本文をgzip形式で圧縮して書き出すWriterを生成する。
+     * @param writer 圧縮前の本文を書き出すWriter
+     * @param statistics 統計情報の記録先(記録しない場合は{@code null})
+     * @param destination 送信先
+     * @return 圧縮して書き出すWriter
+     */
+    static HttpOutputStreamWriter compress(HttpOutputStreamWriter writer,
+            HttpCompressionStatistics statistics, String destination) {
+        return new CompressingHttpOutputStreamWriter(writer, statistics, destination);
+    }
+
+    /**
+     * 圧縮された本文を伸長しながら読み取るストリーム。
+     * <p/>
+     * クローズ時に統計情報を記録する。
+     */
+    private static final class DecompressingInputStream extends FilterInputStream {
+
+        /** 圧縮された本文 */
+        private final CountingInputStream compressed;
+
+        /** 統計情報の記録先 */
+        private final HttpCompressionStatistics statistics;
+
+        /** 送信先 */
+        private final String destination;
+
+        /** 伸長後のバイト数 */
+        private long count;
+
+        /** 読み取りに要した時間(ナノ秒) */
+        private long nanos;
+
+        /** クローズ済みか否か */
+        private boolean closed;
+
+        /**
+         * コンストラクタ。
+         * @param in 圧縮された本文
+         * @param encoding 圧縮形式
+         * @param statistics 統計情報の記録先
+         * @param destination 送信先
+         * @throws IOException 圧縮形式のヘッダの読み取りに失敗した場合
+         */
+        DecompressingInputStream(InputStream in, String encoding,
+                HttpCompressionStatistics statistics, String destination) throws IOException {
+            super(null);
+            this.compressed = new CountingInputStream(in);
+            this.statistics = statistics;
+            this.destination = destination;
+            long start = System.nanoTime();
+            this.in = createDecoder(compressed, encoding);
+            nanos += System.nanoTime() - start;
+        }
+
+        /**
+         * 圧縮形式に応じて伸長するストリームを生成する。
+         * <p/>
+         * 本文が空の場合(304応答等)は伸長しない。
+         * deflate形式は、zlib形式のヘッダの有無を判定して伸長する。
+         * @param in 圧縮された本文
+         * @param encoding 圧縮形式
+         * @return 伸長するストリーム
+         * @throws IOException 圧縮形式のヘッダの読み取りに失敗した場合
+         */
+        private static InputStream createDecoder(InputStream in, String encoding) throws IOException {
+            PushbackInputStream pushback = new PushbackInputStream(in, 2);
+            byte[] head = new byte[2];
+            int length = 0;
+            while (length < head.length) {
+                int count = pushback.read(head, length, head.length - length);
+                if (count < 0) {
+                    break;
+                }
+                length += count;
+            }
+            if (length == 0) {
+                return pushback;
+            }
+            pushback.unread(head, 0, length);
+            if (!"deflate".equals(encoding)) {
+                return new GZIPInputStream(pushback, BUFFER_SIZE);
+            }
+            boolean zlibWrapped = length == 2 && (head[0] & 0x0F) == 8
+                    && (((head[0] & 0xFF) << 8) | (head[1] & 0xFF)) % 31 == 0;
+            return new InflaterInputStream(pushback, new Inflater(!zlibWrapped), BUFFER_SIZE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = in.read();
+            nanos += System.nanoTime() - start;
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = in.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long start = System.nanoTime();
+            long skipped = in.skip(n);
+            nanos += System.nanoTime() - start;
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                in.close();
+            } finally {
+                if (statistics != null) {
+                    statistics.recordDecompression(destination, compressed.count, count, nanos - compressed.nanos);
+                }
+            }
+        }
+    }
+
+    /**
+     * 読み取ったバイト数及び読み取りに要した時間を計上するストリーム。
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        /** 読み取ったバイト数 */
+        private long count;
+
+        /** 読み取りに要した時間(ナノ秒) */
+        private long nanos;
+
+        /**
+         * コンストラクタ。
+         * @param in 読み取り元
+         */
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = in.read();
+            nanos += System.nanoTime() - start;
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = in.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long start = System.nanoTime();
+            long skipped = in.skip(n);
+            nanos += System.nanoTime() - start;
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * 書き出したバイト数及び書き出しに要した時間を計上するストリーム。
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        /** 書き出したバイト数 */
+        long count;
+
+        /** 書き出しに要した時間(ナノ秒) */
+        long nanos;
+
+        /**
+         * コンストラクタ。
+         * @param out 書き出し先
+         */
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            nanos += System.nanoTime() - start;
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            nanos += System.nanoTime() - start;
+            count += len;
+        }
+    }
+
+    /**
+     * 圧縮前の本文を受け取り、gzip形式で圧縮して書き出すストリーム。
+     * <p/>
+     * クローズ時は圧縮を終了するのみで、書き出し先はクローズしない。
+     */
+    private static final class CompressingOutputStream extends CountingOutputStream {
+
+        /** 圧縮後の本文の書き出し先 */
+        private final CountingOutputStream compressed;
+
+        /** gzip形式で圧縮するストリーム */
+        private final GZIPOutputStream gzip;
+
+        /** 圧縮を終了したか否か */
+        private boolean finished;
+
+        /**
+         * コンストラクタ。
+         * @param out 圧縮後の本文の書き出し先
+         * @throws IOException gzip形式のヘッダの書き出しに失敗した場合
+         */
+        CompressingOutputStream(OutputStream out) throws IOException {
+            this(new CountingOutputStream(out));
+        }
+
+        /**
+         * コンストラクタ。
+         * @param compressed 圧縮後の本文の書き出し先
+         * @throws IOException gzip形式のヘッダの書き出しに失敗した場合
+         */
+        private CompressingOutputStream(CountingOutputStream compressed) throws IOException {
+            this(compressed, new GZIPOutputStream(compressed, BUFFER_SIZE));
+        }
+
+        /**
+         * コンストラクタ。
+         * @param compressed 圧縮後の本文の書き出し先
+         * @param gzip gzip形式で圧縮するストリーム
+         */
+        private CompressingOutputStream(CountingOutputStream compressed, GZIPOutputStream gzip) {
+            super(gzip);
+            this.compressed = compressed;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            gzip.flush();
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        /**
+         * 圧縮を終了し、残りのデータを書き出す。既に終了している場合は何もしない。
+         * @throws IOException 書き出しに失敗した場合
+         */
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long start = System.nanoTime();
+            gzip.finish();
+            compressed.flush();
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * 本文をgzip形式で圧縮して書き出すWriter。
+     * <p/>
+     * 圧縮後の長さは事前に判明しないため、{@link nablarch.fw.messaging.realtime.http.streamio.SizedHttpOutputStreamWriter}
+     * は実装しない。
+     */
+    private static final class CompressingHttpOutputStreamWriter implements HttpOutputStreamWriter {
+
+        /** 圧縮前の本文を書き出すWriter */
+        private final HttpOutputStreamWriter writer;
+
+        /** 統計情報の記録先 */
+        private final HttpCompressionStatistics statistics;
+
+        /** 送信先 */
+        private final String destination;
+
+        /**
+         * コンストラクタ。
+         * @param writer 圧縮前の本文を書き出すWriter
+         * @param statistics 統計情報の記録先
+         * @param destination 送信先
+         */
+        CompressingHttpOutputStreamWriter(HttpOutputStreamWriter writer,
+                HttpCompressionStatistics statistics, String destination) {
+            this.writer = writer;
+            this.statistics = statistics;
+            this.destination = destination;
+        }
+
+        /**
+         * ストリームに出力する。
+         * @param outputStream 出力先ストリームの実体
+         * @throws IOException ストリームへの書き込みに失敗した場合
+         */
+        public void writeStream(OutputStream outputStream) throws IOException {
+            long start = System.nanoTime();
+            CompressingOutputStream out = new CompressingOutputStream(outputStream);
+            long headerNanos = System.nanoTime() - start;
+            writer.writeStream(out);
+            out.finish();
+            if (statistics != null) {
+                statistics.recordCompression(destination, out.count, out.compressed.count,
+                        headerNanos + out.nanos - out.compressed.nanos);
+            }
+        }
+    }
+}
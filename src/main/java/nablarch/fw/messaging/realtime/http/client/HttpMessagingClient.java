@@ -1,18 +1,22 @@
 package nablarch.fw.messaging.realtime.http.client;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import javax.net.ssl.SSLContext;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import nablarch.core.dataformat.CompactRecordMap;
 import nablarch.core.dataformat.InvalidDataFormatException;
 import nablarch.core.dataformat.SimpleDataConvertResult;
 import nablarch.core.dataformat.SimpleDataConvertUtil;
@@ -30,8 +34,15 @@ import nablarch.fw.messaging.logging.MessagingLogUtil;
 import nablarch.fw.messaging.realtime.http.client.HttpProtocolClient.HttpRequestMethodEnum;
 import nablarch.fw.messaging.realtime.http.dto.HttpResult;
 import nablarch.fw.messaging.realtime.http.exception.HttpMessagingInvalidDataFormatException;
+import nablarch.fw.messaging.realtime.http.streamio.ByteHttpStreamReader;
+import nablarch.fw.messaging.realtime.http.streamio.ByteHttpStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.ChannelHttpStreamReader;
 import nablarch.fw.messaging.realtime.http.streamio.CharHttpStreamReader;
-import nablarch.fw.messaging.realtime.http.streamio.CharHttpStreamWritter;
+import nablarch.fw.messaging.realtime.http.streamio.DataRecordHttpStreamReader;
+import nablarch.fw.messaging.realtime.http.streamio.DataRecordHttpStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.DataRecordIteratorHttpStreamReader;
+import nablarch.fw.messaging.realtime.http.streamio.FileHttpStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.HttpDownloadProgressListener;
 import nablarch.fw.messaging.realtime.http.streamio.HttpInputStreamReader;
 import nablarch.fw.messaging.realtime.http.streamio.HttpOutputStreamWriter;
 
@@ -42,6 +53,9 @@ import nablarch.fw.messaging.realtime.http.streamio.HttpOutputStreamWriter;
  */
 @Published(tag = "architect")
 public class HttpMessagingClient implements MessageSenderClient {
+    /** ロガー */
+    private static final Logger LOGGER = LoggerManager.get(HttpMessagingClient.class);
+
     /** 証跡ログを出力するロガー */
     private static final Logger MESSAGING_LOGGER = LoggerManager.get("MESSAGING");
     
@@ -66,8 +80,68 @@ public class HttpMessagingClient implements MessageSenderClient {
     /** クエリストリングをエンコードする際に使用するエンコーディング*/
     private String queryStringEncoding = "UTF-8";
 
-    /** Content-Typeヘッダから文字セットを取得するためのパターン */
-    private static final Pattern CHARSET_PTN = Pattern.compile(".*charset=(.+)");
+    /** Content-Typeヘッダの文字セットを表すパラメータ */
+    private static final String CHARSET_PARAM = "charset=";
+
+    /** HTTPステータスコード・OK */
+    private static final int HTTP_OK = 200;
+
+    /** HTTPステータスコード・Not Modified */
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    /** リクエストIDごとの送信計画 */
+    private final ConcurrentMap<String, HttpSendPlan> sendPlans = new ConcurrentHashMap<String, HttpSendPlan>();
+
+    /** 送信計画をキャッシュするか否か */
+    private boolean sendPlanCacheEnabled = true;
+
+    /** 送信中の送信計画(送信計画をキャッシュしない場合に、同一の送信内で再生成しないために保持する) */
+    private final ThreadLocal<HttpSendPlan> currentSendPlan = new ThreadLocal<HttpSendPlan>();
+
+    /** 要求電文の本文を送信先のストリームに直接書き出すか否か */
+    private boolean streamRequestBody = false;
+
+    /** 本文を直接書き出す場合に、証跡ログ出力用に保持する本文の最大バイト数 */
+    private int requestLogCaptureSize = DataRecordHttpStreamWriter.DEFAULT_CAPTURE_SIZE;
+
+    /** 応答電文の本文を受信したストリームから直接解析するか否か */
+    private boolean streamResponseBody = false;
+
+    /** 本文を直接解析する場合に、証跡ログ出力用に保持する本文の最大バイト数 */
+    private int responseLogCaptureSize = DataRecordHttpStreamReader.DEFAULT_CAPTURE_SIZE;
+
+    /** ダウンロードする本文の最大バイト数(0以下の場合は制限しない) */
+    private long downloadSizeLimit = 0;
+
+    /** 文字列として読み取る応答の本文の最大バイト数(0以下の場合は制限しない) */
+    private long responseBodyLimit = 0;
+
+    /** 本文の送信方法(送信先ごとに設定されていない場合に使用する) */
+    private HttpStreamingMode streamingMode = HttpStreamingMode.KNOWN_LENGTH;
+
+    /** 「Expect: 100-continue」による確認を行う本文の長さの閾値(送信先ごとに設定されていない場合に使用する) */
+    private long expectContinueThreshold = -1;
+
+    /** 「Expect: 100-continue」による確認で中間応答を待つ時間(送信先ごとに設定されていない場合に使用する) */
+    private int expectContinueTimeout = HttpProtocolBasicClient.DEFAULT_EXPECT_CONTINUE_TIMEOUT;
+
+    /** 圧縮された応答を受け入れるか否か(送信先ごとに設定されていない場合に使用する) */
+    private boolean acceptCompression = false;
+
+    /** 要求の本文を圧縮する長さの閾値(送信先ごとに設定されていない場合に使用する) */
+    private long requestCompressionThreshold = -1;
+
+    /** 圧縮及び伸長の統計情報の記録先(設定されていない場合は記録しない) */
+    private HttpCompressionStatistics compressionStatistics = null;
+
+    /** 応答の本文をデータレコードの参照時に解析するか否か */
+    private boolean lazyResponseParsing = false;
+
+    /** 応答の本文の解析結果を{@link CompactRecordMap}とするか否か */
+    private boolean compactResponseRecord = false;
+
+    /** 応答キャッシュ(設定されていない場合はキャッシュを行わない) */
+    private HttpResponseCache responseCache = null;
     
     /**
      * HTTPを使用したリアルタイム通信通信を行う。
@@ -76,18 +150,114 @@ public class HttpMessagingClient implements MessageSenderClient {
      * @return 応答電文
      * @throws MessagingException 通信に失敗した際に送出される。
      */
-    @SuppressWarnings("unchecked")
     public SyncMessage sendSync(MessageSenderSettings settings, SyncMessage requestMessage) throws MessagingException {
-        //settingsから送信内容生成に必要な情報を取り出し
-        HttpRequestMethodEnum httpMethod = null;
+        return sendSync(settings, requestMessage, false, null, null, null);
+    }
+
+    /**
+     * HTTPを使用したリアルタイム通信通信を行い、応答の本文のうち指定された項目のみを解析する。
+     * <p/>
+     * 指定されなかった項目は値の変換を行わず、応答電文のデータレコードにも含めない。
+     * 項目名の指定方法は{@link SimpleDataConvertUtil#parseData(String, java.io.InputStream, Collection)}を参照。
+     * 解析結果が一部の項目のみとなるため、応答キャッシュは使用しない。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param fieldNames 解析する項目名
+     * @return 応答電文
+     * @throws MessagingException 通信に失敗した際に送出される。
+     */
+    public SyncMessage sendSync(MessageSenderSettings settings, SyncMessage requestMessage, Collection<String> fieldNames)
+            throws MessagingException {
+        return sendSync(settings, requestMessage, false, null, null, fieldNames);
+    }
+
+    /**
+     * HTTPを使用して、ファイルの内容を本文として送信する。
+     * <p/>
+     * ファイルの内容はヒープ上に保持せず、固定長ストリーミングモードで送信する。
+     * 要求電文のデータレコードは本文に使用しない。応答電文の扱いは{@link #sendSync(MessageSenderSettings, SyncMessage)}と同じ。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param file 送信するファイル
+     * @param contentType 送信するデータのコンテンツタイプ
+     * @return 応答電文
+     * @throws MessagingException 通信に失敗した際、又は本文を送信できないHTTPメソッドが設定されている場合に送出される。
+     */
+    public SyncMessage upload(MessageSenderSettings settings, SyncMessage requestMessage, File file, String contentType)
+            throws MessagingException {
+        return upload(settings, requestMessage, new FileHttpStreamWriter(file), contentType);
+    }
+
+    /**
+     * HTTPを使用して、Writerが書き出す内容を本文として送信する。
+     * <p/>
+     * Writerが{@link nablarch.fw.messaging.realtime.http.streamio.SizedHttpOutputStreamWriter}の場合は、
+     * 固定長ストリーミングモードで送信する。
+     * 要求電文のデータレコードは本文に使用しない。応答電文の扱いは{@link #sendSync(MessageSenderSettings, SyncMessage)}と同じ。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param bodyWriter 本文を書き出すWriter
+     * @param contentType 送信するデータのコンテンツタイプ
+     * @return 応答電文
+     * @throws MessagingException 通信に失敗した際、又は本文を送信できないHTTPメソッドが設定されている場合に送出される。
+     */
+    public SyncMessage upload(MessageSenderSettings settings, SyncMessage requestMessage,
+            HttpOutputStreamWriter bodyWriter, String contentType) throws MessagingException {
+        HttpSendPlan sendPlan = getSendPlan(settings);
+        HttpRequestMethodEnum httpMethod = sendPlan.getHttpMethod();
+        if (!getExistBodyHttpMethod().contains(httpMethod.toString())) {
+            throw new MessagingException(String.format("%s can not send a request body.", httpMethod));
+        }
+        boolean bound = bindSendPlan(sendPlan);
         try {
-            httpMethod = HttpRequestMethodEnum.valueOf(settings.getHttpMethod().toUpperCase());
-            
-        } catch (IllegalArgumentException e) {
-            //サポートしないHTTPメソッド
-            throw new MessagingException(String.format("%s is unsupported HTTP method.", settings.getHttpMethod().toUpperCase()), e);
+            return sendSync(settings, requestMessage, false, bodyWriter, contentType, null);
+        } finally {
+            unbindSendPlan(bound);
+        }
+    }
+
+    /**
+     * HTTPを使用したリアルタイム通信通信を行う。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param revalidate 応答キャッシュのエントリが有効期間内であっても再検証を行う場合は{@code true}
+     * @param bodyWriter 本文を書き出すWriter({@code null}の場合は要求電文のデータレコードから本文を生成する)
+     * @param contentType bodyWriterが書き出すデータのコンテンツタイプ
+     * @param fieldNames 応答の本文のうち解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 応答電文
+     * @throws MessagingException 通信に失敗した際に送出される。
+     */
+    private SyncMessage sendSync(MessageSenderSettings settings, SyncMessage requestMessage, boolean revalidate,
+            HttpOutputStreamWriter bodyWriter, String contentType, Collection<String> fieldNames)
+            throws MessagingException {
+        HttpSendPlan sendPlan = getSendPlan(settings);
+        boolean bound = bindSendPlan(sendPlan);
+        try {
+            return sendSync(sendPlan, settings, requestMessage, revalidate, bodyWriter, contentType, fieldNames);
+        } finally {
+            unbindSendPlan(bound);
         }
-        String preUri = settings.getUri();
+    }
+
+    /**
+     * 送信計画に従って、HTTPを使用したリアルタイム通信通信を行う。
+     * @param sendPlan 送信計画
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param revalidate 応答キャッシュのエントリが有効期間内であっても再検証を行う場合は{@code true}
+     * @param bodyWriter 本文を書き出すWriter({@code null}の場合は要求電文のデータレコードから本文を生成する)
+     * @param contentType bodyWriterが書き出すデータのコンテンツタイプ
+     * @param fieldNames 応答の本文のうち解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 応答電文
+     * @throws MessagingException 通信に失敗した際に送出される。
+     */
+    @SuppressWarnings("unchecked")
+    private SyncMessage sendSync(HttpSendPlan sendPlan, MessageSenderSettings settings, SyncMessage requestMessage,
+            boolean revalidate, HttpOutputStreamWriter bodyWriter, String contentType, Collection<String> fieldNames)
+            throws MessagingException {
+        //settingsから送信内容生成に必要な情報を取り出し
+        HttpRequestMethodEnum httpMethod = sendPlan.getHttpMethod();
+        String preUri = sendPlan.getUri();
 
         
         //要求電文に、共通プロトコルヘッダ相当部分及びフレームワーク制御ヘッダ部で使用する要素を追加する
@@ -97,37 +267,101 @@ public class HttpMessagingClient implements MessageSenderClient {
         String uri = mapToUriString(preUri, httpMethod, requestMessage);
         Map<String, String> urlParams = mapToQueryMap(preUri, httpMethod, requestMessage);
         Map<String, List<String>> headerInfo = mapToHeaderMap(requestMessage);
-        SimpleDataConvertResult bodyDataConvertResult = mapToBodyString(uri, httpMethod, requestMessage);
-        
-        String mimeType = getRequestContentsType(httpMethod, bodyDataConvertResult);
-        HttpProtocolClient httpProtocolClient = createHttpProtocolClient();
-        initHttpProtocolClient(httpProtocolClient, settings, mimeType);
 
-        String charset = "UTF-8";
-        String bodyText = "";
-        if (bodyDataConvertResult != null) {
-            charset = bodyDataConvertResult.getCharset().toString();
-            bodyText = bodyDataConvertResult.getResultText();
+        //応答キャッシュの参照
+        String cacheKey = null;
+        HttpResponseCache.CacheEntry cacheEntry = null;
+        if (isCacheable(httpMethod) && fieldNames == null) {
+            cacheKey = HttpResponseCache.createKey(httpMethod, uri, urlParams);
+            cacheEntry = responseCache.get(cacheKey);
+            if (cacheEntry != null) {
+                long now = System.currentTimeMillis();
+                if (!revalidate && cacheEntry.isFresh(now)) {
+                    responseCache.recordHit();
+                    return createResponseMessage(requestMessage, cacheEntry);
+                }
+                if (!revalidate && cacheEntry.isStaleWhileRevalidate(now)) {
+                    //有効期間切れのエントリを返却し、再検証はバックグラウンドで行う。
+                    responseCache.recordStaleHit();
+                    refreshInBackground(settings, requestMessage, cacheEntry);
+                    return createResponseMessage(requestMessage, cacheEntry);
+                }
+                addConditionalHeader(headerInfo, cacheEntry);
+            }
         }
 
-        // 証跡ログ
-        if (MESSAGING_LOGGER.isInfoEnabled()) {
-            emitRequestLog(requestMessage.getHeaderRecord(), httpMethod, uri, bodyText, charset);
+        DataRecordHttpStreamReader streamReader = null;
+        ByteHttpStreamReader lazyReader = null;
+        if (isLazyResponseParsing() && cacheKey == null) {
+            //応答の本文はバイト列のまま保持し、データレコードの参照時に解析する。
+            lazyReader = createByteHttpStreamReader();
+        } else if (isStreamResponseBody()) {
+            //応答の本文を文字列に変換せず、受信したストリームから直接解析する。
+            streamReader = createDataRecordHttpStreamReader(getResponseFormatName(requestMessage.getRequestId()));
+            streamReader.setFieldNames(fieldNames);
+            streamReader.setCompactRecord(compactResponseRecord);
+        }
+
+        HttpInputStreamReader reader = lazyReader != null ? lazyReader : streamReader;
+        HttpResult httpResult;
+        if (bodyWriter == null) {
+            httpResult = send(settings, httpMethod, uri, requestMessage, headerInfo, urlParams, reader);
+        } else {
+            httpResult = send(settings, httpMethod, uri, requestMessage, headerInfo, urlParams,
+                    bodyWriter, contentType, reader);
         }
-        
-        //送信を実行
-        HttpResult httpResult = execute(httpProtocolClient, httpMethod, uri, headerInfo, urlParams, charset, bodyText);
 
         //応答電文を生成
         SyncMessage responseMessage = new SyncMessage(requestMessage.getRequestId());
         Map<String, Object> resHeadderMap = headerToMap(requestMessage, httpResult);
+        String responseBody;
+        long responseBodyLength;
+        byte[] rawResponseBody = null;
+        if (lazyReader != null) {
+            rawResponseBody = httpResult.getReadObject() != null ? (byte[]) httpResult.getReadObject() : new byte[0];
+            //本文を文字列として参照するのは証跡ログのみのため、ログを出力する場合に限り変換する。
+            responseBody = null;
+            responseBodyLength = rawResponseBody.length;
+        } else if (streamReader == null) {
+            responseBody = getResponseBody(httpResult);
+            responseBodyLength = responseBody.length();
+        } else {
+            responseBody = streamReader.getCapturedText(Charset.forName(getResponseCharset(resHeadderMap)));
+            responseBodyLength = streamReader.getReadSize();
+        }
         
         // 証跡ログ
         if (MESSAGING_LOGGER.isInfoEnabled()) {
-            emitResponseLog(resHeadderMap, getResponseBody(httpResult), getResponseCharset(resHeadderMap));
+            if (rawResponseBody != null) {
+                responseBody = new String(rawResponseBody, Charset.forName(getResponseCharset(resHeadderMap)));
+            }
+            emitResponseLog(resHeadderMap, responseBody, getResponseCharset(resHeadderMap));
+        }
+
+        if (cacheEntry != null && httpResult.getResponseCode() == HTTP_NOT_MODIFIED) {
+            //キャッシュの内容が有効であることが確認できたため、本文を解析せずにキャッシュの内容を返却する。
+            responseCache.revalidated(cacheEntry, httpResult.getHeaderInfo());
+            recordCacheResult(revalidate, true);
+            return createResponseMessage(requestMessage, cacheEntry);
+        }
+
+        if (lazyReader != null) {
+            LazySyncMessage lazyMessage = new LazySyncMessage(requestMessage.getRequestId(),
+                    getResponseFormatName(requestMessage.getRequestId()), uri, httpResult, rawResponseBody,
+                    Charset.forName(getResponseCharset(resHeadderMap)), fieldNames);
+            lazyMessage.setCompactRecord(compactResponseRecord);
+            lazyMessage.setHeaderRecord(resHeadderMap);
+            return lazyMessage;
         }
         
-        SimpleDataConvertResult resBodyDataConvertResult = bodyStringToMap(uri, httpMethod, requestMessage, httpResult);
+        SimpleDataConvertResult resBodyDataConvertResult;
+        if (streamReader == null) {
+            resBodyDataConvertResult = fieldNames == null
+                    ? bodyStringToMap(uri, httpMethod, requestMessage, httpResult)
+                    : bodyStringToMap(uri, requestMessage, httpResult, fieldNames);
+        } else {
+            resBodyDataConvertResult = toResponseDataConvertResult(uri, requestMessage, httpResult, streamReader, responseBody);
+        }
         responseMessage.setHeaderRecord(resHeadderMap);
         Map<String, Object> responseData = null;
         if (resBodyDataConvertResult != null) {
@@ -138,9 +372,436 @@ public class HttpMessagingClient implements MessageSenderClient {
         }
         responseMessage.addDataRecord(responseData);
 
+        if (cacheKey != null) {
+            recordCacheResult(revalidate, false);
+            if (httpResult.getResponseCode() == HTTP_OK) {
+                responseCache.put(cacheKey, httpResult.getHeaderInfo(), resHeadderMap, responseData, responseBodyLength);
+            }
+        }
+
         return responseMessage;
     }
 
+    /**
+     * HTTPを使用して、応答の本文をファイルにダウンロードする。
+     * <p/>
+     * 応答の本文はヒープ上に保持せずにファイルへ転送する。
+     * 返却する送信結果の読み取り結果には、転送したバイト数({@link Long})が設定される。
+     * ステータスコードが2xx以外の場合はファイルに書き込まず、エラー応答の本文の先頭部分(文字列)が設定される。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param file ダウンロード先のファイル
+     * @param progressListener 進捗の通知先(不要な場合は{@code null})
+     * @return 送信結果
+     * @throws MessagingException 通信に失敗した場合、又はダウンロードサイズの上限を超えた場合に送出される。
+     */
+    public HttpResult download(MessageSenderSettings settings, SyncMessage requestMessage, File file,
+            HttpDownloadProgressListener progressListener) throws MessagingException {
+        return download(settings, requestMessage, new ChannelHttpStreamReader(file), progressListener);
+    }
+
+    /**
+     * HTTPを使用して、応答の本文をチャネルにダウンロードする。
+     * <p/>
+     * チャネルはクローズしない。その他の仕様は{@link #download(MessageSenderSettings, SyncMessage, File, HttpDownloadProgressListener)}と同じ。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param channel ダウンロード先のチャネル
+     * @param progressListener 進捗の通知先(不要な場合は{@code null})
+     * @return 送信結果
+     * @throws MessagingException 通信に失敗した場合、又はダウンロードサイズの上限を超えた場合に送出される。
+     */
+    public HttpResult download(MessageSenderSettings settings, SyncMessage requestMessage, WritableByteChannel channel,
+            HttpDownloadProgressListener progressListener) throws MessagingException {
+        return download(settings, requestMessage, new ChannelHttpStreamReader(channel), progressListener);
+    }
+
+    /**
+     * HTTPを使用して、応答の本文をダウンロードする。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param reader 応答の本文を転送するreader
+     * @param progressListener 進捗の通知先
+     * @return 送信結果
+     * @throws MessagingException 通信に失敗した場合、又はダウンロードサイズの上限を超えた場合に送出される。
+     */
+    private HttpResult download(MessageSenderSettings settings, SyncMessage requestMessage,
+            ChannelHttpStreamReader reader, HttpDownloadProgressListener progressListener) throws MessagingException {
+        HttpSendPlan sendPlan = getSendPlan(settings);
+        HttpRequestMethodEnum httpMethod = sendPlan.getHttpMethod();
+        addCommonValue(httpMethod, settings, requestMessage);
+        String uri = mapToUriString(sendPlan.getUri(), httpMethod, requestMessage);
+        Map<String, String> urlParams = mapToQueryMap(sendPlan.getUri(), httpMethod, requestMessage);
+        Map<String, List<String>> headerInfo = mapToHeaderMap(requestMessage);
+
+        reader.setMaxSize(downloadSizeLimit);
+        reader.setProgressListener(progressListener);
+        HttpResult httpResult;
+        boolean bound = bindSendPlan(sendPlan);
+        try {
+            httpResult = send(settings, httpMethod, uri, requestMessage, headerInfo, urlParams, reader);
+        } finally {
+            unbindSendPlan(bound);
+        }
+
+        // 証跡ログ(ダウンロードした本文は出力しない)
+        if (MESSAGING_LOGGER.isInfoEnabled()) {
+            Map<String, Object> resHeadderMap = headerToMap(requestMessage, httpResult);
+            String responseBody = httpResult.getReadObject() instanceof String ? (String) httpResult.getReadObject() : "";
+            emitResponseLog(resHeadderMap, responseBody, getResponseCharset(resHeadderMap));
+        }
+        return httpResult;
+    }
+
+    /**
+     * HTTPを使用して同期送信を行い、応答の本文に含まれる全てのレコードを1件ずつ解析するイテレータを返却する。
+     * <p/>
+     * {@link #sendSync(MessageSenderSettings, SyncMessage)}は応答の本文の先頭のレコードのみを解析するが、
+     * 本メソッドは全てのレコードを接続先のストリームから逐次解析する。
+     * 受信するレコード件数に関わらずメモリ使用量は一定となる。
+     * <p/>
+     * 返却したイテレータは接続を保持するため、使用後は必ずクローズすること。
+     * 証跡ログには応答の本文を出力しない(ステータスコードが2xx以外の場合はエラー応答の本文を出力する)。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @return 応答のレコードを解析するイテレータ
+     * @throws MessagingException 通信に失敗した場合、又は電文フォーマット変換に失敗した場合に送出される。
+     */
+    public HttpRecordIterator iterateRecords(MessageSenderSettings settings, SyncMessage requestMessage)
+            throws MessagingException {
+        HttpSendPlan sendPlan = getSendPlan(settings);
+        HttpRequestMethodEnum httpMethod = sendPlan.getHttpMethod();
+        addCommonValue(httpMethod, settings, requestMessage);
+        String uri = mapToUriString(sendPlan.getUri(), httpMethod, requestMessage);
+        Map<String, String> urlParams = mapToQueryMap(sendPlan.getUri(), httpMethod, requestMessage);
+        Map<String, List<String>> headerInfo = mapToHeaderMap(requestMessage);
+
+        DataRecordIteratorHttpStreamReader reader = createDataRecordIteratorHttpStreamReader(
+                getResponseFormatName(requestMessage.getRequestId()));
+        HttpResult httpResult;
+        boolean bound = bindSendPlan(sendPlan);
+        try {
+            httpResult = send(settings, httpMethod, uri, requestMessage, headerInfo, urlParams, reader);
+        } catch (InvalidDataFormatException e) {
+            String message = "Invalid receive message format. requestId=[" + requestMessage.getRequestId() + "].";
+            throw new HttpMessagingInvalidDataFormatException(message, uri, null, null, null, e);
+        } finally {
+            unbindSendPlan(bound);
+        }
+
+        // 証跡ログ(レコードは逐次解析するため、本文は出力しない)
+        if (MESSAGING_LOGGER.isInfoEnabled()) {
+            Map<String, Object> resHeadderMap = headerToMap(requestMessage, httpResult);
+            String responseBody = httpResult.getReadObject() instanceof String ? (String) httpResult.getReadObject() : "";
+            emitResponseLog(resHeadderMap, responseBody, getResponseCharset(resHeadderMap));
+        }
+        return new HttpRecordIterator(requestMessage.getRequestId(), uri, httpResult);
+    }
+
+    /**
+     * 要求電文の本文を生成し、HTTPリクエストを送出する。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param httpMethod HTTPメソッド
+     * @param uri 送信先
+     * @param requestMessage 要求電文
+     * @param headerInfo HTTPリクエストのヘッダ情報
+     * @param urlParams URLパラメータ
+     * @param reader 応答の読み込みに使用するreader({@code null}の場合は応答の本文を文字列として読み込む)
+     * @return 送信結果
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合に送出される。
+     */
+    private HttpResult send(MessageSenderSettings settings, HttpRequestMethodEnum httpMethod, String uri,
+            SyncMessage requestMessage, Map<String, List<String>> headerInfo, Map<String, String> urlParams,
+            HttpInputStreamReader reader) throws HttpMessagingInvalidDataFormatException {
+        HttpResult httpResult;
+        if (isStreamRequestBody() && hasRequestBody(httpMethod, requestMessage)) {
+            //本文を文字列に変換せず、送信先のストリームに直接書き出す。
+            httpResult = executeStreaming(settings, uri, httpMethod, requestMessage, headerInfo, urlParams, reader);
+        } else {
+            SimpleDataConvertResult bodyDataConvertResult = mapToBodyString(uri, httpMethod, requestMessage);
+
+            String mimeType = getRequestContentsType(httpMethod, bodyDataConvertResult);
+            HttpProtocolClient httpProtocolClient = createHttpProtocolClient();
+            initHttpProtocolClient(httpProtocolClient, settings, mimeType);
+
+            String charset = "UTF-8";
+            ByteBuffer bodyBytes = null;
+            if (bodyDataConvertResult != null) {
+                charset = bodyDataConvertResult.getCharset().toString();
+                bodyBytes = bodyDataConvertResult.getResultBuffer();
+            }
+
+            // 証跡ログ
+            if (MESSAGING_LOGGER.isInfoEnabled()) {
+                emitRequestLog(requestMessage.getHeaderRecord(), httpMethod, uri,
+                        getBodyText(bodyDataConvertResult), charset);
+            }
+
+            //送信を実行
+            if (reader == null) {
+                httpResult = execute(httpProtocolClient, httpMethod, uri, headerInfo, urlParams, charset,
+                        getBodyText(bodyDataConvertResult));
+            } else {
+                HttpOutputStreamWriter writer = null;
+                if (getExistBodyHttpMethod().contains(httpMethod.toString())) {
+                    //変換結果のバイト列を保持している場合は、文字列を経由せずにそのまま送信する。
+                    writer = bodyBytes != null
+                            ? new ByteHttpStreamWriter(bodyBytes)
+                            : createCharHttpStreamWritter(charset, getBodyText(bodyDataConvertResult));
+                }
+                httpResult = httpProtocolClient.execute(httpMethod, uri, headerInfo, urlParams, writer, reader);
+            }
+        }
+        return httpResult;
+    }
+
+    /**
+     * 変換結果から本文の文字列を取得する。
+     * @param bodyDataConvertResult 変換結果
+     * @return 本文の文字列。変換結果が存在しない場合は空文字列
+     */
+    private static String getBodyText(SimpleDataConvertResult bodyDataConvertResult) {
+        if (bodyDataConvertResult == null) {
+            return "";
+        }
+        return bodyDataConvertResult.getResultText();
+    }
+
+    /**
+     * 指定されたWriterが書き出す内容を本文として、HTTPリクエストを送出する。
+     * <p/>
+     * 本文は証跡ログに出力しない。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param httpMethod HTTPメソッド
+     * @param uri 送信先
+     * @param requestMessage 要求電文
+     * @param headerInfo HTTPリクエストのヘッダ情報
+     * @param urlParams URLパラメータ
+     * @param bodyWriter 本文を書き出すWriter
+     * @param contentType 本文のコンテンツタイプ
+     * @param reader 応答の読み込みに使用するreader({@code null}の場合は{@link #createCharHttpStreamReader()}で生成する)
+     * @return 送信結果
+     */
+    private HttpResult send(MessageSenderSettings settings, HttpRequestMethodEnum httpMethod, String uri,
+            SyncMessage requestMessage, Map<String, List<String>> headerInfo, Map<String, String> urlParams,
+            HttpOutputStreamWriter bodyWriter, String contentType, HttpInputStreamReader reader) {
+        HttpProtocolClient httpProtocolClient = createHttpProtocolClient();
+        initHttpProtocolClient(httpProtocolClient, settings, contentType);
+
+        // 証跡ログ
+        if (MESSAGING_LOGGER.isInfoEnabled()) {
+            emitRequestLog(requestMessage.getHeaderRecord(), httpMethod, uri, "", "UTF-8");
+        }
+        return httpProtocolClient.execute(httpMethod, uri, headerInfo, urlParams, bodyWriter,
+                reader != null ? reader : createCharHttpStreamReader());
+    }
+
+    /**
+     * 要求電文の本文を送信先のストリームに直接書き出して、HTTPリクエストを送出する。
+     * <p/>
+     * 証跡ログには、書き出した本文の先頭から{@link #setRequestLogCaptureSize(int)}で指定したバイト数までを出力する。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param uri 送信先
+     * @param httpMethod HTTPメソッド
+     * @param requestMessage 要求電文
+     * @param headerInfo HTTPリクエストのヘッダ情報
+     * @param urlParams URLパラメータ
+     * @param reader 応答の読み込みに使用するreader({@code null}の場合は{@link #createCharHttpStreamReader()}で生成する)
+     * @return 送信結果
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合に送出される。
+     */
+    private HttpResult executeStreaming(MessageSenderSettings settings, String uri, HttpRequestMethodEnum httpMethod,
+            SyncMessage requestMessage, Map<String, List<String>> headerInfo, Map<String, String> urlParams,
+            HttpInputStreamReader reader) throws HttpMessagingInvalidDataFormatException {
+        Map<String, Object> dataRecord = requestMessage.getDataRecord();
+        String formatName = getRequestFormatName(requestMessage.getRequestId());
+        SimpleDataConvertResult formatInfo;
+        try {
+            formatInfo = SimpleDataConvertUtil.getFormatInfo(formatName);
+        } catch (InvalidDataFormatException e) {
+            throw createInvalidRequestException(uri, requestMessage, e);
+        }
+
+        HttpProtocolClient httpProtocolClient = createHttpProtocolClient();
+        initHttpProtocolClient(httpProtocolClient, settings, getRequestContentsType(httpMethod, formatInfo));
+
+        DataRecordHttpStreamWriter writer = createDataRecordHttpStreamWriter(formatName, dataRecord);
+        try {
+            return httpProtocolClient.execute(httpMethod, uri, headerInfo, urlParams, writer,
+                    reader != null ? reader : createCharHttpStreamReader());
+        } catch (InvalidDataFormatException e) {
+            throw createInvalidRequestException(uri, requestMessage, e);
+        } finally {
+            // 証跡ログ(本文の書き出しが完了している場合は、通信に失敗した場合でも出力する)
+            if (writer.isWritten() && MESSAGING_LOGGER.isInfoEnabled()) {
+                emitRequestLog(requestMessage.getHeaderRecord(), httpMethod, uri,
+                        writer.getCapturedText(formatInfo.getCharset()), formatInfo.getCharset().name());
+            }
+        }
+    }
+
+    /**
+     * 要求電文の本文を送信先のストリームに直接書き出すためのWriterを生成する。
+     * @param formatName フォーマット定義ファイル名
+     * @param dataRecord 書き出し対象のデータレコード
+     * @return 本文を書き出すWriter
+     */
+    protected DataRecordHttpStreamWriter createDataRecordHttpStreamWriter(String formatName, Map<String, Object> dataRecord) {
+        return new DataRecordHttpStreamWriter(formatName, dataRecord, requestLogCaptureSize);
+    }
+
+    /**
+     * 応答の本文を受信したストリームから直接解析するためのReaderを生成する。
+     * @param formatName フォーマット定義ファイル名
+     * @return 本文を解析するReader
+     */
+    protected DataRecordHttpStreamReader createDataRecordHttpStreamReader(String formatName) {
+        return new DataRecordHttpStreamReader(formatName, responseLogCaptureSize);
+    }
+
+    /**
+     * 応答の本文をバイト列として読み込むためのReaderを生成する。
+     * @return 応答の本文を読み込むReader
+     */
+    protected ByteHttpStreamReader createByteHttpStreamReader() {
+        return new ByteHttpStreamReader();
+    }
+
+    /**
+     * 応答の本文に含まれるレコードを1件ずつ解析するためのReaderを生成する。
+     * @param formatName フォーマット定義ファイル名
+     * @return 応答の本文を解析するReader
+     */
+    protected DataRecordIteratorHttpStreamReader createDataRecordIteratorHttpStreamReader(String formatName) {
+        return new DataRecordIteratorHttpStreamReader(formatName);
+    }
+
+    /**
+     * ストリームから直接解析した応答の本文を、変換結果として取得する。
+     * @param uri 接続先
+     * @param requestMessage 要求電文
+     * @param httpResult 送信結果
+     * @param streamReader 応答の本文を解析したReader
+     * @param responseBody 証跡ログ出力用に保持した応答の本文
+     * @return 変換結果。本文が存在しない場合は{@code null}
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合に送出される。
+     */
+    private SimpleDataConvertResult toResponseDataConvertResult(String uri, SyncMessage requestMessage,
+            HttpResult httpResult, DataRecordHttpStreamReader streamReader, String responseBody)
+            throws HttpMessagingInvalidDataFormatException {
+        if (streamReader.getParseError() != null) {
+            String message = "Invalid receive message format. requestId=[" + requestMessage.getRequestId() + "].";
+            throw new HttpMessagingInvalidDataFormatException(
+                    message, uri, httpResult.getResponseCode(), httpResult.getHeaderInfo(), responseBody,
+                    streamReader.getParseError());
+        }
+        return (SimpleDataConvertResult) httpResult.getReadObject();
+    }
+
+    /**
+     * 要求電文に送信すべき本文が存在するか否かを判定する。
+     * @param httpMethod HTTPメソッド
+     * @param requestMessage 要求電文
+     * @return 本文が存在する場合は{@code true}
+     */
+    private boolean hasRequestBody(HttpRequestMethodEnum httpMethod, SyncMessage requestMessage) {
+        return getExistBodyHttpMethod().contains(httpMethod.toString())
+                && requestMessage.getDataRecord().size() > 0;
+    }
+
+    /**
+     * 要求電文の変換に失敗したことを表す例外を生成する。
+     * @param uri 接続先
+     * @param requestMessage 要求電文
+     * @param cause 変換時に発生した例外
+     * @return 生成した例外
+     */
+    private HttpMessagingInvalidDataFormatException createInvalidRequestException(
+            String uri, SyncMessage requestMessage, InvalidDataFormatException cause) {
+        String message = "Invalid request message format. requestId=[" + requestMessage.getRequestId() + "].";
+        return new HttpMessagingInvalidDataFormatException(message, uri, requestMessage.getDataRecord(), cause);
+    }
+
+    /**
+     * 応答キャッシュの対象となるリクエストか否かを判定する。
+     * <p/>
+     * 応答キャッシュが設定されている場合、GETメソッドによるリクエストをキャッシュの対象とする。
+     * @param httpMethod HTTPメソッド
+     * @return キャッシュの対象となる場合は{@code true}
+     */
+    protected boolean isCacheable(HttpRequestMethodEnum httpMethod) {
+        return responseCache != null && httpMethod == HttpRequestMethodEnum.GET;
+    }
+
+    /**
+     * キャッシュのエントリを再検証するための条件付きリクエストヘッダを追加する。
+     * @param headerInfo HTTPリクエストのヘッダ情報
+     * @param cacheEntry キャッシュのエントリ
+     */
+    private void addConditionalHeader(Map<String, List<String>> headerInfo, HttpResponseCache.CacheEntry cacheEntry) {
+        if (cacheEntry.getETag() != null) {
+            headerInfo.put("If-None-Match", Collections.singletonList(cacheEntry.getETag()));
+        }
+        if (cacheEntry.getLastModified() != null) {
+            headerInfo.put("If-Modified-Since", Collections.singletonList(cacheEntry.getLastModified()));
+        }
+    }
+
+    /**
+     * 応答キャッシュを使用した結果を記録する。
+     * <p/>
+     * バックグラウンドでの再取得は呼び出し元の要求ではないため、再検証及びミスとは区別して記録する。
+     * @param refresh バックグラウンドでの再取得の場合は{@code true}
+     * @param revalidated 再検証の結果、エントリを返却した場合は{@code true}
+     */
+    private void recordCacheResult(boolean refresh, boolean revalidated) {
+        if (refresh) {
+            responseCache.recordRefresh();
+        } else if (revalidated) {
+            responseCache.recordRevalidated();
+        } else {
+            responseCache.recordMiss();
+        }
+    }
+
+    /**
+     * キャッシュのエントリを元に応答電文を生成する。
+     * @param requestMessage 要求電文
+     * @param cacheEntry キャッシュのエントリ
+     * @return 応答電文
+     */
+    private SyncMessage createResponseMessage(SyncMessage requestMessage, HttpResponseCache.CacheEntry cacheEntry) {
+        SyncMessage responseMessage = new SyncMessage(requestMessage.getRequestId());
+        responseMessage.setHeaderRecord(cacheEntry.getHeaderRecord());
+        responseMessage.addDataRecord(cacheEntry.getDataRecord());
+        return responseMessage;
+    }
+
+    /**
+     * キャッシュのエントリの再検証をバックグラウンドで行う。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestMessage 要求電文
+     * @param cacheEntry キャッシュのエントリ
+     */
+    private void refreshInBackground(final MessageSenderSettings settings, SyncMessage requestMessage,
+            HttpResponseCache.CacheEntry cacheEntry) {
+        //呼び出し元に返却した要求電文とは独立させるため、複製したものを送信する。
+        final SyncMessage refreshMessage = new SyncMessage(requestMessage.getRequestId());
+        refreshMessage.setHeaderRecord(new HashMap<String, Object>(requestMessage.getHeaderRecord()));
+        for (Map<String, Object> dataRecord : requestMessage.getDataRecords()) {
+            refreshMessage.addDataRecord(new HashMap<String, Object>(dataRecord));
+        }
+        responseCache.refreshInBackground(cacheEntry, new Runnable() {
+            public void run() {
+                try {
+                    sendSync(settings, refreshMessage, true, null, null, null);
+                } catch (RuntimeException e) {
+                    LOGGER.logWarn("failed to refresh the response cache. requestId=[" + refreshMessage.getRequestId() + "]", e);
+                }
+            }
+        });
+    }
+
     /**
      * 要求電文に、共通プロトコルヘッダ相当部分及びフレームワーク制御ヘッダ部で使用する要素を追加する。
      * @param httpMethod HTTPメソッド
@@ -194,18 +855,34 @@ public class HttpMessagingClient implements MessageSenderClient {
      * @param mimeType 送信するデータの種別
      */
     protected void initHttpProtocolClient(HttpProtocolClient argHttpProtocolClient, MessageSenderSettings settings, String mimeType) {
-        if (settings.getSslContextSettings() != null) {
-            SSLContext sslContext = settings.getSslContextSettings().getSSLContext();
-            if (sslContext != null) {
-                argHttpProtocolClient.setSslContext(settings.getSslContextSettings().getSSLContext());
-            }
+        HttpSendPlan sendPlan = getSendPlan(settings);
+        if (sendPlan.getSslContext() != null) {
+            argHttpProtocolClient.setSslContext(sendPlan.getSslContext());
         }
         
-        if (settings.getHttpProxyHost() != null) {
-            argHttpProtocolClient.setProxyInfo(settings.getHttpProxyHost(), settings.getHttpProxyPort());
+        if (sendPlan.getProxyHost() != null) {
+            argHttpProtocolClient.setProxyInfo(sendPlan.getProxyHost(), sendPlan.getProxyPort());
+            if (argHttpProtocolClient instanceof HttpProtocolBasicClient) {
+                //解決済みのプロキシを使い回す。
+                ((HttpProtocolBasicClient) argHttpProtocolClient).setProxy(sendPlan.getProxy());
+            }
+        }
+        if (argHttpProtocolClient instanceof HttpProtocolBasicClient) {
+            HttpProtocolBasicClient basicClient = (HttpProtocolBasicClient) argHttpProtocolClient;
+            basicClient.setStreamingMode(sendPlan.getStreamingMode() != null ? sendPlan.getStreamingMode() : streamingMode);
+            basicClient.setChunkLength(sendPlan.getChunkLength());
+            basicClient.setExpectContinueThreshold(sendPlan.getExpectContinueThreshold() != null
+                    ? sendPlan.getExpectContinueThreshold() : expectContinueThreshold);
+            basicClient.setExpectContinueTimeout(sendPlan.getExpectContinueTimeout() != null
+                    ? sendPlan.getExpectContinueTimeout() : expectContinueTimeout);
+            basicClient.setAcceptCompression(sendPlan.getAcceptCompression() != null
+                    ? sendPlan.getAcceptCompression() : acceptCompression);
+            basicClient.setRequestCompressionThreshold(sendPlan.getRequestCompressionThreshold() != null
+                    ? sendPlan.getRequestCompressionThreshold() : requestCompressionThreshold);
+            basicClient.setCompressionStatistics(compressionStatistics);
         }
-        argHttpProtocolClient.setConnectTimeout(settings.getHttpConnectTimeout());
-        argHttpProtocolClient.setReadTimeout(settings.getHttpReadTimeout());
+        argHttpProtocolClient.setConnectTimeout(sendPlan.getConnectTimeout());
+        argHttpProtocolClient.setReadTimeout(sendPlan.getReadTimeout());
         argHttpProtocolClient.setContentType(mimeType);
         argHttpProtocolClient.setAccept(getAccept());
         argHttpProtocolClient.setQueryStringEncoding(getQueryStringEncoding());
@@ -284,12 +961,11 @@ public class HttpMessagingClient implements MessageSenderClient {
             try {
                 if (dataRecord.size() > 0) {
                     //電文フォーマット変換対象のデータが存在していれば、変換を行う。
-                    String formatName = String.format(getRequestMessageFormatFileNamePattern(), requestMessage.getRequestId());
+                    String formatName = getRequestFormatName(requestMessage.getRequestId());
                     ret = SimpleDataConvertUtil.buildData(formatName, dataRecord);
                 }
             } catch (InvalidDataFormatException e) {
-                String message = "Invalid request message format. requestId=[" + requestMessage.getRequestId() + "].";
-                throw new HttpMessagingInvalidDataFormatException(message, uri, dataRecord, e);
+                throw createInvalidRequestException(uri, requestMessage, e);
             }
         }
         return ret;
@@ -312,8 +988,7 @@ public class HttpMessagingClient implements MessageSenderClient {
                 charset = requestBodyDataConvertResult.getCharset();
             }
         }
-        contentType = String.format("%s;charset=%s", contentType, charset.name());
-        return contentType;
+        return contentType + ";charset=" + charset.name();
     }
 
     /**
@@ -365,20 +1040,22 @@ public class HttpMessagingClient implements MessageSenderClient {
      * @return OutputStreamを読み取り結果を返却させるためのIF
      */
     protected HttpInputStreamReader createCharHttpStreamReader() {
-        return new CharHttpStreamReader();
-        
+        CharHttpStreamReader reader = new CharHttpStreamReader();
+        reader.setMaxBodyLength(responseBodyLimit);
+        return reader;
     }
 
     /**
      * HTTPリクエストを発行時の送信内容を保持するオブジェクトを生成する。
+     * <p/>
+     * 本文の長さに応じて圧縮を行うか否かを判定できるよう、エンコード後の長さを取得できるWriterを生成する。
+     * 生成するWriterはストリーミングモードでは送信されず、バッファリングして送信される。
      * @param charset 文字コード
      * @param bodyText 送信時の本文
      * @return 送信内容を表すオブジェクト
      */
     protected HttpOutputStreamWriter createCharHttpStreamWritter(String charset, String bodyText) {
-        CharHttpStreamWritter writer = new CharHttpStreamWritter(charset);
-        writer.append(bodyText);
-        return writer;
+        return new TextBodyHttpStreamWriter(charset, bodyText);
     }
     
     /**
@@ -415,13 +1092,29 @@ public class HttpMessagingClient implements MessageSenderClient {
      */
     protected SimpleDataConvertResult bodyStringToMap(String uri, HttpRequestMethodEnum httpMethod, SyncMessage requestMessage, HttpResult httpResult) 
             throws HttpMessagingInvalidDataFormatException {
+        return bodyStringToMap(uri, requestMessage, httpResult, null);
+    }
+
+    /**
+     * 返信のボディ部分のうち指定された項目を解析し、応答電文に設定するデータを生成する。
+     * @param uri 接続先
+     * @param requestMessage 要求電文
+     * @param httpResult 送信結果
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     * @return 解析後のMap
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合に送出される。
+     */
+    private SimpleDataConvertResult bodyStringToMap(String uri, SyncMessage requestMessage, HttpResult httpResult,
+            Collection<String> fieldNames) throws HttpMessagingInvalidDataFormatException {
         SimpleDataConvertResult ret = null;
         String data = (String) httpResult.getReadObject();
         try {
             if (!StringUtil.isNullOrEmpty(data)) {
                 //電文フォーマット変換対象のデータが存在していれば、変換を行う。
-                String formatName = String.format(getResponseMessageFormatFileNamePattern(), requestMessage.getRequestId());
-                ret = SimpleDataConvertUtil.parseData(formatName, data);
+                String formatName = getResponseFormatName(requestMessage.getRequestId());
+                ret = compactResponseRecord
+                        ? SimpleDataConvertUtil.parseCompactData(formatName, data, fieldNames)
+                        : SimpleDataConvertUtil.parseData(formatName, data, fieldNames);
             }
         } catch (InvalidDataFormatException e) {
             String message = "Invalid receive message format. requestId=[" + requestMessage.getRequestId() + "].";
@@ -431,6 +1124,112 @@ public class HttpMessagingClient implements MessageSenderClient {
         return ret;
     }
 
+    /**
+     * 送信設定から導出した送信計画を取得する。
+     * <p/>
+     * 送信計画はリクエストID単位にキャッシュされ、以降の送信では設定の再解決を行わない。
+     * 設定を変更した場合は、{@link #invalidateSendPlan(String)}又は{@link #clearSendPlans()}で破棄すること。
+     * キャッシュしない場合も、送信中は送信の開始時に生成した送信計画を返却する。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @return 送信計画
+     * @throws MessagingException サポートしないHTTPメソッドが設定されている場合
+     */
+    protected HttpSendPlan getSendPlan(MessageSenderSettings settings) throws MessagingException {
+        if (!sendPlanCacheEnabled) {
+            HttpSendPlan current = currentSendPlan.get();
+            if (current != null && current.getRequestId().equals(settings.getSettingRequestId())) {
+                return current;
+            }
+            return createSendPlan(settings);
+        }
+        HttpSendPlan sendPlan = sendPlans.get(settings.getSettingRequestId());
+        if (sendPlan == null) {
+            sendPlan = createSendPlan(settings);
+            HttpSendPlan current = sendPlans.putIfAbsent(settings.getSettingRequestId(), sendPlan);
+            if (current != null) {
+                sendPlan = current;
+            }
+        }
+        return sendPlan;
+    }
+
+    /**
+     * 送信計画をキャッシュしない場合に、送信中の送信計画として保持する。
+     * <p/>
+     * 既に送信中の送信計画を保持している場合は、呼び出し元の送信の送信計画を引き継ぐため何もしない。
+     * @param sendPlan 送信計画
+     * @return 保持した場合は{@code true}
+     */
+    private boolean bindSendPlan(HttpSendPlan sendPlan) {
+        if (sendPlanCacheEnabled || currentSendPlan.get() != null) {
+            return false;
+        }
+        currentSendPlan.set(sendPlan);
+        return true;
+    }
+
+    /**
+     * 送信中の送信計画を破棄する。
+     * @param bound {@link #bindSendPlan(HttpSendPlan)}で保持した場合は{@code true}
+     */
+    private void unbindSendPlan(boolean bound) {
+        if (bound) {
+            currentSendPlan.remove();
+        }
+    }
+
+    /**
+     * 送信計画を生成する。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @return 送信計画
+     * @throws MessagingException サポートしないHTTPメソッドが設定されている場合
+     */
+    protected HttpSendPlan createSendPlan(MessageSenderSettings settings) throws MessagingException {
+        return new HttpSendPlan(settings,
+                getRequestMessageFormatFileNamePattern(), getResponseMessageFormatFileNamePattern());
+    }
+
+    /**
+     * キャッシュしている送信計画を破棄する。
+     * @param requestId リクエストID
+     */
+    public void invalidateSendPlan(String requestId) {
+        sendPlans.remove(requestId);
+    }
+
+    /**
+     * キャッシュしている全ての送信計画を破棄する。
+     */
+    public void clearSendPlans() {
+        sendPlans.clear();
+    }
+
+    /**
+     * 要求電文のフォーマット定義ファイル名を取得する。
+     * @param requestId リクエストID
+     * @return 要求電文のフォーマット定義ファイル名
+     */
+    private String getRequestFormatName(String requestId) {
+        HttpSendPlan sendPlan = sendPlans.get(requestId);
+        if (sendPlan != null) {
+            return sendPlan.getRequestFormatName();
+        }
+        return String.format(getRequestMessageFormatFileNamePattern(), requestId);
+    }
+
+    /**
+     * 応答電文のフォーマット定義ファイル名を取得する。
+     * @param requestId リクエストID
+     * @return 応答電文のフォーマット定義ファイル名
+     */
+    private String getResponseFormatName(String requestId) {
+        HttpSendPlan sendPlan = sendPlans.get(requestId);
+        if (sendPlan != null) {
+            return sendPlan.getResponseFormatName();
+        }
+        return String.format(getResponseMessageFormatFileNamePattern(), requestId);
+    }
+
     /**
      * 応答電文のデータフォーマット定義ファイル名パターンを取得する。
      * @return 応答電文のデータフォーマット定義ファイル名パターン
@@ -487,6 +1286,240 @@ public class HttpMessagingClient implements MessageSenderClient {
         this.queryStringEncoding = queryStringEncoding;
     }
 
+    /**
+     * 送信計画をキャッシュするか否かを設定する。
+     * <p/>
+     * デフォルトは{@code true}。{@code false}を設定した場合、送信の都度設定を解決する。
+     * @param sendPlanCacheEnabled 送信計画をキャッシュする場合は{@code true}
+     */
+    public void setSendPlanCacheEnabled(boolean sendPlanCacheEnabled) {
+        this.sendPlanCacheEnabled = sendPlanCacheEnabled;
+        if (!sendPlanCacheEnabled) {
+            sendPlans.clear();
+        }
+    }
+
+    /**
+     * 要求電文の本文を送信先のストリームに直接書き出すか否かを取得する。
+     * @return 直接書き出す場合は{@code true}
+     */
+    public boolean isStreamRequestBody() {
+        return streamRequestBody;
+    }
+
+    /**
+     * 要求電文の本文を送信先のストリームに直接書き出すか否かを設定する。
+     * <p/>
+     * デフォルトは{@code false}。{@code true}を設定した場合、本文を文字列に変換せずに
+     * フォーマット定義に従って送信先のストリームに直接書き出す。
+     * この場合、{@link #mapToBodyString(String, HttpRequestMethodEnum, SyncMessage)}及び
+     * {@link #execute(HttpProtocolClient, HttpRequestMethodEnum, String, Map, Map, String, String)}は呼び出されない。
+     * @param streamRequestBody 直接書き出す場合は{@code true}
+     */
+    public void setStreamRequestBody(boolean streamRequestBody) {
+        this.streamRequestBody = streamRequestBody;
+    }
+
+    /**
+     * 本文を直接書き出す場合に、証跡ログ出力用に保持する本文の最大バイト数を設定する。
+     * <p/>
+     * デフォルトは64KB。超過した部分は証跡ログに出力されない。
+     * @param requestLogCaptureSize 証跡ログ出力用に保持する本文の最大バイト数
+     */
+    public void setRequestLogCaptureSize(int requestLogCaptureSize) {
+        this.requestLogCaptureSize = requestLogCaptureSize;
+    }
+
+    /**
+     * 応答電文の本文を受信したストリームから直接解析するか否かを取得する。
+     * @return 直接解析する場合は{@code true}
+     */
+    public boolean isStreamResponseBody() {
+        return streamResponseBody;
+    }
+
+    /**
+     * 応答電文の本文を受信したストリームから直接解析するか否かを設定する。
+     * <p/>
+     * デフォルトは{@code false}。{@code true}を設定した場合、本文を文字列に変換せずに
+     * フォーマット定義に従って受信したストリームから直接解析する。
+     * この場合、{@link #bodyStringToMap(String, HttpRequestMethodEnum, SyncMessage, HttpResult)}及び
+     * {@link #execute(HttpProtocolClient, HttpRequestMethodEnum, String, Map, Map, String, String)}は呼び出されない。
+     * @param streamResponseBody 直接解析する場合は{@code true}
+     */
+    public void setStreamResponseBody(boolean streamResponseBody) {
+        this.streamResponseBody = streamResponseBody;
+    }
+
+    /**
+     * 本文を直接解析する場合に、証跡ログ出力用に保持する本文の最大バイト数を設定する。
+     * <p/>
+     * デフォルトは64KB。超過した部分は証跡ログに出力されない。
+     * @param responseLogCaptureSize 証跡ログ出力用に保持する本文の最大バイト数
+     */
+    public void setResponseLogCaptureSize(int responseLogCaptureSize) {
+        this.responseLogCaptureSize = responseLogCaptureSize;
+    }
+
+    /**
+     * ダウンロードする本文の最大バイト数を設定する。
+     * <p/>
+     * 超過した場合、ダウンロードは中断され{@link nablarch.fw.messaging.realtime.http.exception.HttpMessagingException}が送出される。
+     * デフォルトは0(制限しない)。
+     * @param downloadSizeLimit ダウンロードする本文の最大バイト数
+     */
+    public void setDownloadSizeLimit(long downloadSizeLimit) {
+        this.downloadSizeLimit = downloadSizeLimit;
+    }
+
+    /**
+     * 文字列として読み取る応答の本文の最大バイト数を設定する。
+     * <p/>
+     * {@link #createCharHttpStreamReader()}で生成するReaderに設定する。
+     * 超過した場合は{@link nablarch.fw.messaging.realtime.http.exception.HttpMessagingException}が送出される。
+     * デフォルトは0(制限しない)。
+     * @param responseBodyLimit 文字列として読み取る応答の本文の最大バイト数
+     * @see CharHttpStreamReader#setMaxBodyLength(long)
+     */
+    public void setResponseBodyLimit(long responseBodyLimit) {
+        this.responseBodyLimit = responseBodyLimit;
+    }
+
+    /**
+     * 本文の送信方法を設定する。
+     * <p/>
+     * 送信先ごとの設定({@value HttpSendPlan#STREAMING_MODE_KEY})が存在しない場合に使用する。
+     * デフォルトは{@link HttpStreamingMode#KNOWN_LENGTH}。
+     * @param streamingMode 本文の送信方法
+     */
+    public void setStreamingMode(HttpStreamingMode streamingMode) {
+        this.streamingMode = streamingMode;
+    }
+
+    /**
+     * 「Expect: 100-continue」による確認を行う本文の長さの閾値を設定する。
+     * <p/>
+     * 送信先ごとの設定({@value HttpSendPlan#EXPECT_CONTINUE_THRESHOLD_KEY})が存在しない場合に使用する。
+     * デフォルトは-1(確認しない)。詳細は{@link HttpProtocolBasicClient#setExpectContinueThreshold(long)}を参照。
+     * @param expectContinueThreshold 確認を行う本文の長さの閾値
+     */
+    public void setExpectContinueThreshold(long expectContinueThreshold) {
+        this.expectContinueThreshold = expectContinueThreshold;
+    }
+
+    /**
+     * 「Expect: 100-continue」による確認で中間応答を待つ時間(ミリ秒)を設定する。
+     * <p/>
+     * 送信先ごとの設定({@value HttpSendPlan#EXPECT_CONTINUE_TIMEOUT_KEY})が存在しない場合に使用する。
+     * デフォルトは{@value HttpProtocolBasicClient#DEFAULT_EXPECT_CONTINUE_TIMEOUT}。
+     * 詳細は{@link HttpProtocolBasicClient#setExpectContinueTimeout(int)}を参照。
+     * @param expectContinueTimeout 中間応答を待つ時間(ミリ秒)
+     */
+    public void setExpectContinueTimeout(int expectContinueTimeout) {
+        this.expectContinueTimeout = expectContinueTimeout;
+    }
+
+    /**
+     * 圧縮された応答を受け入れるか否かを設定する。
+     * <p/>
+     * 送信先ごとの設定({@value HttpSendPlan#ACCEPT_COMPRESSION_KEY})が存在しない場合に使用する。
+     * デフォルトは{@code false}。詳細は{@link HttpProtocolBasicClient#setAcceptCompression(boolean)}を参照。
+     * @param acceptCompression 圧縮された応答を受け入れる場合は{@code true}
+     */
+    public void setAcceptCompression(boolean acceptCompression) {
+        this.acceptCompression = acceptCompression;
+    }
+
+    /**
+     * 要求の本文をgzip形式で圧縮する長さの閾値を設定する。
+     * <p/>
+     * 送信先ごとの設定({@value HttpSendPlan#REQUEST_COMPRESSION_THRESHOLD_KEY})が存在しない場合に使用する。
+     * デフォルトは-1(圧縮しない)。詳細は{@link HttpProtocolBasicClient#setRequestCompressionThreshold(long)}を参照。
+     * @param requestCompressionThreshold 圧縮する本文の長さの閾値
+     */
+    public void setRequestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /**
+     * 圧縮及び伸長の統計情報の記録先を取得する。
+     * @return 統計情報の記録先
+     */
+    public HttpCompressionStatistics getCompressionStatistics() {
+        return compressionStatistics;
+    }
+
+    /**
+     * 圧縮及び伸長の統計情報の記録先を設定する。
+     * <p/>
+     * 設定した場合、送信先ごとに圧縮率及び圧縮・伸長に要した時間を記録する。
+     * @param compressionStatistics 統計情報の記録先
+     */
+    public void setCompressionStatistics(HttpCompressionStatistics compressionStatistics) {
+        this.compressionStatistics = compressionStatistics;
+    }
+
+    /**
+     * 応答の本文をデータレコードの参照時に解析するか否かを取得する。
+     * @return データレコードの参照時に解析する場合は{@code true}
+     */
+    public boolean isLazyResponseParsing() {
+        return lazyResponseParsing;
+    }
+
+    /**
+     * 応答の本文をデータレコードの参照時に解析するか否かを設定する。
+     * <p/>
+     * {@code true}を設定した場合、{@link #sendSync(MessageSenderSettings, SyncMessage)}は
+     * 応答の本文をバイト列のまま保持した{@link LazySyncMessage}を返却し、
+     * データレコードが初めて参照された時点で解析を行う。
+     * ステータスコードやヘッダのみを参照する場合は、本文の解析が行われない。
+     * 電文フォーマット変換に失敗した場合は、データレコードの参照時に例外が送出される。
+     * <p/>
+     * 応答キャッシュの対象となるリクエストには適用しない。
+     * また、本設定は{@link #setStreamResponseBody(boolean)}より優先される。
+     * <p/>
+     * デフォルトは{@code false}。
+     * @param lazyResponseParsing データレコードの参照時に解析する場合は{@code true}
+     */
+    public void setLazyResponseParsing(boolean lazyResponseParsing) {
+        this.lazyResponseParsing = lazyResponseParsing;
+    }
+
+    /**
+     * 応答の本文の解析結果を{@link CompactRecordMap}とするか否かを設定する。
+     * <p/>
+     * {@code true}を設定した場合、応答電文のデータレコードは{@link nablarch.core.dataformat.DataRecord}ではなく、
+     * 同じフォーマット定義の解析結果と項目名の並びを共有する{@link CompactRecordMap}となる
+     * ({@link SimpleDataConvertUtil#parseCompactData(String, CharSequence, Collection)})。
+     * 応答電文を大量に保持する場合にメモリ使用量を抑えることができるが、解析結果の複製を行うため解析時の負荷は増加する。
+     * データレコードを{@link nablarch.core.dataformat.DataRecord}として参照している場合は設定しないこと。
+     * <p/>
+     * デフォルトは{@code false}。
+     * @param compactResponseRecord 解析結果を{@link CompactRecordMap}とする場合は{@code true}
+     */
+    public void setCompactResponseRecord(boolean compactResponseRecord) {
+        this.compactResponseRecord = compactResponseRecord;
+    }
+
+    /**
+     * 応答キャッシュを取得する。
+     * @return 応答キャッシュ
+     */
+    public HttpResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * 応答キャッシュを設定する。
+     * <p/>
+     * 設定した場合、GETメソッドの応答電文はキャッシュされ、以降の同一リクエストではキャッシュの内容が返却される。
+     * @param responseCache 応答キャッシュ
+     */
+    public void setResponseCache(HttpResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
     /**
      * メッセージングの証跡ログを出力する。
      * @param requestHeader 要求ヘッダ情報
@@ -549,14 +1582,12 @@ public class HttpMessagingClient implements MessageSenderClient {
      * @return Content-Typeヘッダに設定された文字セット、取得できない場合はデフォルト文字セット
      */
     private String getResponseCharset(Map<String, Object> resHeadderMap) {
-        Charset charset = Charset.defaultCharset();
         String contentTypeHeader = StringUtil.nullToEmpty((String) resHeadderMap.get("Content-Type"));
-        Matcher m = CHARSET_PTN.matcher(contentTypeHeader);
-        if (m.find()) {
-            charset = Charset.forName(m.group(1));
+        int index = contentTypeHeader.lastIndexOf(CHARSET_PARAM);
+        if (index >= 0 && index + CHARSET_PARAM.length() < contentTypeHeader.length()) {
+            return Charset.forName(contentTypeHeader.substring(index + CHARSET_PARAM.length())).toString();
         }
-        
-        return charset.toString();
+        return Charset.defaultCharset().toString();
     }
     
 }
@@ -1,18 +1,27 @@
 package nablarch.fw.messaging.realtime.http.client;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.net.Authenticator;
+import java.net.HttpRetryException;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
+import java.net.ProtocolException;
 import java.net.Proxy;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -26,6 +35,9 @@ import nablarch.fw.messaging.realtime.http.exception.HttpMessagingTimeoutExcepti
 import nablarch.fw.messaging.realtime.http.streamio.CharHttpStreamReader;
 import nablarch.fw.messaging.realtime.http.streamio.HttpInputStreamReader;
 import nablarch.fw.messaging.realtime.http.streamio.HttpOutputStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.ReplayableHttpOutputStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.SizedHttpOutputStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.StreamRetainingHttpInputStreamReader;
 
 /**
  * Http接続用クライアント。
@@ -34,6 +46,13 @@ import nablarch.fw.messaging.realtime.http.streamio.HttpOutputStreamWriter;
  */
 @Published(tag = "architect")
 public class HttpProtocolBasicClient implements HttpProtocolClient {
+
+    /** 「Expect: 100-continue」による確認で中間応答を待つ時間(ミリ秒)のデフォルト値 */
+    public static final int DEFAULT_EXPECT_CONTINUE_TIMEOUT = 1000;
+
+    /** 中間応答を待つ時間が経過した接続を切断するタイマー */
+    private static final Timer EXPECT_CONTINUE_TIMER = new Timer("http-expect-continue-timer", true);
+
     /** HTTPSで通信する際に使用する情報 */
     private SSLContext sslContext;
     /** 接続タイムアウト */
@@ -44,12 +63,30 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
     private String proxyUrl;
     /** プロキシポート */
     private int proxyPort;
+    /** プロキシ(設定されている場合はプロキシURL及びポートより優先する) */
+    private Proxy proxy;
     /** コンテンツタイプ */
     private String contentType;
     /** 受け入れるデータ種別 */
     private String accept;
     /** クエリストリングをエンコードする際に使用するエンコーディング*/
     private String queryStringEncoding = "UTF-8";
+    /** 本文の送信方法 */
+    private HttpStreamingMode streamingMode = HttpStreamingMode.KNOWN_LENGTH;
+    /** チャンク形式で送信する際のチャンクサイズ(0以下の場合はデフォルト) */
+    private int chunkLength = 0;
+    /** 「Expect: 100-continue」による確認を行う本文の長さの閾値(負の場合は確認しない) */
+    private long expectContinueThreshold = -1;
+    /** 「Expect: 100-continue」による確認で中間応答を待つ時間(0以下の場合は個別に設けない) */
+    private int expectContinueTimeout = DEFAULT_EXPECT_CONTINUE_TIMEOUT;
+    /** 圧縮された応答を受け入れるか否か */
+    private boolean acceptCompression = false;
+    /** 要求の本文を圧縮する長さの閾値(負の場合は圧縮しない) */
+    private long requestCompressionThreshold = -1;
+    /** 圧縮及び伸長の統計情報の記録先(記録しない場合は{@code null}) */
+    private HttpCompressionStatistics compressionStatistics;
+    /** ストリーミングモードでの送信後に、バッファリングして再送する本文の長さの上限 */
+    private long maxReplayLength = 1024 * 1024;
 
     /**
      * コンストラクタ
@@ -66,6 +103,17 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
     public void setProxyInfo(String url, int port) {
         this.proxyUrl = url;
         this.proxyPort = port;
+        this.proxy = null;
+    }
+
+    /**
+     * プロキシを設定する。
+     * <p/>
+     * 設定したプロキシは、{@link #setProxyInfo(String, int)}で設定した内容より優先して使用する。
+     * @param proxy プロキシ
+     */
+    public void setProxy(Proxy proxy) {
+        this.proxy = proxy;
     }
 
     /**
@@ -116,8 +164,128 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
         this.queryStringEncoding = queryStringEncoding;
     }
 
+    /**
+     * 本文の送信方法を設定する。
+     * <p/>
+     * デフォルトは{@link HttpStreamingMode#KNOWN_LENGTH}。
+     * @param streamingMode 本文の送信方法
+     */
+    public void setStreamingMode(HttpStreamingMode streamingMode) {
+        this.streamingMode = streamingMode;
+    }
+
+    /**
+     * チャンク形式で送信する際のチャンクサイズを設定する。
+     * <p/>
+     * 0以下の場合は、HttpURLConnectionのデフォルトのチャンクサイズを使用する。
+     * @param chunkLength チャンクサイズ
+     */
+    public void setChunkLength(int chunkLength) {
+        this.chunkLength = chunkLength;
+    }
+
+    /**
+     * 「Expect: 100-continue」による確認を行う本文の長さの閾値を設定する。
+     * <p/>
+     * ストリーミングモードで送信する本文の長さが閾値以上の場合、
+     * 本文の送信前にサーバの中間応答(100 Continue)を待ち、最終応答(認証エラーや413等)が返された場合は本文を送信しない。
+     * ストリーミングモードで送信しない場合は確認を行わない。
+     * 本文の長さが不明な(Writerが{@link SizedHttpOutputStreamWriter}でない)場合は、閾値が0の場合に限り確認を行う。
+     * <p/>
+     * 中間応答を待つ時間({@link #setExpectContinueTimeout(int)})内に応答がない場合は、
+     * 「Expect」ヘッダを付与せずに一度だけ再送する。
+     * このため、Writerが{@link ReplayableHttpOutputStreamWriter}でない場合は確認を行わない。
+     * <p/>
+     * デフォルトは-1(確認しない)。
+     * @param expectContinueThreshold 確認を行う本文の長さの閾値
+     */
+    public void setExpectContinueThreshold(long expectContinueThreshold) {
+        this.expectContinueThreshold = expectContinueThreshold;
+    }
+
+    /**
+     * 「Expect: 100-continue」による確認で中間応答を待つ時間(ミリ秒)を設定する。
+     * <p/>
+     * 設定した時間内に中間応答が返されない場合は、接続を切断して「Expect」ヘッダを付与せずに再送する。
+     * 読み取りタイムアウトの方が短い場合は、読み取りタイムアウトまでしか待たない。
+     * <p/>
+     * 0以下の場合は個別の待ち時間を設けず、読み取りタイムアウトまで待つ。
+     * この場合、読み取りタイムアウトも設定されていなければ、中間応答を5秒待った後に本文を送信する。
+     * <p/>
+     * デフォルトは{@value #DEFAULT_EXPECT_CONTINUE_TIMEOUT}。
+     * @param expectContinueTimeout 中間応答を待つ時間(ミリ秒)
+     */
+    public void setExpectContinueTimeout(int expectContinueTimeout) {
+        this.expectContinueTimeout = expectContinueTimeout;
+    }
+
+    /**
+     * 圧縮された応答を受け入れるか否かを設定する。
+     * <p/>
+     * {@code true}を設定した場合、「Accept-Encoding: gzip, deflate」ヘッダを送信し
+     * (ヘッダ情報に既にAccept-Encodingが含まれる場合を除く)、
+     * 圧縮された応答の本文はReaderに渡す前にストリームのまま伸長する。
+     * この場合、Readerに渡すヘッダ情報からはContent-Encoding及びContent-Lengthヘッダを除く。
+     * <p/>
+     * デフォルトは{@code false}。
+     * @param acceptCompression 圧縮された応答を受け入れる場合は{@code true}
+     */
+    public void setAcceptCompression(boolean acceptCompression) {
+        this.acceptCompression = acceptCompression;
+    }
+
+    /**
+     * 要求の本文をgzip形式で圧縮する長さの閾値を設定する。
+     * <p/>
+     * 本文の長さが閾値以上の場合、本文を圧縮し「Content-Encoding: gzip」ヘッダを送信する。
+     * 本文の長さが不明な(Writerが{@link SizedHttpOutputStreamWriter}でなく、{@link HttpMessagingClient}が
+     * 生成したものでもない)場合は、閾値が0の場合に限り圧縮する。
+     * 圧縮後の長さは事前に判明しないため、本文の送信方法が{@link HttpStreamingMode#KNOWN_LENGTH}の場合は
+     * バッファリングして送信する。
+     * <p/>
+     * デフォルトは-1(圧縮しない)。
+     * @param requestCompressionThreshold 圧縮する本文の長さの閾値
+     */
+    public void setRequestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /**
+     * 圧縮及び伸長の統計情報の記録先を設定する。
+     * @param compressionStatistics 統計情報の記録先
+     */
+    public void setCompressionStatistics(HttpCompressionStatistics compressionStatistics) {
+        this.compressionStatistics = compressionStatistics;
+    }
+
+    /**
+     * ストリーミングモードでの送信後に、認証やリダイレクトのためにバッファリングして再送する本文の長さの上限を設定する。
+     * <p/>
+     * 再送時は本文全体をメモリ上にバッファリングするため、上限を超える本文は再送しない。
+     * 本文の長さが不明な(Writerが{@link SizedHttpOutputStreamWriter}でない)場合も再送しない。
+     * <p/>
+     * デフォルトは1048576(1MB)。
+     * @param maxReplayLength 再送する本文の長さの上限(バイト数)
+     */
+    public void setMaxReplayLength(long maxReplayLength) {
+        this.maxReplayLength = maxReplayLength;
+    }
+
     /**
      * HTTP通信を行う。
+     * <p/>
+     * ストリーミングモードでは、HttpURLConnectionは認証やリダイレクトのための再送を行わない。
+     * このため、再送により成功する見込みがある場合(リダイレクトに従う設定で応答がリダイレクトである場合、
+     * 又は{@link Authenticator}が設定されており応答が認証エラーである場合)に限り、
+     * Writerが{@link ReplayableHttpOutputStreamWriter}であり本文の長さが再送の上限以下であれば、
+     * バッファリングして一度だけ再送する。
+     * それ以外の場合は再送せず、再送が必要となった応答のステータスコードを通信結果として返却する。
+     * <p/>
+     * 「Expect: 100-continue」による確認で、中間応答を待つ時間内にサーバが中間応答を返さなかった場合は、
+     * 「Expect」ヘッダを付与せずに一度だけ再送する。
+     * <p/>
+     * Readerが{@link StreamRetainingHttpInputStreamReader}であり、読み取り結果がストリームを保持している場合は、
+     * 応答のストリーム及び接続をクローズしない。
      * @param httpMethod HTTPメソッド
      * @param url 接続先
      * @param headerInfo HttpHeadderに渡す情報
@@ -130,6 +298,58 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
     public HttpResult execute(HttpRequestMethodEnum httpMethod, String url, Map<String, List<String>> headerInfo,
             Map<String, String> urlParams, HttpOutputStreamWriter writer, HttpInputStreamReader reader)
                     throws HttpMessagingException {
+        try {
+            return executeStreaming(httpMethod, url, headerInfo, urlParams, writer, reader, true);
+        } catch (ExpectContinueTimeoutException e) {
+            //サーバが中間応答を返さなかったため、「Expect」ヘッダを付与せずに再送する。
+            return executeStreaming(httpMethod, url, headerInfo, urlParams, writer, reader, false);
+        }
+    }
+
+    /**
+     * 設定された送信方法でHTTP通信を行い、ストリーミングモードでの送信後に再送が必要となった場合は
+     * バッファリングして一度だけ再送する。
+     * @param httpMethod HTTPメソッド
+     * @param url 接続先
+     * @param headerInfo HttpHeadderに渡す情報
+     * @param urlParams URLパラメータ。送信するパラメータがない場合は、null可。
+     * @param writer StreamWritter。送信するBody部が存在しない場合は、null可。
+     * @param reader 応答の読み込みに使用するreader
+     * @param expectContinueEnabled 「Expect: 100-continue」による確認を行う場合は{@code true}
+     * @return レスポンスコード
+     * @throws HttpMessagingException 何らかの理由(接続タイムアウト、ソケットの予期せぬclose等)で通信が失敗した場合に送出される。
+     * @throws ExpectContinueTimeoutException 中間応答を待つ時間内に中間応答が返されなかった場合に送出される。
+     */
+    private HttpResult executeStreaming(HttpRequestMethodEnum httpMethod, String url,
+            Map<String, List<String>> headerInfo, Map<String, String> urlParams, HttpOutputStreamWriter writer,
+            HttpInputStreamReader reader, boolean expectContinueEnabled)
+                    throws HttpMessagingException, ExpectContinueTimeoutException {
+        try {
+            return execute(httpMethod, url, headerInfo, urlParams, writer, reader, streamingMode, expectContinueEnabled);
+        } catch (StreamingRetryException e) {
+            return execute(httpMethod, url, headerInfo, urlParams, writer, reader, HttpStreamingMode.BUFFERED, false);
+        }
+    }
+
+    /**
+     * HTTP通信を行う。
+     * @param httpMethod HTTPメソッド
+     * @param url 接続先
+     * @param headerInfo HttpHeadderに渡す情報
+     * @param urlParams URLパラメータ。送信するパラメータがない場合は、null可。
+     * @param writer StreamWritter。送信するBody部が存在しない場合は、null可。
+     * @param reader 応答の読み込みに使用するreader
+     * @param mode 本文の送信方法
+     * @param expectContinueEnabled 「Expect: 100-continue」による確認を行う場合は{@code true}
+     * @return レスポンスコード
+     * @throws HttpMessagingException 何らかの理由(接続タイムアウト、ソケットの予期せぬclose等)で通信が失敗した場合に送出される。
+     * @throws StreamingRetryException ストリーミングモードでの送信後に、バッファリングして再送する場合に送出される。
+     * @throws ExpectContinueTimeoutException 中間応答を待つ時間内に中間応答が返されなかった場合に送出される。
+     */
+    private HttpResult execute(HttpRequestMethodEnum httpMethod, String url, Map<String, List<String>> headerInfo,
+            Map<String, String> urlParams, HttpOutputStreamWriter writer, HttpInputStreamReader reader,
+            HttpStreamingMode mode, boolean expectContinueEnabled)
+                    throws HttpMessagingException, StreamingRetryException, ExpectContinueTimeoutException {
 
         //通信結果
         HttpResult result = new HttpResult();
@@ -154,12 +374,51 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
         HttpURLConnection con = null;
         OutputStream outputStream = null;
         InputStream inputStream = null;
+        boolean streaming = false;
+        boolean replayable = isReplayable(writer);
         try {
             //書き込みHTTPステータスコードとヘッダ情報の読み取り
             con = createHttpConnection(targetUrl, httpMethod, headerInfo);
+            if (acceptCompression && con.getRequestProperty("Accept-Encoding") == null) {
+                con.setRequestProperty("Accept-Encoding", HttpContentCoding.ACCEPT_ENCODING);
+            }
             if (writer != null) {
-                outputStream = con.getOutputStream();
-                writer.writeStream(outputStream);
+                boolean expectContinue = expectContinueEnabled && isExpectContinue(writer);
+                if (isRequestCompression(writer)) {
+                    con.setRequestProperty("Content-Encoding", HttpContentCoding.REQUEST_ENCODING);
+                    writer = HttpContentCoding.compress(writer, compressionStatistics,
+                            HttpCompressionStatistics.getDestination(targetUrl));
+                }
+                streaming = configureStreamingMode(con, writer, mode);
+                expectContinue = streaming && expectContinue;
+                if (expectContinue) {
+                    con.setRequestProperty("Expect", "100-continue");
+                }
+                try {
+                    outputStream = getOutputStream(con, targetUrl, expectContinue);
+                } catch (ProtocolException e) {
+                    if (!expectContinue) {
+                        throw e;
+                    }
+                    //本文の送信前にサーバが最終応答を返したため、本文を送信せずに終了する。
+                    return createRejectedResult(con, targetUrl, reader, e);
+                } catch (SocketTimeoutException e) {
+                    if (!expectContinue) {
+                        throw e;
+                    }
+                    //サーバが中間応答を返さなかったため、本文は送信していない。
+                    throw new ExpectContinueTimeoutException(targetUrl, e);
+                }
+                boolean written = false;
+                try {
+                    writer.writeStream(outputStream);
+                    written = true;
+                } finally {
+                    if (!written) {
+                        //クローズすると途中までの本文が完結した要求として送信されるため、クローズせずに接続を切断する。
+                        outputStream = null;
+                    }
+                }
             }
             //以降、Streamへの書き込みはないのでcloseする。
             FileUtil.closeQuietly(outputStream);
@@ -168,13 +427,29 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
             //HTTPステータスコードとヘッダ情報の読み取り
             responseCode = con.getResponseCode();
             headeInfo = con.getHeaderFields();
-            reader.setHeaderInfo(headeInfo);
+            reader.setHeaderInfo(getReaderHeaderInfo(con, headeInfo));
 
             //body部の読み取り
-            inputStream = con.getInputStream();
+            inputStream = decompress(con, targetUrl, con.getInputStream());
             responseObject = reader.readInputStream(inputStream);
+            if (reader instanceof StreamRetainingHttpInputStreamReader
+                    && ((StreamRetainingHttpInputStreamReader) reader).isStreamRetained()) {
+                //読み取り結果がストリームを保持しているため、ストリーム及び接続はクローズしない。
+                inputStream = null;
+                con = null;
+            }
         } catch (SocketTimeoutException e) {
             throw new HttpMessagingTimeoutException("Time-out occurs.", targetUrl, responseCode, e);
+        } catch (HttpRetryException e) {
+            if (!streaming) {
+                throw new HttpMessagingException(targetUrl, responseCode, e);
+            }
+            if (replayable && isRetryable(con, e)) {
+                //ストリーミングモードのため、HttpURLConnectionが再送できなかった。
+                throw new StreamingRetryException(e);
+            }
+            //再送しても成功する見込みがないため、再送が必要となった応答を通信結果とする。
+            return createRetryRequiredResult(con, targetUrl, reader, e);
         } catch (IOException ie) {
             InputStream es = null;
             try {
@@ -183,6 +458,9 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
                 if (con != null) {
                     es = con.getErrorStream();
                 }
+                if (es != null) {
+                    es = decompress(con, targetUrl, es);
+                }
                 if (es != null) {
                     //エラー用ストリームから読み取れた場合は、処理を続行する。
                     responseObject = reader.readInputStream(es);
@@ -230,9 +508,11 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
         URL url = new URL(targetUrl);
 
         HttpURLConnection con;
-        if (proxyUrl != null) {
-            Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyUrl, proxyPort));
+        if (proxy != null) {
             con = (HttpURLConnection) url.openConnection(proxy);
+        } else if (proxyUrl != null) {
+            con = (HttpURLConnection) url.openConnection(
+                    new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyUrl, proxyPort)));
         } else {
             con = (HttpURLConnection) url.openConnection();
         }
@@ -264,6 +544,360 @@ public class HttpProtocolBasicClient implements HttpProtocolClient {
         return con;
     }
 
+    /**
+     * 本文の送信方法を設定する。
+     * <p/>
+     * Writerが{@link SizedHttpOutputStreamWriter}の場合は本文の長さが判明しているものとし、
+     * 送信方法に応じて固定長ストリーミングモード又はチャンク形式を設定する。
+     * 長さがintの範囲を超える場合はチャンク形式で送信する。
+     * @param con HttpURLConnection
+     * @param writer 本文を書き出すWriter
+     * @param mode 本文の送信方法
+     * @return ストリーミングモードを設定した場合は{@code true}
+     */
+    protected boolean configureStreamingMode(HttpURLConnection con, HttpOutputStreamWriter writer, HttpStreamingMode mode) {
+        if (mode == HttpStreamingMode.BUFFERED) {
+            return false;
+        }
+        long length = -1;
+        if (writer instanceof SizedHttpOutputStreamWriter) {
+            length = ((SizedHttpOutputStreamWriter) writer).getContentLength();
+        }
+        if (mode != HttpStreamingMode.CHUNKED && length >= 0 && length <= Integer.MAX_VALUE) {
+            con.setFixedLengthStreamingMode((int) length);
+            return true;
+        }
+        if (mode == HttpStreamingMode.KNOWN_LENGTH && length < 0) {
+            return false;
+        }
+        con.setChunkedStreamingMode(chunkLength);
+        return true;
+    }
+
+    /**
+     * ストリーミングモードでの送信後に、本文をバッファリングして再送できるか否かを判定する。
+     * @param writer 本文を書き出すWriter
+     * @return Writerが{@link ReplayableHttpOutputStreamWriter}であり、本文の長さが再送の上限以下の場合は{@code true}
+     */
+    private boolean isReplayable(HttpOutputStreamWriter writer) {
+        if (!(writer instanceof ReplayableHttpOutputStreamWriter) || !(writer instanceof SizedHttpOutputStreamWriter)) {
+            return false;
+        }
+        long length = ((SizedHttpOutputStreamWriter) writer).getContentLength();
+        return length >= 0 && length <= maxReplayLength;
+    }
+
+    /**
+     * 再送が必要となった応答に対して、バッファリングして再送することで成功する見込みがあるか否かを判定する。
+     * <p/>
+     * リダイレクトの場合はリダイレクトに従う設定であれば、認証エラーの場合は{@link Authenticator}が設定されていれば、
+     * HttpURLConnectionが再送時に処理できるため見込みがあるものとする。
+     * @param con HttpURLConnection
+     * @param e 再送が必要となったことを表す例外
+     * @return 見込みがある場合は{@code true}
+     */
+    private static boolean isRetryable(HttpURLConnection con, HttpRetryException e) {
+        if (e.getLocation() != null) {
+            return con.getInstanceFollowRedirects();
+        }
+        return isAuthenticatorInstalled();
+    }
+
+    /**
+     * デフォルトの{@link Authenticator}が設定されているか否かを判定する。
+     * <p/>
+     * Java 8以前は設定されたAuthenticatorを取得するAPIがないため、リフレクションにより判定する。
+     * 判定できない場合は設定されていないものとする。
+     * @return 設定されている場合は{@code true}
+     */
+    private static boolean isAuthenticatorInstalled() {
+        try {
+            return Authenticator.class.getMethod("getDefault").invoke(null) != null;
+        } catch (NoSuchMethodException e) {
+            //Java 8以前のため、フィールドを参照する。
+        } catch (Exception e) {
+            return false;
+        }
+        try {
+            Field field = Authenticator.class.getDeclaredField("theAuthenticator");
+            field.setAccessible(true);
+            return field.get(null) != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 本文を書き込むストリームを取得する。
+     * <p/>
+     * 「Expect: 100-continue」による確認を行う場合、中間応答を待つ時間が経過した時点で接続を切断し、
+     * 本文を送信していないことを{@link ExpectContinueTimeoutException}で通知する。
+     * @param con 接続
+     * @param targetUrl 接続先
+     * @param expectContinue 「Expect: 100-continue」による確認を行う場合は{@code true}
+     * @return 本文を書き込むストリーム
+     * @throws IOException ストリームの取得に失敗した場合
+     * @throws ExpectContinueTimeoutException 中間応答を待つ時間内に中間応答が返されなかった場合に送出される。
+     */
+    private OutputStream getOutputStream(HttpURLConnection con, String targetUrl, boolean expectContinue)
+            throws IOException, ExpectContinueTimeoutException {
+        if (!expectContinue || expectContinueTimeout <= 0) {
+            return con.getOutputStream();
+        }
+        TimerTask watchdog = new ExpectContinueWatchdog(con);
+        EXPECT_CONTINUE_TIMER.schedule(watchdog, expectContinueTimeout);
+        OutputStream outputStream;
+        try {
+            outputStream = con.getOutputStream();
+        } catch (IOException e) {
+            if (watchdog.cancel()) {
+                throw e;
+            }
+            //中間応答を待つ時間が経過して切断したため、本文は送信していない。
+            throw new ExpectContinueTimeoutException(targetUrl, e);
+        }
+        if (!watchdog.cancel()) {
+            //中間応答の受信と同時に切断されたため、本文は送信していない。
+            throw new ExpectContinueTimeoutException(targetUrl, null);
+        }
+        return outputStream;
+    }
+
+    /**
+     * 本文の送信前に「Expect: 100-continue」による確認を行うか否かを判定する。
+     * <p/>
+     * 確認の閾値が設定されており、本文の長さが閾値以上の場合に確認を行う。
+     * ただし、中間応答が返されなかった際に再送できるよう、
+     * Writerが{@link ReplayableHttpOutputStreamWriter}の場合に限り確認を行う。
+     * (中間応答を待つ時間及び読み取りタイムアウトのいずれも設定されていない場合を除く)
+     * @param writer 本文を書き出すWriter
+     * @return 確認を行う場合は{@code true}
+     */
+    private boolean isExpectContinue(HttpOutputStreamWriter writer) {
+        if ((expectContinueTimeout > 0 || readTimeout > 0)
+                && !(writer instanceof ReplayableHttpOutputStreamWriter)) {
+            return false;
+        }
+        return isOverThreshold(writer, expectContinueThreshold);
+    }
+
+    /**
+     * 要求の本文を圧縮するか否かを判定する。
+     * <p/>
+     * 圧縮の閾値が設定されており、本文の長さが閾値以上の場合に圧縮する。
+     * @param writer 本文を書き出すWriter
+     * @return 圧縮する場合は{@code true}
+     */
+    private boolean isRequestCompression(HttpOutputStreamWriter writer) {
+        return isOverThreshold(writer, requestCompressionThreshold);
+    }
+
+    /**
+     * 本文の長さが閾値以上か否かを判定する。
+     * <p/>
+     * 本文の長さが不明な場合は、閾値未満の本文を対象としないよう、閾値が0の場合に限り閾値以上とみなす。
+     * @param writer 本文を書き出すWriter
+     * @param threshold 閾値(負数の場合は常に閾値未満とみなす)
+     * @return 閾値以上の場合は{@code true}
+     */
+    private static boolean isOverThreshold(HttpOutputStreamWriter writer, long threshold) {
+        if (threshold < 0) {
+            return false;
+        }
+        long length = -1;
+        if (writer instanceof SizedHttpOutputStreamWriter) {
+            length = ((SizedHttpOutputStreamWriter) writer).getContentLength();
+        } else if (writer instanceof TextBodyHttpStreamWriter) {
+            length = ((TextBodyHttpStreamWriter) writer).getContentLength();
+        }
+        return length < 0 ? threshold == 0 : length >= threshold;
+    }
+
+    /**
+     * 応答の本文が圧縮されている場合に、伸長するストリームを生成する。
+     * @param con HttpURLConnection
+     * @param targetUrl 接続先
+     * @param in 応答の本文
+     * @return 伸長するストリーム。伸長しない場合は引数のストリーム
+     * @throws IOException 圧縮形式のヘッダの読み取りに失敗した場合
+     */
+    private InputStream decompress(HttpURLConnection con, String targetUrl, InputStream in) throws IOException {
+        String contentEncoding = con.getContentEncoding();
+        if (!acceptCompression || !HttpContentCoding.isSupported(contentEncoding)) {
+            return in;
+        }
+        try {
+            return HttpContentCoding.decompress(in, contentEncoding, compressionStatistics,
+                    HttpCompressionStatistics.getDestination(targetUrl));
+        } catch (IOException e) {
+            FileUtil.closeQuietly(in);
+            throw e;
+        }
+    }
+
+    /**
+     * Readerに渡すヘッダ情報を取得する。
+     * <p/>
+     * 応答の本文を伸長する場合は、伸長後の本文と一致しないContent-Encoding及びContent-Lengthヘッダを除く。
+     * @param con HttpURLConnection
+     * @param headerInfo 応答のヘッダ情報
+     * @return Readerに渡すヘッダ情報
+     */
+    private Map<String, List<String>> getReaderHeaderInfo(HttpURLConnection con, Map<String, List<String>> headerInfo) {
+        if (!acceptCompression || !HttpContentCoding.isSupported(con.getContentEncoding())) {
+            return headerInfo;
+        }
+        Map<String, List<String>> readerHeaderInfo = new HashMap<String, List<String>>();
+        for (Entry<String, List<String>> entry : headerInfo.entrySet()) {
+            String key = entry.getKey();
+            if (!"content-encoding".equalsIgnoreCase(key) && !"content-length".equalsIgnoreCase(key)) {
+                readerHeaderInfo.put(key, entry.getValue());
+            }
+        }
+        return readerHeaderInfo;
+    }
+
+    /**
+     * 「Expect: 100-continue」に対してサーバが最終応答を返した場合の通信結果を生成する。
+     * <p/>
+     * HttpURLConnectionは、この場合に応答ヘッダ及び本文を読み取ることができないため、
+     * 通信結果にはステータスコードのみを設定し、読み取り結果には空の本文をReaderで読み取った結果を設定する。
+     * @param con HttpURLConnection
+     * @param targetUrl 接続先
+     * @param reader 応答の読み込みに使用するreader
+     * @param cause サーバが本文の送信を拒否したことを表す例外
+     * @return 通信結果
+     * @throws HttpMessagingException ステータスコードを取得できない場合
+     */
+    private HttpResult createRejectedResult(HttpURLConnection con, String targetUrl,
+            HttpInputStreamReader reader, ProtocolException cause) throws HttpMessagingException {
+        int responseCode;
+        try {
+            responseCode = con.getResponseCode();
+        } catch (IOException e) {
+            throw new HttpMessagingException(targetUrl, null, cause);
+        }
+        if (responseCode < 0) {
+            throw new HttpMessagingException(targetUrl, null, cause);
+        }
+        return createEmptyBodyResult(targetUrl, reader, responseCode, createStatusLineHeader(responseCode));
+    }
+
+    /**
+     * ストリーミングモードでの送信後に再送が必要となった応答を、再送せずに返却する場合の通信結果を生成する。
+     * <p/>
+     * HttpURLConnectionは、この場合に応答の本文を読み取ることができないため、
+     * 読み取り結果には空の本文をReaderで読み取った結果を設定する。
+     * 応答ヘッダを取得できない場合は、ステータスラインのみをヘッダ情報に設定する。
+     * @param con HttpURLConnection
+     * @param targetUrl 接続先
+     * @param reader 応答の読み込みに使用するreader
+     * @param cause 再送が必要となったことを表す例外
+     * @return 通信結果
+     * @throws HttpMessagingException 空の本文の読み取りに失敗した場合
+     */
+    private HttpResult createRetryRequiredResult(HttpURLConnection con, String targetUrl,
+            HttpInputStreamReader reader, HttpRetryException cause) throws HttpMessagingException {
+        int responseCode = cause.responseCode();
+        Map<String, List<String>> headerInfo = con.getHeaderFields();
+        if (headerInfo == null || headerInfo.isEmpty()) {
+            headerInfo = createStatusLineHeader(responseCode);
+        }
+        return createEmptyBodyResult(targetUrl, reader, responseCode, headerInfo);
+    }
+
+    /**
+     * ステータスラインのみを含むヘッダ情報を生成する。
+     * @param responseCode ステータスコード
+     * @return ヘッダ情報
+     */
+    private static Map<String, List<String>> createStatusLineHeader(int responseCode) {
+        Map<String, List<String>> headerInfo = new HashMap<String, List<String>>();
+        headerInfo.put(null, Collections.singletonList("HTTP/1.1 " + responseCode));
+        return headerInfo;
+    }
+
+    /**
+     * 空の本文をReaderで読み取った結果を設定した通信結果を生成する。
+     * @param targetUrl 接続先
+     * @param reader 応答の読み込みに使用するreader
+     * @param responseCode ステータスコード
+     * @param headerInfo ヘッダ情報
+     * @return 通信結果
+     * @throws HttpMessagingException 空の本文の読み取りに失敗した場合
+     */
+    private static HttpResult createEmptyBodyResult(String targetUrl, HttpInputStreamReader reader,
+            int responseCode, Map<String, List<String>> headerInfo) throws HttpMessagingException {
+        HttpResult result = new HttpResult();
+        result.setResponseCode(responseCode);
+        result.setHeaderInfo(headerInfo);
+        reader.setHeaderInfo(headerInfo);
+        try {
+            result.setReadObject(reader.readInputStream(new ByteArrayInputStream(new byte[0])));
+        } catch (IOException e) {
+            throw new HttpMessagingException(targetUrl, responseCode, e);
+        }
+        return result;
+    }
+
+    /**
+     * ストリーミングモードでの送信後に、バッファリングして再送することを表す例外。
+     */
+    private static final class StreamingRetryException extends RuntimeException {
+
+        /**
+         * コンストラクタ。
+         * @param cause 原因となった例外
+         */
+        StreamingRetryException(HttpRetryException cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * 「Expect: 100-continue」による確認で、中間応答を待つ時間内に中間応答が返されなかったことを表す例外。
+     */
+    private static final class ExpectContinueTimeoutException extends RuntimeException {
+
+        /**
+         * コンストラクタ。
+         * @param targetUrl 接続先
+         * @param cause 原因となった例外(存在しない場合は{@code null})
+         */
+        ExpectContinueTimeoutException(String targetUrl, IOException cause) {
+            super("no interim response was returned. url = [" + targetUrl + "]", cause);
+        }
+    }
+
+    /**
+     * 中間応答を待つ時間が経過した接続を切断するタスク。
+     * <p/>
+     * 中間応答を待っている間はHttpURLConnectionの読み取りタイムアウトを変更できないため、
+     * 接続を切断することで待機を打ち切る。
+     */
+    private static final class ExpectContinueWatchdog extends TimerTask {
+
+        /** 切断する接続 */
+        private final HttpURLConnection con;
+
+        /**
+         * コンストラクタ。
+         * @param con 切断する接続
+         */
+        ExpectContinueWatchdog(HttpURLConnection con) {
+            this.con = con;
+        }
+
+        @Override
+        public void run() {
+            try {
+                con.disconnect();
+            } catch (RuntimeException e) {
+                // タイマーのスレッドを停止させないよう、切断の失敗は無視する。
+            }
+        }
+    }
+
     /**
      * URLにパラメータを文字列として埋め込む場合の文字列を作成して返却する。
      * 
@@ -0,0 +1,161 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import nablarch.core.dataformat.DataRecord;
+import nablarch.core.dataformat.DataRecordIterator;
+import nablarch.core.dataformat.InvalidDataFormatException;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.messaging.realtime.http.dto.HttpResult;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingException;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingInvalidDataFormatException;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingTimeoutException;
+
+/**
+ * 応答の本文に含まれるレコードを、接続先のストリームから1件ずつ解析するイテレータ。
+ * <p/>
+ * レコードは{@link #next()}の呼び出し時に解析されるため、受信するレコード件数に関わらずメモリ使用量は一定となる。
+ * 本イテレータは接続を保持するため、使用後は必ず{@link #close()}を呼び出すこと。
+ * 全てのレコードを読み終えた場合、及び解析や読み込みに失敗した場合は自動的にクローズされる。
+ * <p/>
+ * ステータスコードが2xx以外の場合、及び本文が空の場合はレコードを返却しない。
+ * エラー応答の本文は{@link #getErrorBody()}で取得できる。
+ *
+ * @author TIS
+ * @see HttpMessagingClient#iterateRecords(nablarch.fw.messaging.MessageSenderSettings, nablarch.fw.messaging.SyncMessage)
+ */
+@Published(tag = "architect")
+public class HttpRecordIterator implements Iterator<DataRecord>, Closeable {
+
+    /** 要求電文のリクエストID */
+    private final String requestId;
+
+    /** 接続先 */
+    private final String targetUrl;
+
+    /** 送信結果 */
+    private final HttpResult httpResult;
+
+    /** レコードを解析するイテレータ(レコードが存在しない場合は{@code null}) */
+    private final DataRecordIterator records;
+
+    /**
+     * コンストラクタ。
+     * @param requestId 要求電文のリクエストID
+     * @param targetUrl 接続先
+     * @param httpResult 送信結果
+     */
+    public HttpRecordIterator(String requestId, String targetUrl, HttpResult httpResult) {
+        this.requestId = requestId;
+        this.targetUrl = targetUrl;
+        this.httpResult = httpResult;
+        Object readObject = httpResult.getReadObject();
+        records = readObject instanceof DataRecordIterator ? (DataRecordIterator) readObject : null;
+    }
+
+    /**
+     * 次のレコードが存在するか否か。
+     * @return 次のレコードが存在する場合は{@code true}
+     * @throws HttpMessagingException 読み込みに失敗した場合
+     */
+    public boolean hasNext() throws HttpMessagingException {
+        if (records == null) {
+            return false;
+        }
+        try {
+            return records.hasNext();
+        } catch (RuntimeException e) {
+            throw convertException(e);
+        }
+    }
+
+    /**
+     * 次のレコードを解析して返却する。
+     * @return 次のレコード
+     * @throws NoSuchElementException 次のレコードが存在しない場合
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合
+     * @throws HttpMessagingException 読み込みに失敗した場合
+     */
+    public DataRecord next() throws HttpMessagingException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return records.next();
+        } catch (RuntimeException e) {
+            throw convertException(e);
+        }
+    }
+
+    /**
+     * 解析又は読み込み時に発生した例外を変換し、イテレータをクローズする。
+     * @param e 発生した例外
+     * @return 変換した例外
+     */
+    private RuntimeException convertException(RuntimeException e) {
+        close();
+        Integer responseCode = httpResult.getResponseCode();
+        if (e instanceof InvalidDataFormatException) {
+            String message = "Invalid receive message format. requestId=[" + requestId + "].";
+            return new HttpMessagingInvalidDataFormatException(
+                    message, targetUrl, responseCode, httpResult.getHeaderInfo(), null, e);
+        }
+        if (e.getCause() instanceof SocketTimeoutException) {
+            return new HttpMessagingTimeoutException("Time-out occurs.", targetUrl, responseCode, e.getCause());
+        }
+        if (e.getCause() instanceof IOException) {
+            return new HttpMessagingException(targetUrl, responseCode, e.getCause());
+        }
+        return e;
+    }
+
+    /**
+     * サポートしない。
+     * @throws UnsupportedOperationException 常に送出する
+     */
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * ストリーム及び接続をクローズする。
+     * <p/>
+     * 既にクローズされている場合は何もしない。
+     */
+    public void close() {
+        if (records != null) {
+            records.close();
+        }
+    }
+
+    /**
+     * ステータスコードを取得する。
+     * @return ステータスコード
+     */
+    public Integer getResponseCode() {
+        return httpResult.getResponseCode();
+    }
+
+    /**
+     * 応答のヘッダ情報を取得する。
+     * @return 応答のヘッダ情報
+     */
+    public Map<String, List<String>> getHeaderInfo() {
+        return httpResult.getHeaderInfo();
+    }
+
+    /**
+     * エラー応答の本文を取得する。
+     * @return ステータスコードが2xx以外の場合は本文の先頭部分。それ以外の場合は{@code null}
+     */
+    public String getErrorBody() {
+        Object readObject = httpResult.getReadObject();
+        return readObject instanceof String ? (String) readObject : null;
+    }
+}
@@ -0,0 +1,601 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nablarch.core.dataformat.CompactRecordMap;
+import nablarch.core.dataformat.DataRecord;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.messaging.realtime.http.client.HttpProtocolClient.HttpRequestMethodEnum;
+
+/**
+ * {@link HttpMessagingClient}の応答電文をメモリ上に保持するキャッシュ。
+ * <p/>
+ * HTTPメソッド、URI及びクエリストリングをキーとし、解析済みの応答電文(ヘッダ及びデータレコード)を保持する。
+ * キャッシュの有効期間は応答のCache-Controlヘッダ(max-age、no-store、no-cache、stale-while-revalidate)に従う。
+ * 有効期間を過ぎたエントリは、ETag/Last-Modifiedヘッダを元に条件付きリクエストで再検証される。
+ * no-cacheが指定されたエントリは、stale-while-revalidateの指定に関わらず常に再検証される。
+ * <p/>
+ * 保持するエントリの総量は応答本文のサイズを元に計算し、上限を超えた場合は最も長く参照されていないエントリから破棄する。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class HttpResponseCache {
+
+    /** 1エントリあたりの固定的なサイズの見積もり(バイト) */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    /** キャッシュの最大サイズ(バイト) */
+    private long maxWeight = 10L * 1024 * 1024;
+
+    /** 現在のキャッシュサイズ(バイト) */
+    private long totalWeight = 0;
+
+    /** キャッシュ本体(参照順) */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+    /** 有効期間内のエントリを返却した回数 */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** 条件付きリクエストの結果(304)によりエントリを返却した回数 */
+    private final AtomicLong revalidatedCount = new AtomicLong();
+
+    /** 有効期間切れのエントリを返却し、バックグラウンドで再取得を行った回数 */
+    private final AtomicLong staleHitCount = new AtomicLong();
+
+    /** キャッシュを使用できなかった回数 */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** バックグラウンドでの再取得を行った回数 */
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    /** キャッシュから破棄したエントリの数 */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /** バックグラウンドでの再取得に使用するExecutor */
+    private Executor backgroundExecutor;
+
+    /**
+     * キャッシュのキーを生成する。
+     * @param httpMethod HTTPメソッド
+     * @param uri 接続先
+     * @param urlParams URLパラメータ
+     * @return キャッシュのキー
+     */
+    public static String createKey(HttpRequestMethodEnum httpMethod, String uri, Map<String, String> urlParams) {
+        StringBuilder key = new StringBuilder();
+        key.append(httpMethod).append(' ').append(uri);
+        if (urlParams != null && !urlParams.isEmpty()) {
+            // パラメータの順序に依存しないよう、ソートしてからキーに含める。
+            char separator = '?';
+            for (Entry<String, String> entry : new TreeMap<String, String>(urlParams).entrySet()) {
+                key.append(separator).append(entry.getKey()).append('=').append(entry.getValue());
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * エントリを取得する。
+     * @param key キャッシュのキー
+     * @return エントリ。存在しない場合は{@code null}
+     */
+    public synchronized CacheEntry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * 応答電文をキャッシュに格納する。
+     * <p/>
+     * 再検証を行わずに返却できる期間がなく、再検証に使用できるETag/Last-Modifiedヘッダも存在しない場合、
+     * 及びCache-Controlヘッダにno-storeが指定されている場合は格納しない。
+     *
+     * @param key キャッシュのキー
+     * @param headerInfo HTTPの応答ヘッダ
+     * @param headerRecord 応答電文のヘッダレコード
+     * @param dataRecord 応答電文のデータレコード
+     * @param bodyLength 応答本文の長さ
+     * @return 格納した場合は{@code true}
+     */
+    public boolean put(String key, Map<String, List<String>> headerInfo,
+            Map<String, Object> headerRecord, Map<String, Object> dataRecord, long bodyLength) {
+        CacheControl cacheControl = CacheControl.parse(getHeader(headerInfo, "Cache-Control"));
+        if (cacheControl.noStore) {
+            remove(key);
+            return false;
+        }
+        String eTag = getHeader(headerInfo, "ETag");
+        String lastModified = getHeader(headerInfo, "Last-Modified");
+        if (!cacheControl.isReusableWithoutValidation() && eTag == null && lastModified == null) {
+            // 有効期間も再検証の手段もない応答は、キャッシュしても使用できない。
+            return false;
+        }
+
+        CacheEntry entry = new CacheEntry(key, headerRecord, dataRecord, eTag, lastModified,
+                bodyLength * 2 + ENTRY_OVERHEAD);
+        entry.updateExpiration(cacheControl, System.currentTimeMillis());
+        if (entry.weight > maxWeight) {
+            return false;
+        }
+        synchronized (this) {
+            CacheEntry old = entries.put(key, entry);
+            if (old != null) {
+                totalWeight -= old.weight;
+            }
+            totalWeight += entry.weight;
+            evict();
+        }
+        return true;
+    }
+
+    /**
+     * 条件付きリクエストによりエントリが有効であることが確認された際に、エントリの有効期間を更新する。
+     * @param entry 再検証したエントリ
+     * @param headerInfo 304応答のHTTPヘッダ
+     */
+    public void revalidated(CacheEntry entry, Map<String, List<String>> headerInfo) {
+        CacheControl cacheControl = CacheControl.parse(getHeader(headerInfo, "Cache-Control"));
+        if (cacheControl.noStore) {
+            remove(entry.key);
+            return;
+        }
+        entry.updateExpiration(cacheControl, System.currentTimeMillis());
+    }
+
+    /**
+     * エントリを削除する。
+     * @param key キャッシュのキー
+     */
+    public synchronized void remove(String key) {
+        CacheEntry old = entries.remove(key);
+        if (old != null) {
+            totalWeight -= old.weight;
+        }
+    }
+
+    /**
+     * 全てのエントリを削除する。
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * キャッシュの総量が上限を超えている間、最も長く参照されていないエントリから破棄する。
+     */
+    private void evict() {
+        Iterator<CacheEntry> it = entries.values().iterator();
+        while (totalWeight > maxWeight && it.hasNext()) {
+            CacheEntry eldest = it.next();
+            it.remove();
+            totalWeight -= eldest.weight;
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * バックグラウンドでの再取得を実行する。
+     * <p/>
+     * 同一のエントリに対する再取得が既に実行中の場合は何もしない。
+     * @param entry 再取得対象のエントリ
+     * @param task 再取得処理
+     */
+    public void refreshInBackground(final CacheEntry entry, final Runnable task) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        getBackgroundExecutor().execute(new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * 大文字小文字を区別せずにHTTPヘッダの値を取得する。
+     * @param headerInfo HTTPヘッダ
+     * @param name ヘッダ名
+     * @return ヘッダの値。存在しない場合は{@code null}
+     */
+    static String getHeader(Map<String, List<String>> headerInfo, String name) {
+        if (headerInfo == null) {
+            return null;
+        }
+        for (Entry<String, List<String>> entry : headerInfo.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())
+                    && entry.getValue() != null && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 有効期間内のエントリを返却したことを記録する。
+     */
+    void recordHit() {
+        hitCount.incrementAndGet();
+    }
+
+    /**
+     * 再検証の結果、エントリを返却したことを記録する。
+     */
+    void recordRevalidated() {
+        revalidatedCount.incrementAndGet();
+    }
+
+    /**
+     * 有効期間切れのエントリを返却したことを記録する。
+     */
+    void recordStaleHit() {
+        staleHitCount.incrementAndGet();
+    }
+
+    /**
+     * キャッシュを使用できなかったことを記録する。
+     */
+    void recordMiss() {
+        missCount.incrementAndGet();
+    }
+
+    /**
+     * バックグラウンドでの再取得を行ったことを記録する。
+     */
+    void recordRefresh() {
+        refreshCount.incrementAndGet();
+    }
+
+    /**
+     * 有効期間内のエントリを返却した回数を取得する。
+     * @return 回数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 条件付きリクエストの結果(304)によりエントリを返却した回数を取得する。
+     * @return 回数
+     */
+    public long getRevalidatedCount() {
+        return revalidatedCount.get();
+    }
+
+    /**
+     * 有効期間切れのエントリを返却し、バックグラウンドで再取得を行った回数を取得する。
+     * @return 回数
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    /**
+     * キャッシュを使用できなかった回数を取得する。
+     * @return 回数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * バックグラウンドでの再取得を行った回数を取得する。
+     * <p/>
+     * 再取得は呼び出し元の要求ではないため、ヒット率の算出には含めない。
+     * @return 回数
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * キャッシュから破棄したエントリの数を取得する。
+     * @return エントリの数
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * キャッシュのヒット率を取得する。
+     * <p/>
+     * 応答本文の解析を行わずに応答電文を返却できた割合(304による再検証を含む)を返す。
+     * @return ヒット率。一度も参照されていない場合は0
+     */
+    public double getHitRatio() {
+        long hit = hitCount.get() + revalidatedCount.get() + staleHitCount.get();
+        long total = hit + missCount.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * 保持しているエントリの数を取得する。
+     * @return エントリの数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 現在のキャッシュサイズを取得する。
+     * @return キャッシュサイズ(バイト)
+     */
+    public synchronized long getWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * キャッシュの最大サイズを設定する。
+     * @param maxWeight キャッシュの最大サイズ(バイト)
+     */
+    public synchronized void setMaxWeight(long maxWeight) {
+        if (maxWeight < 0) {
+            throw new IllegalArgumentException("maxWeight must not be negative.");
+        }
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    /**
+     * バックグラウンドでの再取得に使用するExecutorを設定する。
+     * <p/>
+     * 設定しない場合、デーモンスレッドを1つ持つExecutorを使用する。
+     * @param backgroundExecutor Executor
+     */
+    public synchronized void setBackgroundExecutor(Executor backgroundExecutor) {
+        this.backgroundExecutor = backgroundExecutor;
+    }
+
+    /**
+     * バックグラウンドでの再取得に使用するExecutorを取得する。
+     * @return Executor
+     */
+    private synchronized Executor getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            backgroundExecutor = createDefaultExecutor();
+        }
+        return backgroundExecutor;
+    }
+
+    /**
+     * デフォルトのExecutorを生成する。
+     * @return Executor
+     */
+    private static ExecutorService createDefaultExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "HttpResponseCache-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * キャッシュのエントリ。
+     */
+    public static final class CacheEntry {
+
+        /** キャッシュのキー */
+        private final String key;
+
+        /** 応答電文のヘッダレコード */
+        private final Map<String, Object> headerRecord;
+
+        /** 応答電文のデータレコード */
+        private final Map<String, Object> dataRecord;
+
+        /** ETagヘッダの値 */
+        private final String eTag;
+
+        /** Last-Modifiedヘッダの値 */
+        private final String lastModified;
+
+        /** エントリのサイズ */
+        private final long weight;
+
+        /** 有効期限(エポックミリ秒) */
+        private volatile long expiresAt;
+
+        /** 有効期限切れのエントリを返却できる期限(エポックミリ秒) */
+        private volatile long staleUntil;
+
+        /** バックグラウンドでの再取得中か否か */
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        /**
+         * コンストラクタ。
+         * @param key キャッシュのキー
+         * @param headerRecord 応答電文のヘッダレコード
+         * @param dataRecord 応答電文のデータレコード
+         * @param eTag ETagヘッダの値
+         * @param lastModified Last-Modifiedヘッダの値
+         * @param weight エントリのサイズ
+         */
+        CacheEntry(String key, Map<String, Object> headerRecord, Map<String, Object> dataRecord,
+                String eTag, String lastModified, long weight) {
+            this.key = key;
+            this.headerRecord = new TreeMap<String, Object>(headerRecord);
+            this.dataRecord = copy(dataRecord);
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.weight = weight;
+        }
+
+        /**
+         * Cache-Controlヘッダの内容を元に有効期限を更新する。
+         * <p/>
+         * no-cacheが指定されている場合は、常に再検証が必要となるよう有効期限切れのエントリを返却しない。
+         * @param cacheControl Cache-Controlヘッダの内容
+         * @param now 現在時刻(エポックミリ秒)
+         */
+        void updateExpiration(CacheControl cacheControl, long now) {
+            expiresAt = cacheControl.noCache ? now : now + cacheControl.maxAge * 1000L;
+            staleUntil = cacheControl.noCache ? expiresAt : expiresAt + cacheControl.staleWhileRevalidate * 1000L;
+        }
+
+        /**
+         * 有効期間内か否か。
+         * @param now 現在時刻(エポックミリ秒)
+         * @return 有効期間内の場合は{@code true}
+         */
+        public boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+
+        /**
+         * 有効期間切れだが、バックグラウンドで再取得を行う間は返却できるか否か。
+         * @param now 現在時刻(エポックミリ秒)
+         * @return 返却できる場合は{@code true}
+         */
+        public boolean isStaleWhileRevalidate(long now) {
+            return !isFresh(now) && now < staleUntil;
+        }
+
+        /**
+         * ETagヘッダの値を取得する。
+         * @return ETagヘッダの値
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Last-Modifiedヘッダの値を取得する。
+         * @return Last-Modifiedヘッダの値
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * 応答電文のヘッダレコードの複製を取得する。
+         * @return ヘッダレコード
+         */
+        public Map<String, Object> getHeaderRecord() {
+            return new TreeMap<String, Object>(headerRecord);
+        }
+
+        /**
+         * 応答電文のデータレコードの複製を取得する。
+         * <p/>
+         * 呼び出し元で変更されてもキャッシュの内容に影響しないよう、都度複製を返す。
+         * @return データレコード
+         */
+        public Map<String, Object> getDataRecord() {
+            return copy(dataRecord);
+        }
+
+        /**
+         * データレコードを複製する。
+         * @param source 複製元
+         * @return 複製したデータレコード
+         */
+        private static Map<String, Object> copy(Map<String, Object> source) {
+            if (source instanceof CompactRecordMap) {
+                // 項目名の並びを共有し、値の配列のみを複製する。
+                return ((CompactRecordMap) source).copy();
+            }
+            Map<String, Object> ret;
+            if (source instanceof DataRecord) {
+                DataRecord src = (DataRecord) source;
+                ret = new DataRecord()
+                        .setRecordType(src.getRecordType())
+                        .setRecordNumber(src.getRecordNumber());
+            } else {
+                ret = new TreeMap<String, Object>();
+            }
+            ret.putAll(source);
+            return ret;
+        }
+    }
+
+    /**
+     * Cache-Controlヘッダの解析結果。
+     */
+    static final class CacheControl {
+
+        /** no-storeが指定されているか否か */
+        private boolean noStore;
+
+        /** no-cacheが指定されているか否か */
+        private boolean noCache;
+
+        /** max-ageの値(秒) */
+        private long maxAge;
+
+        /** stale-while-revalidateの値(秒) */
+        private long staleWhileRevalidate;
+
+        /**
+         * Cache-Controlヘッダを解析する。
+         * @param value Cache-Controlヘッダの値
+         * @return 解析結果
+         */
+        static CacheControl parse(String value) {
+            CacheControl ret = new CacheControl();
+            if (value == null) {
+                return ret;
+            }
+            for (String directive : value.split(",")) {
+                String name = directive.trim().toLowerCase();
+                String arg = null;
+                int eq = name.indexOf('=');
+                if (eq >= 0) {
+                    arg = name.substring(eq + 1).trim().replace("\"", "");
+                    name = name.substring(0, eq).trim();
+                }
+                if ("no-store".equals(name)) {
+                    ret.noStore = true;
+                } else if ("no-cache".equals(name)) {
+                    ret.noCache = true;
+                } else if ("max-age".equals(name)) {
+                    ret.maxAge = toSeconds(arg);
+                } else if ("stale-while-revalidate".equals(name)) {
+                    ret.staleWhileRevalidate = toSeconds(arg);
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * 再検証を行わずに返却できる期間(max-age又はstale-while-revalidate)が存在するか否か。
+         * @return 存在する場合は{@code true}。no-cacheが指定されている場合は常に{@code false}
+         */
+        boolean isReusableWithoutValidation() {
+            return !noCache && (maxAge > 0 || staleWhileRevalidate > 0);
+        }
+
+        /**
+         * ディレクティブの引数を秒数に変換する。
+         * @param arg ディレクティブの引数
+         * @return 秒数。変換できない場合は0
+         */
+        private static long toSeconds(String arg) {
+            if (arg == null) {
+                return 0;
+            }
+            try {
+                return Math.max(0, Long.parseLong(arg));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+import javax.net.ssl.SSLContext;
+
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.messaging.MessageSenderSettings;
+import nablarch.fw.messaging.MessageSenderSettings.SettingType;
+import nablarch.fw.messaging.MessagingException;
+import nablarch.fw.messaging.realtime.http.client.HttpProtocolClient.HttpRequestMethodEnum;
+
+/**
+ * 送信先ごとの送信設定を、送信の都度導出しなくて済むよう事前に解決したもの。
+ * <p/>
+ * {@link MessageSenderSettings}から導出される値(HTTPメソッド、接続先、SSLContext、プロキシ等)を保持する。
+ * 本文の送信方法({@value #STREAMING_MODE_KEY})、チャンクサイズ({@value #CHUNK_LENGTH_KEY})及び
+ * 「Expect: 100-continue」による確認を行う閾値({@value #EXPECT_CONTINUE_THRESHOLD_KEY})及び
+ * 中間応答を待つ時間({@value #EXPECT_CONTINUE_TIMEOUT_KEY})、
+ * 圧縮された応答の受け入れ({@value #ACCEPT_COMPRESSION_KEY})及び
+ * 要求の本文を圧縮する閾値({@value #REQUEST_COMPRESSION_THRESHOLD_KEY})は送信先ごとに設定できる。
+ * 本クラスは不変であり、複数のスレッドから同時に参照できる。
+ *
+ * @author TIS
+ * @see HttpMessagingClient#getSendPlan(MessageSenderSettings)
+ */
+@Published(tag = "architect")
+public final class HttpSendPlan {
+
+    /** 本文の送信方法の設定キー */
+    public static final String STREAMING_MODE_KEY = "httpStreamingMode";
+
+    /** チャンクサイズの設定キー */
+    public static final String CHUNK_LENGTH_KEY = "httpChunkLength";
+
+    /** 「Expect: 100-continue」による確認を行う本文の長さの閾値の設定キー */
+    public static final String EXPECT_CONTINUE_THRESHOLD_KEY = "httpExpectContinueThreshold";
+
+    /** 「Expect: 100-continue」による確認で中間応答を待つ時間(ミリ秒)の設定キー */
+    public static final String EXPECT_CONTINUE_TIMEOUT_KEY = "httpExpectContinueTimeout";
+
+    /** 圧縮された応答を受け入れるか否かの設定キー */
+    public static final String ACCEPT_COMPRESSION_KEY = "httpAcceptCompression";
+
+    /** 要求の本文を圧縮する長さの閾値の設定キー */
+    public static final String REQUEST_COMPRESSION_THRESHOLD_KEY = "httpRequestCompressionThreshold";
+
+    /** 設定のリクエストID */
+    private final String requestId;
+
+    /** HTTPメソッド */
+    private final HttpRequestMethodEnum httpMethod;
+
+    /** 接続先 */
+    private final String uri;
+
+    /** 要求電文のフォーマット定義ファイル名 */
+    private final String requestFormatName;
+
+    /** 応答電文のフォーマット定義ファイル名 */
+    private final String responseFormatName;
+
+    /** SSLContext */
+    private final SSLContext sslContext;
+
+    /** プロキシホスト */
+    private final String proxyHost;
+
+    /** プロキシポート */
+    private final int proxyPort;
+
+    /** プロキシ */
+    private final Proxy proxy;
+
+    /** 接続タイムアウト */
+    private final int connectTimeout;
+
+    /** 読み取りタイムアウト */
+    private final int readTimeout;
+
+    /** 本文の送信方法(設定されていない場合は{@code null}) */
+    private final HttpStreamingMode streamingMode;
+
+    /** チャンク形式で送信する際のチャンクサイズ */
+    private final int chunkLength;
+
+    /** 「Expect: 100-continue」による確認を行う本文の長さの閾値(設定されていない場合は{@code null}) */
+    private final Long expectContinueThreshold;
+
+    /** 「Expect: 100-continue」による確認で中間応答を待つ時間(設定されていない場合は{@code null}) */
+    private final Integer expectContinueTimeout;
+
+    /** 圧縮された応答を受け入れるか否か(設定されていない場合は{@code null}) */
+    private final Boolean acceptCompression;
+
+    /** 要求の本文を圧縮する長さの閾値(設定されていない場合は{@code null}) */
+    private final Long requestCompressionThreshold;
+
+    /**
+     * コンストラクタ。
+     * @param settings {@link nablarch.fw.messaging.MessageSender}の設定情報
+     * @param requestFormatNamePattern 要求電文のフォーマット定義ファイル名パターン
+     * @param responseFormatNamePattern 応答電文のフォーマット定義ファイル名パターン
+     * @throws MessagingException サポートしないHTTPメソッド又は本文の送信方法が設定されている場合
+     */
+    public HttpSendPlan(MessageSenderSettings settings,
+            String requestFormatNamePattern, String responseFormatNamePattern) throws MessagingException {
+        requestId = settings.getSettingRequestId();
+        httpMethod = toHttpMethod(settings.getHttpMethod());
+        uri = settings.getUri();
+        requestFormatName = String.format(requestFormatNamePattern, requestId);
+        responseFormatName = String.format(responseFormatNamePattern, requestId);
+        sslContext = settings.getSslContextSettings() != null
+                   ? settings.getSslContextSettings().getSSLContext()
+                   : null;
+        proxyHost = settings.getHttpProxyHost();
+        if (proxyHost != null) {
+            proxyPort = settings.getHttpProxyPort();
+            // 名前解決は接続時に行われるよう、未解決のアドレスとして保持する。
+            proxy = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(proxyHost, proxyPort));
+        } else {
+            proxyPort = 0;
+            proxy = null;
+        }
+        connectTimeout = settings.getHttpConnectTimeout();
+        readTimeout = settings.getHttpReadTimeout();
+        streamingMode = toStreamingMode(
+                settings.getStringSetting(STREAMING_MODE_KEY, SettingType.BOTH, false, null));
+        chunkLength = settings.getIntSetting(CHUNK_LENGTH_KEY, SettingType.BOTH, false, 0);
+        expectContinueThreshold = settings.getLongSetting(EXPECT_CONTINUE_THRESHOLD_KEY, SettingType.BOTH, false, null);
+        expectContinueTimeout = settings.getIntSetting(EXPECT_CONTINUE_TIMEOUT_KEY, SettingType.BOTH, false, null);
+        String acceptCompressionSetting = settings.getStringSetting(ACCEPT_COMPRESSION_KEY, SettingType.BOTH, false, null);
+        acceptCompression = acceptCompressionSetting != null ? Boolean.valueOf(acceptCompressionSetting.trim()) : null;
+        requestCompressionThreshold = settings.getLongSetting(
+                REQUEST_COMPRESSION_THRESHOLD_KEY, SettingType.BOTH, false, null);
+    }
+
+    /**
+     * 設定値を本文の送信方法に変換する。
+     * @param mode 設定値
+     * @return 本文の送信方法。設定されていない場合は{@code null}
+     * @throws MessagingException サポートしない送信方法の場合
+     */
+    private static HttpStreamingMode toStreamingMode(String mode) throws MessagingException {
+        if (mode == null) {
+            return null;
+        }
+        try {
+            return HttpStreamingMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new MessagingException(String.format("%s is unsupported streaming mode.", mode.toUpperCase()), e);
+        }
+    }
+
+    /**
+     * 設定値をHTTPメソッドに変換する。
+     * @param method 設定値
+     * @return HTTPメソッド
+     * @throws MessagingException サポートしないHTTPメソッドの場合
+     */
+    private static HttpRequestMethodEnum toHttpMethod(String method) throws MessagingException {
+        try {
+            return HttpRequestMethodEnum.valueOf(method.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            //サポートしないHTTPメソッド
+            throw new MessagingException(String.format("%s is unsupported HTTP method.", method.toUpperCase()), e);
+        }
+    }
+
+    /**
+     * 設定のリクエストIDを取得する。
+     * @return 設定のリクエストID
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * HTTPメソッドを取得する。
+     * @return HTTPメソッド
+     */
+    public HttpRequestMethodEnum getHttpMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * 接続先を取得する。
+     * @return 接続先
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    /**
+     * 要求電文のフォーマット定義ファイル名を取得する。
+     * @return 要求電文のフォーマット定義ファイル名
+     */
+    public String getRequestFormatName() {
+        return requestFormatName;
+    }
+
+    /**
+     * 応答電文のフォーマット定義ファイル名を取得する。
+     * @return 応答電文のフォーマット定義ファイル名
+     */
+    public String getResponseFormatName() {
+        return responseFormatName;
+    }
+
+    /**
+     * SSLContextを取得する。
+     * @return SSLContext。使用しない場合は{@code null}
+     */
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    /**
+     * プロキシホストを取得する。
+     * @return プロキシホスト。使用しない場合は{@code null}
+     */
+    public String getProxyHost() {
+        return proxyHost;
+    }
+
+    /**
+     * プロキシポートを取得する。
+     * @return プロキシポート
+     */
+    public int getProxyPort() {
+        return proxyPort;
+    }
+
+    /**
+     * プロキシを取得する。
+     * @return プロキシ。使用しない場合は{@code null}
+     */
+    public Proxy getProxy() {
+        return proxy;
+    }
+
+    /**
+     * 接続タイムアウトを取得する。
+     * @return 接続タイムアウト
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * 読み取りタイムアウトを取得する。
+     * @return 読み取りタイムアウト
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * 本文の送信方法を取得する。
+     * @return 本文の送信方法。設定されていない場合は{@code null}
+     */
+    public HttpStreamingMode getStreamingMode() {
+        return streamingMode;
+    }
+
+    /**
+     * チャンク形式で送信する際のチャンクサイズを取得する。
+     * @return チャンクサイズ(設定されていない場合は0)
+     */
+    public int getChunkLength() {
+        return chunkLength;
+    }
+
+    /**
+     * 「Expect: 100-continue」による確認を行う本文の長さの閾値を取得する。
+     * @return 閾値。設定されていない場合は{@code null}
+     */
+    public Long getExpectContinueThreshold() {
+        return expectContinueThreshold;
+    }
+
+    /**
+     * 「Expect: 100-continue」による確認で中間応答を待つ時間(ミリ秒)を取得する。
+     * @return 中間応答を待つ時間。設定されていない場合は{@code null}
+     */
+    public Integer getExpectContinueTimeout() {
+        return expectContinueTimeout;
+    }
+
+    /**
+     * 圧縮された応答を受け入れるか否かを取得する。
+     * @return 受け入れる場合は{@code true}。設定されていない場合は{@code null}
+     */
+    public Boolean getAcceptCompression() {
+        return acceptCompression;
+    }
+
+    /**
+     * 要求の本文を圧縮する長さの閾値を取得する。
+     * @return 閾値。設定されていない場合は{@code null}
+     */
+    public Long getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+}
@@ -0,0 +1,24 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * HTTPリクエストの本文の送信方法。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public enum HttpStreamingMode {
+
+    /** 本文全体をメモリ上にバッファリングしてから送信する。 */
+    BUFFERED,
+
+    /** 本文の長さが事前に判明している場合は固定長ストリーミングモードで送信し、それ以外はバッファリングする。 */
+    KNOWN_LENGTH,
+
+    /** 本文の長さが事前に判明している場合は固定長ストリーミングモードで、それ以外はチャンク形式で送信する。 */
+    STREAMING,
+
+    /** 常にチャンク形式で送信する。 */
+    CHUNKED
+}
@@ -0,0 +1,206 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import nablarch.core.dataformat.InvalidDataFormatException;
+import nablarch.core.dataformat.SimpleDataConvertResult;
+import nablarch.core.dataformat.SimpleDataConvertUtil;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.messaging.SyncMessage;
+import nablarch.fw.messaging.realtime.http.dto.HttpResult;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingInvalidDataFormatException;
+
+/**
+ * 応答の本文を、データレコードの初回参照時に解析する応答電文。
+ * <p/>
+ * 受信した本文はバイト列のまま保持し、{@link #getDataRecord()}、{@link #getDataRecords()}
+ * 又は{@link #addDataRecord(Map)}が初めて呼び出された時点でフォーマット定義に従って解析する。
+ * ステータスコードやヘッダのみを参照する場合は、本文の解析を行わない。
+ * 解析結果は保持され、解析後は受信した本文を破棄する。
+ * <p/>
+ * 解析は複数のスレッドから同時に参照された場合でも一度だけ行われる。
+ * 解析に失敗した場合は{@link HttpMessagingInvalidDataFormatException}を送出し、次回の参照時に再度解析を行う。
+ *
+ * @author TIS
+ * @see HttpMessagingClient#setLazyResponseParsing(boolean)
+ */
+@Published(tag = "architect")
+public class LazySyncMessage extends SyncMessage {
+
+    /** 応答電文のフォーマット定義ファイル名 */
+    private final String formatName;
+
+    /** 接続先 */
+    private final String uri;
+
+    /** 送信結果 */
+    private final HttpResult httpResult;
+
+    /** 受信した本文の文字セット(エラー時に本文を通知するために使用する) */
+    private final Charset charset;
+
+    /** 解析する項目名({@code null}の場合は全ての項目を解析する) */
+    private final Collection<String> fieldNames;
+
+    /** 解析結果を{@link nablarch.core.dataformat.CompactRecordMap}とするか否か */
+    private boolean compactRecord;
+
+    /** 受信した本文(解析後は{@code null}) */
+    private byte[] body;
+
+    /** 解析済みか否か */
+    private volatile boolean parsed;
+
+    /**
+     * コンストラクタ。
+     * @param requestId リクエストID
+     * @param formatName 応答電文のフォーマット定義ファイル名
+     * @param uri 接続先
+     * @param httpResult 送信結果
+     * @param body 受信した本文
+     * @param charset 受信した本文の文字セット
+     */
+    public LazySyncMessage(String requestId, String formatName, String uri,
+            HttpResult httpResult, byte[] body, Charset charset) {
+        this(requestId, formatName, uri, httpResult, body, charset, null);
+    }
+
+    /**
+     * コンストラクタ。
+     * @param requestId リクエストID
+     * @param formatName 応答電文のフォーマット定義ファイル名
+     * @param uri 接続先
+     * @param httpResult 送信結果
+     * @param body 受信した本文
+     * @param charset 受信した本文の文字セット
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     */
+    public LazySyncMessage(String requestId, String formatName, String uri,
+            HttpResult httpResult, byte[] body, Charset charset, Collection<String> fieldNames) {
+        super(requestId);
+        this.formatName = formatName;
+        this.uri = uri;
+        this.httpResult = httpResult;
+        this.body = body;
+        this.charset = charset;
+        this.fieldNames = fieldNames;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 本文が解析されていない場合は、解析を行う。
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合
+     */
+    @Override
+    public Map<String, Object> getDataRecord() throws HttpMessagingInvalidDataFormatException {
+        ensureParsed();
+        return super.getDataRecord();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 本文が解析されていない場合は、解析を行う。
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合
+     */
+    @Override
+    public List<Map<String, Object>> getDataRecords() throws HttpMessagingInvalidDataFormatException {
+        ensureParsed();
+        return super.getDataRecords();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 追加したデータレコードが本文のデータレコードの後に並ぶよう、本文が解析されていない場合は先に解析を行う。
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合
+     */
+    @Override
+    public SyncMessage addDataRecord(Map<String, Object> record) throws HttpMessagingInvalidDataFormatException {
+        ensureParsed();
+        return super.addDataRecord(record);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 追加したデータレコードが本文のデータレコードの後に並ぶよう、本文が解析されていない場合は先に解析を行う。
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合
+     */
+    @Override
+    public SyncMessage addDataRecord(Object record) throws HttpMessagingInvalidDataFormatException {
+        ensureParsed();
+        return super.addDataRecord(record);
+    }
+
+    /**
+     * 解析結果を{@link nablarch.core.dataformat.CompactRecordMap}とするか否かを設定する。
+     * <p/>
+     * デフォルトは{@code false}({@link nablarch.core.dataformat.DataRecord}とする)。
+     * @param compactRecord 解析結果を{@link nablarch.core.dataformat.CompactRecordMap}とする場合は{@code true}
+     * @see SimpleDataConvertUtil#parseCompactData(String, InputStream, Collection)
+     */
+    public void setCompactRecord(boolean compactRecord) {
+        this.compactRecord = compactRecord;
+    }
+
+    /**
+     * 本文が解析済みか否か。
+     * @return 解析済みの場合は{@code true}
+     */
+    public boolean isParsed() {
+        return parsed;
+    }
+
+    /**
+     * 本文が解析されていない場合は、解析してデータレコードに設定する。
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合
+     */
+    private void ensureParsed() throws HttpMessagingInvalidDataFormatException {
+        if (parsed) {
+            return;
+        }
+        synchronized (this) {
+            if (parsed) {
+                return;
+            }
+            super.addDataRecord(parse());
+            body = null;
+            parsed = true;
+        }
+    }
+
+    /**
+     * 本文をフォーマット定義に従って解析する。
+     * @return 解析結果。本文が空の場合は空のMap
+     * @throws HttpMessagingInvalidDataFormatException 電文フォーマット変換に失敗した場合
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parse() throws HttpMessagingInvalidDataFormatException {
+        if (body == null || body.length == 0) {
+            return new TreeMap<String, Object>();
+        }
+        try {
+            InputStream in = new ByteArrayInputStream(body);
+            SimpleDataConvertResult result = compactRecord
+                    ? SimpleDataConvertUtil.parseCompactData(formatName, in, fieldNames)
+                    : SimpleDataConvertUtil.parseData(formatName, in, fieldNames);
+            return (Map<String, Object>) result.getResultMap();
+        } catch (InvalidDataFormatException e) {
+            String message = "Invalid receive message format. requestId=[" + getRequestId() + "].";
+            throw new HttpMessagingInvalidDataFormatException(
+                    message, uri, httpResult.getResponseCode(), httpResult.getHeaderInfo(), new String(body, charset), e);
+        } catch (IOException wontHappen) {
+            // ヒープ上のバイト列を読み込むため、I/Oエラーは発生しえない。
+            throw new RuntimeException(wontHappen);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import nablarch.fw.messaging.realtime.http.streamio.ReplayableHttpOutputStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.SizedHttpOutputStreamWriter;
+
+/**
+ * {@link HttpMessagingClient}が送信する、文字列の本文を書き出すWriter。
+ * <p/>
+ * 本文は初回の使用時に一度だけエンコードして保持する。
+ * エンコード後の長さは圧縮等の閾値の判定に使用するが、{@link SizedHttpOutputStreamWriter}ではないため
+ * ストリーミングモードでは送信せず、これまでどおりバッファリングして送信する。
+ *
+ * @author TIS
+ */
+final class TextBodyHttpStreamWriter implements ReplayableHttpOutputStreamWriter {
+
+    /** 書き出し対象の文字列 */
+    private final String text;
+
+    /** 出力時に使用する文字コード({@code null}の場合はプラットフォームのデフォルト) */
+    private final String charset;
+
+    /** エンコード後の本文(未エンコードの場合は{@code null}) */
+    private byte[] bytes;
+
+    /**
+     * コンストラクタ。
+     * @param charset 文字コード({@code null}の場合はプラットフォームのデフォルト)
+     * @param text 書き出し対象の文字列
+     */
+    TextBodyHttpStreamWriter(String charset, String text) {
+        this.charset = charset;
+        this.text = text;
+    }
+
+    /**
+     * ストリームに出力する。
+     * @param outputStream 出力先ストリームの実体
+     * @throws IOException ストリームへの書き込みに失敗した場合、又は文字コードがサポートされていない場合
+     */
+    public void writeStream(OutputStream outputStream) throws IOException {
+        outputStream.write(getBytes());
+    }
+
+    /**
+     * エンコード後の長さを取得する。
+     * @return エンコード後の長さ。文字コードがサポートされていない場合は-1
+     */
+    long getContentLength() {
+        try {
+            return getBytes().length;
+        } catch (UnsupportedEncodingException e) {
+            // 書き出し時に例外を送出するため、ここでは長さを不明とする。
+            return -1;
+        }
+    }
+
+    /**
+     * エンコード後の本文を取得する。
+     * @return エンコード後の本文
+     * @throws UnsupportedEncodingException 文字コードがサポートされていない場合
+     */
+    private byte[] getBytes() throws UnsupportedEncodingException {
+        if (bytes == null) {
+            bytes = charset == null ? text.getBytes() : text.getBytes(charset);
+        }
+        return bytes;
+    }
+}
@@ -16,7 +16,7 @@ import nablarch.core.util.annotation.Published;
  */
 @Published(tag = "architect")
 public abstract class AbstractCharHttpStreamWritter implements
-        HttpOutputStreamWriter {
+        ReplayableHttpOutputStreamWriter {
 
     /** 出力時に使用するキャラクターセット*/
     private String charset;
@@ -0,0 +1,97 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 読み書きに使用するバイト配列のバッファを再利用するためのプール。
+ * <p/>
+ * プールに保持するバッファの数には上限があり、上限を超えて返却されたバッファは破棄される。
+ * プールが空の場合は新たにバッファを生成するため、取得時に待機することはない。
+ * 本クラスはスレッドセーフである。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class ByteBufferPool {
+
+    /** デフォルトのバッファサイズ */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** デフォルトの最大保持数 */
+    public static final int DEFAULT_MAX_POOL_SIZE = 64;
+
+    /** 共有のプール */
+    private static final ByteBufferPool SHARED = new ByteBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOL_SIZE);
+
+    /** バッファサイズ */
+    private final int bufferSize;
+
+    /** 保持しているバッファ */
+    private final BlockingQueue<byte[]> pool;
+
+    /**
+     * コンストラクタ。
+     * @param bufferSize バッファサイズ
+     * @param maxPoolSize 最大保持数
+     */
+    public ByteBufferPool(int bufferSize, int maxPoolSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive. bufferSize=[" + bufferSize + "]");
+        }
+        if (maxPoolSize <= 0) {
+            throw new IllegalArgumentException("maxPoolSize must be positive. maxPoolSize=[" + maxPoolSize + "]");
+        }
+        this.bufferSize = bufferSize;
+        this.pool = new LinkedBlockingQueue<byte[]>(maxPoolSize);
+    }
+
+    /**
+     * 共有のプールを取得する。
+     * @return 共有のプール
+     */
+    public static ByteBufferPool getSharedPool() {
+        return SHARED;
+    }
+
+    /**
+     * バッファを取得する。
+     * <p/>
+     * 使用後は{@link #release(byte[])}でプールに返却すること。
+     * @return バッファ
+     */
+    public byte[] acquire() {
+        byte[] buffer = pool.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * バッファをプールに返却する。
+     * <p/>
+     * サイズの異なるバッファ、及び最大保持数を超えたバッファは破棄する。
+     * @param buffer バッファ({@code null}の場合は何もしない)
+     */
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            pool.offer(buffer);
+        }
+    }
+
+    /**
+     * バッファサイズを取得する。
+     * @return バッファサイズ
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * プールに保持しているバッファの数を取得する。
+     * @return 保持しているバッファの数
+     */
+    public int getPooledCount() {
+        return pool.size();
+    }
+}
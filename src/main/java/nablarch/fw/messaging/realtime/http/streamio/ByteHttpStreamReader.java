@@ -0,0 +1,164 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * HTTP通信時に使用する、バイト列を読み取るReaderクラス。
+ * <p/>
+ * 文字へのデコードは行わず、受信したデータをそのままバイト配列として返却する。
+ * 読み取りには{@link ByteBufferPool}から取得したバッファを使用する。
+ * Content-Lengthヘッダが存在する場合は、その長さの配列に直接読み込む。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class ByteHttpStreamReader extends AbstractHttpStreamReader {
+
+    /** Content-Lengthから配列を確保する際の上限 */
+    private static final int MAX_PRESIZE_LENGTH = 16 * 1024 * 1024;
+
+    /** 読み取りに使用するバッファのプール */
+    private final ByteBufferPool bufferPool;
+
+    /** Content-Lengthヘッダの値(存在しない場合は-1) */
+    private long contentLength = -1;
+
+    /** 読み取り結果を{@link ByteBuffer}として返却するか否か */
+    private boolean resultAsByteBuffer = false;
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * 共有の{@link ByteBufferPool}を使用する。
+     */
+    public ByteHttpStreamReader() {
+        this(ByteBufferPool.getSharedPool());
+    }
+
+    /**
+     * コンストラクタ。
+     * @param bufferPool 読み取りに使用するバッファのプール
+     */
+    public ByteHttpStreamReader(ByteBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * コネクションのヘッダー情報を取得/解析する。
+     * @param key ヘッダー情報Key
+     * @param values 値
+     */
+    @Override
+    protected void setParamsFromHeader(String key, List<String> values) {
+        if ("content-length".equalsIgnoreCase(key) && !values.isEmpty()) {
+            try {
+                contentLength = Long.parseLong(values.get(0).trim());
+            } catch (NumberFormatException e) {
+                contentLength = -1;
+            }
+        }
+    }
+
+    /**
+     * InputStreamからデータを読み取り、バイト配列として返却する。
+     * <p/>
+     * {@link #setResultAsByteBuffer(boolean)}で{@code true}を設定した場合は{@link ByteBuffer}として返却する。
+     * @param is 読み取り対象
+     * @return 読み取り結果
+     * @throws IOException 読み取り例外
+     */
+    public Object readInputStream(InputStream is) throws IOException {
+        byte[] result;
+        try {
+            if (contentLength >= 0 && contentLength <= MAX_PRESIZE_LENGTH) {
+                result = readKnownLength(is, (int) contentLength);
+            } else {
+                result = readUnknownLength(is);
+            }
+        } finally {
+            FileUtil.closeQuietly(is);
+        }
+        return resultAsByteBuffer ? ByteBuffer.wrap(result) : result;
+    }
+
+    /**
+     * 長さが判明しているデータを読み取る。
+     * <p/>
+     * 実際のデータが宣言された長さと異なる場合は、実際に読み取った内容を返却する。
+     * @param is 読み取り対象
+     * @param length 宣言された長さ
+     * @return 読み取り結果
+     * @throws IOException 読み取り例外
+     */
+    private byte[] readKnownLength(InputStream is, int length) throws IOException {
+        byte[] result = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int count = is.read(result, offset, length - offset);
+            if (count < 0) {
+                // 宣言された長さより短い場合
+                byte[] shortened = new byte[offset];
+                System.arraycopy(result, 0, shortened, 0, offset);
+                return shortened;
+            }
+            offset += count;
+        }
+        int next = is.read();
+        if (next < 0) {
+            return result;
+        }
+        // 宣言された長さより長い場合は、残りも読み取る。
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + bufferPool.getBufferSize());
+        out.write(result);
+        out.write(next);
+        copy(is, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 長さが不明なデータを読み取る。
+     * @param is 読み取り対象
+     * @return 読み取り結果
+     * @throws IOException 読み取り例外
+     */
+    private byte[] readUnknownLength(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bufferPool.getBufferSize());
+        copy(is, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * プールから取得したバッファを使用して、入力ストリームの内容を出力ストリームにコピーする。
+     * @param is 入力ストリーム
+     * @param out 出力ストリーム
+     * @throws IOException 読み取り例外
+     */
+    private void copy(InputStream is, ByteArrayOutputStream out) throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        try {
+            int count;
+            while ((count = is.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * 読み取り結果を{@link ByteBuffer}として返却するか否かを設定する。
+     * <p/>
+     * デフォルトは{@code false}(バイト配列として返却する)。
+     * @param resultAsByteBuffer {@link ByteBuffer}として返却する場合は{@code true}
+     */
+    public void setResultAsByteBuffer(boolean resultAsByteBuffer) {
+        this.resultAsByteBuffer = resultAsByteBuffer;
+    }
+}
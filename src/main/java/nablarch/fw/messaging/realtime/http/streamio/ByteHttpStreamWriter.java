@@ -0,0 +1,107 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * HTTP通信時に使用する、バイト列を書き出すWriterクラス。
+ * <p/>
+ * 文字からのエンコードは行わず、保持しているバイト列をそのまま書き出す。
+ * ヒープ上の配列を持たない{@link ByteBuffer}(ダイレクトバッファ等)は、
+ * {@link ByteBufferPool}から取得したバッファを経由して書き出す。
+ * 書き出しは何度でも行うことができる。
+ * 書き出すデータの長さが事前に判明しているため、固定長ストリーミングモードで送信される。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class ByteHttpStreamWriter implements SizedHttpOutputStreamWriter, ReplayableHttpOutputStreamWriter {
+
+    /** 書き出し対象のデータ */
+    private final ByteBuffer data;
+
+    /** 書き出しに使用するバッファのプール */
+    private final ByteBufferPool bufferPool;
+
+    /**
+     * コンストラクタ。
+     * @param data 書き出し対象のデータ
+     */
+    public ByteHttpStreamWriter(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * コンストラクタ。
+     * @param data 書き出し対象のデータ
+     * @param offset 書き出しを開始する位置
+     * @param length 書き出す長さ
+     */
+    public ByteHttpStreamWriter(byte[] data, int offset, int length) {
+        this(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * 共有の{@link ByteBufferPool}を使用する。
+     * @param data 書き出し対象のデータ(positionからlimitまでを書き出す)
+     */
+    public ByteHttpStreamWriter(ByteBuffer data) {
+        this(data, ByteBufferPool.getSharedPool());
+    }
+
+    /**
+     * コンストラクタ。
+     * @param data 書き出し対象のデータ(positionからlimitまでを書き出す)
+     * @param bufferPool 書き出しに使用するバッファのプール
+     */
+    public ByteHttpStreamWriter(ByteBuffer data, ByteBufferPool bufferPool) {
+        // 呼び出し元のposition及びlimitの変更に影響されないよう複製する。
+        this.data = data.slice();
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * ストリームに出力する。
+     * @param outputStream 出力先ストリームの実体
+     * @throws IOException ストリームへの書き込みに失敗した場合
+     */
+    public void writeStream(OutputStream outputStream) throws IOException {
+        ByteBuffer src = data.duplicate();
+        if (src.hasArray()) {
+            outputStream.write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+        } else {
+            byte[] buffer = bufferPool.acquire();
+            try {
+                while (src.hasRemaining()) {
+                    int count = Math.min(buffer.length, src.remaining());
+                    src.get(buffer, 0, count);
+                    outputStream.write(buffer, 0, count);
+                }
+            } finally {
+                bufferPool.release(buffer);
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * 書き出すデータの長さを取得する。
+     * @return 書き出すデータの長さ
+     */
+    public int getLength() {
+        return data.remaining();
+    }
+
+    /**
+     * 書き出すデータの長さを取得する。
+     * @return 書き出すデータの長さ
+     */
+    public long getContentLength() {
+        return data.remaining();
+    }
+}
@@ -0,0 +1,51 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * HTTP通信時に使用する、{@link CharStreamCallback}が書き出した文字を送信するWriterクラス。
+ * <p/>
+ * コールバックが書き出した文字を{@link java.nio.charset.CharsetEncoder}で直接ストリームにエンコードするため、
+ * 送信内容全体をメモリ上に構築する必要がない。
+ * 長さが事前に判明しないため、チャンク形式で送信される。
+ * コールバックが何度呼び出されても同じ内容を書き出すとは限らないため、再送は行わない。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class CallbackHttpStreamWriter implements HttpOutputStreamWriter {
+
+    /** コールバック */
+    private final CharStreamCallback callback;
+
+    /** 出力時に使用する文字セット */
+    private final Charset charset;
+
+    /**
+     * コンストラクタ。
+     * @param callback コールバック
+     * @param charset 文字セット({@code null}の場合はプラットフォームのデフォルト)
+     */
+    public CallbackHttpStreamWriter(CharStreamCallback callback, String charset) {
+        this.callback = callback;
+        this.charset = EncodingWriter.toCharset(charset);
+    }
+
+    /**
+     * ストリームに出力する。
+     * @param outputStream 出力先ストリームの実体
+     * @throws IOException コールバックでの書き出し、又はストリームへの書き込みに失敗した場合
+     */
+    public void writeStream(OutputStream outputStream) throws IOException {
+        EncodingWriter writer = new EncodingWriter(outputStream, charset);
+        try {
+            callback.write(writer);
+        } finally {
+            writer.finish();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingException;
+
+/**
+ * 応答の本文を、ヒープ上に保持せずにチャネル又はファイルに転送するReaderクラス。
+ * <p/>
+ * 転送先が{@link FileChannel}(ファイルを指定した場合を含む)の場合は{@link FileChannel#transferFrom}を、
+ * それ以外の場合はダイレクトバッファを使用して転送する。
+ * 読み取り結果は転送したバイト数({@link Long})となる。
+ * <p/>
+ * ステータスコードが2xx以外の場合、エラー応答の本文は転送先に書き込まず、
+ * 先頭から{@link #ERROR_BODY_LIMIT}バイトまでを文字列として返却する。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class ChannelHttpStreamReader extends AbstractHttpStreamReader {
+
+    /** エラー応答の本文として読み取る最大バイト数 */
+    public static final int ERROR_BODY_LIMIT = 8192;
+
+    /** 一度に転送するバイト数 */
+    private static final int TRANSFER_SIZE = 64 * 1024;
+
+    /** 転送先のチャネル */
+    private final WritableByteChannel channel;
+
+    /** 転送先のファイル */
+    private final File file;
+
+    /** 転送する最大バイト数(0以下の場合は制限しない) */
+    private long maxSize;
+
+    /** 進捗の通知先 */
+    private HttpDownloadProgressListener progressListener;
+
+    /** Content-Lengthヘッダの値(存在しない場合は-1) */
+    private long contentLength = -1;
+
+    /** ステータスコード(不明な場合は-1) */
+    private int statusCode = -1;
+
+    /** Content-Typeヘッダに指定された文字セット */
+    private Charset charset = Charset.forName("ISO-8859-1");
+
+    /** 転送したバイト数 */
+    private long transferredSize;
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * 転送先のチャネルは本クラスではクローズしない。
+     * @param channel 転送先のチャネル
+     */
+    public ChannelHttpStreamReader(WritableByteChannel channel) {
+        this.channel = channel;
+        this.file = null;
+    }
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * ファイルが既に存在する場合は上書きする。転送に失敗した場合、ファイルは削除する。
+     * @param file 転送先のファイル
+     */
+    public ChannelHttpStreamReader(File file) {
+        this.channel = null;
+        this.file = file;
+    }
+
+    /**
+     * コネクションのヘッダー情報を取得/解析する。
+     * @param key ヘッダー情報Key
+     * @param values 値
+     */
+    @Override
+    protected void setParamsFromHeader(String key, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        String value = values.get(0);
+        if (key == null) {
+            statusCode = parseStatusCode(value);
+        } else if ("content-length".equalsIgnoreCase(key)) {
+            try {
+                contentLength = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                contentLength = -1;
+            }
+        } else if ("content-type".equalsIgnoreCase(key)) {
+            int index = value.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                String name = value.substring(index + "charset=".length()).trim();
+                if (Charset.isSupported(name)) {
+                    charset = Charset.forName(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * ステータスラインからステータスコードを取得する。
+     * @param statusLine ステータスライン
+     * @return ステータスコード(取得できない場合は-1)
+     */
+    private static int parseStatusCode(String statusLine) {
+        String[] elements = statusLine.trim().split(" ");
+        if (elements.length >= 2) {
+            try {
+                return Integer.parseInt(elements[1]);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 応答の本文を転送先に転送する。
+     * @param is 読み取り対象
+     * @return 転送したバイト数。ステータスコードが2xx以外の場合はエラー応答の本文
+     * @throws IOException 読み取り又は書き込みに失敗した場合
+     * @throws HttpMessagingException Content-Lengthヘッダの値又は転送したバイト数が最大バイト数を超えた場合
+     */
+    public Object readInputStream(InputStream is) throws IOException {
+        transferredSize = 0;
+        try {
+            if (statusCode >= 0 && (statusCode < 200 || statusCode >= 300)) {
+                return readErrorBody(is);
+            }
+            if (maxSize > 0 && contentLength > maxSize) {
+                //転送を開始する前に、超過することが分かっている。
+                throw new HttpMessagingException(
+                        "response body exceeds the size limit. limit=[" + maxSize + "] content-length=[" + contentLength + "]");
+            }
+            if (file != null) {
+                return transferToFile(is);
+            }
+            transfer(Channels.newChannel(is), channel);
+            return transferredSize;
+        } finally {
+            FileUtil.closeQuietly(is);
+        }
+    }
+
+    /**
+     * 応答の本文をファイルに転送する。
+     * @param is 読み取り対象
+     * @return 転送したバイト数
+     * @throws IOException 読み取り又は書き込みに失敗した場合
+     */
+    private Long transferToFile(InputStream is) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        boolean completed = false;
+        try {
+            transfer(Channels.newChannel(is), out.getChannel());
+            completed = true;
+            return transferredSize;
+        } finally {
+            FileUtil.closeQuietly(out);
+            if (!completed && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * チャネル間で転送する。
+     * @param src 転送元
+     * @param dest 転送先
+     * @throws IOException 読み取り又は書き込みに失敗した場合
+     */
+    private void transfer(ReadableByteChannel src, WritableByteChannel dest) throws IOException {
+        if (dest instanceof FileChannel) {
+            FileChannel fileChannel = (FileChannel) dest;
+            long position = fileChannel.position();
+            long count;
+            while ((count = fileChannel.transferFrom(src, position + transferredSize, TRANSFER_SIZE)) > 0) {
+                transferred(count);
+            }
+            fileChannel.position(position + transferredSize);
+        } else {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_SIZE);
+            int count;
+            while ((count = src.read(buffer)) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    dest.write(buffer);
+                }
+                buffer.clear();
+                if (count > 0) {
+                    transferred(count);
+                }
+            }
+        }
+    }
+
+    /**
+     * 転送したバイト数を加算し、進捗を通知する。
+     * @param count 転送したバイト数
+     * @throws HttpMessagingException 転送したバイト数が最大バイト数を超えた場合
+     */
+    private void transferred(long count) {
+        transferredSize += count;
+        if (maxSize > 0 && transferredSize > maxSize) {
+            throw new HttpMessagingException(
+                    "response body exceeds the size limit. limit=[" + maxSize + "] transferred=[" + transferredSize + "]");
+        }
+        if (progressListener != null) {
+            progressListener.onProgress(transferredSize, contentLength);
+        }
+    }
+
+    /**
+     * エラー応答の本文を読み取る。
+     * @param is 読み取り対象
+     * @return エラー応答の本文の先頭部分
+     * @throws IOException 読み取りに失敗した場合
+     */
+    private String readErrorBody(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while (out.size() < ERROR_BODY_LIMIT
+                && (count = is.read(buffer, 0, Math.min(buffer.length, ERROR_BODY_LIMIT - out.size()))) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        return new String(out.toByteArray(), charset);
+    }
+
+    /**
+     * 転送する最大バイト数を設定する。
+     * <p/>
+     * Content-Lengthヘッダの値が最大バイト数を超える場合は転送を開始せずに、
+     * それ以外の場合は転送したバイト数が最大バイト数を超えた時点で{@link HttpMessagingException}を送出する。
+     * 0以下の場合は制限しない(デフォルト)。
+     * @param maxSize 転送する最大バイト数
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 進捗の通知先を設定する。
+     * @param progressListener 進捗の通知先
+     */
+    public void setProgressListener(HttpDownloadProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * 転送したバイト数を取得する。
+     * @return 転送したバイト数
+     */
+    public long getTransferredSize() {
+        return transferredSize;
+    }
+}
@@ -1,43 +1,241 @@
 package nablarch.fw.messaging.realtime.http.streamio;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.List;
 
 import nablarch.core.util.FileUtil;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingException;
 
 /**
  * HTTP通信時に使用するReaderクラス。
- * 
+ * <p/>
+ * Content-Lengthヘッダが存在する場合は、その長さから読み取り結果の格納領域を確保する。
+ * ただし、不正なヘッダにより過大な領域を確保しないよう、{@link #MAX_PRESIZE_LENGTH}文字を上限とする。
+ * 本文の最大バイト数({@link #setMaxBodyLength(long)})を設定した場合は、超過した時点で読み取りを中止する。
+ * デコードにはスレッドごとに再利用する{@link CharsetDecoder}及びバッファを使用する。
+ *
  * @author Masaya Seko
  */
 public class CharHttpStreamReader extends AbstractCharHttpStreamReader {
 
+    /** Content-Lengthから格納領域を確保する際の上限(文字数) */
+    public static final int MAX_PRESIZE_LENGTH = 1024 * 1024;
+
     /** データ読み込み時のバッファサイズ */
     private static final int READ_BUF_SIZE = 8192;
-    
+
+    /** スレッドごとに再利用するデコーダ及び文字バッファ */
+    private static final ThreadLocal<DecodeContext> DECODE_CONTEXT = new ThreadLocal<DecodeContext>();
+
+    /** 読み取りに使用するバッファのプール */
+    private final ByteBufferPool bufferPool = ByteBufferPool.getSharedPool();
+
+    /** Content-Lengthヘッダの値(存在しない場合は-1) */
+    private long contentLength = -1;
+
+    /** 本文の最大バイト数(0以下の場合は制限しない) */
+    private long maxBodyLength = 0;
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Content-Lengthヘッダの値も保持する。
+     */
+    @Override
+    protected void setParamsFromHeader(String key, List<String> values) {
+        super.setParamsFromHeader(key, values);
+        if ("content-length".equalsIgnoreCase(key) && values != null && !values.isEmpty()) {
+            try {
+                contentLength = Long.parseLong(values.get(0).trim());
+            } catch (NumberFormatException e) {
+                contentLength = -1;
+            }
+        }
+    }
+
     /**
      * {@inheritDoc} <br>
+     * @throws HttpMessagingException 本文が最大バイト数を超えた場合
      */
     public Object readInputStream(InputStream is) throws IOException {
-
-        InputStreamReader isr = null;
-        BufferedReader br = null;
-        StringBuilder sb = new StringBuilder();
-        char[] buf = new char[READ_BUF_SIZE];
+        byte[] buf = null;
         try {
-            isr = new InputStreamReader(is, getEncode());
-            br = new BufferedReader(isr);
-            int len;
-            while ((len = br.read(buf)) > 0) {
-                sb.append(buf, 0, len);
+            if (maxBodyLength > 0 && contentLength > maxBodyLength) {
+                //本文を読み取る前に、超過することが分かっている。
+                throw createLengthExceededException(contentLength);
+            }
+            DecodeContext context = getDecodeContext(getCharset(getEncode()));
+            CharsetDecoder decoder = context.decoder;
+            CharBuffer chars = context.chars;
+            chars.clear();
+            StringBuilder sb = new StringBuilder(getInitialCapacity(decoder));
+            buf = bufferPool.acquire();
+            ByteBuffer bytes = ByteBuffer.wrap(buf);
+            long readLength = 0;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                int len = is.read(buf, bytes.position(), bytes.remaining());
+                if (len < 0) {
+                    endOfInput = true;
+                } else {
+                    readLength += len;
+                    if (maxBodyLength > 0 && readLength > maxBodyLength) {
+                        throw createLengthExceededException(readLength);
+                    }
+                    bytes.position(bytes.position() + len);
+                }
+                bytes.flip();
+                decode(decoder, bytes, chars, sb, endOfInput);
+                bytes.compact();
             }
-            
+            flush(decoder, chars, sb);
+            return sb.toString();
         } finally {
-            FileUtil.closeQuietly(br);
+            if (buf != null) {
+                bufferPool.release(buf);
+            }
+            FileUtil.closeQuietly(is);
+        }
+    }
+
+    /**
+     * 本文の最大バイト数を設定する。
+     * <p/>
+     * Content-Lengthヘッダの値が最大バイト数を超える場合は読み取る前に、
+     * それ以外の場合は読み取ったバイト数が最大バイト数を超えた時点で{@link HttpMessagingException}を送出する。
+     * 0以下の場合は制限しない(デフォルト)。
+     * @param maxBodyLength 本文の最大バイト数
+     */
+    public void setMaxBodyLength(long maxBodyLength) {
+        this.maxBodyLength = maxBodyLength;
+    }
+
+    /**
+     * 本文が最大バイト数を超えたことを表す例外を生成する。
+     * @param length 超過を検知したバイト数
+     * @return 例外
+     */
+    private HttpMessagingException createLengthExceededException(long length) {
+        return new HttpMessagingException(
+                "response body exceeds the size limit. limit=[" + maxBodyLength + "] length=[" + length + "]");
+    }
+
+    /**
+     * 文字セットを取得する。
+     * <p/>
+     * {@link java.io.InputStreamReader}と同様に、使用できない文字セットの場合は{@link UnsupportedEncodingException}を送出する。
+     * @param encode 文字セット名
+     * @return 文字セット
+     * @throws UnsupportedEncodingException 文字セット名が不正な場合、又はサポートされていない場合
+     */
+    private static Charset getCharset(String encode) throws UnsupportedEncodingException {
+        try {
+            return Charset.forName(encode);
+        } catch (IllegalCharsetNameException e) {
+            throw new UnsupportedEncodingException(encode);
+        } catch (UnsupportedCharsetException e) {
+            throw new UnsupportedEncodingException(encode);
         }
-        return sb.toString();
     }
 
+    /**
+     * 読み取り結果の格納領域の初期サイズを取得する。
+     * @param decoder デコーダ
+     * @return 初期サイズ(文字数)
+     */
+    private int getInitialCapacity(CharsetDecoder decoder) {
+        if (contentLength < 0) {
+            return 16;
+        }
+        double capacity = Math.ceil(contentLength * (double) decoder.maxCharsPerByte());
+        return (int) Math.min(capacity, MAX_PRESIZE_LENGTH);
+    }
+
+    /**
+     * バイト列をデコードし、結果を追加する。
+     * @param decoder デコーダ
+     * @param bytes デコード対象のバイト列
+     * @param chars デコードに使用する文字バッファ
+     * @param sb 結果の追加先
+     * @param endOfInput 入力の終端に達した場合は{@code true}
+     */
+    private static void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars,
+            StringBuilder sb, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            drain(chars, sb);
+        } while (result.isOverflow());
+    }
+
+    /**
+     * デコーダの内部状態を出力し、結果を追加する。
+     * @param decoder デコーダ
+     * @param chars デコードに使用する文字バッファ
+     * @param sb 結果の追加先
+     */
+    private static void flush(CharsetDecoder decoder, CharBuffer chars, StringBuilder sb) {
+        CoderResult result;
+        do {
+            result = decoder.flush(chars);
+            drain(chars, sb);
+        } while (result.isOverflow());
+    }
+
+    /**
+     * 文字バッファの内容を追加し、文字バッファを空にする。
+     * @param chars 文字バッファ
+     * @param sb 追加先
+     */
+    private static void drain(CharBuffer chars, StringBuilder sb) {
+        chars.flip();
+        sb.append(chars.array(), chars.arrayOffset(), chars.remaining());
+        chars.clear();
+    }
+
+    /**
+     * 現在のスレッドで再利用するデコーダ及び文字バッファを取得する。
+     * <p/>
+     * 不正なバイト列及びマッピングできない文字は、{@link java.io.InputStreamReader}と同様に置換する。
+     * @param charset 文字セット
+     * @return 初期化済みのデコーダを保持するコンテキスト
+     */
+    private static DecodeContext getDecodeContext(Charset charset) {
+        DecodeContext context = DECODE_CONTEXT.get();
+        if (context == null) {
+            context = new DecodeContext();
+            DECODE_CONTEXT.set(context);
+        }
+        if (context.decoder == null || !context.decoder.charset().equals(charset)) {
+            context.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        context.decoder.reset();
+        return context;
+    }
+
+    /**
+     * スレッドごとに再利用するデコーダ及び文字バッファを保持するクラス。
+     * <p/>
+     * 保持するオブジェクトはJDKのクラスのみとする。
+     */
+    private static final class DecodeContext {
+
+        /** デコーダ(未生成の場合は{@code null}) */
+        private CharsetDecoder decoder;
+
+        /** デコードに使用する文字バッファ */
+        private final CharBuffer chars = CharBuffer.allocate(READ_BUF_SIZE);
+    }
 }
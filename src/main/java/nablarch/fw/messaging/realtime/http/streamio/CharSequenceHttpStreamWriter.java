@@ -0,0 +1,77 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * HTTP通信時に使用する、{@link CharSequence}を書き出すWriterクラス。
+ * <p/>
+ * 中間の文字列やバイト配列を生成せず、{@link java.nio.charset.CharsetEncoder}で直接ストリームにエンコードする。
+ * エンコード後の長さを事前に算出できるため、固定長ストリーミングモードで送信される。
+ * 長さは初回の取得時に算出して保持するため、本クラスに渡した後に内容を変更してはならない。
+ * 書き出しは何度でも行うことができる。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class CharSequenceHttpStreamWriter implements SizedHttpOutputStreamWriter, ReplayableHttpOutputStreamWriter {
+
+    /** 書き出し対象の文字列 */
+    private final CharSequence text;
+
+    /** 出力時に使用する文字セット */
+    private final Charset charset;
+
+    /** エンコード後の長さ(未算出の場合は-1) */
+    private volatile long contentLength = -1;
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * プラットフォームのデフォルトの文字セットを使用する。
+     * @param text 書き出し対象の文字列
+     */
+    public CharSequenceHttpStreamWriter(CharSequence text) {
+        this(text, null);
+    }
+
+    /**
+     * コンストラクタ。
+     * @param text 書き出し対象の文字列
+     * @param charset 文字セット({@code null}の場合はプラットフォームのデフォルト)
+     */
+    public CharSequenceHttpStreamWriter(CharSequence text, String charset) {
+        this.text = text;
+        this.charset = EncodingWriter.toCharset(charset);
+    }
+
+    /**
+     * ストリームに出力する。
+     * @param outputStream 出力先ストリームの実体
+     * @throws IOException ストリームへの書き込みに失敗した場合
+     */
+    public void writeStream(OutputStream outputStream) throws IOException {
+        EncodingWriter writer = new EncodingWriter(outputStream, charset);
+        try {
+            writer.writeAll(text);
+        } finally {
+            writer.finish();
+        }
+    }
+
+    /**
+     * エンコード後の長さを取得する。
+     * @return エンコード後の長さ
+     */
+    public long getContentLength() {
+        long length = contentLength;
+        if (length < 0) {
+            length = EncodingWriter.getEncodedLength(text, charset);
+            contentLength = length;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,26 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 送信する文字を逐次書き出すコールバック。
+ *
+ * @author TIS
+ * @see CallbackHttpStreamWriter
+ */
+@Published(tag = "architect")
+public interface CharStreamCallback {
+
+    /**
+     * 送信する文字を書き出す。
+     * <p/>
+     * 書き出した文字は、送信先の文字セットでエンコードされ、そのまま送信される。
+     * 引数の{@link Writer}は呼び出し元が終了処理を行うため、クローズする必要はない。
+     * @param writer 書き出し先
+     * @throws IOException 書き出しに失敗した場合
+     */
+    void write(Writer writer) throws IOException;
+}
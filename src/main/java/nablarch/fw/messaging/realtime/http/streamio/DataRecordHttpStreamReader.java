@@ -0,0 +1,274 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.dataformat.InvalidDataFormatException;
+import nablarch.core.dataformat.SimpleDataConvertUtil;
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 受信したデータを、フォーマット定義に従って直接ストリームから解析するReaderクラス。
+ * <p/>
+ * 受信データを文字列として保持せずに解析するため、大きな電文を受信する際のメモリ使用量を抑えることができる。
+ * 読み取り結果は{@link nablarch.core.dataformat.SimpleDataConvertResult}となる。
+ * 受信データが空の場合は{@code null}を返却する。
+ * <p/>
+ * 受信データはフォーマット定義の文字セットでエンコードされているものとして解析する。
+ * ただし、Content-Typeヘッダに異なる文字セットが指定されている場合は、指定された文字セットで文字として読み込み、
+ * フォーマット定義の文字セットでエンコードしながら解析する。
+ * <p/>
+ * 解析に失敗した場合は例外を送出せず、{@link #getParseError()}で取得できるよう保持する。
+ * これは、ステータスコードやヘッダ情報と合わせて呼び出し元でエラーを通知できるようにするためである。
+ * <p/>
+ * 証跡ログ出力用に、読み取った内容の先頭から{@link #getCaptureSize()}バイトまでを保持する。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class DataRecordHttpStreamReader extends AbstractHttpStreamReader {
+
+    /** 保持する読み取り内容のデフォルトの最大バイト数 */
+    public static final int DEFAULT_CAPTURE_SIZE = 64 * 1024;
+
+    /** フォーマット定義ファイル名 */
+    private final String formatName;
+
+    /** 保持する読み取り内容の最大バイト数 */
+    private final int captureSize;
+
+    /** 読み取った内容の先頭部分 */
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+    /** 解析する項目名({@code null}の場合は全ての項目を解析する) */
+    private Collection<String> fieldNames;
+
+    /** 解析結果を{@link nablarch.core.dataformat.CompactRecordMap}とするか否か */
+    private boolean compactRecord;
+
+    /** Content-Typeヘッダに指定された文字セット(指定されていない場合は{@code null}) */
+    private Charset responseCharset;
+
+    /** 読み取ったバイト数 */
+    private long readSize;
+
+    /** 解析時に発生した例外 */
+    private InvalidDataFormatException parseError;
+
+    /**
+     * コンストラクタ。
+     * @param formatName フォーマット定義ファイル名
+     */
+    public DataRecordHttpStreamReader(String formatName) {
+        this(formatName, DEFAULT_CAPTURE_SIZE);
+    }
+
+    /**
+     * コンストラクタ。
+     * @param formatName フォーマット定義ファイル名
+     * @param captureSize 保持する読み取り内容の最大バイト数(0の場合は保持しない)
+     */
+    public DataRecordHttpStreamReader(String formatName, int captureSize) {
+        this.formatName = formatName;
+        this.captureSize = captureSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 前回の読み取り時に設定されたヘッダ情報は破棄する。
+     */
+    @Override
+    public void setHeaderInfo(Map<String, List<String>> headerFields) {
+        responseCharset = null;
+        super.setHeaderInfo(headerFields);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Content-Typeヘッダに指定された文字セットを取得する。
+     * サポートされていない文字セットは無視する。
+     */
+    @Override
+    protected void setParamsFromHeader(String key, List<String> values) {
+        if (!"content-type".equalsIgnoreCase(key) || values == null || values.isEmpty()) {
+            return;
+        }
+        String value = values.get(0);
+        int index = value.toLowerCase().indexOf("charset=");
+        if (index >= 0) {
+            String name = value.substring(index + "charset=".length()).trim();
+            if (Charset.isSupported(name)) {
+                responseCharset = Charset.forName(name);
+            }
+        }
+    }
+
+    /**
+     * ストリームから読み取ったデータを、フォーマット定義に従って解析する。
+     * @param is 読み取り対象
+     * @return 解析結果。受信データが空の場合、又は解析に失敗した場合は{@code null}
+     * @throws IOException 読み取り例外
+     */
+    public Object readInputStream(InputStream is) throws IOException {
+        captured.reset();
+        readSize = 0;
+        parseError = null;
+        // 構造化データのフォーマッタはマーク及びリセットを使用するため、サポートするストリームで読み込む。
+        BufferedInputStream in = new BufferedInputStream(new CaptureInputStream(is));
+        try {
+            in.mark(1);
+            if (in.read() < 0) {
+                return null;
+            }
+            in.reset();
+            if (responseCharset != null
+                    && !responseCharset.equals(SimpleDataConvertUtil.getFormatInfo(formatName).getCharset())) {
+                //受信データの文字セットがフォーマット定義と異なるため、文字として読み込んでから解析する。
+                InputStreamReader reader = new InputStreamReader(in, responseCharset);
+                return compactRecord
+                        ? SimpleDataConvertUtil.parseCompactData(formatName, reader, fieldNames)
+                        : SimpleDataConvertUtil.parseData(formatName, reader, fieldNames);
+            }
+            return compactRecord
+                    ? SimpleDataConvertUtil.parseCompactData(formatName, in, fieldNames)
+                    : SimpleDataConvertUtil.parseData(formatName, in, fieldNames);
+        } catch (InvalidDataFormatException e) {
+            parseError = e;
+            return null;
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+
+    /**
+     * 解析する項目名を設定する。
+     * <p/>
+     * 指定されなかった項目は値の変換を行わず、解析結果にも含めない。
+     * @param fieldNames 解析する項目名({@code null}の場合は全ての項目を解析する)
+     */
+    public void setFieldNames(Collection<String> fieldNames) {
+        this.fieldNames = fieldNames;
+    }
+
+    /**
+     * 解析結果を{@link nablarch.core.dataformat.CompactRecordMap}とするか否かを設定する。
+     * <p/>
+     * デフォルトは{@code false}({@link nablarch.core.dataformat.DataRecord}とする)。
+     * @param compactRecord 解析結果を{@link nablarch.core.dataformat.CompactRecordMap}とする場合は{@code true}
+     * @see SimpleDataConvertUtil#parseCompactData(String, InputStream, Collection)
+     */
+    public void setCompactRecord(boolean compactRecord) {
+        this.compactRecord = compactRecord;
+    }
+
+    /**
+     * 解析時に発生した例外を取得する。
+     * @return 解析時に発生した例外。解析に成功した場合は{@code null}
+     */
+    public InvalidDataFormatException getParseError() {
+        return parseError;
+    }
+
+    /**
+     * 読み取ったバイト数を取得する。
+     * @return 読み取ったバイト数
+     */
+    public long getReadSize() {
+        return readSize;
+    }
+
+    /**
+     * 保持する読み取り内容の最大バイト数を取得する。
+     * @return 保持する読み取り内容の最大バイト数
+     */
+    public int getCaptureSize() {
+        return captureSize;
+    }
+
+    /**
+     * 読み取った内容の一部が保持されていないか否か。
+     * @return 読み取ったバイト数が保持する最大バイト数を超えた場合は{@code true}
+     */
+    public boolean isTruncated() {
+        return readSize > captured.size();
+    }
+
+    /**
+     * 保持している読み取り内容を文字列として取得する。
+     * @param charset 文字セット
+     * @return 読み取り内容の先頭部分
+     */
+    public String getCapturedText(Charset charset) {
+        return new String(captured.toByteArray(), charset);
+    }
+
+    /**
+     * 読み取った内容の先頭部分を保持するストリーム。
+     */
+    private class CaptureInputStream extends FilterInputStream {
+
+        /**
+         * コンストラクタ。
+         * @param in 読み取り元ストリーム
+         */
+        CaptureInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                if (captured.size() < captureSize) {
+                    captured.write(b);
+                }
+                readSize++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = in.read(b, off, len);
+            if (count > 0) {
+                int capture = Math.min(count, captureSize - captured.size());
+                if (capture > 0) {
+                    captured.write(b, off, capture);
+                }
+                readSize += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // 読み飛ばした内容も保持対象とするため、読み取りにより読み飛ばす。
+            byte[] buf = new byte[(int) Math.min(n, 8192)];
+            long remaining = n;
+            while (remaining > 0) {
+                int count = read(buf, 0, (int) Math.min(remaining, buf.length));
+                if (count < 0) {
+                    break;
+                }
+                remaining -= count;
+            }
+            return n - remaining;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
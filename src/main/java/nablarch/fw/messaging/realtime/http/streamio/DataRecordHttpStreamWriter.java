@@ -0,0 +1,162 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import nablarch.core.dataformat.SimpleDataConvertResult;
+import nablarch.core.dataformat.SimpleDataConvertUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * データレコードを、フォーマット定義に従って直接ストリームに書き出すWriterクラス。
+ * <p/>
+ * 変換結果を文字列として保持せずに書き出すため、大きな電文を送信する際のメモリ使用量を抑えることができる。
+ * 証跡ログ出力用に、書き出した内容の先頭から{@link #getCaptureSize()}バイトまでを保持する。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class DataRecordHttpStreamWriter implements ReplayableHttpOutputStreamWriter {
+
+    /** 保持する書き出し内容のデフォルトの最大バイト数 */
+    public static final int DEFAULT_CAPTURE_SIZE = 64 * 1024;
+
+    /** フォーマット定義ファイル名 */
+    private final String formatName;
+
+    /** 書き出し対象のデータレコード */
+    private final Map<String, ?> dataRecord;
+
+    /** 保持する書き出し内容の最大バイト数 */
+    private final int captureSize;
+
+    /** 書き出した内容の先頭部分 */
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+    /** 書き出したバイト数 */
+    private long writtenSize;
+
+    /** 変換結果 */
+    private SimpleDataConvertResult result;
+
+    /**
+     * コンストラクタ。
+     * @param formatName フォーマット定義ファイル名
+     * @param dataRecord 書き出し対象のデータレコード
+     */
+    public DataRecordHttpStreamWriter(String formatName, Map<String, ?> dataRecord) {
+        this(formatName, dataRecord, DEFAULT_CAPTURE_SIZE);
+    }
+
+    /**
+     * コンストラクタ。
+     * @param formatName フォーマット定義ファイル名
+     * @param dataRecord 書き出し対象のデータレコード
+     * @param captureSize 保持する書き出し内容の最大バイト数(0の場合は保持しない)
+     */
+    public DataRecordHttpStreamWriter(String formatName, Map<String, ?> dataRecord, int captureSize) {
+        this.formatName = formatName;
+        this.dataRecord = dataRecord;
+        this.captureSize = captureSize;
+    }
+
+    /**
+     * データレコードをフォーマット定義に従って変換し、ストリームに書き出す。
+     * @param outputStream 書き込み対象Stream
+     * @throws IOException 書き込み例外
+     * @throws nablarch.core.dataformat.InvalidDataFormatException データレコードがフォーマット定義に適合しない場合
+     */
+    public void writeStream(OutputStream outputStream) throws IOException {
+        captured.reset();
+        writtenSize = 0;
+        result = SimpleDataConvertUtil.buildData(formatName, dataRecord, new CaptureOutputStream(outputStream));
+    }
+
+    /**
+     * 変換結果を取得する。
+     * <p/>
+     * 変換後の文字列は設定されない。
+     * @return 変換結果。書き出しが完了していない場合は{@code null}
+     */
+    public SimpleDataConvertResult getResult() {
+        return result;
+    }
+
+    /**
+     * 書き出しが完了したか否か。
+     * @return 書き出しが完了している場合は{@code true}
+     */
+    public boolean isWritten() {
+        return result != null;
+    }
+
+    /**
+     * 書き出したバイト数を取得する。
+     * @return 書き出したバイト数
+     */
+    public long getWrittenSize() {
+        return writtenSize;
+    }
+
+    /**
+     * 保持する書き出し内容の最大バイト数を取得する。
+     * @return 保持する書き出し内容の最大バイト数
+     */
+    public int getCaptureSize() {
+        return captureSize;
+    }
+
+    /**
+     * 書き出した内容の一部が保持されていないか否か。
+     * @return 書き出したバイト数が保持する最大バイト数を超えた場合は{@code true}
+     */
+    public boolean isTruncated() {
+        return writtenSize > captured.size();
+    }
+
+    /**
+     * 保持している書き出し内容を文字列として取得する。
+     * @param charset 文字セット
+     * @return 書き出し内容の先頭部分
+     */
+    public String getCapturedText(Charset charset) {
+        return new String(captured.toByteArray(), charset);
+    }
+
+    /**
+     * 書き出し内容の先頭部分を保持しながら、出力先に書き出すストリーム。
+     */
+    private class CaptureOutputStream extends FilterOutputStream {
+
+        /**
+         * コンストラクタ。
+         * @param out 出力先ストリーム
+         */
+        CaptureOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (captured.size() < captureSize) {
+                captured.write(b);
+            }
+            writtenSize++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            int capture = Math.min(len, captureSize - captured.size());
+            if (capture > 0) {
+                captured.write(b, off, capture);
+            }
+            writtenSize += len;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import nablarch.core.dataformat.DataRecordIterator;
+import nablarch.core.dataformat.SimpleDataConvertUtil;
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 受信したデータに含まれる全てのレコードを、フォーマット定義に従ってストリームから1件ずつ解析するReaderクラス。
+ * <p/>
+ * 読み取り結果は{@link DataRecordIterator}となる。
+ * イテレータは接続先のストリームを保持し、レコードの取得時に解析を行うため、
+ * 受信するレコード件数に関わらずメモリ使用量を一定に抑えることができる。
+ * イテレータを返却した場合、ストリームのクローズはイテレータの利用者が行う。
+ * <p/>
+ * 受信データが空の場合は{@code null}を返却する。
+ * ステータスコードが2xx以外の場合は解析を行わず、
+ * エラー応答の本文の先頭から{@link #ERROR_BODY_LIMIT}バイトまでを文字列として返却する。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class DataRecordIteratorHttpStreamReader extends AbstractHttpStreamReader
+        implements StreamRetainingHttpInputStreamReader {
+
+    /** エラー応答の本文として読み取る最大バイト数 */
+    public static final int ERROR_BODY_LIMIT = 8192;
+
+    /** フォーマット定義ファイル名 */
+    private final String formatName;
+
+    /** ステータスコード(不明な場合は-1) */
+    private int statusCode = -1;
+
+    /** Content-Typeヘッダに指定された文字セット */
+    private Charset charset = Charset.forName("ISO-8859-1");
+
+    /** 直前の読み取り結果がストリームを保持しているか否か */
+    private boolean streamRetained;
+
+    /**
+     * コンストラクタ。
+     * @param formatName フォーマット定義ファイル名
+     */
+    public DataRecordIteratorHttpStreamReader(String formatName) {
+        this.formatName = formatName;
+    }
+
+    /**
+     * コネクションのヘッダー情報を取得/解析する。
+     * @param key ヘッダー情報Key
+     * @param values 値
+     */
+    @Override
+    protected void setParamsFromHeader(String key, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return;
+        }
+        String value = values.get(0);
+        if (key == null) {
+            statusCode = parseStatusCode(value);
+        } else if ("content-type".equalsIgnoreCase(key)) {
+            int index = value.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                String name = value.substring(index + "charset=".length()).trim();
+                if (Charset.isSupported(name)) {
+                    charset = Charset.forName(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * ステータスラインからステータスコードを取得する。
+     * @param statusLine ステータスライン
+     * @return ステータスコード(取得できない場合は-1)
+     */
+    private static int parseStatusCode(String statusLine) {
+        String[] elements = statusLine.trim().split(" ");
+        if (elements.length >= 2) {
+            try {
+                return Integer.parseInt(elements[1]);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * ストリームに含まれるレコードを1件ずつ解析するイテレータを返却する。
+     * @param is 読み取り対象
+     * @return レコードを解析するイテレータ。受信データが空の場合は{@code null}。
+     *          ステータスコードが2xx以外の場合はエラー応答の本文
+     * @throws IOException 読み取り例外
+     * @throws nablarch.core.dataformat.InvalidDataFormatException フォーマット定義ファイルが不正な場合
+     */
+    public Object readInputStream(InputStream is) throws IOException {
+        streamRetained = false;
+        if (statusCode >= 0 && (statusCode < 200 || statusCode >= 300)) {
+            try {
+                return readErrorBody(is);
+            } finally {
+                FileUtil.closeQuietly(is);
+            }
+        }
+        PushbackInputStream in = new PushbackInputStream(new BufferedInputStream(is));
+        try {
+            int first = in.read();
+            if (first < 0) {
+                return null;
+            }
+            in.unread(first);
+            DataRecordIterator iterator = SimpleDataConvertUtil.parseRecords(formatName, in);
+            streamRetained = true;
+            return iterator;
+        } finally {
+            if (!streamRetained) {
+                FileUtil.closeQuietly(in);
+            }
+        }
+    }
+
+    /**
+     * エラー応答の本文を読み取る。
+     * @param is 読み取り対象
+     * @return エラー応答の本文の先頭部分
+     * @throws IOException 読み取りに失敗した場合
+     */
+    private String readErrorBody(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while (out.size() < ERROR_BODY_LIMIT
+                && (count = is.read(buffer, 0, Math.min(buffer.length, ERROR_BODY_LIMIT - out.size()))) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        return new String(out.toByteArray(), charset);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * 読み取り結果がイテレータの場合に{@code true}を返却する。
+     */
+    public boolean isStreamRetained() {
+        return streamRetained;
+    }
+}
@@ -0,0 +1,252 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 文字を{@link CharsetEncoder}でエンコードし、直接ストリームに書き出すWriter。
+ * <p/>
+ * エンコーダはスレッドごとに再利用し、書き出しに使用するバイト配列は{@link ByteBufferPool}から取得する。
+ * {@link #finish()}を呼び出すまで、エンコーダ及びバイト配列を占有する。
+ * 書き出し先のストリームはクローズしない。
+ * <p/>
+ * マッピングできない文字及び不正な文字は、{@link java.io.OutputStreamWriter}と同様に置換する。
+ *
+ * @author TIS
+ */
+final class EncodingWriter extends Writer {
+
+    /** 文字の一時格納に使用するバッファのサイズ */
+    private static final int CHAR_BUFFER_SIZE = 4096;
+
+    /**
+     * スレッドごとに再利用するエンコーダ。
+     * <p/>
+     * 使用中のエンコーダは取り除かれるため、同一スレッドで入れ子に使用された場合は新たに生成する。
+     */
+    private static final ThreadLocal<CharsetEncoder> ENCODER = new ThreadLocal<CharsetEncoder>();
+
+    /** 書き出し先 */
+    private final OutputStream out;
+
+    /** エンコーダ */
+    private final CharsetEncoder encoder;
+
+    /** バッファのプール */
+    private final ByteBufferPool bufferPool;
+
+    /** エンコード結果の格納に使用するバイト配列 */
+    private final byte[] bytes;
+
+    /** 書き出し前の文字 */
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    /** 終了済みか否か */
+    private boolean finished;
+
+    /**
+     * コンストラクタ。
+     * @param out 書き出し先
+     * @param charset 文字セット
+     */
+    EncodingWriter(OutputStream out, Charset charset) {
+        this.out = out;
+        this.encoder = acquireEncoder(charset);
+        this.bufferPool = ByteBufferPool.getSharedPool();
+        this.bytes = bufferPool.acquire();
+    }
+
+    /**
+     * 文字セット名から文字セットを取得する。
+     * @param charset 文字セット名
+     * @return 文字セット。文字セット名が{@code null}の場合はプラットフォームのデフォルト
+     */
+    static Charset toCharset(String charset) {
+        return charset == null ? Charset.defaultCharset() : Charset.forName(charset);
+    }
+
+    /**
+     * 文字列をエンコードした際のバイト数を取得する。
+     * @param text 文字列
+     * @param charset 文字セット
+     * @return エンコード後のバイト数
+     */
+    static long getEncodedLength(CharSequence text, Charset charset) {
+        CountingOutputStream counter = new CountingOutputStream();
+        EncodingWriter writer = new EncodingWriter(counter, charset);
+        try {
+            writer.writeAll(text);
+            writer.finish();
+        } catch (IOException wontHappen) {
+            // 書き出し先が件数の計上のみを行うため、I/Oエラーは発生しえない。
+            throw new RuntimeException(wontHappen);
+        }
+        return counter.count;
+    }
+
+    /**
+     * 文字列を一時格納せずにエンコードして書き出す。
+     * @param text 文字列
+     * @throws IOException 書き出しに失敗した場合
+     */
+    void writeAll(CharSequence text) throws IOException {
+        flushChars(false);
+        if (chars.position() > 0) {
+            // サロゲートペアの途中で分割された文字が残っている場合は、後続の文字と合わせて書き出す。
+            write(text.toString());
+            return;
+        }
+        CharBuffer src = CharBuffer.wrap(text);
+        encode(src, false);
+        if (src.hasRemaining()) {
+            chars.put(src);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            int count = Math.min(remaining, chars.remaining());
+            chars.put(cbuf, offset, count);
+            offset += count;
+            remaining -= count;
+            if (!chars.hasRemaining()) {
+                flushChars(false);
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        write(str.toCharArray(), off, len);
+    }
+
+    /**
+     * 一時格納した文字を書き出し、書き出し先をフラッシュする。
+     * @throws IOException 書き出しに失敗した場合
+     */
+    @Override
+    public void flush() throws IOException {
+        flushChars(false);
+        out.flush();
+    }
+
+    /**
+     * 書き出しを終了する。
+     * <p/>
+     * 本メソッドは{@link #finish()}を呼び出す。書き出し先のストリームはクローズしない。
+     * @throws IOException 書き出しに失敗した場合
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    /**
+     * 残りの文字とエンコーダの内部状態を書き出し、エンコーダ及びバイト配列を解放する。
+     * <p/>
+     * 既に終了している場合は何もしない。
+     * @throws IOException 書き出しに失敗した場合
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            flushChars(true);
+            ByteBuffer dest = ByteBuffer.wrap(bytes);
+            CoderResult result;
+            do {
+                result = encoder.flush(dest);
+                drain(dest);
+            } while (result.isOverflow());
+            out.flush();
+        } finally {
+            bufferPool.release(bytes);
+            ENCODER.set(encoder);
+        }
+    }
+
+    /**
+     * 一時格納した文字をエンコードして書き出す。
+     * @param endOfInput 入力の終端の場合は{@code true}
+     * @throws IOException 書き出しに失敗した場合
+     */
+    private void flushChars(boolean endOfInput) throws IOException {
+        chars.flip();
+        encode(chars, endOfInput);
+        chars.compact();
+    }
+
+    /**
+     * 文字をエンコードして書き出す。
+     * @param src エンコード対象の文字
+     * @param endOfInput 入力の終端の場合は{@code true}
+     * @throws IOException 書き出しに失敗した場合
+     */
+    private void encode(CharBuffer src, boolean endOfInput) throws IOException {
+        ByteBuffer dest = ByteBuffer.wrap(bytes);
+        CoderResult result;
+        do {
+            result = encoder.encode(src, dest, endOfInput);
+            drain(dest);
+        } while (result.isOverflow());
+    }
+
+    /**
+     * エンコード結果を書き出し、バッファを空にする。
+     * @param dest エンコード結果
+     * @throws IOException 書き出しに失敗した場合
+     */
+    private void drain(ByteBuffer dest) throws IOException {
+        if (dest.position() > 0) {
+            out.write(bytes, 0, dest.position());
+            dest.clear();
+        }
+    }
+
+    /**
+     * 現在のスレッドで再利用するエンコーダを取得する。
+     * @param charset 文字セット
+     * @return 初期化済みのエンコーダ
+     */
+    private static CharsetEncoder acquireEncoder(Charset charset) {
+        CharsetEncoder encoder = ENCODER.get();
+        ENCODER.remove();
+        if (encoder == null || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        return encoder.reset();
+    }
+
+    /**
+     * 書き出されたバイト数の計上のみを行うストリーム。
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        /** 書き出されたバイト数 */
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
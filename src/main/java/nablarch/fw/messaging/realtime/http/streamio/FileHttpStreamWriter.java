@@ -0,0 +1,118 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * ファイルの内容を、ヒープ上に保持せずにストリームに書き出すWriterクラス。
+ * <p/>
+ * {@link FileChannel#transferTo}を使用して転送する。
+ * 書き出すデータの長さが事前に判明しているため、固定長ストリーミングモードで送信される。
+ * ファイルの内容は書き出しの都度読み込むため、書き出しは何度でも行うことができる。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class FileHttpStreamWriter implements SizedHttpOutputStreamWriter, ReplayableHttpOutputStreamWriter {
+
+    /** 一度に転送するバイト数 */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    /** 書き出し対象のファイル */
+    private final File file;
+
+    /** 書き出し対象のチャネル */
+    private final FileChannel channel;
+
+    /** 書き出しを開始する位置 */
+    private final long position;
+
+    /** 書き出す長さ */
+    private final long length;
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * ファイル全体を書き出す。ファイルは書き出しの都度オープン・クローズする。
+     * @param file 書き出し対象のファイル
+     */
+    public FileHttpStreamWriter(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("file not found. file=[" + file.getAbsolutePath() + "]");
+        }
+        this.file = file;
+        this.channel = null;
+        this.position = 0;
+        this.length = file.length();
+    }
+
+    /**
+     * コンストラクタ。
+     * <p/>
+     * チャネルの指定した範囲を書き出す。チャネルのpositionは変更せず、本クラスではクローズしない。
+     * @param channel 書き出し対象のチャネル
+     * @param position 書き出しを開始する位置
+     * @param length 書き出す長さ
+     */
+    public FileHttpStreamWriter(FileChannel channel, long position, long length) {
+        this.file = null;
+        this.channel = channel;
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * ファイルの内容をストリームに書き出す。
+     * @param outputStream 書き込み対象Stream
+     * @throws IOException 読み込み又は書き込みに失敗した場合
+     */
+    public void writeStream(OutputStream outputStream) throws IOException {
+        WritableByteChannel dest = Channels.newChannel(outputStream);
+        if (channel != null) {
+            transfer(channel, dest);
+        } else {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                transfer(in.getChannel(), dest);
+            } finally {
+                FileUtil.closeQuietly(in);
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * チャネル間で転送する。
+     * @param src 転送元
+     * @param dest 転送先
+     * @throws IOException 読み込み又は書き込みに失敗した場合、又はファイルが書き出す長さより短い場合
+     */
+    private void transfer(FileChannel src, WritableByteChannel dest) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = src.transferTo(position + transferred, Math.min(TRANSFER_SIZE, length - transferred), dest);
+            if (count <= 0) {
+                // 宣言した長さより短い場合、固定長で送信しているため処理を継続できない。
+                throw new IOException("file is shorter than the declared length. length=["
+                        + length + "] transferred=[" + transferred + "]");
+            }
+            transferred += count;
+        }
+    }
+
+    /**
+     * 書き出すデータの長さを取得する。
+     * @return 書き出すデータの長さ
+     */
+    public long getContentLength() {
+        return length;
+    }
+}
@@ -0,0 +1,19 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 応答の本文をダウンロードする際の進捗を通知するためのIF
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public interface HttpDownloadProgressListener {
+
+    /**
+     * 進捗を通知する。
+     * @param transferredBytes これまでに転送したバイト数
+     * @param contentLength Content-Lengthヘッダの値(不明な場合は-1)
+     */
+    void onProgress(long transferredBytes, long contentLength);
+}
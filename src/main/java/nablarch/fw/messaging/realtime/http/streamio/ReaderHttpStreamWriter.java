@@ -0,0 +1,64 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import nablarch.core.util.FileUtil;
+import nablarch.core.util.annotation.Published;
+
+/**
+ * HTTP通信時に使用する、{@link Reader}から読み込んだ文字を書き出すWriterクラス。
+ * <p/>
+ * 読み込んだ文字を{@link java.nio.charset.CharsetEncoder}で直接ストリームにエンコードするため、
+ * 全体をメモリ上に保持しない。
+ * 長さが事前に判明しないため、チャンク形式で送信される。
+ * {@link Reader}は書き出し後にクローズするため、書き出しは一度しか行えない。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public class ReaderHttpStreamWriter implements HttpOutputStreamWriter {
+
+    /** 読み込み時のバッファサイズ */
+    private static final int READ_BUF_SIZE = 4096;
+
+    /** 読み込み元 */
+    private final Reader reader;
+
+    /** 出力時に使用する文字セット */
+    private final Charset charset;
+
+    /**
+     * コンストラクタ。
+     * @param reader 読み込み元
+     * @param charset 文字セット({@code null}の場合はプラットフォームのデフォルト)
+     */
+    public ReaderHttpStreamWriter(Reader reader, String charset) {
+        this.reader = reader;
+        this.charset = EncodingWriter.toCharset(charset);
+    }
+
+    /**
+     * ストリームに出力する。
+     * @param outputStream 出力先ストリームの実体
+     * @throws IOException 読み込み元からの読み込み、又はストリームへの書き込みに失敗した場合
+     */
+    public void writeStream(OutputStream outputStream) throws IOException {
+        EncodingWriter writer = new EncodingWriter(outputStream, charset);
+        try {
+            char[] buf = new char[READ_BUF_SIZE];
+            int len;
+            while ((len = reader.read(buf)) != -1) {
+                writer.write(buf, 0, len);
+            }
+        } finally {
+            try {
+                writer.finish();
+            } finally {
+                FileUtil.closeQuietly(reader);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 繰り返し書き出しを行うことができる、Streamに書き出しを行わせるためのIF
+ * <p/>
+ * 本IFを実装したWriterは、{@link #writeStream(java.io.OutputStream)}を複数回呼び出した場合でも同じ内容を書き出す。
+ * ストリーミングモードでの送信中に認証やリダイレクトにより再送が必要となった場合、
+ * 本IFを実装したWriterであれば本文をバッファリングして再送することができる。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public interface ReplayableHttpOutputStreamWriter extends HttpOutputStreamWriter {
+}
@@ -0,0 +1,21 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 書き出すデータの長さが事前に判明している、Streamに書き出しを行わせるためのIF
+ * <p/>
+ * 本IFを実装したWriterを使用した場合、{@link nablarch.fw.messaging.realtime.http.client.HttpProtocolBasicClient}は
+ * ストリーミングモードの設定に従い、固定長ストリーミングモードで送信する(本文全体をメモリ上にバッファリングしない)。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public interface SizedHttpOutputStreamWriter extends HttpOutputStreamWriter {
+
+    /**
+     * 書き出すデータの長さを取得する。
+     * @return 書き出すデータの長さ(バイト数)
+     */
+    long getContentLength();
+}
@@ -0,0 +1,22 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import nablarch.core.util.annotation.Published;
+
+/**
+ * 読み取り結果が、読み取り対象のStreamを保持し続けることができるReaderのIF
+ * <p/>
+ * {@link #isStreamRetained()}が{@code true}を返却した場合、
+ * 呼び出し元は{@link #readInputStream(java.io.InputStream)}の終了後にStream及び接続をクローズしない。
+ * Streamのクローズは、読み取り結果の利用者が行う。
+ *
+ * @author TIS
+ */
+@Published(tag = "architect")
+public interface StreamRetainingHttpInputStreamReader extends HttpInputStreamReader {
+
+    /**
+     * 直前の読み取り結果が、読み取り対象のStreamを保持しているか否か。
+     * @return Streamを保持している場合は{@code true}
+     */
+    boolean isStreamRetained();
+}
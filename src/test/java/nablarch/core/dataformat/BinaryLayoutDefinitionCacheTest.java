@@ -0,0 +1,228 @@
+package nablarch.core.dataformat;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import nablarch.core.util.FileUtil;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link BinaryLayoutDefinitionCache}のテスト。
+ *
+ * @author TIS
+ */
+public class BinaryLayoutDefinitionCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** マルチレイアウトの固定長形式のフォーマット定義 */
+    private static final String FIXED_FORMAT = "file-type: \"Fixed\"\n"
+            + "text-encoding: \"MS932\"\n"
+            + "record-length: 20\n"
+            + "record-separator: \"\\n\"\n"
+            + "[Classifier]\n"
+            + "1 dataKbn X(1)\n"
+            + "[Header]\n"
+            + "dataKbn = \"1\"\n"
+            + "1 dataKbn X(1)\n"
+            + "2 title N(10)\n"
+            + "12 ?filler X(9)\n"
+            + "[Data]\n"
+            + "dataKbn = \"2\"\n"
+            + "1 dataKbn X(1)\n"
+            + "2 amount X9(10) number\n"
+            + "12 code X(9) pad(\"0\")\n"
+            + "[Trailer] < [Data]\n"
+            + "dataKbn = \"9\"\n";
+
+    /** 属性、配列及び任意項目を含むXML形式のフォーマット定義 */
+    private static final String XML_FORMAT = "file-type: \"XML\"\n"
+            + "text-encoding: \"UTF-8\"\n"
+            + "[request]\n"
+            + "1 @id X\n"
+            + "2 items [1..3] X\n"
+            + "3 opt [0..1] X\n"
+            + "4 child OB\n"
+            + "[child]\n"
+            + "1 name X\n"
+            + "2 ?ignored X\n";
+
+    /**
+     * キャッシュファイルから、テキストを解析した場合と同じフォーマット定義が復元されること。
+     */
+    @Test
+    public void testRead() throws Exception {
+        File fixed = createFile("fixed.fmt", FIXED_FORMAT);
+        File xml = createFile("xml.fmt", XML_FORMAT);
+        File cacheFile = new File(folder.getRoot(), "format.cache");
+        assertThat(BinaryLayoutDefinitionCache.write(cacheFile, Arrays.asList(fixed, xml)), is(2));
+
+        BinaryLayoutDefinitionCache cache = BinaryLayoutDefinitionCache.load(cacheFile);
+        assertThat(cache.size(), is(2));
+        for (File file : Arrays.asList(fixed, xml)) {
+            LayoutDefinition parsed = new LayoutFileParser(file.getAbsolutePath()).parse();
+            LayoutDefinition restored = cache.read(file);
+            assertThat(describe(restored), is(describe(parsed)));
+        }
+
+        // 復元したフォーマット定義で、テキストを解析した場合と同じデータが生成される
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("dataKbn", "2");
+        data.put("amount", 123);
+        data.put("code", "ab");
+        assertThat(format(cache.read(fixed), data), is(format(new LayoutFileParser(fixed.getAbsolutePath()).parse(), data)));
+    }
+
+    /**
+     * フォーマット定義ファイルが変更された場合、及びキャッシュに存在しない場合は、復元されないこと。
+     */
+    @Test
+    public void testStale() throws Exception {
+        File fixed = createFile("fixed.fmt", FIXED_FORMAT);
+        File cacheFile = new File(folder.getRoot(), "format.cache");
+        BinaryLayoutDefinitionCache.write(cacheFile, Arrays.asList(fixed));
+        BinaryLayoutDefinitionCache cache = BinaryLayoutDefinitionCache.load(cacheFile);
+        assertThat(cache.isValid(fixed), is(true));
+
+        createFile("fixed.fmt", FIXED_FORMAT.replace("record-length: 20", "record-length: 21"));
+        assertThat(cache.isValid(fixed), is(false));
+        assertThat(cache.read(fixed), nullValue());
+        assertThat(cache.read(createFile("xml.fmt", XML_FORMAT)), nullValue());
+    }
+
+    /**
+     * キャッシュファイルを出力し直した場合、一時ファイルが残らずに置き換えられること。
+     */
+    @Test
+    public void testRewrite() throws Exception {
+        File fixed = createFile("fixed.fmt", FIXED_FORMAT);
+        File xml = createFile("xml.fmt", XML_FORMAT);
+        File cacheFile = new File(folder.getRoot(), "format.cache");
+        BinaryLayoutDefinitionCache.write(cacheFile, Arrays.asList(fixed));
+        BinaryLayoutDefinitionCache.write(cacheFile, Arrays.asList(fixed, xml));
+
+        assertThat(folder.getRoot().list().length, is(3));
+        BinaryLayoutDefinitionCache cache = BinaryLayoutDefinitionCache.load(cacheFile);
+        assertThat(cache.size(), is(2));
+        assertThat(cache.read(xml).getRecordType("request").getFields().size(), is(4));
+    }
+
+    /**
+     * 形式が不正なキャッシュファイルは読み込めないこと。
+     */
+    @Test
+    public void testBrokenFile() throws Exception {
+        File broken = createFile("format.cache", "broken cache file");
+        try {
+            BinaryLayoutDefinitionCache.load(broken);
+            fail("IOException must be thrown.");
+        } catch (IOException e) {
+            assertThat(e.getMessage().startsWith("unsupported cache file."), is(true));
+        }
+    }
+
+    /**
+     * {@link LayoutDefinitionCache}に設定したキャッシュから、初期化済みのフォーマット定義が取得できること。
+     */
+    @Test
+    public void testLayoutDefinitionCache() throws Exception {
+        File xml = createFile("xml.fmt", XML_FORMAT);
+        File cacheFile = new File(folder.getRoot(), "format.cache");
+        BinaryLayoutDefinitionCache.write(cacheFile, Arrays.asList(xml));
+
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        cache.setBinaryCache(BinaryLayoutDefinitionCache.load(cacheFile));
+        LayoutDefinition definition = cache.get(xml);
+        assertThat(definition.isInitialized(), is(true));
+        assertThat(definition.getRecordType("request").getFields().size(), is(4));
+    }
+
+    /**
+     * フォーマット定義の、解析時に設定される内容を文字列で表現する。
+     * @param definition フォーマット定義
+     * @return 文字列
+     */
+    private static String describe(LayoutDefinition definition) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(new TreeMap<String, Object>(definition.getDirective())).append('\n');
+        RecordDefinition classifier = definition.getRecordClassifier();
+        sb.append(classifier == null ? null : describe(classifier));
+        for (RecordDefinition record : definition.getRecords()) {
+            sb.append(describe(record));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * レコード定義の、解析時に設定される内容を文字列で表現する。
+     * @param record レコード定義
+     * @return 文字列
+     */
+    private static String describe(RecordDefinition record) {
+        StringBuilder sb = new StringBuilder();
+        RecordDefinition base = record.getBaseRecordType();
+        sb.append('[').append(record.getTypeName()).append("] < ").append(base == null ? null : base.getTypeName())
+          .append(' ').append(record.getConditionsToApply()).append('\n');
+        for (FieldDefinition field : record.getFields()) {
+            sb.append(field.getPosition()).append(' ').append(field.getName())
+              .append(" filler=").append(field.isFiller())
+              .append(" attribute=").append(field.isAttribute())
+              .append(" required=").append(field.isRequired())
+              .append(" array=").append(field.isArray())
+              .append(' ').append(field.getMinArraySize()).append("..").append(field.getMaxArraySize());
+            for (Map.Entry<String, Object[]> setting : field.getConvertorSettingList().entrySet()) {
+                sb.append(' ').append(setting.getKey()).append(Arrays.toString(setting.getValue()));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * フォーマット定義を使用してデータを生成する。
+     * @param definition 初期化前のフォーマット定義
+     * @param data 変換対象データ
+     * @return 生成したデータ
+     */
+    private static String format(LayoutDefinition definition, Map<String, ?> data) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataRecordFormatter formatter = FormatterFactory.getInstance().createFormatter(definition);
+        formatter.setOutputStream(out);
+        formatter.initialize();
+        formatter.writeRecord(data);
+        formatter.close();
+        return out.toString("MS932");
+    }
+
+    /**
+     * ファイルを作成する。
+     * @param name ファイル名
+     * @param content 内容
+     * @return 作成したファイル
+     */
+    private File createFile(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,138 @@
+package nablarch.core.dataformat;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * {@link CompactRecordMap}のテスト。
+ *
+ * @author TIS
+ */
+public class CompactRecordMapTest {
+
+    /**
+     * 複製元のMapと同じ内容となり、{@link DataRecord}と同様に項目名の表記の違いを許容して検索できること。
+     */
+    @Test
+    public void testGet() {
+        DataRecord source = new DataRecord();
+        source.put("userId", "u1");
+        source.put("amount", null);
+        source.setRecordType("data");
+
+        RecordSchema schema = new RecordSchema(Arrays.asList("userId", "amount", "note"));
+        CompactRecordMap map = new CompactRecordMap(schema, source);
+
+        assertThat(map.size(), is(2));
+        assertThat(map.equals(new HashMap<String, Object>(source)), is(true));
+        assertThat(new HashMap<String, Object>(source).equals(map), is(true));
+        assertThat(map.hashCode(), is(new HashMap<String, Object>(source).hashCode()));
+        assertThat(map.getRecordType(), is("data"));
+
+        assertThat((String) map.get("USER_ID"), is("u1"));
+        assertThat((String) map.get(schema.getIndex("userId")), is("u1"));
+        assertThat(map.containsKey("amount"), is(true));
+        assertThat(map.containsKey("note"), is(false));
+        assertThat(map.get("unknown"), nullValue());
+    }
+
+    /**
+     * 項目名の並びに含まれない項目を含め、通常のMapと同様に変更できること。
+     */
+    @Test
+    public void testModify() {
+        CompactRecordMap map = new CompactRecordMap(new RecordSchema(Arrays.asList("a", "b")));
+        Map<String, Object> expected = new HashMap<String, Object>();
+        for (Map<String, Object> target : Arrays.<Map<String, Object>>asList(map, expected)) {
+            target.put("a", "1");
+            target.put("b", "2");
+            target.put("c", "3");
+            target.remove("a");
+            Iterator<Entry<String, Object>> iterator = target.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Entry<String, Object> entry = iterator.next();
+                if (entry.getKey().equals("c")) {
+                    iterator.remove();
+                } else {
+                    entry.setValue("x");
+                }
+            }
+        }
+        assertThat(map.equals(expected), is(true));
+        assertThat(map.size(), is(1));
+
+        // 複製は元のMapの変更に影響されない
+        CompactRecordMap copy = map.copy();
+        map.clear();
+        assertThat(map.isEmpty(), is(true));
+        assertThat(copy.equals(expected), is(true));
+        assertThat(copy.getSchema(), sameInstance(map.getSchema()));
+    }
+
+    /**
+     * 共有する項目名の並びが、新たな項目を含むレコードの変換時に拡張されること。
+     */
+    @Test
+    public void testSharedSchema() {
+        AtomicReference<RecordSchema> shared = new AtomicReference<RecordSchema>();
+        Map<String, Object> record = new HashMap<String, Object>();
+        record.put("a", "1");
+
+        CompactRecordMap first = CompactRecordMap.create(record, shared);
+        assertThat(CompactRecordMap.create(record, shared).getSchema(), sameInstance(first.getSchema()));
+
+        record.put("b", "2");
+        CompactRecordMap second = CompactRecordMap.create(record, shared);
+        assertThat(second.getSchema(), not(sameInstance(first.getSchema())));
+        assertThat(second.getSchema().getIndex("a"), is(first.getSchema().getIndex("a")));
+        assertThat(second.equals(record), is(true));
+        assertThat(shared.get(), sameInstance(second.getSchema()));
+    }
+
+    /**
+     * 直列化して復元したMapが、値の存在しない項目を含め元のMapと同じ内容となること。
+     */
+    @Test
+    public void testSerialize() throws Exception {
+        CompactRecordMap map = new CompactRecordMap(new RecordSchema(Arrays.asList("a", "b", "c")));
+        map.put("a", "1");
+        map.put("c", null);
+        map.put("extra", "2");
+        map.setRecordType("data");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(map);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        CompactRecordMap restored = (CompactRecordMap) in.readObject();
+        in.close();
+
+        assertThat(restored.equals(map), is(true));
+        assertThat(restored.size(), is(3));
+        assertThat(restored.containsKey("b"), is(false));
+        assertThat(restored.containsKey("c"), is(true));
+        assertThat(restored.getRecordType(), is("data"));
+        assertThat((String) restored.get("A"), is("1"));
+
+        // 復元したMapも変更できる
+        restored.put("b", "3");
+        assertThat(restored.size(), is(4));
+    }
+}
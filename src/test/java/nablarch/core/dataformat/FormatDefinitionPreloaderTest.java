@@ -0,0 +1,249 @@
+package nablarch.core.dataformat;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link FormatDefinitionPreloader}のテスト。
+ *
+ * @author TIS
+ */
+public class FormatDefinitionPreloaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        FilePathSetting setting = new FilePathSetting();
+        setting.addBasePathSetting("format", folder.getRoot().toURI().toString());
+        setting.addFileExtensions("format", "fmt");
+        final Map<String, Object> components = new HashMap<String, Object>();
+        components.put("filePathSetting", setting);
+        SystemRepository.load(new ObjectLoader() {
+            public Map<String, Object> load() {
+                return components;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        SystemRepository.clear();
+    }
+
+    /**
+     * 接尾辞に一致するフォーマット定義ファイルのみが解析され、キャッシュに格納されること。
+     */
+    @Test
+    public void testInitialize() throws Exception {
+        File send = createFormatFile("RM11AC0101_SEND.fmt", "1 key X\n");
+        File receive = createFormatFile("RM11AC0101_RECEIVE.fmt", "1 key X\n");
+        createFormatFile("RM11AC0102_SEND.fmt", "1 key X\n");
+        createFormatFile("header.fmt", "1 key X\n");
+
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        FormatDefinitionPreloader preloader = new FormatDefinitionPreloader();
+        preloader.setCache(cache);
+        preloader.setThreadCount(2);
+        preloader.initialize();
+
+        assertThat(preloader.getLoadedCount(), is(3));
+        assertThat(preloader.getFailures().isEmpty(), is(true));
+        assertThat(preloader.getLoadTimeMillis() >= 0, is(true));
+        assertThat(cache.size(), is(3));
+
+        // 解析済みのフォーマット定義が使用される
+        cache.get(send);
+        cache.get(receive);
+        assertThat(cache.getMissCount(), is(3L));
+        assertThat(cache.getHitCount(), is(2L));
+    }
+
+    /**
+     * 解析対象のファイル数がキャッシュの最大エントリ数を超える場合、最大エントリ数が拡張され、
+     * 全てのフォーマット定義がキャッシュに格納されること。
+     */
+    @Test
+    public void testMoreFilesThanCacheSize() throws Exception {
+        File[] files = new File[5];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = createFormatFile("RM11AC010" + i + "_SEND.fmt", "1 key X\n");
+        }
+
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(2);
+        FormatDefinitionPreloader preloader = new FormatDefinitionPreloader();
+        preloader.setCache(cache);
+        preloader.initialize();
+
+        assertThat(preloader.getLoadedCount(), is(5));
+        assertThat(cache.getMaxSize(), is(5));
+        assertThat(cache.size(), is(5));
+        assertThat(cache.getEvictionCount(), is(0L));
+        for (File file : files) {
+            assertThat(cache.contains(file), is(true));
+        }
+
+        // 最大エントリ数が十分な場合は変更しない
+        LayoutDefinitionCache large = new LayoutDefinitionCache(10);
+        preloader.setCache(large);
+        preloader.initialize();
+        assertThat(large.getMaxSize(), is(10));
+    }
+
+    /**
+     * 不正なフォーマット定義ファイルが存在した場合、全てのファイルを解析した後に
+     * 不正なファイルを列挙した例外が送出されること。
+     */
+    @Test
+    public void testInvalidFiles() throws Exception {
+        createFormatFile("A_SEND.fmt", "1 key X\n");
+        File invalid1 = createFormatFile("B_SEND.fmt", "1 key\n");
+        File invalid2 = createFormatFile("C_RECEIVE.fmt", "file-type: \"Unknown\"\n[request]\n1 key X\n");
+
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        FormatDefinitionPreloader preloader = new FormatDefinitionPreloader();
+        preloader.setCache(cache);
+        try {
+            preloader.initialize();
+            fail("IllegalStateException must be thrown.");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("count = [2]"));
+            assertThat(e.getMessage(), containsString(invalid1.getAbsolutePath()));
+            assertThat(e.getMessage(), containsString(invalid2.getAbsolutePath()));
+        }
+        assertThat(preloader.getLoadedCount(), is(1));
+        assertThat(cache.size(), is(1));
+
+        // 例外を送出しない設定の場合は、処理を継続する
+        FormatDefinitionPreloader lenient = new FormatDefinitionPreloader();
+        lenient.setCache(cache);
+        lenient.setFailOnError(false);
+        lenient.setSuffixes(Arrays.asList("_RECEIVE"));
+        lenient.initialize();
+        assertThat(lenient.getLoadedCount(), is(0));
+        assertThat(lenient.getFailures().keySet().iterator().next(), is(invalid2.getAbsolutePath()));
+    }
+
+    /**
+     * バイナリ形式のキャッシュファイルが作成され、次回の起動時に使用されること。
+     */
+    @Test
+    public void testBinaryCacheFile() throws Exception {
+        File send = createFormatFile("A_SEND.fmt", "1 key X\n");
+        createFormatFile("A_RECEIVE.fmt", "1 key X\n");
+        File cacheFile = new File(folder.getRoot(), "format.cache");
+
+        FormatDefinitionPreloader preloader = new FormatDefinitionPreloader();
+        preloader.setCache(new LayoutDefinitionCache(10));
+        preloader.setBinaryCacheFile(cacheFile.getPath());
+        preloader.initialize();
+        assertThat(BinaryLayoutDefinitionCache.load(cacheFile).size(), is(2));
+
+        // フォーマット定義ファイルが変更されていなければ、キャッシュファイルは作成し直さない
+        assertThat(cacheFile.setLastModified(0L), is(true));
+        preloader.setCache(new LayoutDefinitionCache(10));
+        preloader.initialize();
+        assertThat(cacheFile.lastModified(), is(0L));
+
+        // 変更されたフォーマット定義ファイルは解析され、キャッシュファイルが作成し直される
+        createFormatFile("A_SEND.fmt", "1 key X\n2 value X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        preloader.setCache(cache);
+        preloader.initialize();
+        assertThat(preloader.getLoadedCount(), is(2));
+        assertThat(cache.get(send).getRecords().get(0).getFields().size(), is(2));
+        assertThat(BinaryLayoutDefinitionCache.load(cacheFile).isValid(send), is(true));
+    }
+
+    /**
+     * キャッシュファイルを作成し直す場合も、フォーマット定義ファイルは一度だけ解析されること。
+     */
+    @Test
+    public void testBinaryCacheFileParsedOnce() throws Exception {
+        File send = createFormatFile("A_SEND.fmt", "1 key X\n");
+        File receive = createFormatFile("A_RECEIVE.fmt", "1 key X\n");
+        File cacheFile = new File(folder.getRoot(), "format.cache");
+        CountingFormatterFactory factory = new CountingFormatterFactory();
+        final Map<String, Object> components = new HashMap<String, Object>();
+        components.put("filePathSetting", SystemRepository.getObject("filePathSetting"));
+        components.put("formatterFactory", factory);
+        SystemRepository.load(new ObjectLoader() {
+            public Map<String, Object> load() {
+                return components;
+            }
+        });
+
+        FormatDefinitionPreloader preloader = new FormatDefinitionPreloader();
+        preloader.setCache(new LayoutDefinitionCache(10));
+        preloader.setBinaryCacheFile(cacheFile.getPath());
+        preloader.initialize();
+        assertThat(factory.count.get(), is(2));
+        assertThat(BinaryLayoutDefinitionCache.load(cacheFile).size(), is(2));
+
+        createFormatFile("A_SEND.fmt", "1 key X\n2 value X\n");
+        factory.count.set(0);
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        preloader.setCache(cache);
+        preloader.initialize();
+        assertThat(factory.count.get(), is(2));
+        assertThat(cache.get(send).getRecords().get(0).getFields().size(), is(2));
+        BinaryLayoutDefinitionCache binaryCache = BinaryLayoutDefinitionCache.load(cacheFile);
+        assertThat(binaryCache.isValid(send), is(true));
+        assertThat(binaryCache.isValid(receive), is(true));
+        assertThat(binaryCache.read(send).getRecords().get(0).getFields().size(), is(2));
+    }
+
+    /**
+     * フォーマット定義ファイルを解析した回数を記録するフォーマッタファクトリ。
+     */
+    private static class CountingFormatterFactory extends FormatterFactory {
+
+        /** 解析した回数 */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        protected LayoutDefinition createDefinition(File layoutFile) {
+            count.incrementAndGet();
+            return super.createDefinition(layoutFile);
+        }
+    }
+
+    /**
+     * フォーマット定義ファイルを作成する。
+     * @param name ファイル名
+     * @param content 内容
+     * @return 作成したファイル
+     */
+    private File createFormatFile(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("file-type: \"JSON\"\ntext-encoding: \"UTF-8\"\n[request]\n" + content).getBytes("UTF-8"));
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+        return file;
+    }
+}
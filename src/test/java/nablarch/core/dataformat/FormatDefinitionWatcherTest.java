@@ -0,0 +1,147 @@
+package nablarch.core.dataformat;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link FormatDefinitionWatcher}のテスト。
+ *
+ * @author TIS
+ */
+public class FormatDefinitionWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FormatDefinitionWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        FilePathSetting setting = new FilePathSetting();
+        setting.addBasePathSetting("format", folder.getRoot().toURI().toString());
+        setting.addFileExtensions("format", "fmt");
+        final Map<String, Object> components = new HashMap<String, Object>();
+        components.put("filePathSetting", setting);
+        SystemRepository.load(new ObjectLoader() {
+            public Map<String, Object> load() {
+                return components;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (watcher != null) {
+            watcher.stop();
+        }
+        SystemRepository.clear();
+    }
+
+    /**
+     * 変更されたフォーマット定義ファイルのうち、キャッシュに格納されているものが置き換えられること。
+     * 置き換え前に取得したフォーマット定義は変更されないこと。
+     */
+    @Test
+    public void testReload() throws Exception {
+        File cached = createFormatFile("A_RECEIVE.fmt", "1 key X\n");
+        File notCached = createFormatFile("B_RECEIVE.fmt", "1 key X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        LayoutDefinition before = cache.get(cached);
+        cache.get(cached, new TreeSet<String>(Arrays.asList("key")));
+
+        watcher = createWatcher(cache);
+        watcher.initialize();
+        createFormatFile("A_RECEIVE.fmt", "1 key X\n2 value X\n");
+        createFormatFile("B_RECEIVE.fmt", "1 key X\n2 value X\n");
+        watcher.poll();
+
+        assertThat(cache.getReloadCount(), is(1L));
+        assertThat(cache.contains(notCached), is(false));
+        assertThat(cache.size(), is(1));
+        assertThat(before.getRecords().get(0).getFields().size(), is(1));
+
+        // 置き換えたフォーマット定義は、解析せずに取得できる
+        long missCount = cache.getMissCount();
+        LayoutDefinition after = cache.get(cached);
+        assertThat(after, not(sameInstance(before)));
+        assertThat(after.getRecords().get(0).getFields().size(), is(2));
+        assertThat(cache.getMissCount(), is(missCount));
+
+        // 変更がなければ置き換えない
+        watcher.poll();
+        assertThat(cache.get(cached), sameInstance(after));
+    }
+
+    /**
+     * 解析に失敗した場合はエントリが置き換えられず、削除されたファイルのエントリは破棄されること。
+     */
+    @Test
+    public void testInvalidAndRemoved() throws Exception {
+        File invalid = createFormatFile("A_RECEIVE.fmt", "1 key X\n");
+        File removed = createFormatFile("B_RECEIVE.fmt", "1 key X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        cache.get(invalid);
+        cache.get(removed);
+
+        watcher = createWatcher(cache);
+        watcher.initialize();
+        createFormatFile("A_RECEIVE.fmt", "1 key\n");
+        assertThat(removed.delete(), is(true));
+        watcher.poll();
+
+        assertThat(cache.getReloadCount(), is(0L));
+        assertThat(cache.contains(invalid), is(true));
+        assertThat(cache.contains(removed), is(false));
+    }
+
+    /**
+     * テスト対象を生成する。
+     * @param cache キャッシュ
+     * @return テスト対象
+     */
+    private static FormatDefinitionWatcher createWatcher(LayoutDefinitionCache cache) {
+        FormatDefinitionWatcher watcher = new FormatDefinitionWatcher();
+        watcher.setCache(cache);
+        // バックグラウンドでの確認と競合しないよう、十分に長い間隔とする。
+        watcher.setIntervalMillis(60 * 60 * 1000);
+        return watcher;
+    }
+
+    /**
+     * フォーマット定義ファイルを作成する。
+     * @param name ファイル名
+     * @param content 内容
+     * @return 作成したファイル
+     */
+    private File createFormatFile(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("file-type: \"JSON\"\ntext-encoding: \"UTF-8\"\n[request]\n" + content).getBytes("UTF-8"));
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,235 @@
+package nablarch.core.dataformat;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FileUtil;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link LayoutDefinitionCache}のテスト。
+ *
+ * @author TIS
+ */
+public class LayoutDefinitionCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 同一のフォーマット定義ファイルに対しては、解析済みのフォーマット定義が返却されること。
+     */
+    @Test
+    public void testGet() throws Exception {
+        File file = createFormatFile("a.fmt", "1 key X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+
+        LayoutDefinition first = cache.get(file);
+        assertThat(cache.get(file), sameInstance(first));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getHitRatio(), is(0.5));
+
+        // 項目を絞り込んだ定義は別のエントリとなる。
+        LayoutDefinition projected = cache.get(file, new TreeSet<String>(Arrays.asList("key")));
+        assertThat(projected, not(sameInstance(first)));
+        assertThat(cache.size(), is(2));
+    }
+
+    /**
+     * フォーマット定義ファイルが変更された場合は、再度解析されること。
+     */
+    @Test
+    public void testInvalidation() throws Exception {
+        File file = createFormatFile("b.fmt", "1 key X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        LayoutDefinition first = cache.get(file);
+
+        createFormatFile("b.fmt", "1 key X\n2 value X\n");
+        LayoutDefinition second = cache.get(file);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(second.getRecords().get(0).getFields().size(), is(2));
+        assertThat(cache.getInvalidationCount(), is(1L));
+
+        cache.invalidate(file);
+        assertThat(cache.size(), is(0));
+    }
+
+    /**
+     * 最大エントリ数を超えた場合、最も長く参照されていないエントリから破棄されること。
+     */
+    @Test
+    public void testEviction() throws Exception {
+        File a = createFormatFile("c1.fmt", "1 key X\n");
+        File b = createFormatFile("c2.fmt", "1 key X\n");
+        File c = createFormatFile("c3.fmt", "1 key X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(2);
+        LayoutDefinition definitionA = cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.get(a), sameInstance(definitionA));
+        assertThat(cache.getMissCount(), is(3L));
+
+        cache.clear();
+        assertThat(cache.size(), is(0));
+    }
+
+    /**
+     * 返却したフォーマッタが再利用され、可変長形式のフォーマッタは再利用されないこと。
+     */
+    @Test
+    public void testFormatterPool() throws Exception {
+        File file = createFormatFile("d.fmt", "1 key X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        DataRecordFormatterPool pool = cache.getFormatterPool(file, null);
+
+        DataRecordFormatter formatter = pool.acquire();
+        formatter.setInputStream(new ByteArrayInputStream("{\"key\":\"a\"}".getBytes("UTF-8")));
+        formatter.initialize();
+        assertThat(formatter.readRecord().getString("key"), is("a"));
+        formatter.close();
+        pool.release(formatter);
+        assertThat(pool.getIdleCount(), is(1));
+
+        DataRecordFormatter reused = pool.acquire();
+        assertThat(reused, sameInstance(formatter));
+        assertThat(reused.getRecordNumber(), is(0));
+        reused.setInputStream(new ByteArrayInputStream("{\"key\":\"b\"}".getBytes("UTF-8")));
+        reused.initialize();
+        assertThat(reused.readRecord().getString("key"), is("b"));
+
+        File variable = new File(folder.getRoot(), "e.fmt");
+        FileOutputStream out = new FileOutputStream(variable);
+        try {
+            out.write("file-type: \"Variable\"\ntext-encoding: \"UTF-8\"\nrecord-separator: \"\\n\"\nfield-separator: \",\"\n[request]\n1 key X\n".getBytes("UTF-8"));
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+        DataRecordFormatterPool variablePool = cache.getFormatterPool(variable, null);
+        DataRecordFormatter variableFormatter = variablePool.acquire();
+        variableFormatter.close();
+        variablePool.release(variableFormatter);
+        assertThat(variablePool.getIdleCount(), is(0));
+    }
+
+    /**
+     * イテレータでの読み込み中に例外が発生した場合、クローズ時にフォーマッタがプールに返却されないこと。
+     */
+    @Test
+    public void testIteratorFailure() throws Exception {
+        File file = createFormatFile("h.fmt", "1 key X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        DataRecordFormatterPool pool = cache.getFormatterPool(file, null);
+
+        DataRecordFormatter formatter = pool.acquire();
+        ByteArrayInputStream in = new ByteArrayInputStream("{\"key\":".getBytes("UTF-8"));
+        formatter.setInputStream(in);
+        formatter.initialize();
+        DataRecordIterator iterator = new DataRecordIterator(formatter, in, pool);
+        try {
+            iterator.next();
+            fail();
+        } catch (InvalidDataFormatException e) {
+            // 不正なデータのため、解析に失敗する。
+        }
+        iterator.close();
+        assertThat(pool.getIdleCount(), is(0));
+
+        formatter = pool.acquire();
+        in = new ByteArrayInputStream("{\"key\":\"a\"}".getBytes("UTF-8"));
+        formatter.setInputStream(in);
+        formatter.initialize();
+        iterator = new DataRecordIterator(formatter, in, pool);
+        assertThat(iterator.next().getString("key"), is("a"));
+        iterator.close();
+        assertThat(pool.getIdleCount(), is(1));
+    }
+
+    /**
+     * リポジトリに登録された{@link FormatterFactory}で解析され、インスタンスが変更された場合は解析し直されること。
+     */
+    @Test
+    public void testFormatterFactory() throws Exception {
+        File file = createFormatFile("f.fmt", "1 key X\n");
+        LayoutDefinitionCache cache = new LayoutDefinitionCache(10);
+        try {
+            CountingFormatterFactory first = new CountingFormatterFactory();
+            registerFormatterFactory(first);
+            LayoutDefinition definition = cache.get(file);
+            assertThat(cache.get(file), sameInstance(definition));
+            assertThat(first.count, is(1));
+
+            CountingFormatterFactory second = new CountingFormatterFactory();
+            registerFormatterFactory(second);
+            assertThat(cache.get(file), not(sameInstance(definition)));
+            assertThat(second.count, is(1));
+            assertThat(cache.getInvalidationCount(), is(1L));
+
+            cache.reload(file);
+            assertThat(second.count, is(2));
+        } finally {
+            SystemRepository.clear();
+        }
+    }
+
+    /**
+     * フォーマッタファクトリをリポジトリに登録する。
+     * @param factory フォーマッタファクトリ
+     */
+    private static void registerFormatterFactory(FormatterFactory factory) {
+        final Map<String, Object> components = new HashMap<String, Object>();
+        components.put("formatterFactory", factory);
+        SystemRepository.load(new ObjectLoader() {
+            public Map<String, Object> load() {
+                return components;
+            }
+        });
+    }
+
+    /**
+     * フォーマット定義ファイルを解析した回数を記録するフォーマッタファクトリ。
+     */
+    private static class CountingFormatterFactory extends FormatterFactory {
+
+        /** 解析した回数 */
+        private int count;
+
+        @Override
+        protected LayoutDefinition createDefinition(File layoutFile) {
+            count++;
+            return super.createDefinition(layoutFile);
+        }
+    }
+
+    private File createFormatFile(String name, String fields) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("file-type: \"JSON\"\ntext-encoding: \"UTF-8\"\n[request]\n" + fields).getBytes("UTF-8"));
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+        return file;
+    }
+}
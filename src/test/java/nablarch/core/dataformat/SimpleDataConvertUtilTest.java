@@ -1,18 +1,30 @@
 package nablarch.core.dataformat;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import nablarch.core.util.Builder;
 import nablarch.core.util.FilePathSetting;
@@ -96,6 +108,338 @@ public class SimpleDataConvertUtilTest {
         assertEquals(expectedCharset, result.getCharset());
     }
 
+    /**
+     * 文字データを指定しデータ解析を行う処理のテストを行います。<br>
+     *
+     * 条件：<br>
+     *   CharSequence及びReaderを指定してデータ解析処理を呼び出す。<br>
+     *   Readerはサロゲートペアを含み、1文字ずつ読み込まれる。<br>
+     *
+     * 期待結果：<br>
+     *   文字列を指定した場合と同じ結果が返却されること。<br>
+     *   固定長形式の場合もバイト単位で項目が切り出されること。<br>
+     *   Readerは解析の終了時にクローズされること。<br>
+     */
+    @Test
+    public void testParseDataCharacters() throws Exception {
+        String formatName = testNameRule.getMethodName();
+
+        File jsonFormatFile = Hereis.file(getFormatFileName(formatName + "Json"));
+        /*******
+        file-type:        "JSON"
+        text-encoding:    "UTF-8"
+        [request]
+        1 key X
+        *******/
+        jsonFormatFile.deleteOnExit();
+
+        File variableFormatFile = Hereis.file(getFormatFileName(formatName + "Variable"));
+        /*******
+        file-type:        "Variable"
+        text-encoding:    "UTF-8"
+        record-separator: "\n"
+        field-separator:  ","
+        [data]
+        1 code X
+        2 name N
+        *******/
+        variableFormatFile.deleteOnExit();
+
+        File fixedFormatFile = Hereis.file(getFormatFileName(formatName + "Fixed"));
+        /*******
+        file-type:        "Fixed"
+        text-encoding:    "MS932"
+        record-length:    10
+        [data]
+        1 name N(4)
+        5 code X(6)
+        *******/
+        fixedFormatFile.deleteOnExit();
+
+        // CharSequence(JSON)
+        SimpleDataConvertResult result = SimpleDataConvertUtil.parseData(formatName + "Json",
+                new StringBuilder("{\"key\":\"値\"}"));
+        assertEquals("値", result.getResultMap().get("key"));
+        assertEquals("JSON", result.getDataType());
+
+        // Reader(可変長)
+        final boolean[] closed = {false};
+        Reader reader = new StringReader("001,\uD842\uDFB7野家\n") {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+            @Override
+            public void close() {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        result = SimpleDataConvertUtil.parseData(formatName + "Variable", reader);
+        assertEquals("001", result.getResultMap().get("code"));
+        assertEquals("\uD842\uDFB7野家", result.getResultMap().get("name"));
+        assertTrue(closed[0]);
+
+        // CharSequence(固定長)
+        result = SimpleDataConvertUtil.parseData(formatName + "Fixed", new StringBuilder("山田123456"));
+        assertEquals("山田", result.getResultMap().get("name"));
+        assertEquals("123456", result.getResultMap().get("code"));
+    }
+
+    /**
+     * ストリームに含まれる全てのレコードを1件ずつ解析する処理のテストを行います。<br>
+     *
+     * 条件：<br>
+     *   複数のレコードを含むストリームを指定してイテレータを生成する。<br>
+     *
+     * 期待結果：<br>
+     *   全てのレコードが順に返却され、最後のレコードの後はイテレータが終了すること。<br>
+     */
+    @Test
+    public void testParseRecords() throws Exception {
+        String formatName = testNameRule.getMethodName();
+
+        // フォーマットファイル生成
+        File formatFile = Hereis.file(getFormatFileName(formatName));
+        /*******
+        file-type:        "Variable"
+        text-encoding:    "UTF-8"
+        record-separator: "\n"
+        field-separator:  ","
+        [data]
+        1 code X
+        2 name X
+        *******/
+        formatFile.deleteOnExit();
+
+        // テスト実行
+        DataRecordIterator iterator = SimpleDataConvertUtil.parseRecords(formatName,
+                new ByteArrayInputStream("1,a\n2,b\n3,c\n".getBytes("UTF-8")));
+
+        // 結果検証
+        for (String[] expected : new String[][] {{"1", "a"}, {"2", "b"}, {"3", "c"}}) {
+            assertTrue(iterator.hasNext());
+            DataRecord record = iterator.next();
+            assertEquals(expected[0], record.getString("code"));
+            assertEquals(expected[1], record.getString("name"));
+        }
+        assertFalse(iterator.hasNext());
+        iterator.close();
+    }
+
+    /**
+     * 複数のレコードを一括で生成し、Readerから1件ずつ解析する処理のテストを行います。<br>
+     *
+     * 条件：<br>
+     *   複数のMapを指定してデータ生成処理を呼び出し、生成結果をReaderとして解析する。<br>
+     *   レコードはバッファのサイズを超える長さとする。<br>
+     *
+     * 期待結果：<br>
+     *   全てのレコードが1つの出力に書き込まれること。<br>
+     *   解析結果が生成前のMapと一致すること。<br>
+     */
+    @Test
+    public void testBuildRecords() throws Exception {
+        String formatName = testNameRule.getMethodName();
+
+        // フォーマットファイル生成
+        File formatFile = Hereis.file(getFormatFileName(formatName));
+        /*******
+        file-type:        "Fixed"
+        text-encoding:    "UTF-8"
+        record-length:    10
+        record-separator: "\n"
+        [data]
+        1 code X(4)
+        5 name X(6)
+        *******/
+        formatFile.deleteOnExit();
+
+        List<Map<String, Object>> records = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 2000; i++) {
+            Map<String, Object> record = new HashMap<String, Object>();
+            record.put("code", String.format("%04d", i));
+            record.put("name", "name" + (i % 10));
+            records.add(record);
+        }
+
+        // テスト実行
+        SimpleDataConvertResult result = SimpleDataConvertUtil.buildRecords(formatName, records);
+
+        // 結果検証
+        assertEquals(11 * records.size(), result.getResultLength());
+        assertEquals("0000name0 \n0001name1 \n", result.getResultText().substring(0, 22));
+
+        DataRecordIterator iterator = SimpleDataConvertUtil.parseRecords(formatName,
+                new StringReader(result.getResultText()));
+        for (Map<String, Object> expected : records) {
+            assertTrue(iterator.hasNext());
+            DataRecord record = iterator.next();
+            assertEquals(expected.get("code"), record.getString("code"));
+            assertEquals(expected.get("name"), record.getString("name").trim());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    /**
+     * 複数のレコードを並列に生成及び解析する処理のテストを行います。<br>
+     *
+     * 条件：<br>
+     *   複数のスレッドを持つExecutorServiceと、レコード件数を割り切れないチャンクサイズを指定する。<br>
+     *   解析対象のデータは途中のレコードに不正な値を含む。<br>
+     *
+     * 期待結果：<br>
+     *   生成結果が逐次に生成した場合と一致すること。<br>
+     *   解析結果が元の順序で返却されること。<br>
+     *   不正なレコードのレコード番号が、逐次に解析した場合と一致すること。<br>
+     */
+    @Test
+    public void testParallelRecords() throws Exception {
+        String formatName = testNameRule.getMethodName();
+
+        // フォーマットファイル生成
+        File formatFile = Hereis.file(getFormatFileName(formatName));
+        /*******
+        file-type:        "Fixed"
+        text-encoding:    "MS932"
+        record-length:    20
+        record-separator: "\r\n"
+        [data]
+        1  code   X(10)
+        11 amount Z(10)
+        *******/
+        formatFile.deleteOnExit();
+
+        List<Map<String, Object>> records = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 2500; i++) {
+            Map<String, Object> record = new HashMap<String, Object>();
+            record.put("code", String.format("C%09d", i));
+            record.put("amount", new BigDecimal(i));
+            records.add(record);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // 生成
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            SimpleDataConvertUtil.buildRecords(formatName, records.iterator(), expected);
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            SimpleDataConvertResult result = SimpleDataConvertUtil.buildRecords(formatName, records, actual, executor, 300);
+            assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+            assertEquals("Fixed", result.getDataType());
+
+            // 解析
+            byte[] data = actual.toByteArray();
+            List<DataRecord> parsed = SimpleDataConvertUtil.parseRecords(formatName, data, executor, 300);
+            assertEquals(records.size(), parsed.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals(records.get(i).get("code"), parsed.get(i).getString("code"));
+                assertEquals(records.get(i).get("amount"), parsed.get(i).getBigDecimal("amount"));
+            }
+
+            // 1001件目の数値項目を不正な値とする
+            data[22 * 1000 + 15] = 'x';
+            try {
+                SimpleDataConvertUtil.parseRecords(formatName, data, executor, 300);
+                fail();
+            } catch (InvalidDataFormatException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("record number=[1001]"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 項目を指定してデータ解析を行う処理のテストを行います。<br>
+     *
+     * 条件：<br>
+     *   解析する項目名を指定してデータ解析処理を呼び出す。<br>
+     *
+     * 期待結果：<br>
+     *   指定した項目のみが解析されること。<br>
+     *   指定しなかった項目は精査されないこと。<br>
+     */
+    @Test
+    public void testParseDataWithFieldNames() throws Exception {
+        String formatName = testNameRule.getMethodName();
+
+        // フォーマットファイル生成
+        File formatFile = Hereis.file(getFormatFileName(formatName));
+        /*******
+        file-type:        "Fixed"
+        text-encoding:    "ms932"
+        record-length:    10
+        [data]
+        1 code  X(3)
+        4 name  X(3)
+        7 count X9(4)
+        *******/
+        formatFile.deleteOnExit();
+
+        // テスト実行(数値項目に不正な値が含まれるが、解析対象外のため精査されない)
+        SimpleDataConvertResult result = SimpleDataConvertUtil.parseData(
+                formatName, "abcdefxxxx", Arrays.asList("name"));
+
+        // 結果検証
+        Map<String, Object> expectedMap = new HashMap<String, Object>();
+        expectedMap.put("name", "def");
+        assertEquals(expectedMap, result.getResultMap());
+
+        // 項目を指定しない場合は全ての項目が解析される
+        result = SimpleDataConvertUtil.parseData(formatName, "abcdef0012", (List<String>) null);
+        assertEquals(3, result.getResultMap().size());
+    }
+
+    /**
+     * 項目名の並びを共有するMapを生成するデータ解析処理のテストを行います。<br>
+     *
+     * 条件：<br>
+     *   項目名の並びを共有するMapを生成するデータ解析処理を呼び出す。<br>
+     *
+     * 期待結果：<br>
+     *   解析結果が{@link CompactRecordMap}で返却され、同じフォーマット定義の解析結果と項目名の並びを共有すること。<br>
+     *   通常のデータ解析処理は{@link DataRecord}を返却すること。<br>
+     */
+    @Test
+    public void testParseCompactData() throws Exception {
+        String formatName = testNameRule.getMethodName();
+
+        // フォーマットファイル生成
+        File formatFile = Hereis.file(getFormatFileName(formatName));
+        /*******
+        file-type:        "Fixed"
+        text-encoding:    "ms932"
+        record-length:    10
+        [data]
+        1 code  X(3)
+        4 name  X(3)
+        7 count X9(4)
+        *******/
+        formatFile.deleteOnExit();
+
+        // テスト実行
+        SimpleDataConvertResult first = SimpleDataConvertUtil.parseCompactData(formatName, "abcdef0012", null);
+        SimpleDataConvertResult second = SimpleDataConvertUtil.parseCompactData(
+                formatName, new ByteArrayInputStream("ghijkl0034".getBytes("ms932")), null);
+
+        // 結果検証
+        Map<String, Object> expectedMap = new HashMap<String, Object>();
+        expectedMap.put("code", "abc");
+        expectedMap.put("name", "def");
+        expectedMap.put("count", new BigDecimal("12"));
+        assertEquals(expectedMap, first.getResultMap());
+        assertTrue(first.getResultMap() instanceof CompactRecordMap);
+        assertTrue(((CompactRecordMap) first.getResultMap()).getSchema()
+                == ((CompactRecordMap) second.getResultMap()).getSchema());
+        assertEquals("jkl", second.getResultMap().get("name"));
+
+        // 通常のデータ解析処理はDataRecordを返却する
+        SimpleDataConvertResult result = SimpleDataConvertUtil.parseData(formatName, "abcdef0012");
+        assertTrue(result.getResultMap() instanceof DataRecord);
+        assertEquals(expectedMap, result.getResultMap());
+    }
+
     /**
      * データを構築し、テキストで返却を行う処理のテストを行います。<br>
      *
@@ -146,6 +490,57 @@ public class SimpleDataConvertUtilTest {
         assertEquals(expectedCharset, result.getCharset());
     }
 
+    /**
+     * Mapから構造化データを生成した結果を、バイト列として参照する処理のテストを行います。<br>
+     *
+     * 条件：<br>
+     *   初期容量を指定してデータ生成処理を呼び出す。<br>
+     *
+     * 期待結果：<br>
+     *   結果バイト列が文字セットでエンコードされた結果テキストと一致すること。<br>
+     *   結果バイト列のバッファが読み取り専用であること。<br>
+     */
+    @Test
+    public void testBuildDataBytes() throws Exception {
+        String formatName = testNameRule.getMethodName();
+
+        // フォーマットファイル生成
+        File formatFile = Hereis.file(getFormatFileName(formatName));
+        /*******
+        file-type:        "JSON"
+        text-encoding:    "UTF-8"
+        [request]
+        1 key X
+        *******/
+        formatFile.deleteOnExit();
+
+        Map<String, Object> dataMap = new HashMap<String, Object>();
+        dataMap.put("key", "値");
+
+        // 領域の再確保が行われるよう、初期容量を小さく指定する。
+        SimpleDataConvertResult result = SimpleDataConvertUtil.buildData(formatName, dataMap, 1);
+
+        byte[] expected = "{\"key\":\"値\"}".getBytes("UTF-8");
+        assertEquals(expected.length, result.getResultLength());
+
+        ByteBuffer buffer = result.getResultBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(expected.length, buffer.remaining());
+        byte[] actual = new byte[buffer.remaining()];
+        buffer.get(actual);
+        assertTrue(Arrays.equals(expected, actual));
+
+        // 取得の都度、先頭から参照できること
+        assertEquals(expected.length, result.getResultBuffer().remaining());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        result.writeResult(out);
+        assertTrue(Arrays.equals(expected, out.toByteArray()));
+
+        assertEquals("{\"key\":\"値\"}", result.getResultText());
+        assertEquals(Charset.forName("UTF-8"), result.getCharset());
+    }
+
     /**
      * 標準的なフォーマッタサポート用抽象クラス({@link DataRecordFormatterSupport})を使用しないフォーマッタを使用した場合のテストを行います。<br>
      *
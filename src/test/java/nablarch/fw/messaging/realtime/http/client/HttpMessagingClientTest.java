@@ -9,7 +9,10 @@ import nablarch.fw.messaging.MessagingException;
 import nablarch.fw.messaging.SyncMessage;
 import nablarch.fw.messaging.realtime.http.client.HttpProtocolClient.HttpRequestMethodEnum;
 import nablarch.fw.messaging.realtime.http.dto.HttpResult;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingException;
 import nablarch.fw.messaging.realtime.http.exception.HttpMessagingInvalidDataFormatException;
+import nablarch.fw.messaging.realtime.http.streamio.ByteHttpStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.HttpDownloadProgressListener;
 import nablarch.fw.messaging.realtime.http.streamio.HttpInputStreamReader;
 import nablarch.fw.messaging.realtime.http.streamio.HttpOutputStreamWriter;
 import nablarch.test.core.log.LogVerifier;
@@ -18,15 +21,24 @@ import nablarch.test.support.tool.Hereis;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -1221,6 +1233,751 @@ public class HttpMessagingClientTest {
         formatFile.deleteOnExit();
     }
     
+    /***
+     * 応答キャッシュが設定されている場合、有効期間内のGETリクエストはキャッシュの内容が返却されること。
+     */
+    @Test
+    public void testResponseCache() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFileGetMessage();
+
+        final int[] executeCount = {0};
+        SyncMessage requestMessage = new SyncMessage("RM21AB0100");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        executeCount[0]++;
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                        map.put("Cache-Control", Collections.singletonList("max-age=60"));
+                        map.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        httpResult.setReadObject("{\"messageCode\":\"100\", \"message\":\"OK\"}");
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        HttpResponseCache cache = new HttpResponseCache();
+        client.setResponseCache(cache);
+
+        SyncMessage first = client.sendSync(settings, requestMessage);
+        first.getDataRecord().put("message", "changed");
+        SyncMessage second = client.sendSync(settings, new SyncMessage("RM21AB0100"));
+
+        assertThat(executeCount[0], is(1));
+        assertThat((String) second.getHeaderRecord().get(HttpMessagingClient.SYNCMESSAGE_STATUS_CODE), is("200"));
+        assertThat((String) second.getDataRecord().get("messageCode"), is("100"));
+        assertThat("キャッシュの内容は呼び出し元の変更の影響を受けないこと", (String) second.getDataRecord().get("message"), is("OK"));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitRatio(), is(0.5));
+    }
+
+    /***
+     * 有効期間切れのエントリは条件付きリクエストで再検証され、304の場合はキャッシュの内容が返却されること。
+     */
+    @Test
+    public void testResponseCacheRevalidate() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFileGetMessage();
+
+        final List<Map<String, List<String>>> sentHeaders = new ArrayList<Map<String, List<String>>>();
+        SyncMessage requestMessage = new SyncMessage("RM21AB0100");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        sentHeaders.add(headerInfo);
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("ETag", Collections.singletonList("\"v1\""));
+                        map.put("Cache-Control", Collections.singletonList("no-cache"));
+                        if (headerInfo.containsKey("If-None-Match")) {
+                            httpResult.setResponseCode(304);
+                            httpResult.setReadObject("");
+                        } else {
+                            map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                            httpResult.setResponseCode(200);
+                            httpResult.setReadObject("{\"messageCode\":\"100\", \"message\":\"OK\"}");
+                        }
+                        httpResult.setHeaderInfo(map);
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        HttpResponseCache cache = new HttpResponseCache();
+        client.setResponseCache(cache);
+
+        client.sendSync(settings, requestMessage);
+        SyncMessage second = client.sendSync(settings, new SyncMessage("RM21AB0100"));
+
+        assertThat(sentHeaders.size(), is(2));
+        assertThat(sentHeaders.get(1).get("If-None-Match").get(0), is("\"v1\""));
+        assertThat((String) second.getHeaderRecord().get(HttpMessagingClient.SYNCMESSAGE_STATUS_CODE), is("200"));
+        assertThat((String) second.getDataRecord().get("messageCode"), is("100"));
+        assertThat(cache.getRevalidatedCount(), is(1L));
+    }
+
+    /***
+     * stale-while-revalidateの期間内のエントリはキャッシュの内容が返却され、
+     * バックグラウンドでの再取得はミス及び再検証とは区別して記録されること。
+     */
+    @Test
+    public void testResponseCacheRefresh() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFileGetMessage();
+
+        final List<Map<String, List<String>>> sentHeaders = new ArrayList<Map<String, List<String>>>();
+        SyncMessage requestMessage = new SyncMessage("RM21AB0100");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        sentHeaders.add(headerInfo);
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("ETag", Collections.singletonList("\"v1\""));
+                        map.put("Cache-Control", Collections.singletonList("max-age=0, stale-while-revalidate=60"));
+                        if (headerInfo.containsKey("If-None-Match")) {
+                            httpResult.setResponseCode(304);
+                            httpResult.setReadObject("");
+                        } else {
+                            map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                            httpResult.setResponseCode(200);
+                            httpResult.setReadObject("{\"messageCode\":\"100\", \"message\":\"OK\"}");
+                        }
+                        httpResult.setHeaderInfo(map);
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        HttpResponseCache cache = new HttpResponseCache();
+        //再取得を呼び出し元のスレッドで実行する。
+        cache.setBackgroundExecutor(new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        client.setResponseCache(cache);
+
+        client.sendSync(settings, requestMessage);
+        SyncMessage second = client.sendSync(settings, new SyncMessage("RM21AB0100"));
+
+        assertThat(sentHeaders.size(), is(2));
+        assertThat(sentHeaders.get(1).get("If-None-Match").get(0), is("\"v1\""));
+        assertThat((String) second.getDataRecord().get("messageCode"), is("100"));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getStaleHitCount(), is(1L));
+        assertThat(cache.getRefreshCount(), is(1L));
+        assertThat(cache.getRevalidatedCount(), is(0L));
+        assertThat(cache.getHitRatio(), is(0.5));
+    }
+
+    /***
+     * 送信計画はリクエストIDごとに一度だけ生成され、破棄した場合は再生成されること。
+     */
+    @Test
+    public void testSendPlanCache() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFileGetMessage();
+
+        final List<String> urls = new ArrayList<String>();
+        final int[] createCount = {0};
+        SyncMessage requestMessage = new SyncMessage("RM21AB0100");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpSendPlan createSendPlan(MessageSenderSettings settings) {
+                createCount[0]++;
+                return super.createSendPlan(settings);
+            }
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        urls.add(url);
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        httpResult.setReadObject("{\"messageCode\":\"100\", \"message\":\"OK\"}");
+                        return httpResult;
+                    }
+                };
+            }
+        };
+
+        client.sendSync(settings, requestMessage);
+        SyncMessage second = client.sendSync(settings, new SyncMessage("RM21AB0100"));
+        assertThat(createCount[0], is(1));
+        assertThat((String) second.getDataRecord().get("messageCode"), is("100"));
+        assertThat(urls.get(1), is(urls.get(0)));
+
+        client.invalidateSendPlan("RM21AB0100");
+        client.sendSync(settings, new SyncMessage("RM21AB0100"));
+        assertThat(createCount[0], is(2));
+
+        //キャッシュを無効化した場合は送信の都度、一度だけ生成される。
+        client.setSendPlanCacheEnabled(false);
+        client.sendSync(settings, new SyncMessage("RM21AB0100"));
+        assertThat(createCount[0], is(3));
+        client.sendSync(settings, new SyncMessage("RM21AB0100"));
+        assertThat(createCount[0], is(4));
+    }
+
+    /***
+     * 本文を直接ストリームに書き出す設定の場合、変換結果が送信先のストリームに書き込まれ、証跡ログも出力されること。
+     */
+    @Test
+    public void testStreamRequestBody() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFilePostMessage();
+
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        final String[] contentType = new String[1];
+        SyncMessage requestMessage = new SyncMessage("RM21AB0201");
+        Map<String, Object> requestRecodeData = new TreeMap<String, Object>();
+        requestRecodeData.put("requestId", "RM21AB0201");
+        requestRecodeData.put("firstName", "太郎");
+        requestRecodeData.put("lastName", "ナブラ \n");
+        requestMessage.addDataRecord(requestRecodeData);
+        Map<String, Object> reqHeaderRecord = new TreeMap<String, Object>();
+        reqHeaderRecord.put("X-xx", null);
+        requestMessage.setHeaderRecord(reqHeaderRecord);
+
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public void setContentType(String type) {
+                        contentType[0] = type;
+                    }
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        try {
+                            writer.writeStream(sent);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                        map.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        httpResult.setReadObject("{\"messageCode\":\"100\", \"message\":\"OK\"}");
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        client.setUserIdToFormatKey("userId");
+        client.setStreamRequestBody(true);
+
+        LogVerifier.setExpectedLogMessages(
+                createExpectedLogMessages(
+                        "{\"requestId\":\"RM21AB0201\",\"firstName\":\"太郎\",\"lastName\":\"ナブラ \\n\"}",
+                        "POST http://localhost:8090/rm21ab0201",
+                        "{\"messageCode\":\"100\", \"message\":\"OK\"}",
+                        200));
+
+        SyncMessage reciveMessage = client.sendSync(settings, requestMessage);
+
+        assertThat(new String(sent.toByteArray(), Charset.forName("UTF-8")),
+                is("{\"requestId\":\"RM21AB0201\",\"firstName\":\"太郎\",\"lastName\":\"ナブラ \\n\"}"));
+        assertThat(contentType[0], is("application/json;charset=UTF-8"));
+        assertThat("文字列での送信は行われないこと", client.getLastBodyText(), nullValue());
+        assertThat((String) reciveMessage.getDataRecord().get("messageCode"), is("100"));
+
+        LogVerifier.verify("messaging log assertion failed.");
+    }
+
+    /***
+     * 本文を直接ストリームに書き出す設定の場合でも、変換に失敗した場合は要求電文の変換エラーとなること。
+     */
+    @Test
+    public void testStreamRequestBodyInvalid() {
+        initRepository("_invalid1");
+        prepareInvalidRequestBodyFormatfile();
+
+        SyncMessage requestMessage = new SyncMessage("RM21AC0100");
+        Map<String, Object> recodeData = new TreeMap<String, Object>();
+        recodeData.put("requestId", "RM21AB0201");
+        recodeData.put("firstName", "太郎");
+        requestMessage.addDataRecord(recodeData);
+
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        try {
+                            writer.writeStream(new ByteArrayOutputStream());
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        HttpResult httpResult = new HttpResult();
+                        httpResult.setResponseCode(200);
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        client.setUserIdToFormatKey("userId");
+        client.setStreamRequestBody(true);
+        try {
+            client.sendSync(settings, requestMessage);
+            fail();
+        } catch (Exception e) {
+            assertThat(e, is(instanceOf(HttpMessagingInvalidDataFormatException.class)));
+            assertThat(e.getMessage(), is("Invalid request message format. requestId=[RM21AC0100]. URL=[http://localhost:8090/rm21ac0100]."));
+        } finally {
+            SystemRepository.clear();
+        }
+    }
+
+    /***
+     * 本文を直接ストリームから解析する設定の場合、受信したストリームの内容が応答電文に設定され、証跡ログも出力されること。
+     */
+    @Test
+    public void testStreamResponseBody() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFileGetMessage();
+
+        SyncMessage requestMessage = new SyncMessage("RM21AB0100");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                        map.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        try {
+                            httpResult.setReadObject(reader.readInputStream(new ByteArrayInputStream(
+                                    "{\"messageCode\":\"100\", \"message\":\"OK\"}".getBytes("UTF-8"))));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        client.setStreamResponseBody(true);
+
+        LogVerifier.setExpectedLogMessages(
+                createExpectedLogMessages(
+                        "",
+                        "GET http://localhost:8090/rm21ab0100",
+                        "{\"messageCode\":\"100\", \"message\":\"OK\"}",
+                        200));
+
+        SyncMessage reciveMessage = client.sendSync(settings, requestMessage);
+
+        assertThat("文字列での受信は行われないこと", client.getLastHttpResult(), nullValue());
+        assertThat((String) reciveMessage.getHeaderRecord().get(HttpMessagingClient.SYNCMESSAGE_STATUS_CODE), is("200"));
+        assertThat((String) reciveMessage.getDataRecord().get("messageCode"), is("100"));
+        assertThat((String) reciveMessage.getDataRecord().get("message"), is("OK"));
+
+        LogVerifier.verify("messaging log assertion failed.");
+    }
+
+    /***
+     * 本文を直接ストリームから解析する設定の場合でも、解析に失敗した場合は応答電文の変換エラーとなること。
+     */
+    @Test
+    public void testStreamResponseBodyInvalid() {
+        initRepository("_invalid1");
+        prepareInvalidResponseBodyFormatfile();
+
+        SyncMessage requestMessage = new SyncMessage("RM21AC0200");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        HttpResult httpResult = new HttpResult();
+                        httpResult.setHeaderInfo(new TreeMap<String, List<String>>());
+                        httpResult.setResponseCode(200);
+                        try {
+                            httpResult.setReadObject(reader.readInputStream(new ByteArrayInputStream(
+                                    "{\"message\":\"OK\"}".getBytes("UTF-8"))));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        client.setUserIdToFormatKey("userId");
+        client.setStreamResponseBody(true);
+
+        try {
+            client.sendSync(settings, requestMessage);
+            fail();
+        } catch (Exception e) {
+            assertThat(e, is(instanceOf(HttpMessagingInvalidDataFormatException.class)));
+            assertThat(e.getMessage(), is("Invalid receive message format. requestId=[RM21AC0200]. URL=[http://localhost:8090/rm21ac0200]. status code=[200]."));
+            assertThat(((HttpMessagingInvalidDataFormatException) e).getReceiveData(), is("{\"message\":\"OK\"}"));
+        } finally {
+            SystemRepository.clear();
+        }
+    }
+
+    /***
+     * 応答の本文をチャネルにダウンロードでき、送信結果には転送したバイト数が設定されること。
+     */
+    @Test
+    public void testDownload() {
+        final byte[] data = new byte[100000];
+        SyncMessage requestMessage = new SyncMessage("RM21AB0100");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+                        reader.setHeaderInfo(map);
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        try {
+                            httpResult.setReadObject(reader.readInputStream(new ByteArrayInputStream(data)));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long[] transferred = {0};
+        HttpResult result = client.download(settings, requestMessage, Channels.newChannel(out),
+                new HttpDownloadProgressListener() {
+                    public void onProgress(long transferredBytes, long contentLength) {
+                        transferred[0] = transferredBytes;
+                    }
+                });
+
+        assertThat(result.getResponseCode(), is(200));
+        assertThat((Long) result.getReadObject(), is(100000L));
+        assertThat(transferred[0], is(100000L));
+        assertThat(out.size(), is(100000));
+
+        //上限を超えた場合は例外となる。
+        client.setDownloadSizeLimit(1000);
+        try {
+            client.download(settings, new SyncMessage("RM21AB0100"), Channels.newChannel(new ByteArrayOutputStream()), null);
+            fail();
+        } catch (HttpMessagingException e) {
+            assertThat(e.getMessage().startsWith("response body exceeds the size limit."), is(true));
+        }
+    }
+
+    /***
+     * Writerが書き出す内容を本文として送信でき、応答電文は通常の送信と同様に解析されること。
+     */
+    @Test
+    public void testUpload() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFilePostMessage();
+
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        final String[] contentType = new String[1];
+        SyncMessage requestMessage = new SyncMessage("RM21AB0201");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public void setContentType(String type) {
+                        contentType[0] = type;
+                    }
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        try {
+                            writer.writeStream(sent);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        httpResult.setReadObject("{\"messageCode\":\"100\", \"message\":\"OK\"}");
+                        return httpResult;
+                    }
+                };
+            }
+        };
+
+        SyncMessage reciveMessage = client.upload(settings, requestMessage,
+                new ByteHttpStreamWriter(new byte[] {1, 2, 3}), "application/octet-stream");
+
+        assertThat(sent.toByteArray(), is(new byte[] {1, 2, 3}));
+        assertThat(contentType[0], is("application/octet-stream"));
+        assertThat((String) reciveMessage.getDataRecord().get("messageCode"), is("100"));
+    }
+
+    /***
+     * 応答の本文に含まれる全てのレコードを、イテレータで1件ずつ取得できること。
+     * 解析に失敗した場合は応答電文の変換エラーとなること。
+     */
+    @Test
+    public void testIterateRecords() throws Exception {
+        File formatFile = Hereis.file(getFormatFileName("RM21AB0800_RECEIVE"));
+        /*******
+        file-type:        "Variable"
+        text-encoding:    "UTF-8"
+        record-separator: "\n"
+        field-separator:  ","
+        [data]
+        1 code X
+        2 name X
+        *******/
+        formatFile.deleteOnExit();
+
+        final String[] body = {"1,a\n2,b\n3,c\n"};
+        SyncMessage requestMessage = new SyncMessage("RM21AB0800");
+        MessageSenderSettings settings = new MessageSenderSettings("RM21AB0100");
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+                        reader.setHeaderInfo(map);
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        try {
+                            httpResult.setReadObject(reader.readInputStream(
+                                    new ByteArrayInputStream(body[0].getBytes("UTF-8"))));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return httpResult;
+                    }
+                };
+            }
+        };
+
+        HttpRecordIterator iterator = client.iterateRecords(settings, requestMessage);
+        assertThat(iterator.getResponseCode(), is(200));
+        List<String> names = new ArrayList<String>();
+        while (iterator.hasNext()) {
+            names.add(iterator.next().getString("name"));
+        }
+        iterator.close();
+        assertThat(names, is(Arrays.asList("a", "b", "c")));
+
+        //2件目の解析に失敗した場合
+        body[0] = "1,a\n2\n";
+        iterator = client.iterateRecords(settings, new SyncMessage("RM21AB0800"));
+        assertThat(iterator.next().getString("name"), is("a"));
+        try {
+            iterator.next();
+            fail();
+        } catch (HttpMessagingInvalidDataFormatException e) {
+            assertThat(e.getMessage(), is("Invalid receive message format. requestId=[RM21AB0800]."));
+        }
+        assertThat(iterator.hasNext(), is(false));
+    }
+
+    /***
+     * 遅延解析する設定の場合、データレコードの初回参照時に本文が解析されること。
+     */
+    @Test
+    public void testLazyResponseParsing() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFileGetMessage();
+
+        SyncMessage requestMessage = new SyncMessage("RM21AB0100");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                        map.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+                        reader.setHeaderInfo(map);
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        try {
+                            httpResult.setReadObject(reader.readInputStream(new ByteArrayInputStream(
+                                    "{\"messageCode\":\"100\", \"message\":\"OK\"}".getBytes("UTF-8"))));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return httpResult;
+                    }
+                };
+            }
+        };
+        client.setLazyResponseParsing(true);
+
+        LogVerifier.setExpectedLogMessages(
+                createExpectedLogMessages(
+                        "",
+                        "GET http://localhost:8090/rm21ab0100",
+                        "{\"messageCode\":\"100\", \"message\":\"OK\"}",
+                        200));
+
+        SyncMessage reciveMessage = client.sendSync(settings, requestMessage);
+
+        assertThat(reciveMessage, instanceOf(LazySyncMessage.class));
+        LazySyncMessage lazyMessage = (LazySyncMessage) reciveMessage;
+        assertThat((String) lazyMessage.getHeaderRecord().get(HttpMessagingClient.SYNCMESSAGE_STATUS_CODE), is("200"));
+        assertThat("ヘッダの参照では解析されないこと", lazyMessage.isParsed(), is(false));
+
+        assertThat((String) lazyMessage.getDataRecord().get("messageCode"), is("100"));
+        assertThat((String) lazyMessage.getDataRecord().get("message"), is("OK"));
+        assertThat(lazyMessage.isParsed(), is(true));
+        assertThat(lazyMessage.getDataRecords().size(), is(1));
+
+        LogVerifier.verify("messaging log assertion failed.");
+    }
+
+    /***
+     * 項目を指定した場合、応答の本文のうち指定した項目のみが解析されること。
+     */
+    @Test
+    public void testSendSyncWithFieldNames() {
+        //ユニットテスト用フォーマット定義ファイル準備
+        prepareFormatFileGetMessage();
+
+        SyncMessage requestMessage = new SyncMessage("RM21AB0100");
+        MessageSenderSettings settings = new MessageSenderSettings(requestMessage.getRequestId());
+        StubHTTPMessagingClient client = new StubHTTPMessagingClient(){
+            @Override
+            protected HttpProtocolClient createHttpProtocolClient() {
+                return new StubHttpProtocolClient(){
+                    @Override
+                    public HttpResult execute(HttpRequestMethodEnum httpMethod,
+                            String url, Map<String, List<String>> headerInfo,
+                            Map<String, String> urlParams,
+                            HttpOutputStreamWriter writer,
+                            HttpInputStreamReader reader) {
+                        HttpResult httpResult = new HttpResult();
+                        HashMap<String, List<String>> map = new HashMap<String, List<String>>();
+                        map.put("Content-Type", Collections.singletonList("application/json; charset=UTF-8"));
+                        map.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+                        reader.setHeaderInfo(map);
+                        httpResult.setHeaderInfo(map);
+                        httpResult.setResponseCode(200);
+                        try {
+                            httpResult.setReadObject(reader.readInputStream(new ByteArrayInputStream(
+                                    "{\"messageCode\":\"100\", \"message\":\"OK\"}".getBytes("UTF-8"))));
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        return httpResult;
+                    }
+                };
+            }
+        };
+
+        SyncMessage reciveMessage = client.sendSync(settings, requestMessage, Arrays.asList("message"));
+        assertThat(reciveMessage.getDataRecord().size(), is(1));
+        assertThat((String) reciveMessage.getDataRecord().get("message"), is("OK"));
+
+        //本文を直接ストリームから解析する場合
+        client.setStreamResponseBody(true);
+        reciveMessage = client.sendSync(settings, new SyncMessage("RM21AB0100"), Arrays.asList("messageCode"));
+        assertThat(reciveMessage.getDataRecord().size(), is(1));
+        assertThat((String) reciveMessage.getDataRecord().get("messageCode"), is("100"));
+    }
+
     /***
      * ログアサート用のリストを作成します。
      * 出力されるログはデフォルトのフォーマッタで整形されていることを前提としています。
@@ -7,9 +7,12 @@ import nablarch.fw.messaging.realtime.http.client.HttpProtocolClient.HttpRequest
 import nablarch.fw.messaging.realtime.http.dto.HttpResult;
 import nablarch.fw.messaging.realtime.http.exception.HttpMessagingException;
 import nablarch.fw.messaging.realtime.http.exception.HttpMessagingTimeoutException;
+import nablarch.fw.messaging.realtime.http.streamio.ByteHttpStreamWriter;
 import nablarch.fw.messaging.realtime.http.streamio.CharHttpStreamReader;
 import nablarch.fw.messaging.realtime.http.streamio.CharHttpStreamWritter;
 import nablarch.fw.messaging.realtime.http.streamio.HttpInputStreamReader;
+import nablarch.fw.messaging.realtime.http.streamio.HttpOutputStreamWriter;
+import nablarch.fw.messaging.realtime.http.streamio.SizedHttpOutputStreamWriter;
 import nablarch.fw.web.HttpRequest;
 import nablarch.fw.web.HttpResponse;
 import nablarch.fw.web.HttpServer;
@@ -20,15 +23,25 @@ import org.junit.Test;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Authenticator;
 import java.net.HttpURLConnection;
+import java.net.PasswordAuthentication;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
@@ -659,6 +672,639 @@ public class HttpProtocolBasicClientTest {
 
     }
     
+    /**
+     * 本文の送信方法に応じて、ストリーミングモードが設定されること。
+     */
+    @Test
+    public void testConfigureStreamingMode() throws Exception {
+        HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+        HttpOutputStreamWriter sized = new ByteHttpStreamWriter(new byte[10]);
+        CharHttpStreamWritter unsized = new CharHttpStreamWritter();
+
+        StreamingModeConnection con = new StreamingModeConnection();
+        assertThat(client.configureStreamingMode(con, sized, HttpStreamingMode.BUFFERED), is(false));
+        assertThat(con.getFixedContentLength(), is(-1));
+
+        con = new StreamingModeConnection();
+        assertThat(client.configureStreamingMode(con, sized, HttpStreamingMode.KNOWN_LENGTH), is(true));
+        assertThat(con.getFixedContentLength(), is(10));
+        con = new StreamingModeConnection();
+        assertThat(client.configureStreamingMode(con, unsized, HttpStreamingMode.KNOWN_LENGTH), is(false));
+        assertThat(con.getChunkLength(), is(-1));
+
+        con = new StreamingModeConnection();
+        assertThat(client.configureStreamingMode(con, sized, HttpStreamingMode.STREAMING), is(true));
+        assertThat(con.getFixedContentLength(), is(10));
+        con = new StreamingModeConnection();
+        assertThat(client.configureStreamingMode(con, unsized, HttpStreamingMode.STREAMING), is(true));
+        assertThat(con.getChunkLength() > 0, is(true));
+
+        client.setChunkLength(1024);
+        con = new StreamingModeConnection();
+        assertThat(client.configureStreamingMode(con, sized, HttpStreamingMode.CHUNKED), is(true));
+        assertThat(con.getFixedContentLength(), is(-1));
+        assertThat(con.getChunkLength(), is(1024));
+    }
+
+    /**
+     * 「Expect: 100-continue」に対してサーバが最終応答を返した場合、本文を送信せずにその応答が返却されること。
+     */
+    @Test
+    public void testExpectContinueRejected() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final StringBuilder received = new StringBuilder();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+                        String line;
+                        while ((line = in.readLine()) != null && line.length() > 0) {
+                            received.append(line).append('\n');
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 413 Payload Too Large\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("ISO-8859-1"));
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        try {
+            HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+            client.setReadTimeout(3000);
+            client.setStreamingMode(HttpStreamingMode.STREAMING);
+            client.setExpectContinueThreshold(5);
+            HttpResult result = client.execute(HttpRequestMethodEnum.POST,
+                    "http://localhost:" + server.getLocalPort() + "/upload",
+                    new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                    new ByteHttpStreamWriter(new byte[10]), new CharHttpStreamReader());
+            thread.join(5000);
+
+            assertThat(result.getResponseCode(), is(413));
+            assertThat(received.toString().toLowerCase().contains("expect: 100-continue"), is(true));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * 「Expect: 100-continue」を無視するサーバに対して、読み取りタイムアウトの後に「Expect」ヘッダを付与せずに再送されること。
+     */
+    @Test
+    public void testExpectContinueIgnored() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final List<String> expects = new ArrayList<String>();
+        final ByteArrayOutputStream receivedBody = new ByteArrayOutputStream();
+        Thread thread = startExpectIgnoringServer(server, expects, receivedBody);
+        try {
+            HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+            client.setReadTimeout(500);
+            client.setStreamingMode(HttpStreamingMode.STREAMING);
+            client.setExpectContinueThreshold(5);
+            byte[] requestBody = "request body".getBytes("UTF-8");
+            HttpResult result = client.execute(HttpRequestMethodEnum.POST,
+                    "http://localhost:" + server.getLocalPort() + "/upload",
+                    new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                    new ByteHttpStreamWriter(requestBody), new CharHttpStreamReader());
+            thread.join(5000);
+
+            assertThat(result.getResponseCode(), is(200));
+            assertThat((String) result.getReadObject(), is("OK"));
+            assertThat(expects, is(Arrays.asList("100-continue", null)));
+            assertThat(receivedBody.toByteArray(), is(requestBody));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * 「Expect: 100-continue」を無視するサーバに対して、読み取りタイムアウトより短い中間応答の待ち時間の後に
+     * 「Expect」ヘッダを付与せずに再送されること。
+     */
+    @Test
+    public void testExpectContinueTimeout() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final List<String> expects = new ArrayList<String>();
+        final ByteArrayOutputStream receivedBody = new ByteArrayOutputStream();
+        Thread thread = startExpectIgnoringServer(server, expects, receivedBody);
+        try {
+            HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+            client.setReadTimeout(10000);
+            client.setStreamingMode(HttpStreamingMode.STREAMING);
+            client.setExpectContinueThreshold(5);
+            client.setExpectContinueTimeout(200);
+            byte[] requestBody = "request body".getBytes("UTF-8");
+            long start = System.currentTimeMillis();
+            HttpResult result = client.execute(HttpRequestMethodEnum.POST,
+                    "http://localhost:" + server.getLocalPort() + "/upload",
+                    new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                    new ByteHttpStreamWriter(requestBody), new CharHttpStreamReader());
+            long elapsed = System.currentTimeMillis() - start;
+            thread.join(5000);
+
+            assertThat(result.getResponseCode(), is(200));
+            assertThat((String) result.getReadObject(), is("OK"));
+            assertThat(expects, is(Arrays.asList("100-continue", null)));
+            assertThat(receivedBody.toByteArray(), is(requestBody));
+            // 読み取りタイムアウトまで待たずに再送されること
+            assertThat(elapsed < 5000, is(true));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * 「Expect: 100-continue」の要求に中間応答を返さず、「Expect」ヘッダのない再送に応答するサーバを起動する。
+     * @param server サーバソケット
+     * @param expects 受信した要求ごとのExpectヘッダの値(ヘッダがない場合は{@code null})の格納先
+     * @param receivedBody 受信した本文の格納先
+     * @return サーバのスレッド
+     */
+    private static Thread startExpectIgnoringServer(final ServerSocket server, final List<String> expects,
+            final ByteArrayOutputStream receivedBody) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 2; i++) {
+                        Socket socket = server.accept();
+                        try {
+                            InputStream in = socket.getInputStream();
+                            String expect = null;
+                            int contentLength = 0;
+                            String line;
+                            while ((line = readLine(in)).length() > 0) {
+                                String lower = line.toLowerCase();
+                                if (lower.startsWith("expect:")) {
+                                    expect = lower.substring("expect:".length()).trim();
+                                } else if (lower.startsWith("content-length:")) {
+                                    contentLength = Integer.parseInt(lower.substring("content-length:".length()).trim());
+                                }
+                            }
+                            expects.add(expect);
+                            if (expect != null) {
+                                // 中間応答を返さず、クライアントが接続を閉じるまで待つ
+                                while (in.read() != -1) {
+                                }
+                                continue;
+                            }
+                            for (int j = 0; j < contentLength; j++) {
+                                receivedBody.write(in.read());
+                            }
+                            OutputStream out = socket.getOutputStream();
+                            out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nOK".getBytes("ISO-8859-1"));
+                            out.flush();
+                        } finally {
+                            socket.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * ストリーミングモードでの送信後に認証が必要となった場合、{@link Authenticator}が設定されていれば
+     * バッファリングして再送され、認証情報を付与した要求が成功すること。
+     */
+    @Test
+    public void testStreamingRetryWithAuthenticator() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        List<String> authorizations = new ArrayList<String>();
+        List<Integer> bodyLengths = new ArrayList<Integer>();
+        Thread thread = startAuthServer(server, authorizations, bodyLengths);
+        Authenticator.setDefault(new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication("user", "pass".toCharArray());
+            }
+        });
+        try {
+            HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+            client.setReadTimeout(3000);
+            HttpResult result = client.execute(HttpRequestMethodEnum.POST,
+                    "http://localhost:" + server.getLocalPort() + "/upload",
+                    new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                    new ByteHttpStreamWriter(new byte[10]), new CharHttpStreamReader());
+
+            assertThat(result.getResponseCode(), is(200));
+            assertThat((String) result.getReadObject(), is("OK"));
+            // ストリーミングモードでの送信、バッファリングしての再送、認証情報を付与した再送の順に要求される
+            assertThat(authorizations.size(), is(3));
+            assertThat(authorizations.get(0), is((String) null));
+            assertThat(authorizations.get(2).startsWith("Basic "), is(true));
+            assertThat(bodyLengths, is(Arrays.asList(10, 10, 10)));
+        } finally {
+            Authenticator.setDefault(null);
+            server.close();
+            thread.join(5000);
+        }
+    }
+
+    /**
+     * ストリーミングモードでの送信後に認証が必要となった場合、再送により成功する見込みがない場合、
+     * 及びWriterが再送できない場合は再送されず、認証エラーのステータスコードが返却されること。
+     */
+    @Test
+    public void testStreamingRetryNotReplayed() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        List<String> authorizations = new ArrayList<String>();
+        List<Integer> bodyLengths = new ArrayList<Integer>();
+        Thread thread = startAuthServer(server, authorizations, bodyLengths);
+        try {
+            HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+            client.setReadTimeout(3000);
+            String url = "http://localhost:" + server.getLocalPort() + "/upload";
+
+            // Authenticatorが設定されていない
+            HttpResult result = client.execute(HttpRequestMethodEnum.POST, url,
+                    new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                    new ByteHttpStreamWriter(new byte[10]), new CharHttpStreamReader());
+            assertThat(result.getResponseCode(), is(401));
+            assertThat((String) result.getReadObject(), is(""));
+            assertThat(authorizations.size(), is(1));
+
+            Authenticator.setDefault(new Authenticator() {
+                @Override
+                protected PasswordAuthentication getPasswordAuthentication() {
+                    return new PasswordAuthentication("user", "pass".toCharArray());
+                }
+            });
+            try {
+                // 本文の長さが再送の上限を超える
+                client.setMaxReplayLength(5);
+                result = client.execute(HttpRequestMethodEnum.POST, url,
+                        new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                        new ByteHttpStreamWriter(new byte[10]), new CharHttpStreamReader());
+                assertThat(result.getResponseCode(), is(401));
+                assertThat(authorizations.size(), is(2));
+
+                // Writerが再送できない
+                client.setMaxReplayLength(1024);
+                result = client.execute(HttpRequestMethodEnum.POST, url,
+                        new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                        new SizedHttpOutputStreamWriter() {
+                            public long getContentLength() {
+                                return 10;
+                            }
+                            public void writeStream(OutputStream outputStream) throws IOException {
+                                outputStream.write(new byte[10]);
+                            }
+                        }, new CharHttpStreamReader());
+                assertThat(result.getResponseCode(), is(401));
+                assertThat(authorizations.size(), is(3));
+            } finally {
+                Authenticator.setDefault(null);
+            }
+        } finally {
+            server.close();
+            thread.join(5000);
+        }
+        assertThat(bodyLengths, is(Arrays.asList(10, 10, 10)));
+    }
+
+    /**
+     * チャンク形式での送信中にWriterが例外を送出した場合、終端のチャンクが送信されずに接続が切断されること。
+     */
+    @Test
+    public void testWriterFailure() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        InputStream in = socket.getInputStream();
+                        while (readLine(in).length() > 0) {
+                        }
+                        int b;
+                        while ((b = in.read()) != -1) {
+                            received.write(b);
+                        }
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        try {
+            HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+            client.setReadTimeout(3000);
+            client.setStreamingMode(HttpStreamingMode.CHUNKED);
+            client.setChunkLength(16);
+            try {
+                client.execute(HttpRequestMethodEnum.POST,
+                        "http://localhost:" + server.getLocalPort() + "/upload",
+                        new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                        new HttpOutputStreamWriter() {
+                            public void writeStream(OutputStream outputStream) throws IOException {
+                                outputStream.write(new byte[100]);
+                                outputStream.flush();
+                                throw new IllegalStateException("invalid record.");
+                            }
+                        }, new CharHttpStreamReader());
+                fail("IllegalStateException must be thrown.");
+            } catch (IllegalStateException e) {
+                assertThat(e.getMessage(), is("invalid record."));
+            }
+            thread.join(5000);
+
+            String body = received.toString("ISO-8859-1");
+            assertThat(body.length() > 0, is(true));
+            assertThat(body.endsWith("0\r\n\r\n"), is(false));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * 認証情報が付与されていない要求に認証エラーを返すサーバを開始する。
+     * <p/>
+     * サーバはソケットがクローズされるまで、要求ごとに接続を受け付ける。
+     * @param server サーバソケット
+     * @param authorizations 受信した要求のAuthorizationヘッダの格納先
+     * @param bodyLengths 受信した要求の本文の長さの格納先
+     * @return サーバのスレッド
+     */
+    private static Thread startAuthServer(final ServerSocket server,
+            final List<String> authorizations, final List<Integer> bodyLengths) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                while (true) {
+                    Socket socket;
+                    try {
+                        socket = server.accept();
+                    } catch (IOException e) {
+                        // サーバソケットがクローズされたため終了する
+                        return;
+                    }
+                    try {
+                        InputStream in = socket.getInputStream();
+                        String authorization = null;
+                        int contentLength = 0;
+                        String line;
+                        while ((line = readLine(in)).length() > 0) {
+                            String lower = line.toLowerCase();
+                            if (lower.startsWith("authorization:")) {
+                                authorization = line.substring("authorization:".length()).trim();
+                            } else if (lower.startsWith("content-length:")) {
+                                contentLength = Integer.parseInt(lower.substring("content-length:".length()).trim());
+                            }
+                        }
+                        for (int j = 0; j < contentLength; j++) {
+                            in.read();
+                        }
+                        authorizations.add(authorization);
+                        bodyLengths.add(contentLength);
+                        OutputStream out = socket.getOutputStream();
+                        if (authorization == null) {
+                            out.write(("HTTP/1.1 401 Unauthorized\r\nWWW-Authenticate: Basic realm=\"test\"\r\n"
+                                    + "Content-Length: 0\r\nConnection: close\r\n\r\n").getBytes("ISO-8859-1"));
+                        } else {
+                            out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nOK".getBytes("ISO-8859-1"));
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        try {
+                            socket.close();
+                        } catch (IOException e) {
+                            // 何もしない
+                        }
+                    }
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * 圧縮を有効にした場合、要求の本文がgzip形式で送信され、圧縮された応答が伸長されてReaderに渡されること。
+     */
+    @Test
+    public void testCompression() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final StringBuilder received = new StringBuilder();
+        final ByteArrayOutputStream receivedBody = new ByteArrayOutputStream();
+        final StringBuilder responseBody = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            responseBody.append("応答データ");
+        }
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        InputStream in = socket.getInputStream();
+                        int contentLength = 0;
+                        String line;
+                        while ((line = readLine(in)).length() > 0) {
+                            received.append(line).append('\n');
+                            if (line.toLowerCase().startsWith("content-length:")) {
+                                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+                            }
+                        }
+                        byte[] body = new byte[contentLength];
+                        int offset = 0;
+                        while (offset < contentLength) {
+                            offset += in.read(body, offset, contentLength - offset);
+                        }
+                        GZIPInputStream gzipIn = new GZIPInputStream(new ByteArrayInputStream(body));
+                        int b;
+                        while ((b = gzipIn.read()) != -1) {
+                            receivedBody.write(b);
+                        }
+
+                        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                        GZIPOutputStream gzipOut = new GZIPOutputStream(compressed);
+                        gzipOut.write(responseBody.toString().getBytes("UTF-8"));
+                        gzipOut.close();
+                        OutputStream out = socket.getOutputStream();
+                        out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Encoding: gzip\r\n"
+                                + "Content-Length: " + compressed.size() + "\r\nConnection: close\r\n\r\n").getBytes("ISO-8859-1"));
+                        out.write(compressed.toByteArray());
+                        out.flush();
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        try {
+            HttpCompressionStatistics statistics = new HttpCompressionStatistics();
+            HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+            client.setReadTimeout(3000);
+            client.setAcceptCompression(true);
+            client.setRequestCompressionThreshold(100);
+            client.setCompressionStatistics(statistics);
+            byte[] requestBody = new byte[4096];
+            HttpResult result = client.execute(HttpRequestMethodEnum.POST,
+                    "http://localhost:" + server.getLocalPort() + "/upload",
+                    new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                    new ByteHttpStreamWriter(requestBody), new CharHttpStreamReader());
+            thread.join(5000);
+
+            assertThat(result.getResponseCode(), is(200));
+            assertThat((String) result.getReadObject(), is(responseBody.toString()));
+            assertThat(received.toString().toLowerCase().contains("accept-encoding: gzip, deflate"), is(true));
+            assertThat(received.toString().toLowerCase().contains("content-encoding: gzip"), is(true));
+            assertThat(receivedBody.toByteArray(), is(requestBody));
+
+            HttpCompressionStatistics.DestinationStatistics stats
+                    = statistics.getStatistics("http://localhost:" + server.getLocalPort());
+            assertThat(stats.getCompressionCount(), is(1L));
+            assertThat(stats.getUncompressedRequestBytes(), is(4096L));
+            assertThat(stats.getRequestCompressionRatio() > 1, is(true));
+            assertThat(stats.getDecompressionCount(), is(1L));
+            assertThat(stats.getUncompressedResponseBytes(), is((long) responseBody.toString().getBytes("UTF-8").length));
+            assertThat(stats.getResponseCompressionRatio() > 1, is(true));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * 本文の長さが圧縮の閾値未満の場合、及び長さが不明な場合は、要求の本文が圧縮されないこと。
+     * {@link HttpMessagingClient}が生成するWriterは本文の長さが判明しているため、閾値以上の場合のみ圧縮され、
+     * バッファリングして送信されること。
+     */
+    @Test
+    public void testCompressionThreshold() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final List<String> encodings = new ArrayList<String>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 3; i++) {
+                        Socket socket = server.accept();
+                        try {
+                            InputStream in = socket.getInputStream();
+                            String encoding = null;
+                            int contentLength = 0;
+                            String line;
+                            while ((line = readLine(in)).length() > 0) {
+                                String lower = line.toLowerCase();
+                                if (lower.startsWith("content-encoding:")) {
+                                    encoding = lower.substring("content-encoding:".length()).trim();
+                                } else if (lower.startsWith("content-length:")) {
+                                    contentLength = Integer.parseInt(lower.substring("content-length:".length()).trim());
+                                }
+                            }
+                            encodings.add(encoding);
+                            for (int j = 0; j < contentLength; j++) {
+                                in.read();
+                            }
+                            OutputStream out = socket.getOutputStream();
+                            out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("ISO-8859-1"));
+                            out.flush();
+                        } finally {
+                            socket.close();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        try {
+            HttpProtocolBasicClient client = new HttpProtocolBasicClient();
+            client.setReadTimeout(3000);
+            client.setRequestCompressionThreshold(100);
+            String url = "http://localhost:" + server.getLocalPort() + "/upload";
+            HttpMessagingClient messagingClient = new HttpMessagingClient();
+            StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                large.append("data");
+            }
+            CharHttpStreamWritter unsized = new CharHttpStreamWritter("UTF-8");
+            unsized.append(large.toString());
+
+            for (HttpOutputStreamWriter writer : Arrays.asList(
+                    messagingClient.createCharHttpStreamWritter("UTF-8", "small body"),
+                    messagingClient.createCharHttpStreamWritter("UTF-8", large.toString()),
+                    unsized)) {
+                HttpResult result = client.execute(HttpRequestMethodEnum.POST, url,
+                        new HashMap<String, List<String>>(), new HashMap<String, String>(),
+                        writer, new CharHttpStreamReader());
+                assertThat(result.getResponseCode(), is(200));
+            }
+            thread.join(5000);
+
+            assertThat(encodings, is(Arrays.asList(null, "gzip", null)));
+
+            // HttpMessagingClientが生成するWriterは、ストリーミングモードでは送信されない
+            assertThat(client.configureStreamingMode(new StreamingModeConnection(),
+                    messagingClient.createCharHttpStreamWritter("UTF-8", large.toString()),
+                    HttpStreamingMode.KNOWN_LENGTH), is(false));
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * ストリームから1行(CRLFを除く)を読み込む。
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * 設定されたストリーミングモードを参照するためのコネクション。
+     */
+    private static class StreamingModeConnection extends HttpURLConnection {
+        StreamingModeConnection() throws IOException {
+            super(new java.net.URL("http://localhost:8766/action/010.do"));
+        }
+        int getFixedContentLength() {
+            return fixedContentLength;
+        }
+        int getChunkLength() {
+            return chunkLength;
+        }
+        @Override
+        public void disconnect() {
+        }
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+        @Override
+        public void connect() throws IOException {
+        }
+    }
+
     public static class SSLTestHttpProtocolBasicClient extends HttpProtocolBasicClient{
         public HttpURLConnection createHttpConnectionWrapper(String targetUrl,
                 HttpRequestMethodEnum method, Map<String, List<String>> headerInfo) throws IOException {
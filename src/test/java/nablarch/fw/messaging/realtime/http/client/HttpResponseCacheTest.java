@@ -0,0 +1,113 @@
+package nablarch.fw.messaging.realtime.http.client;
+
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import nablarch.fw.messaging.realtime.http.client.HttpProtocolClient.HttpRequestMethodEnum;
+
+import org.junit.Test;
+
+/**
+ * {@link HttpResponseCache}のテスト。
+ *
+ * @author TIS
+ */
+public class HttpResponseCacheTest {
+
+    /**
+     * キーにはHTTPメソッド、URI及びソート済みのクエリストリングが含まれること。
+     */
+    @Test
+    public void testCreateKey() {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("b", "2");
+        params.put("a", "1");
+        assertThat(HttpResponseCache.createKey(HttpRequestMethodEnum.GET, "http://localhost/x", params),
+                is("GET http://localhost/x?a=1&b=2"));
+        assertThat(HttpResponseCache.createKey(HttpRequestMethodEnum.GET, "http://localhost/x", null),
+                is("GET http://localhost/x"));
+    }
+
+    /**
+     * Cache-Controlヘッダに従ってキャッシュの格納可否及び有効期間が決まること。
+     */
+    @Test
+    public void testPut() {
+        HttpResponseCache cache = new HttpResponseCache();
+        long now = System.currentTimeMillis();
+
+        // max-ageが指定されていれば有効期間内となる。
+        assertThat(cache.put("k1", header("Cache-Control", "public, max-age=60"), record(), record(), 10), is(true));
+        assertThat(cache.get("k1").isFresh(now), is(true));
+
+        // no-storeの場合は格納しない。
+        assertThat(cache.put("k2", header("Cache-Control", "no-store"), record(), record(), 10), is(false));
+        assertThat(cache.get("k2"), nullValue());
+
+        // 有効期間も検証子もない場合は格納しない。
+        assertThat(cache.put("k3", new HashMap<String, List<String>>(), record(), record(), 10), is(false));
+
+        // ETagがあれば有効期間が無くても格納し、再検証に使用する。
+        assertThat(cache.put("k4", header("etag", "\"abc\""), record(), record(), 10), is(true));
+        assertThat(cache.get("k4").getETag(), is("\"abc\""));
+        // (格納時点で有効期限切れとなるため、格納後の時刻で判定する)
+        assertThat(cache.get("k4").isFresh(System.currentTimeMillis() + 1), is(false));
+
+        // stale-while-revalidateの期間内であれば返却可能となる。
+        cache.put("k5", header("Cache-Control", "max-age=0, stale-while-revalidate=30"), record(), record(), 10);
+        assertThat(cache.get("k5").isStaleWhileRevalidate(now + 1000), is(true));
+        assertThat(cache.get("k5").isStaleWhileRevalidate(now + 60000), is(false));
+
+        // no-cacheの場合はstale-while-revalidateが指定されていても常に再検証する。
+        Map<String, List<String>> noCache = header("Cache-Control", "no-cache, stale-while-revalidate=30");
+        noCache.put("ETag", Collections.singletonList("\"abc\""));
+        assertThat(cache.put("k6", noCache, record(), record(), 10), is(true));
+        assertThat(cache.get("k6").isFresh(now + 1000), is(false));
+        assertThat(cache.get("k6").isStaleWhileRevalidate(now + 1000), is(false));
+    }
+
+    /**
+     * 最大サイズを超えた場合、最も長く参照されていないエントリから破棄されること。
+     */
+    @Test
+    public void testEviction() {
+        HttpResponseCache cache = new HttpResponseCache();
+        cache.setMaxWeight(2000);
+        Map<String, List<String>> header = header("Cache-Control", "max-age=60");
+        cache.put("k1", header, record(), record(), 300);
+        cache.put("k2", header, record(), record(), 300);
+        cache.get("k1");
+        cache.put("k3", header, record(), record(), 300);
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("k1"), notNullValue());
+        assertThat(cache.get("k2"), nullValue());
+        assertThat(cache.get("k3"), notNullValue());
+        assertThat(cache.getEvictionCount(), is(1L));
+
+        cache.clear();
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getWeight(), is(0L));
+    }
+
+    private static Map<String, List<String>> header(String name, String value) {
+        Map<String, List<String>> header = new HashMap<String, List<String>>();
+        header.put(name, Collections.singletonList(value));
+        return header;
+    }
+
+    private static Map<String, Object> record() {
+        Map<String, Object> record = new TreeMap<String, Object>();
+        record.put("key", "value");
+        return record;
+    }
+}
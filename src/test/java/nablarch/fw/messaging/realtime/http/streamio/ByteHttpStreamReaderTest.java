@@ -0,0 +1,69 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * {@link ByteHttpStreamReader}のテスト。
+ *
+ * @author TIS
+ */
+public class ByteHttpStreamReaderTest {
+
+    /**
+     * 引数で渡したStreamから、デコードせずにバイト列として読み込めること。
+     */
+    @Test
+    public void testReadStream() throws Exception {
+        byte[] data = new byte[20000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteBufferPool pool = new ByteBufferPool(1024, 2);
+
+        // Content-Lengthなし
+        ByteHttpStreamReader reader = new ByteHttpStreamReader(pool);
+        assertThat((byte[]) reader.readInputStream(new ByteArrayInputStream(data)), is(data));
+        assertThat("使用したバッファはプールに返却されること", pool.getPooledCount(), is(1));
+
+        // Content-Lengthあり
+        reader = new ByteHttpStreamReader(pool);
+        reader.setHeaderInfo(header("Content-Length", "20000"));
+        assertThat((byte[]) reader.readInputStream(new ByteArrayInputStream(data)), is(data));
+
+        // Content-Lengthと実際の長さが異なる場合は、実際の長さで読み込むこと
+        reader = new ByteHttpStreamReader(pool);
+        reader.setHeaderInfo(header("Content-Length", "30000"));
+        assertThat((byte[]) reader.readInputStream(new ByteArrayInputStream(data)), is(data));
+        reader = new ByteHttpStreamReader(pool);
+        reader.setHeaderInfo(header("Content-Length", "10"));
+        assertThat((byte[]) reader.readInputStream(new ByteArrayInputStream(data)), is(data));
+    }
+
+    /**
+     * ByteBufferとして読み込めること。
+     */
+    @Test
+    public void testReadStreamAsByteBuffer() throws Exception {
+        ByteHttpStreamReader reader = new ByteHttpStreamReader();
+        reader.setResultAsByteBuffer(true);
+        ByteBuffer result = (ByteBuffer) reader.readInputStream(new ByteArrayInputStream(new byte[] {1, 2, 3}));
+        assertThat(result.remaining(), is(3));
+        assertThat(result.get(2), is((byte) 3));
+    }
+
+    private static Map<String, List<String>> header(String key, String value) {
+        Map<String, List<String>> header = new TreeMap<String, List<String>>();
+        header.put(key, Collections.singletonList(value));
+        return header;
+    }
+}
@@ -0,0 +1,51 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * {@link ByteHttpStreamWriter}のテスト。
+ *
+ * @author TIS
+ */
+public class ByteHttpStreamWriterTest {
+
+    /**
+     * 引数で渡したStreamに、エンコードせずにバイト列を書き込めること。
+     */
+    @Test
+    public void testWriteStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ByteHttpStreamWriter(new byte[] {0, 1, 2, 3, 4}, 1, 3).writeStream(out);
+        assertThat(out.toByteArray(), is(new byte[] {1, 2, 3}));
+    }
+
+    /**
+     * 配列を持たないByteBufferの内容も、プールのバッファを経由して書き込めること。
+     */
+    @Test
+    public void testWriteDirectBuffer() throws Exception {
+        ByteBuffer direct = ByteBuffer.allocateDirect(10);
+        for (int i = 0; i < 10; i++) {
+            direct.put((byte) i);
+        }
+        direct.flip();
+        ByteBufferPool pool = new ByteBufferPool(4, 1);
+        ByteHttpStreamWriter writer = new ByteHttpStreamWriter(direct, pool);
+        assertThat(writer.getLength(), is(10));
+
+        // 繰り返し書き込めること
+        for (int n = 0; n < 2; n++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.writeStream(out);
+            assertThat(out.toByteArray(), is(new byte[] {0, 1, 2, 3, 4, 5, 6, 7, 8, 9}));
+        }
+        assertThat(pool.getPooledCount(), is(1));
+        assertThat("呼び出し元のByteBufferの位置は変わらないこと", direct.position(), is(0));
+    }
+}
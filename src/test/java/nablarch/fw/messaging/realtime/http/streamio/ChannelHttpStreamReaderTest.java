@@ -0,0 +1,157 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.util.FileUtil;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link ChannelHttpStreamReader}のテスト。
+ *
+ * @author TIS
+ */
+public class ChannelHttpStreamReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 応答の本文をファイルに転送でき、進捗が通知されること。
+     */
+    @Test
+    public void testReadToFile() throws Exception {
+        byte[] data = createData(200000);
+        File file = new File(folder.getRoot(), "download.dat");
+        final List<Long> progress = new ArrayList<Long>();
+
+        ChannelHttpStreamReader reader = new ChannelHttpStreamReader(file);
+        reader.setHeaderInfo(header("HTTP/1.1 200 OK", "200000"));
+        reader.setProgressListener(new HttpDownloadProgressListener() {
+            public void onProgress(long transferredBytes, long contentLength) {
+                assertThat(contentLength, is(200000L));
+                progress.add(transferredBytes);
+            }
+        });
+        Object result = reader.readInputStream(new ByteArrayInputStream(data));
+
+        assertThat((Long) result, is(200000L));
+        assertThat(progress.get(progress.size() - 1), is(200000L));
+        assertThat(readFile(file), is(data));
+    }
+
+    /**
+     * 応答の本文をチャネルに転送できること。
+     */
+    @Test
+    public void testReadToChannel() throws Exception {
+        byte[] data = createData(100000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ChannelHttpStreamReader reader = new ChannelHttpStreamReader(Channels.newChannel(out));
+        Object result = reader.readInputStream(new ByteArrayInputStream(data));
+
+        assertThat((Long) result, is(100000L));
+        assertThat(out.toByteArray(), is(data));
+    }
+
+    /**
+     * 最大バイト数を超えた場合は例外が送出され、転送途中のファイルは削除されること。
+     */
+    @Test
+    public void testSizeLimit() throws Exception {
+        File file = new File(folder.getRoot(), "download.dat");
+        ChannelHttpStreamReader reader = new ChannelHttpStreamReader(file);
+        reader.setMaxSize(1000);
+        try {
+            reader.readInputStream(new ByteArrayInputStream(createData(100000)));
+            fail();
+        } catch (HttpMessagingException e) {
+            assertThat(e.getMessage().startsWith("response body exceeds the size limit. limit=[1000]"), is(true));
+        }
+        assertThat(file.exists(), is(false));
+    }
+
+    /**
+     * Content-Lengthヘッダの値が最大バイト数を超える場合は、転送を開始せずに例外が送出されること。
+     */
+    @Test
+    public void testSizeLimitByContentLength() throws Exception {
+        File file = new File(folder.getRoot(), "download.dat");
+        ChannelHttpStreamReader reader = new ChannelHttpStreamReader(file);
+        reader.setMaxSize(1000);
+        reader.setHeaderInfo(header("HTTP/1.1 200 OK", "100000"));
+        ByteArrayInputStream in = new ByteArrayInputStream(createData(100000));
+        try {
+            reader.readInputStream(in);
+            fail();
+        } catch (HttpMessagingException e) {
+            assertThat(e.getMessage(), is("response body exceeds the size limit. limit=[1000] content-length=[100000]"));
+        }
+        assertThat(in.available(), is(100000));
+        assertThat(reader.getTransferredSize(), is(0L));
+        assertThat(file.exists(), is(false));
+    }
+
+    /**
+     * エラー応答の本文はファイルに書き込まず、文字列として返却すること。
+     */
+    @Test
+    public void testErrorResponse() throws Exception {
+        File file = new File(folder.getRoot(), "download.dat");
+        ChannelHttpStreamReader reader = new ChannelHttpStreamReader(file);
+        reader.setHeaderInfo(header("HTTP/1.1 404 Not Found", null));
+        Object result = reader.readInputStream(new ByteArrayInputStream("not found".getBytes("ISO-8859-1")));
+
+        assertThat((String) result, is("not found"));
+        assertThat(file.exists(), is(false));
+    }
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        return data;
+    }
+
+    private static Map<String, List<String>> header(String statusLine, String contentLength) {
+        Map<String, List<String>> header = new HashMap<String, List<String>>();
+        header.put(null, Collections.singletonList(statusLine));
+        if (contentLength != null) {
+            header.put("Content-Length", Collections.singletonList(contentLength));
+        }
+        return header;
+    }
+
+    private static byte[] readFile(File file) throws Exception {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            FileUtil.closeQuietly(in);
+        }
+    }
+}
@@ -2,14 +2,20 @@ package nablarch.fw.messaging.realtime.http.streamio;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import nablarch.core.util.FileUtil;
+import nablarch.fw.messaging.realtime.http.exception.HttpMessagingException;
 
 import org.junit.Test;
 
@@ -51,4 +57,97 @@ public class CharHttpStreamReaderTest extends CharHttpStreamReader {
         
     }
 
+    /**
+     * Content-Lengthが存在する場合や、マルチバイト文字が読み込みの境界で分割される場合でも正しく読み込めること。
+     */
+    @Test
+    public void testReadStreamWithContentLength() throws Exception {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            expected.append("あb");
+        }
+        byte[] data = expected.toString().getBytes("UTF-8");
+
+        CharHttpStreamReader charHttpStreamReader = new CharHttpStreamReader();
+        Map<String, List<String>> headerFields = new TreeMap<String, List<String>>();
+        headerFields.put("content-type", Collections.singletonList("text/plain; charset=UTF-8"));
+        headerFields.put("content-length", Collections.singletonList(String.valueOf(data.length)));
+        charHttpStreamReader.setHeaderInfo(headerFields);
+
+        // 7バイトずつ読み込まれるストリーム
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        assertThat((String) charHttpStreamReader.readInputStream(in), is(expected.toString()));
+
+        // 同一スレッドで異なる文字セットを読み込めること
+        charHttpStreamReader = new CharHttpStreamReader();
+        headerFields.put("content-type", Collections.singletonList("text/plain; charset=Windows-31J"));
+        headerFields.remove("content-length");
+        charHttpStreamReader.setHeaderInfo(headerFields);
+        assertThat((String) charHttpStreamReader.readInputStream(
+                new ByteArrayInputStream("あいう".getBytes("Windows-31J"))), is("あいう"));
+    }
+
+    /**
+     * 本文が最大バイト数を超える場合は{@link HttpMessagingException}が送出され、
+     * Content-Lengthヘッダから超過が分かる場合は読み取る前に送出されること。
+     */
+    @Test
+    public void testMaxBodyLength() throws Exception {
+        CharHttpStreamReader charHttpStreamReader = new CharHttpStreamReader();
+        charHttpStreamReader.setMaxBodyLength(5);
+        Map<String, List<String>> headerFields = new TreeMap<String, List<String>>();
+        headerFields.put("content-type", Collections.singletonList("text/plain; charset=UTF-8"));
+        charHttpStreamReader.setHeaderInfo(headerFields);
+        assertThat((String) charHttpStreamReader.readInputStream(
+                new ByteArrayInputStream("abcde".getBytes("UTF-8"))), is("abcde"));
+        try {
+            charHttpStreamReader.readInputStream(new ByteArrayInputStream("abcdef".getBytes("UTF-8")));
+            fail("HttpMessagingException must be thrown.");
+        } catch (HttpMessagingException e) {
+            assertThat(e.getMessage().contains("limit=[5]"), is(true));
+        }
+
+        headerFields.put("content-length", Collections.singletonList("100"));
+        charHttpStreamReader.setHeaderInfo(headerFields);
+        final int[] readCount = new int[1];
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(new byte[100])) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                readCount[0]++;
+                return super.read(b, off, len);
+            }
+        };
+        try {
+            charHttpStreamReader.readInputStream(in);
+            fail("HttpMessagingException must be thrown.");
+        } catch (HttpMessagingException e) {
+            assertThat(e.getMessage().contains("length=[100]"), is(true));
+        }
+        assertThat(readCount[0], is(0));
+    }
+
+    /**
+     * 文字セット名が不正な場合、及びサポートされていない場合は{@link UnsupportedEncodingException}が送出されること。
+     */
+    @Test
+    public void testUnsupportedEncoding() throws Exception {
+        for (String charset : new String[] {"\"utf-8\"", "unknown-charset"}) {
+            CharHttpStreamReader charHttpStreamReader = new CharHttpStreamReader();
+            Map<String, List<String>> headerFields = new TreeMap<String, List<String>>();
+            headerFields.put("content-type", Collections.singletonList("text/plain; charset=" + charset));
+            charHttpStreamReader.setHeaderInfo(headerFields);
+            try {
+                charHttpStreamReader.readInputStream(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+                fail("UnsupportedEncodingException must be thrown.");
+            } catch (UnsupportedEncodingException e) {
+                assertThat(e.getMessage(), is(charset));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,74 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+
+import org.junit.Test;
+
+/**
+ * {@link CharSequenceHttpStreamWriter}、{@link ReaderHttpStreamWriter}及び{@link CallbackHttpStreamWriter}のテスト。
+ *
+ * @author TIS
+ */
+public class CharSequenceHttpStreamWriterTest {
+
+    /**
+     * 文字列を指定した文字セットで書き込め、書き込む前にエンコード後の長さを取得できること。
+     */
+    @Test
+    public void testWriteStream() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            // バッファの境界でマルチバイト文字及びサロゲートペアが分割されるようにする。
+            text.append("aあ𠮷");
+        }
+        CharSequenceHttpStreamWriter writer = new CharSequenceHttpStreamWriter(text, "UTF-8");
+        byte[] expected = text.toString().getBytes("UTF-8");
+        assertThat(writer.getContentLength(), is((long) expected.length));
+
+        // 何度でも書き込めること。
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.writeStream(out);
+            assertThat(out.toByteArray(), is(expected));
+        }
+
+        CharSequenceHttpStreamWriter sjis = new CharSequenceHttpStreamWriter("あいう", "Windows-31J");
+        assertThat(sjis.getContentLength(), is(6L));
+    }
+
+    /**
+     * Readerから読み込んだ文字を書き込めること。
+     */
+    @Test
+    public void testWriteReader() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("あいう𠮷");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ReaderHttpStreamWriter(new StringReader(text.toString()), "UTF-8").writeStream(out);
+        assertThat(out.toString("UTF-8"), is(text.toString()));
+    }
+
+    /**
+     * コールバックが書き出した文字を書き込めること。
+     */
+    @Test
+    public void testWriteCallback() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CallbackHttpStreamWriter(new CharStreamCallback() {
+            public void write(Writer writer) throws IOException {
+                writer.write("あいう");
+                writer.write('\n');
+                writer.append("えお");
+            }
+        }, "UTF-8").writeStream(out);
+        assertThat(out.toString("UTF-8"), is("あいう\nえお"));
+    }
+}
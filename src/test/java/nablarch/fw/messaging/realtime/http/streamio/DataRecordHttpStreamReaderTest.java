@@ -0,0 +1,102 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nablarch.core.dataformat.SimpleDataConvertResult;
+import nablarch.core.repository.ObjectLoader;
+import nablarch.core.repository.SystemRepository;
+import nablarch.core.util.FilePathSetting;
+import nablarch.core.util.FileUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link DataRecordHttpStreamReader}のテスト。
+ *
+ * @author TIS
+ */
+public class DataRecordHttpStreamReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        FilePathSetting setting = new FilePathSetting();
+        setting.addBasePathSetting("format", folder.getRoot().toURI().toString());
+        setting.addFileExtensions("format", "fmt");
+        final Map<String, Object> components = new HashMap<String, Object>();
+        components.put("filePathSetting", setting);
+        SystemRepository.load(new ObjectLoader() {
+            public Map<String, Object> load() {
+                return components;
+            }
+        });
+
+        File file = new File(folder.getRoot(), "RESPONSE.fmt");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("file-type: \"JSON\"\ntext-encoding: \"UTF-8\"\n[response]\n1 message X\n".getBytes("UTF-8"));
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        SystemRepository.clear();
+    }
+
+    /**
+     * Content-Typeヘッダの文字セットがフォーマット定義と異なる場合、指定された文字セットで読み込んで解析されること。
+     * 文字セットが指定されていない場合、及び同じ場合は、フォーマット定義の文字セットで解析されること。
+     */
+    @Test
+    public void testResponseCharset() throws Exception {
+        String body = "{\"message\":\"応答メッセージ\"}";
+
+        DataRecordHttpStreamReader reader = new DataRecordHttpStreamReader("RESPONSE");
+        reader.setHeaderInfo(createHeader("application/json; charset=Windows-31J"));
+        SimpleDataConvertResult result = (SimpleDataConvertResult) reader.readInputStream(
+                new ByteArrayInputStream(body.getBytes("Windows-31J")));
+        assertThat((String) result.getResultMap().get("message"), is("応答メッセージ"));
+
+        reader.setCompactRecord(true);
+        result = (SimpleDataConvertResult) reader.readInputStream(new ByteArrayInputStream(body.getBytes("Windows-31J")));
+        assertThat((String) result.getResultMap().get("message"), is("応答メッセージ"));
+
+        reader.setHeaderInfo(createHeader("application/json; charset=UTF-8"));
+        result = (SimpleDataConvertResult) reader.readInputStream(new ByteArrayInputStream(body.getBytes("UTF-8")));
+        assertThat((String) result.getResultMap().get("message"), is("応答メッセージ"));
+
+        // 前回の読み取り時の文字セットは引き継がない
+        reader.setHeaderInfo(createHeader("application/json; charset=Windows-31J"));
+        reader.setHeaderInfo(createHeader("application/json"));
+        result = (SimpleDataConvertResult) reader.readInputStream(new ByteArrayInputStream(body.getBytes("UTF-8")));
+        assertThat((String) result.getResultMap().get("message"), is("応答メッセージ"));
+    }
+
+    /**
+     * Content-Typeヘッダのみを含むヘッダ情報を生成する。
+     * @param contentType Content-Typeヘッダの値
+     * @return ヘッダ情報
+     */
+    private static Map<String, List<String>> createHeader(String contentType) {
+        Map<String, List<String>> header = new HashMap<String, List<String>>();
+        header.put("Content-Type", Collections.singletonList(contentType));
+        return header;
+    }
+}
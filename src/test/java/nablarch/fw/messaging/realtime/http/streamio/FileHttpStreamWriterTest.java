@@ -0,0 +1,99 @@
+package nablarch.fw.messaging.realtime.http.streamio;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import nablarch.core.util.FileUtil;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * {@link FileHttpStreamWriter}のテスト。
+ *
+ * @author TIS
+ */
+public class FileHttpStreamWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * ファイルの内容を繰り返し書き込めること。
+     */
+    @Test
+    public void testWriteFile() throws Exception {
+        byte[] data = createData(3 * 1024 * 1024 + 10);
+        File file = createFile(data);
+
+        FileHttpStreamWriter writer = new FileHttpStreamWriter(file);
+        assertThat(writer.getContentLength(), is((long) data.length));
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.writeStream(out);
+            assertThat(out.toByteArray(), is(data));
+        }
+    }
+
+    /**
+     * チャネルの指定した範囲を書き込めること。
+     */
+    @Test
+    public void testWriteChannelRange() throws Exception {
+        File file = createFile(new byte[] {0, 1, 2, 3, 4, 5});
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new FileHttpStreamWriter(channel, 2, 3).writeStream(out);
+            assertThat(out.toByteArray(), is(new byte[] {2, 3, 4}));
+            assertThat("チャネルの位置は変わらないこと", channel.position(), is(0L));
+
+            // ファイルが宣言した長さより短い場合はエラー
+            try {
+                new FileHttpStreamWriter(channel, 4, 10).writeStream(new ByteArrayOutputStream());
+                fail();
+            } catch (IOException e) {
+                assertThat(e.getMessage(), is("file is shorter than the declared length. length=[10] transferred=[2]"));
+            }
+        } finally {
+            FileUtil.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * 存在しないファイルを指定した場合はエラーとなること。
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testFileNotFound() {
+        new FileHttpStreamWriter(new File(folder.getRoot(), "notfound.dat"));
+    }
+
+    private File createFile(byte[] data) throws IOException {
+        File file = folder.newFile("upload.dat");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            FileUtil.closeQuietly(out);
+        }
+        return file;
+    }
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        return data;
+    }
+}